@@ -51,6 +51,7 @@ public final class CubeQuery {
   private final long endTs;
   private final int resolution;
   private final int limit;
+  private final int maxPoints;
   private final Map<String, AggregationFunction> measurements;
   private final Map<String, String> dimensionValues;
   private final List<String> groupByDimensions;
@@ -74,11 +75,37 @@ public final class CubeQuery {
                    Map<String, AggregationFunction> measurements,
                    Map<String, String> dimensionValues, List<String> groupByDimensions,
                    @Nullable Interpolator interpolator) {
+    this(aggregation, startTs, endTs, resolution, limit, Integer.MAX_VALUE,
+         measurements, dimensionValues, groupByDimensions, interpolator);
+  }
+
+  /**
+   * Creates {@link CubeQuery} with given parameters.
+   * @param aggregation (optional) aggregation name to query in; if {@code null}, the aggregation will be auto-selected
+   *                    based on rest of query parameters
+   * @param startTs start (inclusive) of the time range to query
+   * @param endTs end (exclusive) of the time range to query
+   * @param resolution resolution of the aggregation to query in
+   * @param limit max number of returned data points
+   * @param maxPoints max number of returned data points over all time series; the query stops scanning as soon as
+   *                  the result has more data points than that, so a result with more than {@code maxPoints} data
+   *                  points is incomplete
+   * @param measurements map of measure name, measure type to query for, empty map means "all measures"
+   * @param dimensionValues dimension values to filter by
+   * @param groupByDimensions dimensions to group by
+   * @param interpolator {@link Interpolator} to use
+   */
+  public CubeQuery(@Nullable String aggregation,
+                   long startTs, long endTs, int resolution, int limit, int maxPoints,
+                   Map<String, AggregationFunction> measurements,
+                   Map<String, String> dimensionValues, List<String> groupByDimensions,
+                   @Nullable Interpolator interpolator) {
     this.aggregation = aggregation;
     this.startTs = startTs;
     this.endTs = endTs;
     this.resolution = resolution;
     this.limit = limit;
+    this.maxPoints = maxPoints;
     this.measurements = measurements;
     this.dimensionValues = Collections.unmodifiableMap(new HashMap<>(dimensionValues));
     this.groupByDimensions = Collections.unmodifiableList(new ArrayList<>(groupByDimensions));
@@ -119,6 +146,10 @@ public final class CubeQuery {
     return limit;
   }
 
+  public int getMaxPoints() {
+    return maxPoints;
+  }
+
   public Interpolator getInterpolator() {
     return interpolator;
   }
@@ -132,6 +163,7 @@ public final class CubeQuery {
     sb.append(", endTs=").append(endTs);
     sb.append(", resolution=").append(resolution);
     sb.append(", limit=").append(limit);
+    sb.append(", maxPoints=").append(maxPoints);
     sb.append(", measurements=").append(measurements);
     sb.append(", dimensionValues=").append(dimensionValues);
     sb.append(", groupByDimensions=").append(groupByDimensions);
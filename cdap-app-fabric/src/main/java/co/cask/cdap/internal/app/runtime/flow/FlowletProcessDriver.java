@@ -59,12 +59,18 @@ import java.util.concurrent.TimeoutException;
 final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
   private static final Logger LOG = LoggerFactory.getLogger(FlowletProcessDriver.class);
+  // The metrics system has no histogram type, hence each bucket of a histogram is a counter of its own
+  private static final Histogram BATCH_SIZE_HISTOGRAM =
+    new Histogram("process.batch.size", 1, 10, 100, 1000, 10000);
+  private static final Histogram PROCESS_LATENCY_HISTOGRAM =
+    new Histogram("process.latency.ms", 1, 10, 100, 1000, 10000);
 
   private final BasicFlowletContext flowletContext;
   private final DataFabricFacade dataFabricFacade;
   private final Callback txCallback;
   private final LoggingContext loggingContext;
   private final PriorityQueue<FlowletProcessEntry<?>> processQueue;
+  private final MillisCounter processTime = new MillisCounter();
 
   private Thread runThread;
   private ExecutorService processExecutor;
@@ -236,7 +242,9 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
 
         // Call the process method and commit the transaction. The current process entry will put
         // back to queue in the postProcess method (either a retry copy or itself).
+        long startTime = System.nanoTime();
         ProcessMethod.ProcessResult<?> result = processMethod.invoke(input);
+        emitProcessMetrics(processMethod, input, System.nanoTime() - startTime);
         postProcess(processMethodCallback(processQueue, entry, input), txContext, input, result);
         return true;
 
@@ -255,6 +263,24 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     return false;
   }
 
+  /**
+   * Emits metrics about the size of the batch and the time spent in the process method.
+   */
+  private void emitProcessMetrics(ProcessMethod<?> processMethod, InputDatum<?> input, long processNanos) {
+    MetricsContext metrics = flowletContext.getProgramMetrics();
+    if (processMethod.needsInput()) {
+      metrics.gauge("process.batch.size", input.size());
+      metrics.increment(BATCH_SIZE_HISTOGRAM.getBucket(input.size()), 1);
+    }
+    metrics.increment(PROCESS_LATENCY_HISTOGRAM.getBucket(TimeUnit.NANOSECONDS.toMicros(processNanos), 1000), 1);
+    // Process calls can be shorter than a millisecond, hence only whole milliseconds are emitted and the remainder
+    // is carried over to the next call
+    long processMillis = processTime.add(processNanos);
+    if (processMillis > 0) {
+      metrics.increment("process.time.ms", processMillis);
+    }
+  }
+
   /**
    * Process the process result. This method never throws.
    */
@@ -403,4 +429,60 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
       }
     };
   }
+
+  /**
+   * A histogram emitted as one counter per bucket. The bucket of a value is named after the smallest upper bound
+   * that is not less than the value, such as "process.batch.size.le.10", or "process.batch.size.gt.10000" for
+   * values above all bounds.
+   */
+  static final class Histogram {
+
+    private final long[] upperBounds;
+    private final String[] bucketNames;
+
+    Histogram(String name, long... upperBounds) {
+      this.upperBounds = upperBounds;
+      this.bucketNames = new String[upperBounds.length + 1];
+      for (int i = 0; i < upperBounds.length; i++) {
+        bucketNames[i] = name + ".le." + upperBounds[i];
+      }
+      bucketNames[upperBounds.length] = name + ".gt." + upperBounds[upperBounds.length - 1];
+    }
+
+    String getBucket(long value) {
+      return getBucket(value, 1);
+    }
+
+    /**
+     * Returns the bucket of a value expressed in a unit that is {@code scale} times smaller than the unit of
+     * the bounds, so that values just above a bound are not rounded down into its bucket.
+     */
+    String getBucket(long value, long scale) {
+      for (int i = 0; i < upperBounds.length; i++) {
+        if (value <= upperBounds[i] * scale) {
+          return bucketNames[i];
+        }
+      }
+      return bucketNames[upperBounds.length];
+    }
+  }
+
+  /**
+   * Accumulates elapsed time in nanoseconds and hands it out in whole milliseconds.
+   */
+  static final class MillisCounter {
+
+    private long nanos;
+
+    /**
+     * Adds the given elapsed time and returns the whole milliseconds accumulated since the last call,
+     * keeping the remainder for subsequent calls.
+     */
+    long add(long elapsedNanos) {
+      nanos += elapsedNanos;
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      nanos -= TimeUnit.MILLISECONDS.toNanos(millis);
+      return millis;
+    }
+  }
 }
@@ -84,6 +84,7 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.common.io.ByteBufferInputStream;
 import co.cask.tephra.TransactionSystemClient;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
@@ -127,6 +128,10 @@ public final class FlowletProgramRunner implements ProgramRunner {
 
   private static final Logger LOG = LoggerFactory.getLogger(FlowletProgramRunner.class);
 
+  // Runtime argument for overriding the number of events dequeued and processed in one transaction
+  // by the process methods of a flowlet. The flowlet name is part of the argument name.
+  private static final String PROCESS_BATCH_SIZE = "flowlet.%s.process.batch.size";
+
   private final SchemaGenerator schemaGenerator;
   private final DatumWriterFactory datumWriterFactory;
   private final DataFabricFacadeFactory dataFabricFacadeFactory;
@@ -358,7 +363,8 @@ public final class FlowletProgramRunner implements ProgramRunner {
           // If batch mode then generate schema for Iterator's parameter type
           dataType = flowletType.resolveType(method.getGenericParameterTypes()[0]);
           consumerConfig = getConsumerConfig(flowletContext, method);
-          Integer processBatchSize = getBatchSize(method);
+          Integer processBatchSize = getBatchSize(flowletContext.getRuntimeArguments(),
+                                                     flowletContext.getName(), method);
 
           if (processBatchSize != null) {
             if (dataType.getRawType().equals(Iterator.class)) {
@@ -404,9 +410,28 @@ public final class FlowletProgramRunner implements ProgramRunner {
   }
 
   /**
-   * Returns the user specify batch size or {@code null} if not specified.
+   * Returns the user specify batch size or {@code null} if not specified. The batch size provided through
+   * runtime arguments takes precedence over the one in the {@link Batch} annotation.
    */
-  private Integer getBatchSize(Method method) {
+  @VisibleForTesting
+  @Nullable
+  static Integer getBatchSize(Map<String, String> runtimeArgs, String flowletName, Method method) {
+    String batchSizeKey = String.format(PROCESS_BATCH_SIZE, flowletName);
+    String batchSizeArg = runtimeArgs.get(batchSizeKey);
+    if (batchSizeArg != null) {
+      int batchSize;
+      try {
+        batchSize = Integer.parseInt(batchSizeArg.trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("Invalid value for runtime argument %s: '%s'. " +
+                                                           "It must be a positive integer.",
+                                                         batchSizeKey, batchSizeArg), e);
+      }
+      Preconditions.checkArgument(batchSize > 0, "Value for runtime argument %s should be > 0: %s",
+                                  batchSizeKey, batchSizeArg);
+      return batchSize;
+    }
+
     // Determine queue batch size, if any
     Batch batch = method.getAnnotation(Batch.class);
     if (batch != null) {
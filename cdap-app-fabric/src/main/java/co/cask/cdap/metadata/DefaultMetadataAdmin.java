@@ -28,6 +28,7 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.cdap.proto.security.Principal;
@@ -41,6 +42,7 @@ import com.google.inject.Inject;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link MetadataAdmin} that interacts directly with {@link MetadataStore}.
@@ -171,6 +173,22 @@ public class DefaultMetadataAdmin implements MetadataAdmin {
     return filterAuthorizedSearchResult(metadataStore.searchMetadataOnType(scope, namespaceId, searchQuery, types));
   }
 
+  @Override
+  public MetadataSearchResponse searchMetadata(String namespaceId, String searchQuery,
+                                               Set<MetadataSearchTargetType> types,
+                                               int limit, @Nullable String cursor) throws Exception {
+    Principal principal = authenticationContext.getPrincipal();
+    final Predicate<EntityId> filter = authorizationEnforcer.createFilter(principal);
+    // authorization is applied before paging, so that pages, total and cursor only account for visible entities
+    return metadataStore.searchMetadataOnType(
+      namespaceId, searchQuery, types, limit, cursor, new com.google.common.base.Predicate<Id.NamespacedId>() {
+        @Override
+        public boolean apply(Id.NamespacedId entityId) {
+          return filter.apply(entityId.toEntityId());
+        }
+      });
+  }
+
   /**
    * Filter a list of {@link MetadataSearchResultRecord} that ensures the logged-in user has a privilege on
    *
@@ -24,6 +24,7 @@ import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.codec.NamespacedIdCodec;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.http.AbstractHttpHandler;
@@ -68,6 +69,8 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
   private static final Type MAP_STRING_STRING_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   private static final Type LIST_STRING_TYPE = new TypeToken<List<String>>() { }.getType();
   private static final Type SET_METADATA_RECORD_TYPE = new TypeToken<Set<MetadataRecord>>() { }.getType();
+  // number of search results returned in a page if only the cursor is given
+  private static final int DEFAULT_SEARCH_LIMIT = 100;
   private static final Type SET_METADATA_SEARCH_RESULT_TYPE =
     new TypeToken<Set<MetadataSearchResultRecord>>() { }.getType();
 
@@ -838,12 +841,31 @@ public class MetadataHttpHandler extends AbstractHttpHandler {
   public void searchMetadata(HttpRequest request, HttpResponder responder,
                              @PathParam("namespace-id") String namespaceId,
                              @QueryParam("query") String searchQuery,
-                             @QueryParam("target") List<String> targets) throws Exception {
+                             @QueryParam("target") List<String> targets,
+                             @QueryParam("limit") Integer limit,
+                             @QueryParam("cursor") String cursor) throws Exception {
     Set<MetadataSearchTargetType> types = ImmutableSet.of();
     if (targets != null) {
       types = ImmutableSet.copyOf(Iterables.transform(targets, STRING_TO_TARGET_TYPE));
     }
 
+    // a single page of results is returned if either limit or cursor is given
+    if (limit != null || cursor != null) {
+      int pageSize = limit == null ? DEFAULT_SEARCH_LIMIT : limit;
+      if (pageSize <= 0) {
+        throw new BadRequestException(String.format("Limit should be a positive number, but got %d", pageSize));
+      }
+      MetadataSearchResponse response;
+      try {
+        response = metadataAdmin.searchMetadata(namespaceId, URLDecoder.decode(searchQuery, "UTF-8"), types,
+                                                pageSize, cursor);
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException(e.getMessage());
+      }
+      responder.sendJson(HttpResponseStatus.OK, response, MetadataSearchResponse.class, GSON);
+      return;
+    }
+
     Set<MetadataSearchResultRecord> results = metadataAdmin.searchMetadata(namespaceId,
                                                                            URLDecoder.decode(searchQuery, "UTF-8"),
                                                                            types);
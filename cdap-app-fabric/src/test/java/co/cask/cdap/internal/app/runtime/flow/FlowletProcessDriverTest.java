@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.internal.app.runtime.flow;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for {@link FlowletProcessDriver}.
+ */
+public class FlowletProcessDriverTest {
+
+  @Test
+  public void testSubMillisProcessTime() {
+    FlowletProcessDriver.MillisCounter counter = new FlowletProcessDriver.MillisCounter();
+
+    // 1000 calls of 300 microseconds each should add up to 300 milliseconds
+    long total = 0;
+    for (int i = 0; i < 1000; i++) {
+      total += counter.add(TimeUnit.MICROSECONDS.toNanos(300));
+    }
+    Assert.assertEquals(300, total);
+
+    // Long calls are emitted right away, with the remainder carried over
+    Assert.assertEquals(2, counter.add(TimeUnit.MICROSECONDS.toNanos(2500)));
+    Assert.assertEquals(1, counter.add(TimeUnit.MICROSECONDS.toNanos(500)));
+    Assert.assertEquals(0, counter.add(0));
+  }
+
+  @Test
+  public void testHistogram() {
+    FlowletProcessDriver.Histogram histogram = new FlowletProcessDriver.Histogram("size", 1, 10, 100);
+    Assert.assertEquals("size.le.1", histogram.getBucket(0));
+    Assert.assertEquals("size.le.1", histogram.getBucket(1));
+    Assert.assertEquals("size.le.10", histogram.getBucket(2));
+    Assert.assertEquals("size.le.100", histogram.getBucket(100));
+    Assert.assertEquals("size.gt.100", histogram.getBucket(101));
+
+    // Values in a finer unit than the bounds, e.g. microseconds against bounds in milliseconds
+    FlowletProcessDriver.Histogram latency = new FlowletProcessDriver.Histogram("latency.ms", 1, 10);
+    Assert.assertEquals("latency.ms.le.1", latency.getBucket(300, 1000));
+    Assert.assertEquals("latency.ms.le.10", latency.getBucket(1001, 1000));
+    Assert.assertEquals("latency.ms.gt.10", latency.getBucket(10001, 1000));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.annotation.Batch;
+import co.cask.cdap.api.annotation.ProcessInput;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Test for {@link FlowletProgramRunner}.
+ */
+public class FlowletProgramRunnerTest {
+
+  @Test
+  public void testBatchSize() throws Exception {
+    Method batchMethod = TestFlowlet.class.getMethod("batchProcess", Iterator.class);
+    Method method = TestFlowlet.class.getMethod("process", String.class);
+    Map<String, String> noArgs = ImmutableMap.of();
+
+    // Without runtime argument, the batch size comes from the annotation
+    Assert.assertEquals(Integer.valueOf(10), FlowletProgramRunner.getBatchSize(noArgs, "flowlet", batchMethod));
+    Assert.assertNull(FlowletProgramRunner.getBatchSize(noArgs, "flowlet", method));
+
+    // The runtime argument of the flowlet takes precedence
+    Map<String, String> args = ImmutableMap.of("flowlet.flowlet.process.batch.size", "50",
+                                               "flowlet.other.process.batch.size", "20");
+    Assert.assertEquals(Integer.valueOf(50), FlowletProgramRunner.getBatchSize(args, "flowlet", batchMethod));
+    Assert.assertEquals(Integer.valueOf(50), FlowletProgramRunner.getBatchSize(args, "flowlet", method));
+    Assert.assertEquals(Integer.valueOf(10), FlowletProgramRunner.getBatchSize(args, "another", batchMethod));
+  }
+
+  @Test
+  public void testInvalidBatchSize() throws Exception {
+    Method method = TestFlowlet.class.getMethod("process", String.class);
+    for (String value : new String[] { "abc", "", "0", "-1" }) {
+      try {
+        FlowletProgramRunner.getBatchSize(ImmutableMap.of("flowlet.flowlet.process.batch.size", value),
+                                          "flowlet", method);
+        Assert.fail("Expected failure for batch size '" + value + "'");
+      } catch (IllegalArgumentException e) {
+        Assert.assertTrue(e.getMessage().contains("flowlet.flowlet.process.batch.size"));
+      }
+    }
+  }
+
+  /**
+   * Flowlet class for inspecting process methods.
+   */
+  public static final class TestFlowlet {
+
+    @Batch(10)
+    @ProcessInput
+    public void batchProcess(Iterator<String> input) {
+      // No-op
+    }
+
+    @ProcessInput
+    public void process(String input) {
+      // No-op
+    }
+  }
+}
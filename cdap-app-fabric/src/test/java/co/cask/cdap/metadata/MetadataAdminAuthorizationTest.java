@@ -26,6 +26,7 @@ import co.cask.cdap.internal.test.AppJarHelper;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.id.InstanceId;
 import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
@@ -35,6 +36,7 @@ import co.cask.cdap.security.authorization.InMemoryAuthorizer;
 import co.cask.cdap.security.spi.authentication.SecurityRequestContext;
 import co.cask.cdap.security.spi.authorization.Authorizer;
 import co.cask.tephra.TransactionManager;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Injector;
 import org.apache.twill.filesystem.LocalLocationFactory;
 import org.apache.twill.filesystem.Location;
@@ -50,6 +52,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Test authorization for metadata
@@ -94,6 +98,36 @@ public class MetadataAdminAuthorizationTest {
                                                    EnumSet.allOf(MetadataSearchTargetType.class)).isEmpty());
   }
 
+  @Test
+  public void testPagedSearch() throws Exception {
+    SecurityRequestContext.setUserId(ALICE.getName());
+    authorizer.grant(NamespaceId.DEFAULT, ALICE, Collections.singleton(Action.WRITE));
+    AppFabricTestHelper.deployApplication(Id.Namespace.DEFAULT, AllProgramsApp.class, "{}", cConf);
+
+    // carol can only see two of the datasets, all the other matching entities are not visible
+    Principal carol = new Principal("carol", Principal.PrincipalType.USER);
+    Set<Id.NamespacedId> visible = ImmutableSet.<Id.NamespacedId>of(
+      Id.DatasetInstance.from(Id.Namespace.DEFAULT, AllProgramsApp.DATASET_NAME2),
+      Id.DatasetInstance.from(Id.Namespace.DEFAULT, AllProgramsApp.DATASET_NAME3));
+    for (Id.NamespacedId entityId : visible) {
+      authorizer.grant(entityId.toEntityId(), carol, Collections.singleton(Action.READ));
+    }
+    SecurityRequestContext.setUserId(carol.getName());
+
+    // every page is full and only counts visible entities, even though invisible ones rank before them
+    Set<Id.NamespacedId> found = new HashSet<>();
+    String cursor = null;
+    do {
+      MetadataSearchResponse response = metadataAdmin.searchMetadata(
+        NamespaceId.DEFAULT.getNamespace(), "*", EnumSet.allOf(MetadataSearchTargetType.class), 1, cursor);
+      Assert.assertEquals(2, response.getTotal());
+      Assert.assertEquals(1, response.getResults().size());
+      found.add(response.getResults().iterator().next().getEntityId());
+      cursor = response.getCursor();
+    } while (cursor != null);
+    Assert.assertEquals(visible, found);
+  }
+
   @AfterClass
   public static void tearDown() {
     remoteSystemOperationsService.stopAndWait();
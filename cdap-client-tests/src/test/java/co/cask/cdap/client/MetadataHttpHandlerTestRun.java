@@ -49,11 +49,13 @@ import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.metadata.Metadata;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.common.http.HttpRequest;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -67,8 +69,10 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -960,6 +964,55 @@ public class MetadataHttpHandlerTestRun extends MetadataTestBase {
     }
   }
 
+  @Test
+  public void testSearchMetadataPages() throws Exception {
+    Id.Namespace namespace = Id.Namespace.from("ns3");
+    namespaceClient.create(new NamespaceMeta.Builder().setName(namespace).build());
+
+    Id.Stream stream1 = Id.Stream.from(namespace, "pagestream1");
+    Id.Stream stream2 = Id.Stream.from(namespace, "pagestream2");
+    Id.Stream stream3 = Id.Stream.from(namespace, "pagestream3");
+    for (Id.Stream stream : ImmutableList.of(stream1, stream2, stream3)) {
+      streamClient.create(stream);
+      addTags(stream, ImmutableSet.of("pagetag"));
+    }
+    // stream3 matches twice, so it ranks first. The others are ordered by id.
+    addTags(stream3, ImmutableSet.of("pagetag2"));
+    Set<MetadataSearchTargetType> targets = ImmutableSet.of(MetadataSearchTargetType.STREAM);
+
+    MetadataSearchResponse response = searchMetadata(namespace, "pagetag*", targets, 2, null);
+    Assert.assertEquals(3, response.getTotal());
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(stream3, stream1), getEntityList(response.getResults()));
+    Assert.assertNotNull(response.getCursor());
+
+    response = searchMetadata(namespace, "pagetag*", targets, 2, response.getCursor());
+    Assert.assertEquals(3, response.getTotal());
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(stream2), getEntityList(response.getResults()));
+    Assert.assertNull(response.getCursor());
+
+    // A page covering all results has no next cursor
+    response = searchMetadata(namespace, "pagetag*", targets, 3, null);
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(stream3, stream1, stream2),
+                        getEntityList(response.getResults()));
+    Assert.assertNull(response.getCursor());
+
+    // Invalid limit and cursor
+    try {
+      searchMetadata(namespace, "pagetag*", targets, 0, null);
+      Assert.fail("Expected a bad request for a non-positive limit");
+    } catch (BadRequestException e) {
+      // expected
+    }
+    try {
+      searchMetadata(namespace, "pagetag*", targets, 2, "invalid");
+      Assert.fail("Expected a bad request for an invalid cursor");
+    } catch (BadRequestException e) {
+      // expected
+    }
+
+    namespaceClient.delete(namespace);
+  }
+
   @Test
   public void testSearchMetadataDelete() throws Exception {
     Id.Namespace namespace = Id.Namespace.from("ns1");
@@ -1076,6 +1129,14 @@ public class MetadataHttpHandlerTestRun extends MetadataTestBase {
     Assert.assertEquals(ImmutableSet.of(), searchMetadata(namespace, "tag1"));
   }
 
+  private List<Id.NamespacedId> getEntityList(Set<MetadataSearchResultRecord> results) {
+    List<Id.NamespacedId> entities = new ArrayList<>();
+    for (MetadataSearchResultRecord result : results) {
+      entities.add(result.getEntityId());
+    }
+    return entities;
+  }
+
   private Set<Id.NamespacedId> getEntities(Set<MetadataSearchResultRecord> results) {
     return Sets.newHashSet(
       Iterables.transform(results, new Function<MetadataSearchResultRecord, Id.NamespacedId>() {
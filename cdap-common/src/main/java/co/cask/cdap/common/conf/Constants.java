@@ -242,6 +242,10 @@ public final class Constants {
     // tables. Constant could be moved to Table after that is changed. See CDAP-1193 for more info
     public static final String TABLE_TX_DISABLED = "dataset.table.tx.disabled";
 
+    // Table dataset property that defines the estimated size in bytes of buffered changes after which a table
+    // persists them before the transaction commits. Not set or zero means changes are only persisted on commit.
+    public static final String TABLE_BUFFER_FLUSH_SIZE = "dataset.table.buffer.flush.size";
+
     public static final String DATA_DIR = "dataset.data.dir";
     public static final String DEFAULT_DATA_DIR = "data";
 
@@ -337,6 +341,8 @@ public final class Constants {
     public static final String WORKER_THREADS = "stream.worker.threads";
     public static final String ASYNC_WORKER_THREADS = "stream.async.worker.threads";
     public static final String ASYNC_QUEUE_SIZE = "stream.async.queue.size";
+    public static final String WRITER_LANES = "stream.writer.lanes";
+    public static final String WRITER_COMMIT_DELAY_MS = "stream.writer.commit.delay.ms";
 
     // YARN container configurations.
     public static final String CONTAINER_VIRTUAL_CORES = "stream.container.num.cores";
@@ -451,12 +457,22 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
+    public static final String ENTITY_CACHE_PRELOAD = "metrics.data.entity.cache.preload";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
     public static final String TIME_SERIES_TABLE_ROLL_TIME = "metrics.data.table.ts.rollTime";
 
     // Key prefix for retention seconds. The actual key is suffixed by the table resolution.
     public static final String RETENTION_SECONDS = "metrics.data.table.retention.resolution";
 
+    // Comma separated list of resolutions, in seconds, that are not stored but derived from stored ones at query time
+    public static final String DERIVED_RESOLUTIONS = "metrics.query.derived.resolutions";
+
+    // Maximum number of distinct metric names stored per metrics context, non-positive for no limit
+    public static final String CONTEXT_METRIC_CARDINALITY_LIMIT = "metrics.context.metric.cardinality.limit";
+
+    // Max number of data points in a metrics query response, non-positive for no limit
+    public static final String QUERY_MAX_POINTS = "metrics.query.max.points";
+
     public static final String SERVER_ADDRESS = "metrics.query.bind.address";
     public static final String SERVER_PORT = "metrics.query.bind.port";
 
@@ -874,6 +890,8 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_COMPACTION_ENABLED = "data.local.storage.compaction.enabled";
+  public static final String CFG_DATA_LEVELDB_COMPACTION_INTERVAL = "data.local.storage.compaction.interval";
 
   /**
    * Defaults for Data Fabric.
@@ -882,6 +900,8 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final boolean DEFAULT_DATA_LEVELDB_COMPACTION_ENABLED = true;
+  public static final long DEFAULT_DATA_LEVELDB_COMPACTION_INTERVAL = 3600;
 
   /**
    * Config for Log Collection.
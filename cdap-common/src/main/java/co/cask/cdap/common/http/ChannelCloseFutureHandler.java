@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.common.http;
+
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+
+import javax.annotation.Nullable;
+
+/**
+ * An UpstreamHandler that makes the close future of the channel available to the http handler of a request, so
+ * that long-lived responses can be ended as soon as the client disconnects. It must be added after the executor,
+ * so that it runs in the thread of the dispatcher.
+ */
+public class ChannelCloseFutureHandler extends SimpleChannelUpstreamHandler {
+  private static final ThreadLocal<ChannelFuture> CLOSE_FUTURE = new ThreadLocal<>();
+
+  /**
+   * Returns the close future of the channel of the request handled by the current thread, or null if this handler
+   * is not in the pipeline of the request.
+   */
+  @Nullable
+  public static ChannelFuture getCloseFuture() {
+    return CLOSE_FUTURE.get();
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    CLOSE_FUTURE.set(ctx.getChannel().getCloseFuture());
+    try {
+      super.messageReceived(ctx, e);
+    } finally {
+      CLOSE_FUTURE.remove();
+    }
+  }
+}
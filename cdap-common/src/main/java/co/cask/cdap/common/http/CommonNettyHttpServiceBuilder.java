@@ -20,12 +20,15 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.http.NettyHttpService;
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import org.jboss.netty.channel.ChannelPipeline;
 
 /**
  * Provides a {@link co.cask.http.NettyHttpService.Builder} that has common settings built-in.
  */
 public class CommonNettyHttpServiceBuilder extends NettyHttpService.Builder {
+  private Function<ChannelPipeline, ChannelPipeline> pipelineModifier;
+
   public CommonNettyHttpServiceBuilder(CConfiguration configuration) {
     super();
     if (configuration.getBoolean(Constants.Security.ENABLED)) {
@@ -39,4 +42,14 @@ public class CommonNettyHttpServiceBuilder extends NettyHttpService.Builder {
     }
     this.setExceptionHandler(new HttpExceptionHandler());
   }
+
+  /**
+   * Applies the function after the pipeline modifications made so far, such as adding the authenticator,
+   * rather than replacing them.
+   */
+  @Override
+  public NettyHttpService.Builder modifyChannelPipeline(Function<ChannelPipeline, ChannelPipeline> function) {
+    pipelineModifier = pipelineModifier == null ? function : Functions.compose(function, pipelineModifier);
+    return super.modifyChannelPipeline(pipelineModifier);
+  }
 }
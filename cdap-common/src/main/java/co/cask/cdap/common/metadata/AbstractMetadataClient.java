@@ -23,6 +23,7 @@ import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.codec.NamespacedIdCodec;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.common.http.HttpMethod;
@@ -38,6 +39,7 @@ import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -105,6 +107,37 @@ public abstract class AbstractMetadataClient {
     return GSON.fromJson(response.getResponseBodyAsString(), SET_METADATA_SEARCH_RESULT_TYPE);
   }
 
+  /**
+   * Searches entities in the specified namespace whose metadata matches the specified query, and returns a single
+   * page of the results ordered by relevance.
+   *
+   * @param namespace the namespace to search in
+   * @param query the query string with which to search
+   * @param targets {@link MetadataSearchTargetType}s to search. If empty, all possible types will be searched
+   * @param limit the maximum number of results to return
+   * @param cursor the cursor returned with the previous page, or null for the first page
+   * @return A {@link MetadataSearchResponse} with the results of the page and the cursor of the next page.
+   */
+  public MetadataSearchResponse searchMetadata(Id.Namespace namespace, String query,
+                                               Set<MetadataSearchTargetType> targets, int limit,
+                                               @Nullable String cursor)
+    throws IOException, UnauthenticatedException, BadRequestException {
+
+    String path = String.format("metadata/search?query=%s&limit=%d", query, limit);
+    for (MetadataSearchTargetType t : targets) {
+      path += "&target=" + t;
+    }
+    if (cursor != null) {
+      path += "&cursor=" + URLEncoder.encode(cursor, "UTF-8");
+    }
+    URL searchURL = resolve(namespace, path);
+    HttpResponse response = execute(HttpRequest.get(searchURL).build(), HttpURLConnection.HTTP_BAD_REQUEST);
+    if (response.getResponseCode() == HttpURLConnection.HTTP_BAD_REQUEST) {
+      throw new BadRequestException(response.getResponseBodyAsString());
+    }
+    return GSON.fromJson(response.getResponseBodyAsString(), MetadataSearchResponse.class);
+  }
+
   /**
    * @param id the entity for which to retrieve metadata across {@link MetadataScope#SYSTEM} and
    * {@link MetadataScope#USER}
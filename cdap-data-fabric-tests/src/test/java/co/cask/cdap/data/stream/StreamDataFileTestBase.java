@@ -16,24 +16,28 @@
 package co.cask.cdap.data.stream;
 
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.FileWriter;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.data.file.filter.TTLReadFilter;
+import co.cask.cdap.data.stream.service.MutableStreamEvent;
 import co.cask.cdap.data2.security.Impersonator;
 import co.cask.cdap.data2.security.UnsupportedUGIProvider;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.test.SlowTests;
 import com.google.common.base.Charsets;
+import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -181,6 +185,93 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  @Test
+  public void testLargeEvent() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           10000L);
+    // Events with body larger than the writer internal buffer size are written directly to the output,
+    // together with the events that are already buffered in the same data block.
+    ByteBuffer smallBody = Charsets.UTF_8.encode("small");
+    ByteBuffer heapBody = Charsets.UTF_8.encode(Strings.repeat('1', 300 * 1024));
+    ByteBuffer directBody = ByteBuffer.allocateDirect(300 * 1024);
+    directBody.put(Charsets.UTF_8.encode(Strings.repeat('2', 300 * 1024))).flip();
+
+    Map<String, String> headers = ImmutableMap.of("key", "value");
+    writer.append(new StreamEvent(headers, smallBody.duplicate(), 0));
+    writer.append(new StreamEvent(headers, heapBody.duplicate(), 0));
+    writer.append(new StreamEvent(headers, smallBody.duplicate(), 1));
+    writer.append(new StreamEvent(headers, directBody.duplicate(), 1));
+    writer.append(new StreamEvent(headers, smallBody.duplicate(), 1));
+    writer.close();
+
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<StreamEvent> events = Lists.newArrayList();
+    Assert.assertEquals(5, reader.read(events, 10, 0, TimeUnit.SECONDS));
+    Assert.assertEquals(-1, reader.read(events, 10, 0, TimeUnit.SECONDS));
+    reader.close();
+
+    List<ByteBuffer> expected = ImmutableList.of(smallBody, heapBody, smallBody, directBody, smallBody);
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i), events.get(i).getBody());
+      Assert.assertEquals(headers, events.get(i).getHeaders());
+    }
+    Assert.assertEquals(0L, events.get(1).getTimestamp());
+    Assert.assertEquals(1L, events.get(3).getTimestamp());
+  }
+
+  @Test
+  public void testLargeEventAppendAll() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile),
+                                                           10000L);
+    // Large events are buffered if more events of the same timestamp follow, and are written directly otherwise
+    ByteBuffer smallBody = Charsets.UTF_8.encode("small");
+    ByteBuffer largeBody = Charsets.UTF_8.encode(Strings.repeat('1', 300 * 1024));
+    ByteBuffer directBody = ByteBuffer.allocateDirect(300 * 1024);
+    directBody.put(Charsets.UTF_8.encode(Strings.repeat('2', 300 * 1024))).flip();
+
+    Map<String, String> headers = ImmutableMap.of("key", "value");
+    List<StreamEvent> expected = ImmutableList.of(
+      new StreamEvent(headers, smallBody, 0),
+      new StreamEvent(headers, largeBody, 0),
+      new StreamEvent(headers, smallBody, 0),
+      new StreamEvent(headers, directBody, 0),
+      new StreamEvent(headers, largeBody, 1),
+      new StreamEvent(headers, smallBody, 2),
+      new StreamEvent(headers, directBody, 2)
+    );
+    // Reuse the same event object for all events, like the stream writer does
+    final MutableStreamEvent event = new MutableStreamEvent();
+    writer.appendAll(Iterators.transform(expected.iterator(), new Function<StreamEvent, StreamEvent>() {
+      @Override
+      public StreamEvent apply(StreamEvent input) {
+        return event.set(new StreamEventData(input.getHeaders(), input.getBody().duplicate()), input.getTimestamp());
+      }
+    }));
+    writer.close();
+
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<StreamEvent> events = Lists.newArrayList();
+    Assert.assertEquals(expected.size(), reader.read(events, 10, 0, TimeUnit.SECONDS));
+    Assert.assertEquals(-1, reader.read(events, 10, 0, TimeUnit.SECONDS));
+    reader.close();
+
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).getBody(), events.get(i).getBody());
+      Assert.assertEquals(expected.get(i).getTimestamp(), events.get(i).getTimestamp());
+      Assert.assertEquals(headers, events.get(i).getHeaders());
+    }
+  }
+
   @Test
   public void testTail() throws Exception {
     Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
@@ -480,10 +571,16 @@ public abstract class StreamDataFileTestBase {
       Assert.assertEquals("Testing " + (ts - 1000),
                           Charsets.UTF_8.decode(events.get(0).getBody()).toString());
 
+      // Lookup by time should land on the same index entry
+      Assert.assertEquals(iterator.currentPosition(), index.floorPositionByTime(ts + 99));
+      Assert.assertEquals(iterator.currentPosition(), index.ceilingPositionByTime(ts - 99));
+
       ts += 100;
     }
 
     Assert.assertEquals(2000, ts);
+    Assert.assertEquals(-1L, index.floorPositionByTime(999));
+    Assert.assertEquals(-1L, index.ceilingPositionByTime(1901));
   }
 
   @Test
@@ -202,6 +202,41 @@ public class StreamInputFormatTest {
     Assert.assertEquals(1, output.get("1").intValue());
   }
 
+  @Test
+  public void testTimeRangeSplits() throws Exception {
+    // Write 1000 events in one bucket under one partition.
+    File inputDir = tmpFolder.newFolder();
+    generateEvents(inputDir);
+
+    Configuration conf = new Configuration();
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+    StreamInputFormat.setStreamPath(conf, inputDir.toURI());
+    StreamInputFormat.setMaxSplitSize(conf, 1000);
+    StreamInputFormat format = new StreamInputFormat();
+    int allSplits = format.getSplits(new JobContextImpl(new JobConf(conf), new JobID())).size();
+
+    // Splits for a time range that covers part of the partition should only cover the relevant part of the file.
+    StreamInputFormat.setTimeRange(conf, 1400, 1410);
+    List<InputSplit> splits = format.getSplits(new JobContextImpl(new JobConf(conf), new JobID()));
+    Assert.assertTrue(splits.size() < allSplits);
+
+    int count = 0;
+    for (InputSplit split : splits) {
+      Assert.assertNotEquals(Long.MAX_VALUE, split.getLength());
+
+      StreamRecordReader<LongWritable, StreamEvent> recordReader =
+        new StreamRecordReader<>(new IdentityStreamEventDecoder());
+      recordReader.initialize(split, context);
+      while (recordReader.nextKeyValue()) {
+        long timestamp = recordReader.getCurrentValue().getTimestamp();
+        Assert.assertTrue(timestamp >= 1400 && timestamp < 1410);
+        count++;
+      }
+      recordReader.close();
+    }
+    Assert.assertEquals(10, count);
+  }
+
   @Test
   public void testLiveStream() throws Exception {
     File inputDir = tmpFolder.newFolder();
@@ -135,6 +135,58 @@ public abstract class ConcurrentStreamWriterTestBase {
     streamWriter.close();
   }
 
+  @Test
+  public void testConcurrentWriteWithLanes() throws Exception {
+    final String streamName = "testConcurrentWriteWithLanes";
+    String namespace = "namespace";
+    Id.Stream streamId = Id.Stream.from(namespace, streamName);
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+    int threads = Runtime.getRuntime().availableProcessors() * 4;
+    int lanes = 4;
+
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+    streamConfig.getLocation().mkdirs();
+    ConcurrentStreamWriter streamWriter = new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
+                                                                     fileWriterFactory, threads, lanes, 1L,
+                                                                     new TestMetricsCollectorFactory(), impersonator);
+
+    final int msgPerThread = 1000;
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch completion = new CountDownLatch(threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(createWriterTask(streamId, streamWriter,
+                                        i, msgPerThread, i % 2 == 0 ? 1 : 10, startLatch, completion));
+    }
+    startLatch.countDown();
+    Assert.assertTrue(completion.await(120, TimeUnit.SECONDS));
+
+    // Events are spread across the files of all lanes, in the only partition, since threads take lanes in turns
+    Set<String> lanePrefixes = Sets.newHashSet();
+    for (int lane = 0; lane < lanes; lane++) {
+      lanePrefixes.add(StreamUtils.getLaneFilePrefix(fileWriterFactory.getFileNamePrefix(), lane));
+    }
+    Location partitionLocation = streamAdmin.getConfig(streamId).getLocation().list().get(0);
+    List<StreamEvent> events = Lists.newArrayListWithCapacity(threads * msgPerThread);
+    Set<String> writtenPrefixes = Sets.newHashSet();
+    for (Location location : partitionLocation.list()) {
+      if (StreamFileType.getType(location.getName()) != StreamFileType.EVENT) {
+        continue;
+      }
+      writtenPrefixes.add(StreamUtils.getNamePrefix(location.getName()));
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(location));
+      reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS);
+      reader.close();
+    }
+    Assert.assertEquals(lanePrefixes, writtenPrefixes);
+    Assert.assertEquals(threads * msgPerThread, events.size());
+    Assert.assertTrue(verifyEvents(threads, msgPerThread, events));
+
+    streamWriter.close();
+    executor.shutdownNow();
+  }
+
   @Test
   public void testConcurrentAppendFile() throws Exception {
     final String streamName = "testConcurrentFile";
@@ -350,6 +402,11 @@ public abstract class ConcurrentStreamWriterTestBase {
         public void emitMetrics(long bytesWritten, long eventsWritten) {
           // No-op
         }
+
+        @Override
+        public void emitCommitMetrics(int batchSize, int queueDepth) {
+          // No-op
+        }
       };
     }
   }
@@ -15,6 +15,7 @@
  */
 package co.cask.cdap.data.stream;
 
+import com.google.common.io.InputSupplier;
 import org.apache.hadoop.fs.BlockLocation;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -22,6 +23,7 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.InputSplit;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
 
@@ -35,7 +37,8 @@ import java.util.List;
  * <br/><br/>
  *
  * Each split produced will also carries {@code startTime} and {@code endTime} so that only stream events within
- * the given time range will get processed.
+ * the given time range will get processed. Optionally, the stream index file is used to restrict the splits
+ * to the part of the event file that can contain events within the time range.
  */
 final class StreamDataFileSplitter {
 
@@ -49,7 +52,8 @@ final class StreamDataFileSplitter {
    * Computes splits for the event file.
    */
   <T> void computeSplits(FileSystem fs, long minSplitSize, long maxSplitSize, long startTime, long endTime,
-                         List<T> splits, StreamInputSplitFactory<T> splitFactory) throws IOException {
+                         boolean useIndex, List<T> splits,
+                         StreamInputSplitFactory<T> splitFactory) throws IOException {
 
     // Compute the splits based on the min/max size
     Path eventFile = eventFileStatus.getPath();
@@ -59,9 +63,40 @@ final class StreamDataFileSplitter {
 
     long length = eventFileStatus.getLen();
     long offset = 0;
+
+    if (useIndex && fs.exists(indexFile)) {
+      // Lookup the index for the data block positions that bound the time range.
+      StreamDataFileIndex index = new StreamDataFileIndex(createInputSupplier(fs, indexFile));
+      offset = Math.min(Math.max(index.floorPositionByTime(startTime), 0L), length);
+      long endPosition = index.ceilingPositionByTime(endTime);
+      if (endPosition >= 0 && endPosition < length) {
+        // Events starting from the end position are all beyond the time range, hence no need for the tail split.
+        addSplits(eventFile, indexFile, blockLocations, startTime, endTime, minSplitSize, maxSplitSize,
+                  offset, endPosition, splits, splitFactory);
+        return;
+      }
+    }
+
+    offset = addSplits(eventFile, indexFile, blockLocations, startTime, endTime, minSplitSize, maxSplitSize,
+                       offset, length, splits, splitFactory);
+
+    // One extra split for the tail of the file.
+    splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+  }
+
+  /**
+   * Adds splits that cover the event file from the given start offset to the given end offset.
+   *
+   * @return The end offset.
+   */
+  private <T> long addSplits(Path eventFile, Path indexFile, BlockLocation[] blockLocations,
+                             long startTime, long endTime, long minSplitSize, long maxSplitSize,
+                             long startOffset, long endOffset,
+                             List<T> splits, StreamInputSplitFactory<T> splitFactory) throws IOException {
+    long offset = startOffset;
     int blockIndex = 0;
 
-    while (offset < length) {
+    while (offset < endOffset) {
       blockIndex = getBlockIndex(blockLocations, offset, blockIndex);
       String[] hosts = null;
       if (blockIndex >= 0) {
@@ -70,13 +105,11 @@ final class StreamDataFileSplitter {
         blockIndex = 0;
       }
 
-      long splitSize = computeSplitSize(eventFileStatus, offset, minSplitSize, maxSplitSize);
+      long splitSize = computeSplitSize(eventFileStatus, offset, endOffset, minSplitSize, maxSplitSize);
       splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, splitSize, hosts));
       offset += splitSize;
     }
-
-    // One extra split for the tail of the file.
-    splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+    return offset;
   }
 
   /**
@@ -105,18 +138,29 @@ final class StreamDataFileSplitter {
   /**
    * Compute the actual split size. The split size compute would be no larger than the given max split size.
    * The split size would be no smaller than the given min split size, except if number of bytes between
-   * offset and file length is smaller than min split size.
+   * offset and end offset is smaller than min split size.
    *
    * @param fileStatus The FileStatus of the file to split on.
    * @param offset Starting offset for the split.
+   * @param endOffset Offset where the splitting ends.
    * @param minSplitSize Minimum size for the split.
    * @param maxSplitSize Maximum size for the split.
    * @return
    */
-  private long computeSplitSize(FileStatus fileStatus, long offset, long minSplitSize, long maxSplitSize) {
+  private long computeSplitSize(FileStatus fileStatus, long offset, long endOffset,
+                                long minSplitSize, long maxSplitSize) {
     long blockSize = fileStatus.getBlockSize();
     long splitSize = Math.max(minSplitSize, Math.min(maxSplitSize, blockSize));
-    return Math.min(splitSize, fileStatus.getLen() - offset);
+    return Math.min(splitSize, endOffset - offset);
+  }
+
+  private InputSupplier<InputStream> createInputSupplier(final FileSystem fs, final Path path) {
+    return new InputSupplier<InputStream>() {
+      @Override
+      public InputStream getInput() throws IOException {
+        return fs.open(path);
+      }
+    };
   }
 
   private Path getIndexFile(Path eventFile) {
@@ -18,6 +18,7 @@ package co.cask.cdap.data.stream;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.io.BinaryEncoder;
 import co.cask.cdap.common.io.BufferedEncoder;
 import co.cask.cdap.common.io.Encoder;
@@ -35,8 +36,12 @@ import org.apache.hadoop.fs.Syncable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -84,6 +89,11 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final BufferedEncoder bodyLengthEncoder;
+  private final BufferedEncoder headersEncoder;
+  private WritableByteChannel eventChannel;
+  // A large event appended by appendAll that is not written yet, since it is not known if it ends the data block
+  private StreamEvent pendingEvent;
 
   // Timestamp for the current block
   private long currentTimestamp;
@@ -130,6 +140,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     Function<OutputStream, Encoder> encoderFactory = createEncoderFactory();
     this.encoder = new BufferedEncoder(BUFFER_SIZE, encoderFactory);
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
+    this.bodyLengthEncoder = new BufferedEncoder(5, encoderFactory);
+    this.headersEncoder = new BufferedEncoder(1024, encoderFactory);
 
     try {
       init(properties);
@@ -150,7 +162,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * Writes multiple events to the stream file. Events provided by the iterator must be sorted by timestamp.
    * This method guarantees events with the same timestamp are written in the same data block. Note that
    * events of the same timestamp are all buffered in memory before writing to disk, since the data block length
-   * needs to be known before it can be written to disk.
+   * needs to be known before it can be written to disk. Only the body of a large last event of a timestamp is
+   * written directly to disk.
    *
    * @param events an {@link Iterator} that provides events to append
    * @throws IOException
@@ -158,7 +171,21 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   @Override
   public void appendAll(Iterator<? extends StreamEvent> events) throws IOException {
     while (events.hasNext()) {
-      doAppend(events.next(), Integer.MAX_VALUE);
+      StreamEvent event = events.next();
+      if (pendingEvent != null) {
+        appendPending(event.getTimestamp() != pendingEvent.getTimestamp());
+      }
+      // A large event is written directly to the output only if it is the last one of its timestamp, since writing
+      // it ends the data block. That is only known from the next event, hence it is kept as pending until then.
+      // Since the iterator may reuse the event object, a copy that shares the headers and body is kept.
+      if (event.getBody().remaining() >= BUFFER_SIZE - encoder.size()) {
+        pendingEvent = new StreamEvent(event.getHeaders(), event.getBody(), event.getTimestamp());
+      } else {
+        doAppend(event, Integer.MAX_VALUE);
+      }
+    }
+    if (pendingEvent != null) {
+      appendPending(true);
     }
   }
 
@@ -169,6 +196,9 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     }
 
     try {
+      if (pendingEvent != null) {
+        appendPending(true);
+      }
       flushBlock(false);
       // Write the tail marker, which is a -(current timestamp).
       closeTimestamp = System.currentTimeMillis();
@@ -186,6 +216,9 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   @Override
   public void flush() throws IOException {
     try {
+      if (pendingEvent != null) {
+        appendPending(true);
+      }
       flushBlock(true);
     } catch (IOException e) {
       throw closeWithException(e);
@@ -220,6 +253,13 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
         position += Bytes.SIZEOF_LONG;
       }
 
+      // If the event would fill up the buffer, flush it together with the buffered data and write the body
+      // directly to the output, instead of copying it into the buffer first.
+      if (encoder.size() + event.getBody().remaining() >= flushLimit) {
+        flushBlock(false, event);
+        return;
+      }
+
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
 
@@ -233,6 +273,18 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     }
   }
 
+  /**
+   * Appends the pending event of {@link #appendAll(Iterator)}.
+   *
+   * @param endOfTimestamp {@code true} if no more events of the same timestamp follow, in which case the
+   *                       event body can be written directly to the output if it is large.
+   */
+  private void appendPending(boolean endOfTimestamp) throws IOException {
+    StreamEvent event = pendingEvent;
+    pendingEvent = null;
+    doAppend(event, endOfTimestamp ? BUFFER_SIZE : Integer.MAX_VALUE);
+  }
+
   private void init(Map<String, String> properties) throws IOException {
     // Writes the header for event file
     encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
@@ -262,7 +314,19 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * @throws IOException If failed to flush.
    */
   private void flushBlock(boolean sync) throws IOException {
-    if (encoder.size() == 0) {
+    flushBlock(sync, null);
+  }
+
+  /**
+   * Writes the buffered data to underlying output stream, followed by the given event if it is not {@code null}.
+   * The body of the given event is written to the output stream as is without going through the buffer.
+   *
+   * @param sync If {@code true}, perform a sync call to the underlying output stream.
+   * @param lastEvent An optional event to be written as the last event in the data block.
+   * @throws IOException If failed to flush.
+   */
+  private void flushBlock(boolean sync, @Nullable StreamEventData lastEvent) throws IOException {
+    if (encoder.size() == 0 && lastEvent == null) {
       if (sync && !synced) {
         sync(eventOutput);
         sync(indexOutput);
@@ -278,8 +342,18 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
+    // Encodes everything of the last event except the body, which comes in between the body length and the headers
+    ByteBuffer lastBody = null;
+    if (lastEvent != null) {
+      lastBody = lastEvent.getBody();
+      bodyLengthEncoder.writeInt(lastBody.remaining());
+      StreamEventDataCodec.encodeHeaders(lastEvent.getHeaders(), headersEncoder);
+    }
+    int lastEventSize = lastBody == null
+      ? 0 : bodyLengthEncoder.size() + lastBody.remaining() + headersEncoder.size();
+
     // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
+    lengthEncoder.writeInt(encoder.size() + lastEventSize);
     int size = lengthEncoder.size();
     lengthEncoder.writeTo(eventOutput);
     position += size;
@@ -288,6 +362,13 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     size = encoder.size();
     encoder.writeTo(eventOutput);
     position += size;
+
+    if (lastBody != null) {
+      bodyLengthEncoder.writeTo(eventOutput);
+      writeBody(lastBody);
+      headersEncoder.writeTo(eventOutput);
+      position += lastEventSize;
+    }
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +391,24 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Writes the given body to the event output without changing the position of the buffer.
+   */
+  private void writeBody(ByteBuffer body) throws IOException {
+    if (body.hasArray()) {
+      eventOutput.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+      return;
+    }
+    // For direct buffer, write through a channel to avoid copying the whole body into a temporary array
+    if (eventChannel == null) {
+      eventChannel = Channels.newChannel(eventOutput);
+    }
+    ByteBuffer buffer = body.duplicate();
+    while (buffer.hasRemaining()) {
+      eventChannel.write(buffer);
+    }
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -32,4 +32,13 @@ public interface StreamFileWriterFactory {
   String getFileNamePrefix();
 
   FileWriter<StreamEvent> create(StreamConfig config, int generation) throws IOException;
+
+  /**
+   * Creates a {@link FileWriter} for one of the write lanes of a stream. Each lane writes to its own stream files.
+   *
+   * @param config configuration of the stream
+   * @param generation generation of the stream
+   * @param lane the write lane, starting from 0. Lane 0 writes to the same files as {@link #create(StreamConfig, int)}
+   */
+  FileWriter<StreamEvent> create(StreamConfig config, int generation, int lane) throws IOException;
 }
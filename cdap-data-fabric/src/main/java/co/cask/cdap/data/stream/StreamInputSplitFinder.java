@@ -88,9 +88,12 @@ public class StreamInputSplitFinder<T> {
       // Collects all bucket file status in the partition.
       Collection<StreamDataFileSplitter> eventFiles = collectBuckets(fs, partitionStatus.getPath());
 
+      // If the partition is only partially covered by the time range, use the index to narrow down the splits
+      boolean useIndex = partitionStartTime < startTime || partitionEndTime > endTime;
+
       // For each bucket inside the partition directory, compute the splits
       for (StreamDataFileSplitter splitter : eventFiles) {
-        splitter.computeSplits(fs, minSplitSize, maxSplitSize, startTime, endTime, splits, splitFactory);
+        splitter.computeSplits(fs, minSplitSize, maxSplitSize, startTime, endTime, useIndex, splits, splitFactory);
       }
     }
 
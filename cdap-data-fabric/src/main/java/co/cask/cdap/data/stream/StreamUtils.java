@@ -132,6 +132,17 @@ public final class StreamUtils {
     return bucketName.substring(0, idx);
   }
 
+  /**
+   * Returns the file prefix used by a stream writer for one of its write lanes.
+   *
+   * @param filePrefix file prefix of the stream writer instance
+   * @param lane the write lane, starting from 0
+   * @return the file prefix of the lane. It is the same as the instance file prefix for the first lane.
+   */
+  public static String getLaneFilePrefix(String filePrefix, int lane) {
+    return lane == 0 ? filePrefix : filePrefix + '_' + lane;
+  }
+
   /**
    * Returns the sequence number of the given file name.
    *
@@ -370,7 +381,9 @@ public final class StreamUtils {
     int maxSequence = -1;
     for (Location location : partitionLocation.list()) {
       String fileName = location.getName();
-      if (!fileName.startsWith(filePrefix)) {
+      // The prefix must be followed by the sequence id, so that files of other prefixes starting with this one
+      // (e.g. of another writer instance or lane) are ignored
+      if (!fileName.startsWith(filePrefix + '.')) {
         continue;
       }
       StreamUtils.getSequenceId(fileName);
@@ -33,6 +33,7 @@ import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
@@ -55,9 +56,13 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -84,34 +89,63 @@ import javax.annotation.concurrent.ThreadSafe;
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * To allow more than one writer per stream, each stream can be written through multiple lanes. Each lane has its own
+ * event queue and writes to its own stream files, and each thread always writes through the same lane. Optionally,
+ * the writer of a lane keeps polling for new events for a short delay before flushing, so that more events are
+ * persisted with a single flush.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentStreamWriter.class);
 
+  // How long the writer waits between polls for new events within the commit delay
+  private static final long COMMIT_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final StreamAdmin streamAdmin;
   private final int workerThreads;
+  private final int lanes;
+  private final long commitDelayNanos;
   private final StreamMetricsCollectorFactory metricsCollectorFactory;
-  private final ConcurrentMap<Id.Stream, EventQueue> eventQueues;
+  private final ConcurrentMap<Id.Stream, EventQueue[]> eventQueues;
   private final StreamFileFactory streamFileFactory;
   private final Set<Id.Stream> generationWatched;
   private final List<Cancellable> cancellables;
   private final Lock createLock;
+  // Lanes are assigned to threads in turns when they first write, so that the threads are spread evenly over lanes
+  private final AtomicInteger nextLane;
+  private final ThreadLocal<Integer> threadLane;
 
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
                          StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+    this(streamCoordinatorClient, streamAdmin, writerFactory, workerThreads, 1, 0L,
+         metricsCollectorFactory, impersonator);
+  }
+
+  ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
+                         StreamFileWriterFactory writerFactory, int workerThreads, int lanes, long commitDelayMillis,
+                         StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+    Preconditions.checkArgument(lanes > 0, "Number of stream writer lanes must be positive: %s", lanes);
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
+    this.lanes = lanes;
+    this.commitDelayNanos = TimeUnit.MILLISECONDS.toNanos(commitDelayMillis);
     this.metricsCollectorFactory = metricsCollectorFactory;
     this.eventQueues = new MapMaker().concurrencyLevel(workerThreads).makeMap();
     this.streamFileFactory = new StreamFileFactory(writerFactory, impersonator);
     this.generationWatched = Sets.newHashSet();
     this.cancellables = Lists.newArrayList();
     this.createLock = new ReentrantLock();
+    this.nextLane = new AtomicInteger();
+    this.threadLane = new ThreadLocal<Integer>() {
+      @Override
+      protected Integer initialValue() {
+        return (nextLane.getAndIncrement() & Integer.MAX_VALUE) % ConcurrentStreamWriter.this.lanes;
+      }
+    };
   }
 
   public void close(Id.Stream streamId) throws IOException, NotFoundException {
@@ -198,7 +232,8 @@ public final class ConcurrentStreamWriter implements Closeable {
   public void appendFile(Id.Stream streamId,
                          Location eventFile, Location indexFile, long eventCount,
                          TimestampCloseable timestampCloseable) throws IOException, NotFoundException {
-    EventQueue eventQueue = getEventQueue(streamId);
+    // Appended files are named after the first lane, hence its file writer is the one to be closed
+    EventQueue eventQueue = getEventQueues(streamId)[0];
     StreamConfig config = streamAdmin.getConfig(streamId);
     while (!eventQueue.tryAppendFile(config, eventFile, indexFile, eventCount, timestampCloseable)) {
       Thread.yield();
@@ -211,27 +246,34 @@ public final class ConcurrentStreamWriter implements Closeable {
       cancellable.cancel();
     }
 
-    for (EventQueue queue : eventQueues.values()) {
-      try {
-        queue.close();
-      } catch (IOException e) {
-        LOG.warn("Failed to close writer.", e);
-      }
+    for (EventQueue[] queues : eventQueues.values()) {
+      closeEventQueues(queues, null);
     }
   }
 
+  /**
+   * Returns the {@link EventQueue} of the lane that the current thread writes to for the given stream.
+   */
   private EventQueue getEventQueue(Id.Stream streamId) throws IOException, NotFoundException {
-    EventQueue eventQueue = eventQueues.get(streamId);
-    if (eventQueue != null) {
-      return eventQueue;
+    EventQueue[] queues = getEventQueues(streamId);
+    return queues.length == 1 ? queues[0] : queues[threadLane.get()];
+  }
+
+  /**
+   * Returns the {@link EventQueue}s of all lanes of the given stream.
+   */
+  private EventQueue[] getEventQueues(Id.Stream streamId) throws IOException, NotFoundException {
+    EventQueue[] queues = eventQueues.get(streamId);
+    if (queues != null) {
+      return queues;
     }
 
     createLock.lock();
     try {
       // Double check
-      eventQueue = eventQueues.get(streamId);
-      if (eventQueue != null) {
-        return eventQueue;
+      queues = eventQueues.get(streamId);
+      if (queues != null) {
+        return queues;
       }
 
       if (!streamAdmin.exists(streamId)) {
@@ -243,10 +285,15 @@ public final class ConcurrentStreamWriter implements Closeable {
         cancellables.add(streamCoordinatorClient.addListener(streamId, streamFileFactory));
       }
 
-      eventQueue = new EventQueue(streamId, metricsCollectorFactory.createMetricsCollector(streamId));
-      eventQueues.put(streamId, eventQueue);
+      StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector =
+        metricsCollectorFactory.createMetricsCollector(streamId);
+      queues = new EventQueue[lanes];
+      for (int lane = 0; lane < lanes; lane++) {
+        queues[lane] = new EventQueue(streamId, lane, queues, metricsCollector);
+      }
+      eventQueues.put(streamId, queues);
 
-      return eventQueue;
+      return queues;
 
     } catch (NotFoundException | IOException e) {
       throw e;
@@ -278,10 +325,22 @@ public final class ConcurrentStreamWriter implements Closeable {
   }
 
   private void closeEventQueue(Id.Stream streamId) {
-    EventQueue eventQueue = eventQueues.remove(streamId);
-    if (eventQueue != null) {
+    EventQueue[] queues = eventQueues.remove(streamId);
+    if (queues != null) {
+      closeEventQueues(queues, null);
+    }
+  }
+
+  /**
+   * Closes the given {@link EventQueue}s, except the one provided as {@code exclude}.
+   */
+  private void closeEventQueues(EventQueue[] queues, @Nullable EventQueue exclude) {
+    for (EventQueue queue : queues) {
+      if (queue == exclude) {
+        continue;
+      }
       try {
-        eventQueue.close();
+        queue.close();
       } catch (IOException e) {
         LOG.warn("Failed to close writer.", e);
       }
@@ -318,10 +377,11 @@ public final class ConcurrentStreamWriter implements Closeable {
      * Creates a new {@link FileWriter} for the given stream.
      *
      * @param streamId identifier of the stream
+     * @param lane the write lane to create the writer for
      * @return A {@link FileWriter} for writing {@link StreamEvent} to the given stream
      * @throws IOException if failed to create the file writer
      */
-    FileWriter<StreamEvent> create(Id.Stream streamId) throws Exception {
+    FileWriter<StreamEvent> create(Id.Stream streamId, int lane) throws Exception {
       final StreamConfig streamConfig = streamAdmin.getConfig(streamId);
       int generation = impersonator.doAs(new NamespaceId(streamId.getNamespaceId()), new Callable<Integer>() {
         @Override
@@ -330,8 +390,8 @@ public final class ConcurrentStreamWriter implements Closeable {
         }
       });
 
-      LOG.info("Create stream writer for {} with generation {}", streamId, generation);
-      return writerFactory.create(streamConfig, generation);
+      LOG.info("Create stream writer for {} with generation {} on lane {}", streamId, generation, lane);
+      return writerFactory.create(streamConfig, generation, lane);
     }
 
     /**
@@ -396,8 +456,11 @@ public final class ConcurrentStreamWriter implements Closeable {
   private final class EventQueue implements Closeable {
 
     private final Id.Stream streamId;
+    private final int lane;
+    private final EventQueue[] laneQueues;
     private final StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector;
     private final Queue<WriteRequest> queue;
+    private final AtomicInteger queueDepth;
     private final AtomicBoolean writerFlag;
     private final WriteRequest.Metrics metrics;
     private final MutableStreamEvent streamEvent;
@@ -405,10 +468,14 @@ public final class ConcurrentStreamWriter implements Closeable {
     private FileWriter<StreamEventData> fileWriter;
     private boolean closed;
 
-    EventQueue(Id.Stream streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
+    EventQueue(Id.Stream streamId, int lane, EventQueue[] laneQueues,
+               StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
       this.streamId = streamId;
+      this.lane = lane;
+      this.laneQueues = laneQueues;
       this.streamEvent = new MutableStreamEvent();
       this.queue = new ConcurrentLinkedQueue<>();
+      this.queueDepth = new AtomicInteger();
       this.writerFlag = new AtomicBoolean(false);
       this.metrics = new WriteRequest.Metrics();
       this.metricsCollector = metricsCollector;
@@ -429,6 +496,7 @@ public final class ConcurrentStreamWriter implements Closeable {
      */
     WriteRequest append(Map<String, String> headers, ByteBuffer body) {
       WriteRequest request = new SingleWriteRequest(headers, body);
+      queueDepth.incrementAndGet();
       queue.add(request);
       return request;
     }
@@ -442,6 +510,7 @@ public final class ConcurrentStreamWriter implements Closeable {
      */
     WriteRequest append(Iterator<? extends StreamEventData> events) {
       WriteRequest request = new BatchWriteRequest(events);
+      queueDepth.incrementAndGet();
       queue.add(request);
       return request;
     }
@@ -492,6 +561,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     boolean tryWrite() {
       int bytesWritten = 0;
       int eventsWritten = 0;
+      int depth = 0;
+      int batchSize = 0;
 
       if (!writerFlag.compareAndSet(false, true)) {
         return false;
@@ -502,15 +573,28 @@ public final class ConcurrentStreamWriter implements Closeable {
       // hence all states mutated will be visible to all threads after that.
       try {
         metrics.reset();
+        // Report the depth of the whole stream, since all lanes report under the same metrics context
+        for (EventQueue laneQueue : laneQueues) {
+          depth += laneQueue.queueDepth.get();
+        }
         List<WriteRequest> processQueue = Lists.newArrayListWithExpectedSize(workerThreads);
         try {
           FileWriter<StreamEventData> writer = getFileWriter();
-          WriteRequest request = queue.poll();
+          WriteRequest request = pollRequest();
           streamEvent.setTimestamp(System.currentTimeMillis());
-          while (request != null) {
-            processQueue.add(request);
-            request.write(writer, metrics);
-            request = queue.poll();
+          long commitDeadline = System.nanoTime() + commitDelayNanos;
+          while (true) {
+            while (request != null) {
+              processQueue.add(request);
+              request.write(writer, metrics);
+              request = pollRequest();
+            }
+            // Wait for more requests within the commit delay, so that they are flushed together
+            if (commitDelayNanos <= 0 || processQueue.isEmpty() || System.nanoTime() >= commitDeadline) {
+              break;
+            }
+            LockSupport.parkNanos(Math.min(COMMIT_POLL_NANOS, commitDeadline - System.nanoTime()));
+            request = pollRequest();
           }
           writer.flush();
           for (WriteRequest processed : processQueue) {
@@ -518,9 +602,12 @@ public final class ConcurrentStreamWriter implements Closeable {
           }
           bytesWritten = metrics.bytesWritten;
           eventsWritten = metrics.eventsWritten;
+          batchSize = processQueue.size();
         } catch (Throwable t) {
-          // On exception, remove this EventQueue from the map and close this event queue
-          eventQueues.remove(streamId, this);
+          // On exception, remove the EventQueues of all lanes from the map and close them
+          if (eventQueues.remove(streamId, laneQueues)) {
+            closeEventQueues(laneQueues, this);
+          }
           doClose();
 
           for (WriteRequest processed : processQueue) {
@@ -532,9 +619,21 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
 
       metricsCollector.emitMetrics(bytesWritten, eventsWritten);
+      if (batchSize > 0) {
+        metricsCollector.emitCommitMetrics(batchSize, depth);
+      }
       return true;
     }
 
+    @Nullable
+    private WriteRequest pollRequest() {
+      WriteRequest request = queue.poll();
+      if (request != null) {
+        queueDepth.decrementAndGet();
+      }
+      return request;
+    }
+
     /**
      * Returns the current {@link FileWriter}. A new {@link FileWriter} will be created
      * if none existed yet. This method should only be called from the writer leader thread.
@@ -544,7 +643,7 @@ public final class ConcurrentStreamWriter implements Closeable {
         throw new IOException("Stream writer already closed");
       }
       if (fileWriter == null) {
-        fileWriter = FileWriters.transform(streamFileFactory.create(streamId), eventTransformer);
+        fileWriter = FileWriters.transform(streamFileFactory.create(streamId, lane), eventTransformer);
       }
       return fileWriter;
     }
@@ -577,11 +676,11 @@ public final class ConcurrentStreamWriter implements Closeable {
       // Drain the queue with failure. This could happen when
       // 1. Shutting down of http service, which is fine to set to failure as all connections are closed already.
       // 2. When stream generation change. In this case, the client would received failure.
-      WriteRequest data = queue.poll();
+      WriteRequest data = pollRequest();
       Throwable writerClosedException = new IOException("Stream writer closed").fillInStackTrace();
       while (data != null) {
         data.completed(writerClosedException);
-        data = queue.poll();
+        data = pollRequest();
       }
       closed = true;
     }
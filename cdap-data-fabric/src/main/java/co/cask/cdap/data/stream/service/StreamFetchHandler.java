@@ -299,13 +299,16 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
 
     List<StreamFileOffset> fileOffsets = Lists.newArrayList();
     int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
+    int lanes = cConf.getInt(Constants.Stream.WRITER_LANES, 1);
     String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
     for (int i = 0; i < instances; i++) {
-      // The actual file prefix is formed by file prefix in cConf + writer instance id
-      String streamFilePrefix = filePrefix + '.' + i;
-      Location eventLocation = StreamUtils.createStreamLocation(startPartition, streamFilePrefix,
-                                                                0, StreamFileType.EVENT);
-      fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
+      // The actual file prefix is formed by file prefix in cConf + writer instance id, with the lane for each lane
+      for (int lane = 0; lane < lanes; lane++) {
+        String streamFilePrefix = StreamUtils.getLaneFilePrefix(filePrefix + '.' + i, lane);
+        Location eventLocation = StreamUtils.createStreamLocation(startPartition, streamFilePrefix,
+                                                                  0, StreamFileType.EVENT);
+        fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
+      }
     }
 
     MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets);
@@ -143,6 +143,8 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
+                                                   cConf.getInt(Constants.Stream.WRITER_LANES, 1),
+                                                   cConf.getLong(Constants.Stream.WRITER_COMMIT_DELAY_MS, 0L),
                                                    metricsCollectorFactory, impersonator);
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.impersonator = impersonator;
@@ -349,6 +351,14 @@ public final class StreamHandler extends AbstractHttpHandler {
               childCollector.increment("collect.events", eventsWritten);
             }
           }
+
+          @Override
+          public void emitCommitMetrics(int batchSize, int queueDepth) {
+            // Lanes flush independently, so batch sizes are reported as totals: average = requests / commits
+            childCollector.increment("collect.commits", 1);
+            childCollector.increment("collect.commit.requests", batchSize);
+            childCollector.gauge("collect.queue.depth", queueDepth);
+          }
         };
       }
     };
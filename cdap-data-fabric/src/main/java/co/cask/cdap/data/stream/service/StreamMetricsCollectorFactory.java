@@ -35,6 +35,14 @@ public interface StreamMetricsCollectorFactory {
      * @param eventsWritten number of events written to the stream
      */
     void emitMetrics(long bytesWritten, long eventsWritten);
+
+    /**
+     * Emit metrics about a flush of events to the stream.
+     *
+     * @param batchSize number of write requests flushed together
+     * @param queueDepth number of write requests that were queued in all lanes of the stream when the flush started
+     */
+    void emitCommitMetrics(int batchSize, int queueDepth);
   }
 
   /**
@@ -34,23 +34,25 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import javax.annotation.Nullable;
 
 /**
@@ -66,6 +68,8 @@ public class DefaultCube implements Cube {
   private final Map<Integer, FactTable> resolutionToFactTable;
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
+  @Nullable
+  private final Executor writeExecutor;
 
   @Nullable
   private MetricsCollector metrics;
@@ -73,6 +77,21 @@ public class DefaultCube implements Cube {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, null);
+  }
+
+  /**
+   * Creates a {@link DefaultCube}.
+   *
+   * @param writeExecutor if not {@code null}, facts are written to the tables of the different resolutions
+   *                      concurrently using this executor. It should only be used if the fact tables can be written
+   *                      from threads other than the caller's one, e.g. if they are not transactional.
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap,
+                     @Nullable Executor writeExecutor) {
+    this.writeExecutor = writeExecutor;
     this.aggregations = aggregations;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
@@ -112,9 +131,7 @@ public class DefaultCube implements Cube {
       }
     }
 
-    for (FactTable table : resolutionToFactTable.values()) {
-      table.add(toWrite);
-    }
+    writeFacts(toWrite);
 
     incrementMetric("cube.cubeFact.add.request.count", 1);
     incrementMetric("cube.cubeFact.added.count", facts.size());
@@ -123,6 +140,30 @@ public class DefaultCube implements Cube {
     incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
   }
 
+  private void writeFacts(final List<Fact> facts) {
+    if (writeExecutor == null || resolutionToFactTable.size() == 1) {
+      for (FactTable table : resolutionToFactTable.values()) {
+        table.add(facts);
+      }
+      return;
+    }
+
+    List<ListenableFutureTask<Void>> futures = Lists.newArrayListWithCapacity(resolutionToFactTable.size());
+    for (final FactTable table : resolutionToFactTable.values()) {
+      ListenableFutureTask<Void> task = ListenableFutureTask.create(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          table.add(facts);
+          return null;
+        }
+      });
+      writeExecutor.execute(task);
+      futures.add(task);
+    }
+    // wait for the writes of all resolutions, failing if any of them failed
+    Futures.getUnchecked(Futures.allAsList(futures));
+  }
+
   @Override
   public Collection<TimeSeries> query(CubeQuery query) {
     /*
@@ -163,7 +204,9 @@ public class DefaultCube implements Cube {
 
     incrementMetric("cube.query.request.count", 1);
 
-    if (!resolutionToFactTable.containsKey(query.getResolution())) {
+    // resolutions that are not stored are derived by downsampling the facts of a finer stored resolution
+    int scanResolution = findResolutionToScan(query.getResolution());
+    if (scanResolution < 0) {
       incrementMetric("cube.query.request.failure.count", 1);
       throw new IllegalArgumentException("There's no data aggregated for specified resolution to satisfy the query: " +
                                            query.toString());
@@ -195,6 +238,9 @@ public class DefaultCube implements Cube {
     // tell how many queries end up querying specific pre-aggregated views and resolutions
     incrementMetric("cube.query.agg." + aggName + ".count", 1);
     incrementMetric("cube.query.res." + query.getResolution() + ".count", 1);
+    if (scanResolution != query.getResolution()) {
+      incrementMetric("cube.query.downsampled.count", 1);
+    }
 
     // 2) build a scan for a query
     List<DimensionValue> dimensionValues = Lists.newArrayList();
@@ -203,13 +249,16 @@ public class DefaultCube implements Cube {
       dimensionValues.add(new DimensionValue(dimensionName, query.getDimensionValues().get(dimensionName)));
     }
 
-    FactScan scan = new FactScan(query.getStartTs(), query.getEndTs(),
-                                 query.getMeasurements().keySet(), dimensionValues);
+    // when downsampling, start from the beginning of the first bucket so that it is aggregated completely
+    long startTs = scanResolution == query.getResolution() ?
+      query.getStartTs() : query.getStartTs() - query.getStartTs() % query.getResolution();
+    FactScan scan = new FactScan(startTs, query.getEndTs(), query.getMeasurements().keySet(), dimensionValues);
 
     // 3) execute scan query
-    FactTable table = resolutionToFactTable.get(query.getResolution());
+    FactTable table = resolutionToFactTable.get(scanResolution);
     FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    Table<Map<String, String>, String, TimeValueMap> resultMap =
+      getTimeSeries(query, scanner, scanResolution != query.getResolution());
 
     incrementMetric("cube.query.request.success.count", 1);
     incrementMetric("cube.query.result.size", resultMap.size());
@@ -327,9 +376,35 @@ public class DefaultCube implements Cube {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
+  /**
+   * Finds the resolution of the fact table to scan to satisfy a query of the given resolution.
+   * If the resolution is not stored, the coarsest stored resolution that evenly divides it is returned,
+   * so that the facts can be downsampled while scanning.
+   *
+   * @return resolution to scan or {@code -1} if the query resolution can not be satisfied
+   */
+  private int findResolutionToScan(int queryResolution) {
+    if (resolutionToFactTable.containsKey(queryResolution)) {
+      return queryResolution;
+    }
+    int result = -1;
+    for (int resolution : resolutionToFactTable.keySet()) {
+      if (resolution < queryResolution && queryResolution % resolution == 0 && resolution > result) {
+        result = resolution;
+      }
+    }
+    return result;
+  }
+
+  private Table<Map<String, String>, String, TimeValueMap> getTimeSeries(CubeQuery query, FactScanner scanner,
+                                                                         boolean downsample) {
     // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+    // data points are aggregated into primitive maps, so that no objects are created per scanned data point
+    int resolution = query.getResolution();
+    Table<Map<String, String>, String, TimeValueMap> result = HashBasedTable.create();
+    // data points beyond the per time series limit are not returned, hence they don't count towards max points
+    int limit = Math.max(1, query.getLimit());
+    long points = 0;
 
     int count = 0;
     while (scanner.hasNext()) {
@@ -364,31 +439,27 @@ public class DefaultCube implements Cube {
         continue;
       }
 
-      for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
+      if (next.size() > 0) {
+        TimeValueMap timeValues = result.get(seriesDimensions, next.getMeasureName());
         if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
+          timeValues = new TimeValueMap(next.size());
+          result.put(seriesDimensions, next.getMeasureName(), timeValues);
         }
 
         AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
+        for (int i = 0; i < next.size(); i++) {
+          long ts = next.getTimestamp(i);
+          int size = timeValues.size();
+          // when downsampling, data points are folded into the bucket of the query resolution they fall in
+          timeValues.aggregate(downsample ? ts - ts % resolution : ts, next.getValue(i), function);
+          if (timeValues.size() > size && size < limit) {
+            points++;
+          }
+        }
+        // stop as soon as there are more data points than can be returned, the result is incomplete anyway
+        if (points > query.getMaxPoints()) {
+          incrementMetric("cube.query.scan.truncated.count", 1);
+          break;
         }
       }
       if (++count >= MAX_RECORDS_TO_SCAN) {
@@ -399,32 +470,42 @@ public class DefaultCube implements Cube {
   }
 
   private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
-                                                      Table<Map<String, String>, String,
-                                                        Map<Long, Long>> resultTable) {
+                                                      Table<Map<String, String>, String, TimeValueMap> resultTable) {
 
     List<TimeSeries> result = Lists.newArrayList();
+    // at most one data point more than max points is returned, which is enough to tell that the result is incomplete
+    long pointsLeft = (long) query.getMaxPoints() + 1;
     // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
+    for (Map.Entry<Map<String, String>, Map<String, TimeValueMap>> row : resultTable.rowMap().entrySet()) {
       // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
-        // generating time series for a grouping and a measure
-        int count = 0;
-        List<TimeValue> timeValues = Lists.newArrayList();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
+      for (Map.Entry<String, TimeValueMap> measureEntry : row.getValue().entrySet()) {
+        if (pointsLeft <= 0) {
+          return result;
         }
-        Collections.sort(timeValues);
-        PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-          new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-        List<TimeValue> resultTimeValues = Lists.newArrayList();
-        while (timeValueItor.hasNext()) {
-          TimeValue timeValue = timeValueItor.next();
-          resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
-          if (++count >= query.getLimit()) {
-            break;
+        // generating time series for a grouping and a measure
+        TimeValueMap timeValueMap = measureEntry.getValue();
+        long[] timestamps = timeValueMap.sortedTimestamps();
+        List<TimeValue> resultTimeValues;
+        // at least one data point is always returned, even if the limit is not positive
+        int limit = (int) Math.min(Math.max(1, query.getLimit()), pointsLeft);
+        if (query.getInterpolator() == null) {
+          // without interpolation result is the data points themselves, only materialize the ones within the limit
+          int size = Math.min(timestamps.length, limit);
+          resultTimeValues = Lists.newArrayListWithCapacity(size);
+          for (int i = 0; i < size; i++) {
+            resultTimeValues.add(new TimeValue(timestamps[i], timeValueMap.get(timestamps[i], 0L)));
+          }
+        } else {
+          List<TimeValue> timeValues = Lists.newArrayListWithCapacity(timestamps.length);
+          for (long timestamp : timestamps) {
+            timeValues.add(new TimeValue(timestamp, timeValueMap.get(timestamp, 0L)));
           }
+          resultTimeValues = Lists.newArrayList(
+            Iterables.limit(new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()),
+                            limit));
         }
         result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
+        pointsLeft -= resultTimeValues.size();
       }
     }
     return result;
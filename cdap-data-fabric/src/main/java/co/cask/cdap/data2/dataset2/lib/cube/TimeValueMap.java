@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from timestamp to value that is used to aggregate the data points of a single
+ * time series while scanning facts. Keys and values are kept in primitive arrays, so no object is allocated
+ * per data point.
+ */
+final class TimeValueMap {
+
+  private static final int DEFAULT_CAPACITY = 16;
+  // resize when the table is more than 3/4 full
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private long[] timestamps;
+  private long[] values;
+  private boolean[] used;
+  private int size;
+  private int threshold;
+
+  TimeValueMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  TimeValueMap(int expectedSize) {
+    allocate(tableSizeFor(Math.max(expectedSize, 1)));
+  }
+
+  /**
+   * @return number of distinct timestamps in this map
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return {@code true} if the given timestamp has a value in this map
+   */
+  boolean contains(long timestamp) {
+    return used[findSlot(timestamp)];
+  }
+
+  /**
+   * Returns the value stored for the given timestamp, or the given default if there is none.
+   */
+  long get(long timestamp, long defaultValue) {
+    int slot = findSlot(timestamp);
+    return used[slot] ? values[slot] : defaultValue;
+  }
+
+  /**
+   * Sets the value for the given timestamp, replacing any existing value.
+   */
+  void put(long timestamp, long value) {
+    int slot = findSlot(timestamp);
+    if (!used[slot]) {
+      if (size >= threshold) {
+        rehash(used.length << 1);
+        slot = findSlot(timestamp);
+      }
+      used[slot] = true;
+      timestamps[slot] = timestamp;
+      size++;
+    }
+    values[slot] = value;
+  }
+
+  /**
+   * Folds the given value into the value stored for the given timestamp using the given aggregation function.
+   */
+  void aggregate(long timestamp, long value, AggregationFunction function) {
+    int slot = findSlot(timestamp);
+    if (!used[slot]) {
+      // first value for the timestamp is taken as is for every aggregation function
+      put(timestamp, value);
+      return;
+    }
+    long current = values[slot];
+    if (AggregationFunction.SUM == function) {
+      values[slot] = current + value;
+    } else if (AggregationFunction.MAX == function) {
+      values[slot] = current > value ? current : value;
+    } else if (AggregationFunction.MIN == function) {
+      values[slot] = current < value ? current : value;
+    } else if (AggregationFunction.LATEST == function) {
+      values[slot] = value;
+    } else {
+      // should never happen: developer error
+      throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+  }
+
+  /**
+   * @return all timestamps of this map in ascending order
+   */
+  long[] sortedTimestamps() {
+    long[] result = new long[size];
+    int idx = 0;
+    for (int i = 0; i < used.length; i++) {
+      if (used[i]) {
+        result[idx++] = timestamps[i];
+      }
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  private int findSlot(long timestamp) {
+    int mask = used.length - 1;
+    int slot = mix(timestamp) & mask;
+    while (used[slot] && timestamps[slot] != timestamp) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int newCapacity) {
+    long[] oldTimestamps = timestamps;
+    long[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(newCapacity);
+    for (int i = 0; i < oldUsed.length; i++) {
+      if (oldUsed[i]) {
+        int slot = findSlot(oldTimestamps[i]);
+        used[slot] = true;
+        timestamps[slot] = oldTimestamps[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    timestamps = new long[capacity];
+    values = new long[capacity];
+    used = new boolean[capacity];
+    threshold = (int) (capacity * LOAD_FACTOR);
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static int mix(long key) {
+    // timestamps are usually multiples of the resolution, spread the bits so that they don't cluster
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -69,8 +69,9 @@ import javax.annotation.Nullable;
  *       not in in-memory buffer twice, two times it will try to fetch it from persistent store.
  *       Given the snapshot isolation tx model, this can be improved in future implementations.
  * <p>
- * NOTE: current implementation persists changes only at the end of transaction. Beware of OOME. There should be better
- *       implementation for MapReduce case (YMMV though, for counters/aggregations this implementation looks sweet)
+ * NOTE: by default, changes are persisted only at the end of transaction. Beware of OOME. For transactions that write a
+ *       lot of data (e.g. MapReduce), the {@link Constants.Dataset#TABLE_BUFFER_FLUSH_SIZE} property can be used to
+ *       persist the buffered changes once they exceed the given size. This is not supported with read-less increments.
  * <p>
  * NOTE: Using {@link #get(byte[], byte[], byte[], int)} is generally always not efficient since it always hits the
  *       persisted store even if all needed data is in-memory buffer. See more info at method javadoc
@@ -98,6 +99,14 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
 
+  // Estimated size of the in-memory buffer after which it is persisted before commit, zero means only on commit
+  private final long bufferFlushSize;
+  // Estimated size in bytes of the data in the in-memory buffer
+  private long buffSize;
+  // Keeps track of the changes persisted before commit. It is row->(column->null) map: only the keys are kept, as that
+  // is all that is needed for conflict detection and to undo the changes.
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> flushed;
+
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
 
@@ -138,6 +147,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     this.name = name;
     this.conflictLevel = TableProperties.getConflictDetectionLevel(properties, ConflictDetection.ROW);
     this.enableReadlessIncrements = enableReadlessIncrements;
+    // buffered read-less increments can only be persisted once per transaction, so they cannot be flushed early
+    this.bufferFlushSize = enableReadlessIncrements ? 0L : TableProperties.getBufferFlushSize(properties);
     // TODO: having central dataset management service will allow us to use table ids instead of names, which will
     //       reduce changeset size transferred to/from server
     // we want it to be of format length+value to avoid conflicts like table="ab", row="cd" vs table="abc", row="d"
@@ -255,6 +266,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // releasing resources
     buff = null;
     toUndo = null;
+    flushed = null;
   }
 
   @Override
@@ -266,7 +278,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
     // starting with fresh buffer when tx starts
     buff.clear();
+    buffSize = 0;
     toUndo = null;
+    flushed = null;
   }
 
   @Override
@@ -299,18 +313,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private Collection<byte[]> getRowChanges() {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changed = addFlushed(buff);
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (byte[] changedRow : buff.keySet()) {
+    List<byte[]> changes = new ArrayList<>(changed.size());
+    for (byte[] changedRow : changed.keySet()) {
       changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
     }
     return changes;
   }
 
   private Collection<byte[]> getColumnChanges() {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changed = addFlushed(buff);
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
+    List<byte[]> changes = new ArrayList<>(changed.size());
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : changed.entrySet()) {
       if (rowChange.getValue() == null) {
         // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
         //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
@@ -332,15 +348,19 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public boolean commitTx() throws Exception {
     if (!buff.isEmpty()) {
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
-      // rollback everything we had in in-memory buffer.
-      toUndo = buff;
+      // rollback everything we had in in-memory buffer, as well as what was persisted before commit.
+      NavigableMap<byte[], NavigableMap<byte[], Update>> toPersist = buff;
+      toUndo = addFlushed(toPersist);
       // clearing up in-memory buffer by initializing new map.
       // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
       // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
       buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      buffSize = 0;
       // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
       //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
-      persist(toUndo);
+      persist(toPersist);
+    } else if (flushed != null) {
+      toUndo = flushed;
     }
     return true;
   }
@@ -349,12 +369,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void postTxCommit() {
     // don't need buffer anymore: tx has been committed
     buff.clear();
+    buffSize = 0;
     toUndo = null;
+    flushed = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
     buff.clear();
+    buffSize = 0;
+    if (toUndo == null) {
+      // changes persisted before commit still need to be undone
+      toUndo = flushed;
+    }
+    flushed = null;
     if (toUndo != null) {
       undo(toUndo);
       toUndo = null;
@@ -422,25 +450,41 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public List<Row> get(List<Get> gets) {
+    reportRead(gets.size());
     try {
-      // get persisted, then overwrite with whats buffered
-      List<Map<byte[], byte[]>> persistedRows = getPersisted(gets);
+      // resolve the gets against the buffer first, then fetch whatever is left in one batch from the persisted store
+      List<Get> persistedGets = Lists.newArrayListWithCapacity(gets.size());
+      // for each get, the index of its row in the persisted rows, or -1 if the buffer alone is enough
+      int[] persistedIndexes = new int[gets.size()];
+      for (int i = 0; i < gets.size(); i++) {
+        Get persistedGet = getPersistedGet(gets.get(i));
+        if (persistedGet == null) {
+          persistedIndexes[i] = -1;
+        } else {
+          persistedIndexes[i] = persistedGets.size();
+          persistedGets.add(persistedGet);
+        }
+      }
+
+      List<Map<byte[], byte[]>> persistedRows = persistedGets.isEmpty() ?
+        Collections.<Map<byte[], byte[]>>emptyList() : getPersisted(persistedGets);
       // gets and rows lists are always of the same size
-      Preconditions.checkArgument(gets.size() == persistedRows.size(),
+      Preconditions.checkArgument(persistedGets.size() == persistedRows.size(),
         "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
 
-      List<Row> result = Lists.newArrayListWithCapacity(persistedRows.size());
-
-      Iterator<Map<byte[], byte[]>> persistedRowsIter = persistedRows.iterator();
-      Iterator<Get> getIter = gets.iterator();
-      while (persistedRowsIter.hasNext() && getIter.hasNext()) {
-        Get get = getIter.next();
-        Map<byte[], byte[]> persistedRow = persistedRowsIter.next();
+      List<Row> result = Lists.newArrayListWithCapacity(gets.size());
+      for (int i = 0; i < gets.size(); i++) {
+        Get get = gets.get(i);
 
         // navigable copy of the persisted data. Implementation may return immutable or unmodifiable maps,
         // so we make a copy here.
         NavigableMap<byte[], byte[]> rowColumns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        rowColumns.putAll(persistedRow);
+        if (persistedIndexes[i] >= 0) {
+          Map<byte[], byte[]> persistedRow = persistedRows.get(persistedIndexes[i]);
+          if (persistedRow != null) {
+            rowColumns.putAll(persistedRow);
+          }
+        }
 
         byte[] row = get.getRow();
         NavigableMap<byte[], Update> buffCols = buff.get(row);
@@ -491,6 +535,65 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     if (newRow) {
       // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
       buff.put(copy(row), colVals);
+      buffSize += getSize(row);
+    }
+    buffSize += getSize(columns) + getSize(values);
+    if (bufferFlushSize > 0 && buffSize >= bufferFlushSize) {
+      flushBuffer();
+    }
+  }
+
+  /**
+   * Persists the in-memory buffer before the transaction commits, to limit the memory it takes. The persisted changes
+   * are visible to this transaction only, and are undone if the transaction is rolled back.
+   */
+  private void flushBuffer() {
+    NavigableMap<byte[], NavigableMap<byte[], Update>> toPersist = buff;
+    // remember what is being persisted first, so that it is undone on rollback even if persisting fails
+    if (flushed == null) {
+      flushed = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    }
+    addChangedKeys(flushed, toPersist);
+    buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    buffSize = 0;
+    try {
+      persist(toPersist);
+    } catch (Exception e) {
+      LOG.debug("persisting buffer failed for table: " + getTransactionAwareName(), e);
+      throw new DataSetException("persisting buffer failed", e);
+    }
+  }
+
+  /**
+   * Returns the given changes combined with the changes that were persisted before commit, if any.
+   */
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> addFlushed(
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changes) {
+    if (flushed == null) {
+      return changes;
+    }
+    NavigableMap<byte[], NavigableMap<byte[], Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    addChangedKeys(result, flushed);
+    addChangedKeys(result, changes);
+    return result;
+  }
+
+  /**
+   * Adds the row and column keys of the given changes to a row->(column->null) map.
+   */
+  private static void addChangedKeys(NavigableMap<byte[], NavigableMap<byte[], Update>> keys,
+                                     NavigableMap<byte[], NavigableMap<byte[], Update>> changes) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : changes.entrySet()) {
+      NavigableMap<byte[], Update> columns = keys.get(rowChange.getKey());
+      if (columns == null) {
+        columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        keys.put(rowChange.getKey(), columns);
+      }
+      if (rowChange.getValue() != null) {
+        for (byte[] column : rowChange.getValue().keySet()) {
+          columns.put(column, null);
+        }
+      }
     }
   }
 
@@ -760,6 +863,33 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return unwrapDeletes(result);
   }
 
+  /**
+   * Determines what has to be fetched from the persisted store to answer a get, given what is in the in-memory buffer.
+   * @param get the get to perform
+   * @return the get to perform against the persisted store, or {@code null} if the buffer has all requested columns
+   */
+  @Nullable
+  private Get getPersistedGet(Get get) {
+    NavigableMap<byte[], Update> buffCols = buff.get(get.getRow());
+    List<byte[]> columns = get.getColumns();
+    // we cannot tell the full column set of a row from the buffer
+    if (buffCols == null || columns == null) {
+      return get;
+    }
+
+    List<byte[]> colsToFetchFromPersisted = Lists.newArrayList();
+    for (byte[] column : columns) {
+      // buffered increments will need to the applied on top of the persisted values
+      if (!buffCols.containsKey(column) || buffCols.get(column) instanceof IncrementValue) {
+        colsToFetchFromPersisted.add(column);
+      }
+    }
+    if (colsToFetchFromPersisted.isEmpty()) {
+      return null;
+    }
+    return colsToFetchFromPersisted.size() == columns.size() ? get : new Get(get.getRow(), colsToFetchFromPersisted);
+  }
+
   /**
    * Applies the buffered updates on top of the map of persisted values.  The persisted map is modified in place
    * with the updated values.
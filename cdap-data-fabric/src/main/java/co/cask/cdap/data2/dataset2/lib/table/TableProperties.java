@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
 import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.api.dataset.table.Tables;
 import co.cask.cdap.common.conf.Constants;
 
 import java.io.IOException;
@@ -90,6 +91,41 @@ public class TableProperties {
     return !"true".equalsIgnoreCase(props.get(Constants.Dataset.TABLE_TX_DISABLED));
   }
 
+  /**
+   * Returns the estimated size in bytes of buffered changes after which they are persisted before the transaction
+   * commits. Defaults to zero, which means changes are only persisted on commit.
+   *
+   * @throws IllegalArgumentException if the property value is not a valid size.
+   */
+  public static long getBufferFlushSize(Map<String, String> props) {
+    String value = props.get(Constants.Dataset.TABLE_BUFFER_FLUSH_SIZE);
+    if (value == null) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid buffer flush size: " + value);
+    }
+  }
+
+  /**
+   * Returns the time-to-live of the table in seconds. Defaults to {@link Tables#NO_TTL}.
+   *
+   * @throws IllegalArgumentException if the property value is not a valid time-to-live.
+   */
+  public static long getTTL(Map<String, String> props) {
+    String value = props.get(Table.PROPERTY_TTL);
+    if (value == null) {
+      return Tables.NO_TTL;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid time-to-live: " + value);
+    }
+  }
+
   /**
    * Returns the column family as being set in the given specification.
    * If it is not set, the {@link #DEFAULT_DATA_COLUMN_FAMILY} will be returned.
@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -27,14 +28,18 @@ import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.IncrementValue;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
+import co.cask.cdap.data2.dataset2.lib.table.TableProperties;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 import co.cask.tephra.Transaction;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -52,6 +57,10 @@ public class LevelDBTable extends BufferingTable {
     super(PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), tableName),
           false, spec.getProperties());
     this.core = new LevelDBTableCore(getTableName(), service);
+    if (TableProperties.isTransactional(spec.getProperties())) {
+      long ttl = TableProperties.getTTL(spec.getProperties());
+      service.registerCompaction(getTableName(), ttl > 0 ? TimeUnit.SECONDS.toMillis(ttl) : ttl);
+    }
   }
 
   // TODO this is the same for all OcTableClient implementations -> promote to base class
@@ -109,6 +118,11 @@ public class LevelDBTable extends BufferingTable {
     return core.getRow(row, columns, null, null, -1, tx);
   }
 
+  @Override
+  protected List<Map<byte[], byte[]>> getPersisted(List<Get> gets) throws Exception {
+    return ImmutableList.<Map<byte[], byte[]>>copyOf(core.getRows(gets, tx));
+  }
+
   @Override
   protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[] startColumn, byte[] stopColumn, int limit)
     throws Exception {
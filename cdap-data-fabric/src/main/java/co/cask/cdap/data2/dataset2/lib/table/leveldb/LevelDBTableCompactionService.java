@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TransactionSystemClient;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically compacts the transactional LevelDB tables, removing cell versions that are no longer visible
+ * to any transaction, as well as expired cells. Nothing is scheduled if compaction is disabled.
+ */
+public class LevelDBTableCompactionService extends AbstractIdleService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableCompactionService.class);
+
+  private final LevelDBTableService tableService;
+  private final TransactionSystemClient txClient;
+  private final boolean enabled;
+  private final long intervalSeconds;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  public LevelDBTableCompactionService(LevelDBTableService tableService, TransactionSystemClient txClient,
+                                       CConfiguration cConf) {
+    this.tableService = tableService;
+    this.txClient = txClient;
+    this.enabled = cConf.getBoolean(Constants.CFG_DATA_LEVELDB_COMPACTION_ENABLED,
+                                    Constants.DEFAULT_DATA_LEVELDB_COMPACTION_ENABLED);
+    this.intervalSeconds = cConf.getLong(Constants.CFG_DATA_LEVELDB_COMPACTION_INTERVAL,
+                                         Constants.DEFAULT_DATA_LEVELDB_COMPACTION_INTERVAL);
+    Preconditions.checkArgument(!enabled || intervalSeconds > 0, "The value of %s must be positive: %s",
+                                Constants.CFG_DATA_LEVELDB_COMPACTION_INTERVAL, intervalSeconds);
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    if (!enabled) {
+      LOG.info("Compaction of LevelDB tables is disabled");
+      return;
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("LevelDBTableCompactionService-scheduler"));
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        compact();
+      }
+    }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns true if compactions are scheduled by this service.
+   */
+  boolean isScheduled() {
+    return executor != null;
+  }
+
+  private void compact() {
+    try {
+      // the transaction is only used to obtain the visibility upper bound and the invalid list
+      Transaction tx = txClient.startShort();
+      try {
+        tableService.compact(tx);
+      } finally {
+        txClient.abort(tx);
+      }
+    } catch (Throwable t) {
+      // an exception would cancel the schedule, hence all failures are only logged
+      LOG.warn("Failed to compact LevelDB tables", t);
+    }
+  }
+}
@@ -17,17 +17,21 @@
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.tephra.Transaction;
+import co.cask.tephra.TxConstants;
+import co.cask.tephra.util.TxUtils;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.WriteBatch;
@@ -36,12 +40,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -77,10 +86,12 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  private final Striped<Lock> rowLocks;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
     this.service = service;
+    this.rowLocks = service.getRowLocks(tableName);
   }
 
   private DB getDB() throws IOException {
@@ -92,48 +103,75 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = rowLocks.get(ByteBuffer.wrap(row));
+    lock.lock();
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    Lock lock = rowLocks.get(ByteBuffer.wrap(row));
+    lock.lock();
+    try {
+      Map<byte[], Long> result = getResultMap(row, increments);
+      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      }
+      persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
+      return result;
+    } finally {
+      lock.unlock();
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
   }
 
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    // Locks all rows being updated. Striped.bulkGet returns the locks in a consistent order to avoid deadlock.
+    List<ByteBuffer> rowKeys = new ArrayList<>(updates.size());
+    for (byte[] row : updates.keySet()) {
+      rowKeys.add(ByteBuffer.wrap(row));
+    }
+    Iterable<Lock> locks = rowLocks.bulkGet(rowKeys);
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    try {
+      Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
+      for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+        NavigableMap<byte[], Long> increments = row.getValue();
+        Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        Map<byte[], Long> result = getResultMap(row.getKey(), increments);
+        for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+          replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+        }
+        resultMap.put(row.getKey(), replacing);
+      }
+      persist(resultMap, System.currentTimeMillis());
+    } finally {
+      for (Lock lock : locks) {
+        lock.unlock();
       }
-      resultMap.put(row.getKey(), replacing);
     }
-    persist(resultMap, System.currentTimeMillis());
   }
 
   private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
@@ -212,6 +250,44 @@ public class LevelDBTableCore {
   public NavigableMap<byte[], byte[]> getRow(byte[] row, @Nullable byte[][] columns,
                                              byte[] startCol, byte[] stopCol,
                                              int limit, Transaction tx) throws IOException {
+    try (DBIterator iterator = getDB().iterator()) {
+      return getRow(iterator, row, columns, startCol, stopCol, limit, tx);
+    }
+  }
+
+  /**
+   * Reads multiple rows with a single iterator. The rows are visited in sorted order, so that the iterator only
+   * moves forward through the table.
+   * @return the column map for each get, in the same order as the gets
+   */
+  public List<NavigableMap<byte[], byte[]>> getRows(final List<Get> gets, Transaction tx) throws IOException {
+    Integer[] order = new Integer[gets.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return Bytes.compareTo(gets.get(o1).getRow(), gets.get(o2).getRow());
+      }
+    });
+
+    List<NavigableMap<byte[], byte[]>> rows = new ArrayList<>(Collections.<NavigableMap<byte[], byte[]>>nCopies(
+      gets.size(), null));
+    try (DBIterator iterator = getDB().iterator()) {
+      for (int idx : order) {
+        Get get = gets.get(idx);
+        List<byte[]> cols = get.getColumns();
+        byte[][] columns = cols == null ? null : cols.toArray(new byte[cols.size()][]);
+        rows.set(idx, getRow(iterator, get.getRow(), columns, null, null, -1, tx));
+      }
+    }
+    return rows;
+  }
+
+  private static NavigableMap<byte[], byte[]> getRow(DBIterator iterator, byte[] row, @Nullable byte[][] columns,
+                                                     byte[] startCol, byte[] stopCol,
+                                                     int limit, Transaction tx) throws IOException {
     if (columns != null) {
       if (columns.length == 0) {
         return EMPTY_ROW_MAP;
@@ -223,10 +299,8 @@ public class LevelDBTableCore {
 
     byte[] startKey = createStartKey(row, columns == null ? startCol : columns[0]);
     byte[] endKey = createEndKey(row, columns == null ? stopCol : upperBound(columns[columns.length - 1]));
-    try (DBIterator iterator = getDB().iterator()) {
-      iterator.seek(startKey);
-      return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
-    }
+    iterator.seek(startKey);
+    return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
   }
 
   private static Scanner createEmptyScanner() {
@@ -326,6 +400,84 @@ public class LevelDBTableCore {
     return new ImmutablePair<>(rowBeingRead, map);
   }
 
+  /**
+   * Removes all cells that can no longer be seen by any transaction, similar to what Tephra's TransactionProcessor
+   * does during HBase compactions. For every column, this removes the writes of invalid transactions, all versions
+   * hidden by a newer version below the visibility upper bound of the given transaction, delete markers below that
+   * bound, and versions that have expired according to the given time-to-live.
+   *
+   * @param tx transaction that provides the visibility upper bound and the invalid transactions
+   * @param ttl time-to-live in milliseconds, or zero or less for no time-to-live
+   * @return the number of bytes of all keys and values removed
+   */
+  public long compact(Transaction tx, long ttl) throws IOException {
+    long visibilityUpperBound = tx.getVisibilityUpperBound();
+    long[] invalids = tx.getInvalids();
+    long oldestVisible = ttl > 0 ? visibilityUpperBound - ttl * TxConstants.MAX_TX_PER_MS : 0L;
+
+    DB db = getDB();
+    final int deletesPerRound = 1024;
+    WriteBatch batch = db.createWriteBatch();
+    int deletesInBatch = 0;
+    long removedBytes = 0L;
+
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seekToFirst();
+      byte[] previousRow = null;
+      byte[] previousCol = null;
+      // whether a version of the current column below the visibility upper bound has been seen
+      boolean seenVisible = false;
+
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        KeyValue kv = KeyValue.fromKey(entry.getKey());
+        byte[] row = kv.getRow();
+        byte[] column = kv.getQualifier();
+        if (previousRow == null || !Bytes.equals(previousRow, row) || !Bytes.equals(previousCol, column)) {
+          previousRow = row;
+          previousCol = column;
+          seenVisible = false;
+        }
+
+        long version = kv.getTimestamp();
+        boolean remove;
+        if (Arrays.binarySearch(invalids, version) >= 0) {
+          remove = true;
+        } else if (version >= visibilityUpperBound) {
+          // may not be visible to all transactions yet
+          continue;
+        } else if (seenVisible) {
+          // hidden by a newer version that is visible to all transactions
+          remove = true;
+        } else {
+          seenVisible = true;
+          remove = Bytes.equals(entry.getValue(), DELETE_MARKER) ||
+            (ttl > 0 && TxUtils.getTimestampForTTL(version) < oldestVisible);
+        }
+        if (!remove) {
+          continue;
+        }
+
+        batch.delete(entry.getKey());
+        removedBytes += entry.getKey().length + entry.getValue().length;
+        deletesInBatch++;
+
+        // perform the deletes when we have built up a batch.
+        if (deletesInBatch >= deletesPerRound) {
+          db.write(batch, getWriteOptions());
+          batch = db.createWriteBatch();
+          deletesInBatch = 0;
+        }
+      }
+    }
+
+    // perform any outstanding deletes
+    if (deletesInBatch > 0) {
+      db.write(batch, getWriteOptions());
+    }
+    return removedBytes;
+  }
+
   public void deleteRows(byte[] prefix) throws IOException {
     Preconditions.checkNotNull(prefix, "prefix must not be null");
     DB db = getDB();
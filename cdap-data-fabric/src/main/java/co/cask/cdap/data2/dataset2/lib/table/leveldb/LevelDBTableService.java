@@ -20,12 +20,14 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.transaction.stream.leveldb.LevelDBNameConverter;
 import co.cask.cdap.data2.util.TableId;
+import co.cask.tephra.Transaction;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.iq80.leveldb.DB;
@@ -43,6 +45,7 @@ import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -54,12 +57,19 @@ public class LevelDBTableService {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  // Number of lock stripes per table for read-modify-write operations on rows
+  private static final int ROW_LOCK_STRIPES = 64;
+
   private int blockSize;
   private long cacheSize;
   private String basePath;
   private WriteOptions writeOptions;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Striped<Lock>> rowLocks = Maps.newConcurrentMap();
+  // time-to-live in milliseconds of the tables that are subject to compaction
+  private final ConcurrentMap<String, Long> compactedTables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, CompactionStats> compactionStats = Maps.newConcurrentMap();
 
   private static final LevelDBTableService SINGLETON = new LevelDBTableService();
 
@@ -93,6 +103,8 @@ public class LevelDBTableService {
    */
   public void clearTables() {
     tables.clear();
+    compactedTables.clear();
+    compactionStats.clear();
   }
 
   public Collection<String> list() throws Exception {
@@ -167,6 +179,68 @@ public class LevelDBTableService {
     return db;
   }
 
+  /**
+   * Returns the row locks for the given table. The same locks are shared by all users of the table, so that
+   * read-modify-write operations on the same row are serialized, while operations on different rows
+   * mostly proceed in parallel.
+   */
+  Striped<Lock> getRowLocks(String tableName) {
+    Striped<Lock> locks = rowLocks.get(tableName);
+    if (locks == null) {
+      locks = Striped.lock(ROW_LOCK_STRIPES);
+      Striped<Lock> existing = rowLocks.putIfAbsent(tableName, locks);
+      if (existing != null) {
+        locks = existing;
+      }
+    }
+    return locks;
+  }
+
+  /**
+   * Registers a transactional table for compaction. Only tables whose cell versions are transaction write pointers
+   * may be registered, because compaction removes versions based on transaction visibility.
+   *
+   * @param tableName name of the table
+   * @param ttl time-to-live of the table in milliseconds, or zero or less for no time-to-live
+   */
+  public void registerCompaction(String tableName, long ttl) {
+    compactedTables.put(tableName, ttl);
+  }
+
+  /**
+   * Compacts all tables registered with {@link #registerCompaction(String, long)}.
+   *
+   * @param tx transaction that provides the visibility upper bound and the invalid transactions
+   * @return map of table name -> stats of the compaction
+   * @see LevelDBTableCore#compact(Transaction, long)
+   */
+  public Map<String, CompactionStats> compact(Transaction tx) throws IOException {
+    ImmutableMap.Builder<String, CompactionStats> builder = ImmutableMap.builder();
+    for (Map.Entry<String, Long> entry : compactedTables.entrySet()) {
+      String tableName = entry.getKey();
+      if (!new File(getDBPath(basePath, tableName)).exists()) {
+        // the table was registered by a client but not created yet
+        continue;
+      }
+      long startTime = System.currentTimeMillis();
+      long reclaimedBytes = new LevelDBTableCore(tableName, this).compact(tx, entry.getValue());
+      CompactionStats stats = new CompactionStats(reclaimedBytes, System.currentTimeMillis() - startTime);
+      LOG.debug("Compacted LevelDB table {}: reclaimed {} bytes in {} ms",
+                tableName, stats.getReclaimedBytes(), stats.getRunTimeMillis());
+      compactionStats.put(tableName, stats);
+      builder.put(tableName, stats);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets the stats of the last compaction of each table.
+   * @return map of table name -> stats of the last compaction
+   */
+  public Map<String, CompactionStats> getCompactionStats() {
+    return ImmutableMap.copyOf(compactionStats);
+  }
+
   public void ensureTableExists(String tableName) throws IOException {
     DB db = tables.get(tableName);
     if (db == null) {
@@ -217,6 +291,8 @@ public class LevelDBTableService {
   }
 
   public void dropTable(String name) throws IOException {
+    compactedTables.remove(name);
+    compactionStats.remove(name);
     DB db = tables.remove(name);
     if (db != null) {
       db.close();
@@ -277,4 +353,25 @@ public class LevelDBTableService {
       return diskSizeBytes;
     }
   }
+
+  /**
+   * Represents the result of compacting a LevelDB table.
+   */
+  public static final class CompactionStats {
+    private final long reclaimedBytes;
+    private final long runTimeMillis;
+
+    public CompactionStats(long reclaimedBytes, long runTimeMillis) {
+      this.reclaimedBytes = reclaimedBytes;
+      this.runTimeMillis = runTimeMillis;
+    }
+
+    public long getReclaimedBytes() {
+      return reclaimedBytes;
+    }
+
+    public long getRunTimeMillis() {
+      return runTimeMillis;
+    }
+  }
 }
@@ -16,11 +16,16 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +33,7 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -44,6 +50,16 @@ import javax.annotation.Nullable;
  * <h5>Entity mapping rows</h5>
  * Each entity would have two rows. One is keyed by {@code [type].[entityName]} and have one "id" column which
  * stores the unique ID. The other is a reverse map from {@code [type].id} to entity name in "name" column.
+ *
+ * <h5>Caching</h5>
+ * Mappings are cached in both directions, up to a maximum number of entries per direction. Reverse mappings and
+ * newly generated IDs are cached in both directions at once. Forward mappings are not, because they can be stale
+ * after IDs are recycled. The cache can be filled upfront with {@link #preload()}.
+ *
+ * <h5>Concurrency</h5>
+ * An instance can be shared by threads, e.g. by the {@link FactTable}s of different resolutions written concurrently.
+ * Cache hits are served without locking, while all accesses to the storage table are serialized, as the table is
+ * not thread-safe in general (e.g. an HBase table).
  */
 public final class EntityTable implements Closeable {
 
@@ -55,38 +71,81 @@ public final class EntityTable implements Closeable {
   private static final byte[] DOT = { '.' };
   // max number of distinct values of entity of a single type
   private static final long MAX_ID_COUNT = 0x1000000L;
+  // default max number of cached mappings in each direction
+  private static final int DEFAULT_CACHE_SIZE = 100000;
+  // names found to have no id are not looked up again for that long, see findId
+  private static final long MISSING_ENTITY_EXPIRE_SECONDS = 5;
+
+  private static final String CACHE_HIT_METRIC = "entityTable.cache.hit.count";
+  private static final String CACHE_MISS_METRIC = "entityTable.cache.miss.count";
+  // minimum interval between two reports of the cache stats done by lookups
+  private static final long CACHE_STATS_REPORT_INTERVAL_MILLIS = 1000L;
 
   private final MetricsTable table;
+  // guards all accesses to the table
+  private final Object tableLock = new Object();
   private final LoadingCache<EntityName, Long> entityCache;
   private final LoadingCache<EntityId, EntityName> idCache;
+  private final Cache<EntityName, Boolean> missingEntityCache;
   private final long maxId;
   private final int size;
+  private final int cacheSize;
 
+  private volatile MetricsCollector metrics;
+  private volatile long nextCacheStatsReportTime;
+  // cache hits and misses already reported to the metrics collector
+  private long reportedHits;
+  private long reportedMisses;
 
   /**
-   * Creates an EntityTable with max id = 16777215.
+   * Creates an EntityTable with max id = 16777215 and the default cache size.
    *
-   * See {@link #EntityTable(MetricsTable, long)}.
+   * See {@link #EntityTable(MetricsTable, long, int)}.
    */
   public EntityTable(MetricsTable table) {
     this(table, MAX_ID_COUNT);
   }
 
+  /**
+   * Creates an EntityTable with the default cache size.
+   *
+   * See {@link #EntityTable(MetricsTable, long, int)}.
+   */
+  EntityTable(MetricsTable table, long maxId) {
+    this(table, maxId, DEFAULT_CACHE_SIZE);
+  }
+
   /**
    * Creates an EntityTable backed by the given {@link MetricsTable}.
    *
    * @param table The storage table
    * @param maxId Maximum ID (exclusive) that can be generated.
+   * @param cacheSize Maximum number of mappings cached in each direction.
    */
-  EntityTable(MetricsTable table, long maxId) {
+  EntityTable(MetricsTable table, long maxId, int cacheSize) {
     Preconditions.checkArgument(table != null, "Table cannot be null.");
     Preconditions.checkArgument(maxId > 0, "maxId must be > 0.");
+    Preconditions.checkArgument(cacheSize > 0, "cacheSize must be > 0.");
 
     this.table = table;
-    this.entityCache = CacheBuilder.newBuilder().build(createEntityCacheLoader());
-    this.idCache = CacheBuilder.newBuilder().build(createIdCacheLoader());
+    this.entityCache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
+      .build(createEntityCacheLoader());
+    this.idCache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
+      .build(createIdCacheLoader());
+    this.missingEntityCache = CacheBuilder.newBuilder().maximumSize(cacheSize)
+      .expireAfterWrite(MISSING_ENTITY_EXPIRE_SECONDS, TimeUnit.SECONDS)
+      .build();
     this.maxId = maxId;
     this.size = computeSize(maxId);
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   * Sets the collector to report cache hits and misses to. Once set, the lookups report them at most once per
+   * second, see {@link #reportCacheStats()}.
+   */
+  public void setMetricsCollector(MetricsCollector metrics) {
+    this.metrics = metrics;
   }
 
   /**
@@ -98,7 +157,45 @@ public final class EntityTable implements Closeable {
     if (name == null) {
       return 0;
     }
-    return entityCache.getUnchecked(new EntityName(type, name)) % maxId;
+    long id = entityCache.getUnchecked(new EntityName(type, name)) % maxId;
+    reportCacheStatsPeriodically();
+    return id;
+  }
+
+  /**
+   * Returns the unique id for the given name, without assigning a new id if there is none. This is meant for
+   * queries, which cannot match any data for a name that has no id. A name found to have no id is remembered
+   * for 5 seconds, so that repeated queries for it don't go to the storage table. Hence, an id assigned in the
+   * meantime through another {@link EntityTable}, e.g. by another process, may only be found after that delay.
+   * An id assigned or loaded by {@link #getId(String, String)} of this instance is found right away.
+   *
+   * @param name The name to lookup. Can be {@code null}, which is treated as a normal value.
+   * @return Unique ID, or {@code null} if no id was assigned to the name
+   */
+  @Nullable
+  public Long findId(String type, @Nullable String name) {
+    if (name == null) {
+      return 0L;
+    }
+    EntityName entityName = new EntityName(type, name);
+    Long id = entityCache.getIfPresent(entityName);
+    reportCacheStatsPeriodically();
+    if (id == null) {
+      if (missingEntityCache.getIfPresent(entityName) != null) {
+        return null;
+      }
+      byte[] result;
+      synchronized (tableLock) {
+        result = table.get(getRowKey(entityName), ID);
+      }
+      if (result == null) {
+        missingEntityCache.put(entityName, Boolean.TRUE);
+        return null;
+      }
+      id = Bytes.toLong(result);
+      entityCache.put(entityName, id);
+    }
+    return id % maxId;
   }
 
   /**
@@ -117,6 +214,75 @@ public final class EntityTable implements Closeable {
       return idCache.get(new EntityId(id, type)).getName();
     } catch (ExecutionException e) {
       throw new IllegalArgumentException(e.getCause());
+    } finally {
+      reportCacheStatsPeriodically();
+    }
+  }
+
+  /**
+   * Loads the existing mappings from the storage table into the cache, up to the cache size. Scanning the table
+   * once is a lot faster than loading many mappings one by one, as it happens right after startup otherwise.
+   *
+   * @return number of mappings loaded
+   */
+  public int preload() {
+    int count = 0;
+    synchronized (tableLock) {
+      try (Scanner scanner = table.scan(null, null, null)) {
+        Row row;
+        while (count < cacheSize && (row = scanner.next()) != null) {
+          // Only reverse mapping rows have the "name" column, they are keyed by [type].[id as 8 bytes]
+          byte[] name = row.get(NAME);
+          byte[] rowKey = row.getRow();
+          int typeLength = rowKey.length - Bytes.SIZEOF_LONG - DOT.length;
+          if (name == null || typeLength < 0 || rowKey[typeLength] != DOT[0]) {
+            continue;
+          }
+          cacheMapping(new EntityName(Bytes.toString(rowKey, 0, typeLength), Bytes.toString(name)),
+                       Bytes.toLong(rowKey, typeLength + DOT.length));
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Reports cache hits and misses since the last call to the metrics collector, if one is set.
+   */
+  public void reportCacheStats() {
+    MetricsCollector metrics = this.metrics;
+    if (metrics == null) {
+      return;
+    }
+    long hits;
+    long misses;
+    synchronized (this) {
+      // take the snapshot while holding the lock, so that a concurrent report cannot record a newer snapshot
+      // before this one, which would make the deltas negative
+      CacheStats stats = entityCache.stats().plus(idCache.stats());
+      hits = stats.hitCount() - reportedHits;
+      misses = stats.missCount() - reportedMisses;
+      reportedHits = stats.hitCount();
+      reportedMisses = stats.missCount();
+    }
+    if (hits > 0) {
+      metrics.increment(CACHE_HIT_METRIC, hits);
+    }
+    if (misses > 0) {
+      metrics.increment(CACHE_MISS_METRIC, misses);
+    }
+  }
+
+  private void reportCacheStatsPeriodically() {
+    if (metrics == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (now >= nextCacheStatsReportTime) {
+      // concurrent lookups may both report, which is fine as each report only has the hits and misses since the last
+      nextCacheStatsReportTime = now + CACHE_STATS_REPORT_INTERVAL_MILLIS;
+      reportCacheStats();
     }
   }
 
@@ -131,61 +297,74 @@ public final class EntityTable implements Closeable {
     return new CacheLoader<EntityName, Long>() {
       @Override
       public Long load(EntityName key) throws Exception {
-        byte[] rowKey = Bytes.toBytes(key.getType() + '.' + key.getName());
-
-        byte[] result = table.get(rowKey, ID);
-
-        // Found, return it
-        if (result != null) {
-          return Bytes.toLong(result);
+        synchronized (tableLock) {
+          return loadId(key);
         }
+      }
+    };
+  }
 
-        // Not found, generate a new ID
-        byte[] maxIdRowKey = Bytes.toBytes(key.getType() + ".maxId");
-        long newId = table.incrementAndGet(maxIdRowKey, MAX_ID, 1L);
-
-        /* we recycle the id's after reaching max-id to let the id's start from 1 again.
-        this most likely won't happen for any entity other than run-id,
-        Even for run-id - its okay to recycle, as we would have truncated the old data when we reach 16777215 runs,
-        as our max TTL is 30 days currently. The reasoning is the likelihood for running 16777215 programs
-        under 30 days is low. For mapping the id -> name , we use (id % maxId) */
-        if (newId % maxId == 0) {
-          newId = 1L;
-          table.swap(maxIdRowKey, MAX_ID, Bytes.toBytes(maxId), Bytes.toBytes(newId));
-        }
+  /**
+   * Returns the id of the given name from the table, assigning a new one if there is none. Must be called while
+   * holding the table lock.
+   */
+  private long loadId(EntityName key) {
+    // the name has an id from now on, whether it is found or assigned
+    missingEntityCache.invalidate(key);
+    byte[] rowKey = getRowKey(key);
 
-        if (key.getName() == null || key.getName().isEmpty()) {
-          LOG.warn("Adding mapping for " + (key.getName() == null ? "null" : "empty") + " name, " +
-                     " with type " + key.getType() + ", new id is " + newId);
-        }
+    byte[] result = table.get(rowKey, ID);
 
-        // Save the mapping
-        if (table.swap(rowKey, ID, null, Bytes.toBytes(newId))) {
-          // Save the reverse mapping from r.type.id => name as well
-          rowKey = Bytes.concat(Bytes.toBytes(key.getType()), DOT, Bytes.toBytes(newId));
-
-          // It is wrong to have forward mapping set when reverse mapping failed to set, always try to overwrite it.
-          byte[] oldName = null;
-          while (!table.swap(rowKey, NAME, oldName, Bytes.toBytes(key.getName()))) {
-            result = table.get(rowKey, NAME);
-            if (result == null) {
-              throw new IllegalStateException("Fail to set reverse mapping from id to name.");
-            }
-            oldName = result;
-          }
+    // Found, return it
+    if (result != null) {
+      return Bytes.toLong(result);
+    }
 
-          return newId;
-        }
+    // Not found, generate a new ID
+    byte[] maxIdRowKey = Bytes.toBytes(key.getType() + ".maxId");
+    long newId = table.incrementAndGet(maxIdRowKey, MAX_ID, 1L);
+
+    /* we recycle the id's after reaching max-id to let the id's start from 1 again.
+    this most likely won't happen for any entity other than run-id,
+    Even for run-id - its okay to recycle, as we would have truncated the old data when we reach 16777215 runs,
+    as our max TTL is 30 days currently. The reasoning is the likelihood for running 16777215 programs
+    under 30 days is low. For mapping the id -> name , we use (id % maxId) */
+    if (newId % maxId == 0) {
+      newId = 1L;
+      table.swap(maxIdRowKey, MAX_ID, Bytes.toBytes(maxId), Bytes.toBytes(newId));
+    }
 
-        // Get the value if CAS failed.
-        result = table.get(rowKey, ID);
+    if (key.getName() == null || key.getName().isEmpty()) {
+      LOG.warn("Adding mapping for " + (key.getName() == null ? "null" : "empty") + " name, " +
+                 " with type " + key.getType() + ", new id is " + newId);
+    }
 
+    // Save the mapping
+    if (table.swap(rowKey, ID, null, Bytes.toBytes(newId))) {
+      // Save the reverse mapping from r.type.id => name as well
+      rowKey = Bytes.concat(Bytes.toBytes(key.getType()), DOT, Bytes.toBytes(newId));
+
+      // It is wrong to have forward mapping set when reverse mapping failed to set, always try to overwrite it.
+      byte[] oldName = null;
+      while (!table.swap(rowKey, NAME, oldName, Bytes.toBytes(key.getName()))) {
+        result = table.get(rowKey, NAME);
         if (result == null) {
-          throw new IllegalStateException("ID not found for " + key);
+          throw new IllegalStateException("Fail to set reverse mapping from id to name.");
         }
-        return Bytes.toLong(result);
+        oldName = result;
       }
-    };
+
+      cacheReverseMapping(key, newId);
+      return newId;
+    }
+
+    // Get the value if CAS failed.
+    result = table.get(rowKey, ID);
+
+    if (result == null) {
+      throw new IllegalStateException("ID not found for " + key);
+    }
+    return Bytes.toLong(result);
   }
 
   private CacheLoader<EntityId, EntityName> createIdCacheLoader() {
@@ -194,15 +373,37 @@ public final class EntityTable implements Closeable {
       public EntityName load(EntityId key) throws Exception {
         // Lookup the reverse mapping
         byte[] rowKey = Bytes.concat(Bytes.toBytes(key.getType()), DOT, Bytes.toBytes(key.getId()));
-        byte[] result = table.get(rowKey, NAME);
+        byte[] result;
+        synchronized (tableLock) {
+          result = table.get(rowKey, NAME);
+        }
         if (result == null) {
           throw new IllegalArgumentException("Entity name not found for type " + key.getType() + ", id " + key.getId());
         }
-        return new EntityName(key.getType(), Bytes.toString(result));
+        EntityName name = new EntityName(key.getType(), Bytes.toString(result));
+        // The id has been reassigned to this name last, hence it is also the id of the name
+        entityCache.put(name, key.getId());
+        return name;
       }
     };
   }
 
+  private byte[] getRowKey(EntityName name) {
+    return Bytes.toBytes(name.getType() + '.' + name.getName());
+  }
+
+  private void cacheMapping(EntityName name, long id) {
+    entityCache.put(name, id);
+    cacheReverseMapping(name, id);
+  }
+
+  private void cacheReverseMapping(EntityName name, long id) {
+    // Reverse mappings are only stored for ids within range, see getName
+    if (id < maxId) {
+      idCache.put(new EntityId(id, name.getType()), name);
+    }
+  }
+
   static int computeSize() {
     return computeSize(MAX_ID_COUNT);
   }
@@ -221,7 +422,9 @@ public final class EntityTable implements Closeable {
 
   @Override
   public void close() throws IOException {
-    table.close();
+    synchronized (tableLock) {
+      table.close();
+    }
   }
 
   /**
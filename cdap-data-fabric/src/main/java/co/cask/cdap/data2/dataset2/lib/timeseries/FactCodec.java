@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Helper for serde of Fact into columnar format.
@@ -62,7 +63,7 @@ public class FactCodec {
    */
   public byte[] createRowKey(List<DimensionValue> dimensionValues, String measureName, long ts) {
     // "false" would write null in dimension values as "undefined"
-    return createRowKey(dimensionValues, measureName, ts, false, false);
+    return createRowKey(dimensionValues, measureName, ts, false, false, true);
   }
 
   /**
@@ -72,12 +73,14 @@ public class FactCodec {
    * @param ts timestamp
    * @param anyAggGroup if true, then scan matches every aggregation group; if false,
    *                    scan matches only aggregation group defined with list of dimension values
-   * @return row key
+   * @return row key, or {@code null} if any of the dimension values or the measure name was never written,
+   *         in which case no row can match
    */
+  @Nullable
   public byte[] createStartRowKey(List<DimensionValue> dimensionValues, String measureName,
                                   long ts, boolean anyAggGroup) {
     // "false" would write null in dimension values as "undefined"
-    return createRowKey(dimensionValues, measureName, ts, false, anyAggGroup);
+    return createRowKey(dimensionValues, measureName, ts, false, anyAggGroup, false);
   }
 
   /**
@@ -87,16 +90,23 @@ public class FactCodec {
    * @param ts timestamp
    * @param anyAggGroup if true, then scan matches every aggregation group; if false,
    *                    scan matches only aggregation group defined with list of dimension values
-   * @return row key
+   * @return row key, or {@code null} if any of the dimension values or the measure name was never written,
+   *         in which case no row can match
    */
+  @Nullable
   public byte[] createEndRowKey(List<DimensionValue> dimensionValues, String measureName,
                                 long ts, boolean anyAggGroup) {
     // "false" would write null in dimension values as "undefined"
-    return createRowKey(dimensionValues, measureName, ts, true, anyAggGroup);
+    return createRowKey(dimensionValues, measureName, ts, true, anyAggGroup, false);
   }
 
+  /**
+   * @param assignIds if false, no id is assigned to names that don't have one yet and {@code null} is returned
+   *                  instead, as is appropriate for scans
+   */
+  @Nullable
   private byte[] createRowKey(List<DimensionValue> dimensionValues, String measureName, long ts, boolean stopKey,
-                              boolean anyAggGroup) {
+                              boolean anyAggGroup, boolean assignIds) {
     // Row key format:
     // <version><encoded agg group><time base><encoded dimension1 value>...
     //                                                                 <encoded dimensionN value><encoded measure name>.
@@ -109,7 +119,10 @@ public class FactCodec {
     if (anyAggGroup) {
       offset = writeAnyEncoded(rowKey, offset, stopKey);
     } else {
-      offset = writeEncodedAggGroup(dimensionValues, rowKey, offset);
+      offset = writeEncodedAggGroup(dimensionValues, rowKey, offset, assignIds);
+      if (offset < 0) {
+        return null;
+      }
     }
 
     long timestamp = roundToResolution(ts);
@@ -119,7 +132,10 @@ public class FactCodec {
     for (DimensionValue dimensionValue : dimensionValues) {
       if (dimensionValue.getValue() != null) {
         // encoded value is unique within values of the dimension name
-        offset = writeEncoded(dimensionValue.getName(), dimensionValue.getValue(), rowKey, offset);
+        offset = writeEncoded(dimensionValue.getName(), dimensionValue.getValue(), rowKey, offset, assignIds);
+        if (offset < 0) {
+          return null;
+        }
       } else {
         // todo: this is only applicable for constructing scan, throw smth if constructing key for writing data
         // writing "ANY" as a value
@@ -128,7 +144,10 @@ public class FactCodec {
     }
 
     if (measureName != null) {
-      writeEncoded(TYPE_MEASURE_NAME, measureName, rowKey, offset);
+      offset = writeEncoded(TYPE_MEASURE_NAME, measureName, rowKey, offset, assignIds);
+      if (offset < 0) {
+        return null;
+      }
     } else {
       // todo: this is only applicable for constructing scan, throw smth if constructing key for writing data
       // writing "ANY" value
@@ -273,21 +292,31 @@ public class FactCodec {
     return splits;
   }
 
-  private int writeEncodedAggGroup(List<DimensionValue> dimensionValues, byte[] rowKey, int offset) {
+  private int writeEncodedAggGroup(List<DimensionValue> dimensionValues, byte[] rowKey, int offset,
+                                   boolean assignIds) {
     // aggregation group is defined by list of dimension names
     StringBuilder sb = new StringBuilder();
     for (DimensionValue dimensionValue : dimensionValues) {
       sb.append(dimensionValue.getName()).append(".");
     }
 
-    return writeEncoded(TYPE_DIMENSIONS_GROUP, sb.toString(), rowKey, offset);
+    return writeEncoded(TYPE_DIMENSIONS_GROUP, sb.toString(), rowKey, offset, assignIds);
   }
 
   /**
-   * @return incremented offset
+   * @return incremented offset, or -1 if {@code assignIds} is false and the entity has no id
    */
-  private int writeEncoded(String type, String entity, byte[] destination, int offset) {
-    long id = entityTable.getId(type, entity);
+  private int writeEncoded(String type, String entity, byte[] destination, int offset, boolean assignIds) {
+    long id;
+    if (assignIds) {
+      id = entityTable.getId(type, entity);
+    } else {
+      Long existingId = entityTable.findId(type, entity);
+      if (existingId == null) {
+        return -1;
+      }
+      id = existingId;
+    }
     int idSize = entityTable.getIdSize();
     return writeEncoded(destination, offset, id, idSize);
   }
@@ -18,22 +18,55 @@ package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
 
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * An single result item returned by {@link FactScanner}.
+ * <p/>
+ * Data points are kept in primitive arrays; use {@link #size()}, {@link #getTimestamp(int)} and
+ * {@link #getValue(int)} to read them without creating a {@link TimeValue} per data point.
  */
 public final class FactScanResult implements Iterable<TimeValue> {
   private final String measureName;
   private final List<DimensionValue> dimensionValues;
-  private final Iterable<TimeValue> timeValues;
+  private final long[] timestamps;
+  private final long[] values;
+  private final int size;
 
   public FactScanResult(String measureName, List<DimensionValue> dimensionValues, Iterable<TimeValue> timeValues) {
     this.measureName = measureName;
     this.dimensionValues = dimensionValues;
-    this.timeValues = timeValues;
+    int count = 0;
+    for (TimeValue ignored : timeValues) {
+      count++;
+    }
+    this.timestamps = new long[count];
+    this.values = new long[count];
+    this.size = count;
+    int idx = 0;
+    for (TimeValue timeValue : timeValues) {
+      timestamps[idx] = timeValue.getTimestamp();
+      values[idx] = timeValue.getValue();
+      idx++;
+    }
+  }
+
+  /**
+   * Creates a result from the given data points. Only first {@code size} elements of the arrays are used.
+   */
+  public FactScanResult(String measureName, List<DimensionValue> dimensionValues,
+                        long[] timestamps, long[] values, int size) {
+    Preconditions.checkArgument(size <= timestamps.length && size <= values.length,
+                                "Size %s exceeds length of data points arrays", size);
+    this.measureName = measureName;
+    this.dimensionValues = dimensionValues;
+    this.timestamps = timestamps;
+    this.values = values;
+    this.size = size;
   }
 
   public String getMeasureName() {
@@ -44,8 +77,37 @@ public final class FactScanResult implements Iterable<TimeValue> {
     return dimensionValues;
   }
 
+  /**
+   * @return number of data points in this result
+   */
+  public int size() {
+    return size;
+  }
+
+  public long getTimestamp(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return timestamps[index];
+  }
+
+  public long getValue(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return values[index];
+  }
+
   @Override
   public Iterator<TimeValue> iterator() {
-    return timeValues.iterator();
+    return new AbstractIterator<TimeValue>() {
+      private int idx;
+
+      @Override
+      protected TimeValue computeNext() {
+        if (idx >= size) {
+          return endOfData();
+        }
+        TimeValue timeValue = new TimeValue(timestamps[idx], values[idx]);
+        idx++;
+        return timeValue;
+      }
+    };
   }
 }
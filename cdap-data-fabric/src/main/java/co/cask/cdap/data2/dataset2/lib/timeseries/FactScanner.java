@@ -18,12 +18,10 @@ package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
-import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 
 import java.util.Collection;
 import java.util.Iterator;
@@ -107,9 +105,13 @@ public final class FactScanner implements Iterator<FactScanResult> {
           List<DimensionValue> dimensionValues = codec.getDimensionValues(rowKey);
 
           boolean exhausted = false;
-          List<TimeValue> timeValues = Lists.newLinkedList();
+          Map<byte[], byte[]> columns = rowResult.getColumns();
+          // data points are collected into primitive arrays to avoid creating an object per data point
+          long[] timestamps = new long[columns.size()];
+          long[] values = new long[columns.size()];
+          int size = 0;
           // todo: entry set is ordered by ts?
-          for (Map.Entry<byte[], byte[]> columnValue : rowResult.getColumns().entrySet()) {
+          for (Map.Entry<byte[], byte[]> columnValue : columns.entrySet()) {
             long ts = codec.getTimestamp(rowKey, columnValue.getKey());
             if (ts < startTs) {
               continue;
@@ -121,16 +123,17 @@ public final class FactScanner implements Iterator<FactScanResult> {
             }
 
             // todo: move Bytes.toLong into codec?
-            TimeValue timeValue = new TimeValue(ts, Bytes.toLong(columnValue.getValue()));
-            timeValues.add(timeValue);
+            timestamps[size] = ts;
+            values[size] = Bytes.toLong(columnValue.getValue());
+            size++;
           }
 
-          if (timeValues.isEmpty() && exhausted) {
+          if (size == 0 && exhausted) {
             break;
           }
 
           // todo: can return empty list, if all data is < startTs or > endTs
-          return new FactScanResult(measureName, dimensionValues, timeValues);
+          return new FactScanResult(measureName, dimensionValues, timestamps, values, size);
         }
 
         scanner.close();
@@ -57,6 +57,20 @@ public final class FactTable implements Closeable {
   private static final int MAX_RECORDS_TO_SCAN_DURING_SEARCH = 10 * 1000 * 1000;
   private static final int MAX_SCANS_DURING_SEARCH = 10 * 1000;
 
+  // Scanner for scans that cannot match any row
+  private static final Scanner EMPTY_SCANNER = new Scanner() {
+    @Nullable
+    @Override
+    public Row next() {
+      return null;
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  };
+
   private static final Function<byte[], Long> BYTES_TO_LONG = new Function<byte[], Long>() {
     @Override
     public Long apply(byte[] input) {
@@ -112,6 +126,7 @@ public final class FactTable implements Closeable {
 
   public void setMetricsCollector(MetricsCollector metrics) {
     this.metrics = metrics;
+    entityTable.setMetricsCollector(metrics);
   }
 
   public void add(List<Fact> facts) {
@@ -156,6 +171,10 @@ public final class FactTable implements Closeable {
 
     byte[] startRow = codec.createStartRowKey(scan.getDimensionValues(), measureName, scan.getStartTs(), false);
     byte[] endRow = codec.createEndRowKey(scan.getDimensionValues(), measureName, scan.getEndTs(), false);
+    if (startRow == null || endRow == null) {
+      // some of the values were never written
+      return EMPTY_SCANNER;
+    }
     byte[][] columns;
     if (Arrays.equals(startRow, endRow)) {
       // If on the same timebase, we only need subset of columns
@@ -263,6 +282,10 @@ public final class FactTable implements Closeable {
     // build a scan
     byte[] startRow = codec.createStartRowKey(allDimensions, null, startTs, false);
     byte[] endRow = codec.createEndRowKey(allDimensions, null, endTs, false);
+    if (startRow == null || endRow == null) {
+      // some of the values were never written
+      return Collections.emptySet();
+    }
     endRow = Bytes.stopKeyForPrefix(endRow);
     FuzzyRowFilter fuzzyRowFilter =
       createFuzzyRowFilter(new FactScan(startTs, endTs, ImmutableList.<String>of(), allDimensions), startRow);
@@ -346,6 +369,10 @@ public final class FactTable implements Closeable {
 
     byte[] startRow = codec.createStartRowKey(allDimensions, null, startTs, false);
     byte[] endRow = codec.createEndRowKey(allDimensions, null, endTs, false);
+    if (startRow == null || endRow == null) {
+      // some of the values were never written
+      return Collections.emptySet();
+    }
     endRow = Bytes.stopKeyForPrefix(endRow);
     FuzzyRowFilter fuzzyRowFilter =
       createFuzzyRowFilter(new FactScan(startTs, endTs, ImmutableList.<String>of(), allDimensions), startRow);
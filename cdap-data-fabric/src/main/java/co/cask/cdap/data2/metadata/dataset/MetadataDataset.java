@@ -524,33 +524,14 @@ public class MetadataDataset extends AbstractDataset {
    * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
    */
   public List<MetadataEntry> search(String namespaceId, String searchQuery, Set<MetadataSearchTargetType> types) {
-    boolean includeAllTypes = types.isEmpty() || types.contains(MetadataSearchTargetType.ALL);
     List<MetadataEntry> results = new ArrayList<>();
     for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
-      Scanner scanner;
-      if (searchTerm.endsWith("*")) {
-        // if prefixed search get start and stop key
-        byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
-        byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
-        scanner = indexedTable.scanByIndex(Bytes.toBytes(INDEX_COLUMN), startKey, stopKey);
-      } else {
-        byte[] value = Bytes.toBytes(searchTerm);
-        scanner = indexedTable.readByIndex(Bytes.toBytes(INDEX_COLUMN), value);
-      }
-      try {
+      try (Scanner scanner = getSearchScanner(searchTerm)) {
         Row next;
         while ((next = scanner.next()) != null) {
-          String rowValue = next.getString(INDEX_COLUMN);
-          if (rowValue == null) {
-            continue;
-          }
-
-          final byte[] rowKey = next.getRow();
+          byte[] rowKey = next.getRow();
           String targetType = MdsKey.getTargetType(rowKey);
-
-          // Filter on target type if not set to include all types
-          if (!includeAllTypes &&
-            !types.contains(MetadataSearchTargetType.valueOfSerializedForm(targetType))) {
+          if (!isSearchHit(next, targetType, types)) {
             continue;
           }
 
@@ -559,13 +540,63 @@ public class MetadataDataset extends AbstractDataset {
           MetadataEntry entry = getMetadata(targetId, key);
           results.add(entry);
         }
-      } finally {
-        scanner.close();
       }
     }
     return results;
   }
 
+  /**
+   * Searches entities that match the specified search query in the specified namespace and {@link Id.Namespace#SYSTEM}
+   * for the specified {@link MetadataSearchTargetType}, and counts the number of index hits for each of them.
+   * Only the index is read, which makes this cheaper than {@link #search(String, String, Set)} when the
+   * metadata values are not needed.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value] and can have '*'
+   *                    at the end for a prefix search
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @return a map from the matched entities to the number of index hits for them
+   */
+  public Map<Id.NamespacedId, Integer> searchTargets(String namespaceId, String searchQuery,
+                                                     Set<MetadataSearchTargetType> types) {
+    Map<Id.NamespacedId, Integer> results = new HashMap<>();
+    for (String searchTerm : getSearchTerms(namespaceId, searchQuery)) {
+      try (Scanner scanner = getSearchScanner(searchTerm)) {
+        Row next;
+        while ((next = scanner.next()) != null) {
+          byte[] rowKey = next.getRow();
+          String targetType = MdsKey.getTargetType(rowKey);
+          if (!isSearchHit(next, targetType, types)) {
+            continue;
+          }
+          Id.NamespacedId targetId = MdsKey.getNamespacedIdFromKey(targetType, rowKey);
+          Integer score = results.get(targetId);
+          results.put(targetId, score == null ? 1 : score + 1);
+        }
+      }
+    }
+    return results;
+  }
+
+  private Scanner getSearchScanner(String searchTerm) {
+    if (searchTerm.endsWith("*")) {
+      // if prefixed search get start and stop key
+      byte[] startKey = Bytes.toBytes(searchTerm.substring(0, searchTerm.lastIndexOf("*")));
+      byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
+      return indexedTable.scanByIndex(Bytes.toBytes(INDEX_COLUMN), startKey, stopKey);
+    }
+    return indexedTable.readByIndex(Bytes.toBytes(INDEX_COLUMN), Bytes.toBytes(searchTerm));
+  }
+
+  private boolean isSearchHit(Row indexRow, String targetType, Set<MetadataSearchTargetType> types) {
+    if (indexRow.getString(INDEX_COLUMN) == null) {
+      return false;
+    }
+    // Filter on target type if not set to include all types
+    return types.isEmpty() || types.contains(MetadataSearchTargetType.ALL) ||
+      types.contains(MetadataSearchTargetType.valueOfSerializedForm(targetType));
+  }
+
   /**
    * Prepares search terms from the specified search query by
    * <ol>
@@ -19,6 +19,7 @@ package co.cask.cdap.data2.metadata.store;
 import co.cask.cdap.api.dataset.DatasetDefinition;
 import co.cask.cdap.api.dataset.DatasetManagementException;
 import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data2.audit.AuditPublisher;
 import co.cask.cdap.data2.audit.AuditPublishers;
@@ -36,13 +37,17 @@ import co.cask.cdap.proto.audit.AuditType;
 import co.cask.cdap.proto.metadata.MetadataChangeRecord;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
 import co.cask.tephra.TransactionExecutor;
 import co.cask.tephra.TransactionExecutorFactory;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
@@ -74,13 +79,13 @@ public class DefaultMetadataStore implements MetadataStore {
   private static final Map<String, String> EMPTY_PROPERTIES = ImmutableMap.of();
   private static final Set<String> EMPTY_TAGS = ImmutableSet.of();
   private static final int BATCH_SIZE = 1000;
+  private static final String SEARCH_CURSOR_SEPARATOR = ":";
 
   private static final Comparator<Map.Entry<Id.NamespacedId, Integer>> SEARCH_RESULT_DESC_SCORE_COMPARATOR =
     new Comparator<Map.Entry<Id.NamespacedId, Integer>>() {
       @Override
       public int compare(Map.Entry<Id.NamespacedId, Integer> o1, Map.Entry<Id.NamespacedId, Integer> o2) {
-        // sort in descending order
-        return o2.getValue() - o1.getValue();
+        return compareSearchResults(o1.getValue(), o1.getKey().toString(), o2.getValue(), o2.getKey().toString());
       }
     };
 
@@ -375,22 +380,8 @@ public class DefaultMetadataStore implements MetadataStore {
   public Set<MetadataSearchResultRecord> searchMetadataOnType(final MetadataScope scope, final String namespaceId,
                                                               final String searchQuery,
                                                               final Set<MetadataSearchTargetType> types) {
-    // Execute search query
-    Iterable<MetadataEntry> results = execute(new TransactionExecutor.Function<MetadataDataset,
-      Iterable<MetadataEntry>>() {
-      @Override
-      public Iterable<MetadataEntry> apply(MetadataDataset input) throws Exception {
-        return input.search(namespaceId, searchQuery, types);
-      }
-    }, scope);
-
-    // Score results
-    final Map<Id.NamespacedId, Integer> weightedResults = new HashMap<>();
-    for (MetadataEntry metadataEntry : results) {
-      Integer score = weightedResults.get(metadataEntry.getTargetId());
-      score = score == null ? 0 : score;
-      weightedResults.put(metadataEntry.getTargetId(), score + 1);
-    }
+    // Execute search query, results are scored by the number of index hits
+    Map<Id.NamespacedId, Integer> weightedResults = searchTargets(scope, namespaceId, searchQuery, types);
 
     // Sort the results by score
     List<Map.Entry<Id.NamespacedId, Integer>> resultList = new ArrayList<>(weightedResults.entrySet());
@@ -405,6 +396,93 @@ public class DefaultMetadataStore implements MetadataStore {
     return addMetadataToResults(resultList, systemMetadata, userMetadata);
   }
 
+  @Override
+  public MetadataSearchResponse searchMetadataOnType(String namespaceId, String searchQuery,
+                                                     Set<MetadataSearchTargetType> types,
+                                                     int limit, @Nullable String cursor,
+                                                     Predicate<Id.NamespacedId> entityFilter) {
+    Preconditions.checkArgument(limit > 0, "Limit of search results must be positive: %s", limit);
+
+    // Score matched entities in both scopes by the number of index hits. Only the index is read for that.
+    // Ranking needs every match, so the index is scanned for each page.
+    Map<Id.NamespacedId, Integer> weightedResults = searchTargets(MetadataScope.USER, namespaceId, searchQuery, types);
+    for (Map.Entry<Id.NamespacedId, Integer> entry :
+      searchTargets(MetadataScope.SYSTEM, namespaceId, searchQuery, types).entrySet()) {
+      Integer score = weightedResults.get(entry.getKey());
+      weightedResults.put(entry.getKey(), score == null ? entry.getValue() : score + entry.getValue());
+    }
+
+    // Only keep the results of the requested page, plus one to tell whether there are more pages
+    ImmutablePair<Integer, String> after = cursor == null ? null : decodeSearchCursor(cursor);
+    MinMaxPriorityQueue<Map.Entry<Id.NamespacedId, Integer>> page =
+      MinMaxPriorityQueue.orderedBy(SEARCH_RESULT_DESC_SCORE_COMPARATOR)
+        .maximumSize((int) Math.min((long) limit + 1, Integer.MAX_VALUE))
+        .create();
+    int total = 0;
+    for (Map.Entry<Id.NamespacedId, Integer> entry : weightedResults.entrySet()) {
+      // Filter before paging, so that pages and the total only count the entities that can be returned
+      if (!entityFilter.apply(entry.getKey())) {
+        continue;
+      }
+      total++;
+      if (after == null ||
+        compareSearchResults(entry.getValue(), entry.getKey().toString(), after.getFirst(), after.getSecond()) > 0) {
+        page.add(entry);
+      }
+    }
+
+    List<Map.Entry<Id.NamespacedId, Integer>> resultList = new ArrayList<>(Math.min(limit, page.size()));
+    Set<Id.NamespacedId> resultIds = new HashSet<>();
+    while (!page.isEmpty() && resultList.size() < limit) {
+      Map.Entry<Id.NamespacedId, Integer> entry = page.pollFirst();
+      resultList.add(entry);
+      resultIds.add(entry.getKey());
+    }
+    String nextCursor = page.isEmpty() ? null : encodeSearchCursor(resultList.get(resultList.size() - 1));
+
+    // Fetch metadata only for entities in the page
+    Map<Id.NamespacedId, Metadata> systemMetadata = fetchMetadata(resultIds, MetadataScope.SYSTEM);
+    Map<Id.NamespacedId, Metadata> userMetadata = fetchMetadata(resultIds, MetadataScope.USER);
+
+    return new MetadataSearchResponse(addMetadataToResults(resultList, systemMetadata, userMetadata),
+                                      total, nextCursor);
+  }
+
+  private Map<Id.NamespacedId, Integer> searchTargets(MetadataScope scope, final String namespaceId,
+                                                      final String searchQuery,
+                                                      final Set<MetadataSearchTargetType> types) {
+    return execute(new TransactionExecutor.Function<MetadataDataset, Map<Id.NamespacedId, Integer>>() {
+      @Override
+      public Map<Id.NamespacedId, Integer> apply(MetadataDataset input) throws Exception {
+        return input.searchTargets(namespaceId, searchQuery, types);
+      }
+    }, scope);
+  }
+
+  /**
+   * Orders search results by descending score, and then by entity id, so that pages are stable.
+   */
+  private static int compareSearchResults(int score1, String entityId1, int score2, String entityId2) {
+    int cmp = Integer.compare(score2, score1);
+    return cmp != 0 ? cmp : entityId1.compareTo(entityId2);
+  }
+
+  /**
+   * Cursor of a page is formed by the score and the entity id of its last result.
+   */
+  private static String encodeSearchCursor(Map.Entry<Id.NamespacedId, Integer> lastResult) {
+    return lastResult.getValue() + SEARCH_CURSOR_SEPARATOR + lastResult.getKey().toString();
+  }
+
+  private static ImmutablePair<Integer, String> decodeSearchCursor(String cursor) {
+    int idx = cursor.indexOf(SEARCH_CURSOR_SEPARATOR);
+    try {
+      return ImmutablePair.of(Integer.parseInt(cursor.substring(0, idx)), cursor.substring(idx + 1));
+    } catch (IndexOutOfBoundsException | NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid search cursor: " + cursor, e);
+    }
+  }
+
   private Map<Id.NamespacedId, Metadata> fetchMetadata(final Set<Id.NamespacedId> entityIds, MetadataScope scope) {
     Set<Metadata> metadataSet =
       execute(new TransactionExecutor.Function<MetadataDataset, Set<Metadata>>() {
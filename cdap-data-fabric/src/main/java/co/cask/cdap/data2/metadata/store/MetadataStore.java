@@ -21,8 +21,10 @@ import co.cask.cdap.data2.metadata.indexer.Indexer;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import com.google.common.base.Predicate;
 
 import java.util.Map;
 import java.util.Set;
@@ -197,6 +199,22 @@ public interface MetadataStore {
   Set<MetadataSearchResultRecord> searchMetadataOnType(MetadataScope scope, String namespaceId, String searchQuery,
                                                        Set<MetadataSearchTargetType> types);
 
+  /**
+   * Search the Metadata Dataset for the specified target types in both {@link MetadataScope#USER} and
+   * {@link MetadataScope#SYSTEM}, returning a single page of results ordered by relevance.
+   *
+   * @param namespaceId the namespace to search in
+   * @param searchQuery the search query, which could be of two forms: [key]:[value] or just [value]
+   * @param types the {@link MetadataSearchTargetType} to restrict the search to, if empty all types are searched
+   * @param limit the maximum number of results to return
+   * @param cursor the cursor returned with the previous page, or {@code null} to get the first page
+   * @param entityFilter only entities accepted by this filter are counted and returned. It is applied before
+   *                     paging, so that pages are full as long as there are more accepted results
+   */
+  MetadataSearchResponse searchMetadataOnType(String namespaceId, String searchQuery,
+                                              Set<MetadataSearchTargetType> types, int limit, @Nullable String cursor,
+                                              Predicate<Id.NamespacedId> entityFilter);
+
   /**
    * Returns the snapshot of the metadata for entities on or before the given time in both {@link MetadataScope#USER}
    * and {@link MetadataScope#SYSTEM}.
@@ -32,7 +32,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import org.slf4j.Logger;
@@ -218,6 +220,9 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
       claimedStateValue = encodeStateColumn(ConsumerEntryState.CLAIMED);
     }
 
+    // Rows claimed by this dequeue call, so that they won't be claimed again
+    Set<byte[]> claimedRows = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+
     boolean isReachedDequeueTimeLimit = false;
     Stopwatch stopwatch = new Stopwatch();
     stopwatch.start();
@@ -231,24 +236,22 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
       // For FIFO, need to try claiming the entry if group size > 1
       if (getConfig().getDequeueStrategy() == DequeueStrategy.FIFO && getConfig().getGroupSize() > 1) {
-        Iterator<Map.Entry<byte[], SimpleQueueEntry>> iterator = consumingEntries.entrySet().iterator();
-        while (iterator.hasNext()) {
-          SimpleQueueEntry entry = iterator.next().getValue();
-
-          if (entry.getState() == null ||
-            QueueEntryRow.getStateInstanceId(entry.getState()) >= getConfig().getGroupSize()) {
-            // If not able to claim it, remove it, and move to next one.
-            if (!claimEntry(entry.getRowKey(), claimedStateValue)) {
-              iterator.remove();
-            }
-
-            if (stopwatch.elapsedMillis() >= maxDequeueMillis) {
-              break;
+        List<byte[]> claimRows = Lists.newArrayList();
+        for (SimpleQueueEntry entry : consumingEntries.values()) {
+          if (!claimedRows.contains(entry.getRowKey()) && (entry.getState() == null ||
+            QueueEntryRow.getStateInstanceId(entry.getState()) >= getConfig().getGroupSize())) {
+            claimRows.add(entry.getRowKey());
+          }
+        }
+        if (!claimRows.isEmpty()) {
+          claimedRows.addAll(claimEntries(claimRows, claimedStateValue, stopwatch));
+          // Entries that are not claimed by this consumer cannot be consumed, remove them.
+          for (byte[] rowKey : claimRows) {
+            if (!claimedRows.contains(rowKey)) {
+              consumingEntries.remove(rowKey);
             }
           }
         }
-        // Drain the iterator in case of dequeue time limit reached
-        Iterators.advance(iterator, Integer.MAX_VALUE);
       }
 
       if (stopwatch.elapsedMillis() >= maxDequeueMillis) {
@@ -277,6 +280,37 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return new SimpleDequeueResult(consumingEntries.values());
   }
 
+  /**
+   * Returns the maximum amount of time in milliseconds to spend in a dequeue call.
+   */
+  protected final long getMaxDequeueMillis() {
+    return maxDequeueMillis;
+  }
+
+  /**
+   * Claims the given entries for this consumer. The default implementation claims the entries one by one with
+   * {@link #claimEntry(byte[], byte[])} and stops once the dequeue time limit is reached. Implementations that
+   * can claim multiple entries with fewer round trips should override this method.
+   *
+   * @param rowKeys row keys of the entries to claim
+   * @param claimedStateValue the state content to write for the claimed entries
+   * @param stopwatch the stopwatch that measures the time spent in the current dequeue
+   * @return row keys of the entries that are successfully claimed
+   */
+  protected Collection<byte[]> claimEntries(List<byte[]> rowKeys, byte[] claimedStateValue,
+                                            Stopwatch stopwatch) throws IOException {
+    List<byte[]> claimed = Lists.newArrayListWithCapacity(rowKeys.size());
+    for (byte[] rowKey : rowKeys) {
+      if (claimEntry(rowKey, claimedStateValue)) {
+        claimed.add(rowKey);
+      }
+      if (stopwatch.elapsedMillis() >= maxDequeueMillis) {
+        break;
+      }
+    }
+    return claimed;
+  }
+
   /**
    * Try to dequeue (claim) entries up to a maximum size.
    * @param entries For claimed entries to fill in.
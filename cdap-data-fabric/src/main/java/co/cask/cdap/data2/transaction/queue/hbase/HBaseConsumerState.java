@@ -30,13 +30,15 @@ public final class HBaseConsumerState {
   private final byte[] startRow;
   private final byte[] previousBarrier;
   private final byte[] nextBarrier;
+  private final int distributorBuckets;
 
   HBaseConsumerState(ConsumerConfig consumerConfig, byte[] startRow,
-                     @Nullable byte[] previousBarrier, @Nullable byte[] nextBarrier) {
+                     @Nullable byte[] previousBarrier, @Nullable byte[] nextBarrier, int distributorBuckets) {
     this.consumerConfig = consumerConfig;
     this.startRow = startRow;
     this.previousBarrier = previousBarrier;
     this.nextBarrier = nextBarrier;
+    this.distributorBuckets = distributorBuckets;
   }
 
   public ConsumerConfig getConsumerConfig() {
@@ -57,6 +59,14 @@ public final class HBaseConsumerState {
     return nextBarrier;
   }
 
+  /**
+   * Returns the number of row key distributor buckets of the entries this consumer reads, or {@code 0} if
+   * the number of buckets stored in the queue table should be used.
+   */
+  public int getDistributorBuckets() {
+    return distributorBuckets;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
@@ -64,6 +74,7 @@ public final class HBaseConsumerState {
       .add("start", Bytes.toStringBinary(startRow))
       .add("previousBarrier", Bytes.toStringBinary(previousBarrier))
       .add("nextBarrier", Bytes.toStringBinary(nextBarrier))
+      .add("buckets", distributorBuckets)
       .toString();
   }
 }
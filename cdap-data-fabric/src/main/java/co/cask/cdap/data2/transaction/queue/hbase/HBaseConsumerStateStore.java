@@ -43,6 +43,9 @@ import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -61,6 +64,9 @@ import javax.annotation.Nullable;
 public final class HBaseConsumerStateStore extends AbstractDataset implements QueueConfigurer {
 
   private static final Gson GSON = new Gson();
+  private static final JsonParser JSON_PARSER = new JsonParser();
+  // Name of the json field in the barrier info for the number of row key distributor buckets
+  private static final String DISTRIBUTOR_BUCKETS = "distributorBuckets";
 
   private final QueueName queueName;
   private final Table table;
@@ -117,7 +123,8 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
     return new HBaseConsumerState(consumerConfig,
                                   consumerState.getConsumerStartRow(),
                                   previousBarrier == null ? null : previousBarrier.getStartRow(),
-                                  nextBarrier == null ? null : nextBarrier.getStartRow());
+                                  nextBarrier == null ? null : nextBarrier.getStartRow(),
+                                  previousBarrier == null ? 0 : previousBarrier.getDistributorBuckets());
   }
 
   /**
@@ -235,7 +242,8 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
 
     byte[] startRow = QueueEntryRow.getQueueEntryRowKey(queueName, transaction.getWritePointer(), 0);
     Put put = new Put(Bytes.add(queueName.toBytes(), startRow));
-    put.add(Bytes.toBytes(groupConfig.getGroupId()), GSON.toJson(groupConfig));
+    put.add(Bytes.toBytes(groupConfig.getGroupId()),
+            encodeBarrierInfo(groupConfig, queueBarrier.getDistributorBuckets()));
     table.put(put);
 
     // For instances that don't have start row, set the start row to barrier start row
@@ -285,7 +293,6 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
       if (!groupsIds.add(groupId)) {
         throw new IllegalArgumentException("Same consumer group is provided multiple times");
       }
-      put.add(Bytes.toBytes(groupId), GSON.toJson(groupConfig));
 
       // For new instance, set the start row to barrier start row
       for (int instanceId = 0; instanceId < groupConfig.getGroupSize(); instanceId++) {
@@ -302,6 +309,8 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
     // Also remove barriers that have all consumers consumed pass that barrier
     // Multimap from groupId to barrier start rows. Ordering need to be maintained as the scan order.
     Multimap<Long, byte[]> deletes = LinkedHashMultimap.create();
+    // The number of distributor buckets recorded by the last barrier of each group, which is retained
+    Map<Long, Integer> distributorBuckets = Maps.newHashMap();
     try (Scanner scanner = table.scan(barrierScanStartRow, barrierScanEndRow)) {
       Row row = scanner.next();
       while (row != null) {
@@ -314,6 +323,7 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
             continue;
           }
           long groupId = barrier.getGroupConfig().getGroupId();
+          distributorBuckets.put(groupId, barrier.getDistributorBuckets());
           boolean delete = true;
           // Check if all instances in a group has consumed passed the current barrier
           for (int instanceId = 0; instanceId < barrier.getGroupConfig().getGroupSize(); instanceId++) {
@@ -345,6 +355,35 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
       }
     }
 
+    for (ConsumerGroupConfig groupConfig : groupConfigs) {
+      Integer buckets = distributorBuckets.get(groupConfig.getGroupId());
+      put.add(Bytes.toBytes(groupConfig.getGroupId()), encodeBarrierInfo(groupConfig, buckets == null ? 0 : buckets));
+    }
+    table.put(put);
+  }
+
+  /**
+   * Changes the number of row key distributor buckets for queue entries of the given consumer group. Similar to
+   * {@link #configureInstances(long, int)}, this writes a new barrier, hence it should only be called when
+   * the producers of the queue are suspended. Existing entries are still consumed with the number of buckets
+   * recorded by the barriers they were enqueued after.
+   *
+   * @param groupId consumer group to change
+   * @param distributorBuckets number of buckets, in the range of [1, 256]
+   */
+  public void configureDistributorBuckets(long groupId, int distributorBuckets) {
+    Preconditions.checkArgument(distributorBuckets >= 1 && distributorBuckets <= 256,
+                                "Number of distributor buckets should be in [1..256] range: %s", distributorBuckets);
+    List<QueueBarrier> queueBarriers = getAllBarriers(groupId);
+    Preconditions.checkState(!queueBarriers.isEmpty(), "No queue configuration found for group %s", groupId);
+    QueueBarrier queueBarrier = queueBarriers.get(queueBarriers.size() - 1);
+    if (queueBarrier.getDistributorBuckets() == distributorBuckets) {
+      return;
+    }
+
+    byte[] startRow = QueueEntryRow.getQueueEntryRowKey(queueName, transaction.getWritePointer(), 0);
+    Put put = new Put(Bytes.add(queueName.toBytes(), startRow));
+    put.add(Bytes.toBytes(groupId), encodeBarrierInfo(queueBarrier.getGroupConfig(), distributorBuckets));
     table.put(put);
   }
 
@@ -378,6 +417,23 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
       LinkedHashMultimap.<Long, QueueBarrier>create());
   }
 
+  /**
+   * Gets the number of row key distributor buckets recorded by the latest barrier of each consumer group.
+   * Groups whose latest barrier doesn't record it are not included.
+   */
+  Map<Long, Integer> getLatestDistributorBuckets() {
+    Map<Long, Integer> result = Maps.newHashMap();
+    for (Map.Entry<Long, QueueBarrier> entry : getAllBarriers().entries()) {
+      int buckets = entry.getValue().getDistributorBuckets();
+      if (buckets > 0) {
+        result.put(entry.getKey(), buckets);
+      } else {
+        result.remove(entry.getKey());
+      }
+    }
+    return result;
+  }
+
   void getLatestConsumerGroups(Collection<? super ConsumerGroupConfig> result) {
     try (Scanner scanner = table.scan(barrierScanStartRow, barrierScanEndRow)) {
       // Get the last row
@@ -393,7 +449,7 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
       }
 
       for (Map.Entry<byte[], byte[]> entry : lastRow.getColumns().entrySet()) {
-        result.add(GSON.fromJson(new String(entry.getValue(), Charsets.UTF_8), ConsumerGroupConfig.class));
+        result.add(decodeBarrierInfo(lastRow.getRow(), entry.getValue()).getGroupConfig());
       }
     }
   }
@@ -541,9 +597,25 @@ public final class HBaseConsumerStateStore extends AbstractDataset implements Qu
     if (groupInfo == null) {
       return null;
     }
-    ConsumerGroupConfig groupConfig = GSON.fromJson(new String(groupInfo, Charsets.UTF_8), ConsumerGroupConfig.class);
+    JsonObject json = JSON_PARSER.parse(new String(groupInfo, Charsets.UTF_8)).getAsJsonObject();
+    ConsumerGroupConfig groupConfig = GSON.fromJson(json, ConsumerGroupConfig.class);
+    // The number of buckets is absent for barriers written before it was recorded
+    JsonElement buckets = json.get(DISTRIBUTOR_BUCKETS);
     byte[] startRow = Arrays.copyOfRange(rowKey, queueName.toBytes().length, rowKey.length);
-    return new QueueBarrier(groupConfig, startRow);
+    return new QueueBarrier(groupConfig, startRow, buckets == null ? 0 : buckets.getAsInt());
+  }
+
+  /**
+   * Encodes the consumer group config and the number of distributor buckets of a barrier. The number of buckets
+   * is stored as an extra field of the group config json, so that the value can still be decoded as a
+   * {@link ConsumerGroupConfig}.
+   */
+  private String encodeBarrierInfo(ConsumerGroupConfig groupConfig, int distributorBuckets) {
+    JsonObject json = GSON.toJsonTree(groupConfig).getAsJsonObject();
+    if (distributorBuckets > 0) {
+      json.addProperty(DISTRIBUTOR_BUCKETS, distributorBuckets);
+    }
+    return GSON.toJson(json);
   }
 
   /**
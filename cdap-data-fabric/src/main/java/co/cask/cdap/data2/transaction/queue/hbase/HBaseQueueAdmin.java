@@ -255,6 +255,29 @@ public class HBaseQueueAdmin extends AbstractQueueAdmin {
     return stateStore;
   }
 
+  /**
+   * Changes the number of row key distributor buckets that producers use for the entries of the given consumer
+   * group, see {@link HBaseConsumerStateStore#configureDistributorBuckets(long, int)}. The producers of the queue
+   * should be suspended while this is called. Entries already enqueued are still consumed with the number of
+   * buckets they were written with.
+   *
+   * @param queueName the queue to change
+   * @param groupId consumer group to change
+   * @param distributorBuckets number of buckets, in the range of [1, 256]
+   */
+  public void configureDistributorBuckets(QueueName queueName, final long groupId,
+                                          final int distributorBuckets) throws Exception {
+    try (final HBaseConsumerStateStore stateStore = getConsumerStateStore(queueName)) {
+      Transactions.createTransactionExecutor(txExecutorFactory, stateStore)
+        .execute(new TransactionExecutor.Subroutine() {
+          @Override
+          public void apply() throws Exception {
+            stateStore.configureDistributorBuckets(groupId, distributorBuckets);
+          }
+        });
+    }
+  }
+
   private Id.DatasetInstance getStateStoreId(String namespaceId) {
     return Id.DatasetInstance.from(namespaceId, QueueConstants.STATE_STORE_NAME);
   }
@@ -42,6 +42,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import com.google.inject.Inject;
 import org.apache.hadoop.conf.Configuration;
@@ -53,6 +54,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 /**
@@ -93,11 +95,13 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
     HBaseQueueAdmin admin = ensureTableExists(queueName);
     try {
       final List<ConsumerGroupConfig> groupConfigs = Lists.newArrayList();
+      final Map<Long, Integer> groupDistributorBuckets = Maps.newHashMap();
       try (final HBaseConsumerStateStore stateStore = admin.getConsumerStateStore(queueName)) {
         Transactions.createTransactionExecutor(txExecutorFactory, stateStore).execute(new Subroutine() {
           @Override
           public void apply() throws Exception {
             stateStore.getLatestConsumerGroups(groupConfigs);
+            groupDistributorBuckets.putAll(stateStore.getLatestDistributorBuckets());
           }
         });
       }
@@ -106,7 +110,8 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
       HTable hTable = createHTable(admin.getDataTableId(queueName, queueAdmin.getType()));
       int distributorBuckets = getDistributorBuckets(hTable.getTableDescriptor());
       return createProducer(hTable, queueName, queueMetrics,
-                            new ShardedHBaseQueueStrategy(hBaseTableUtil, distributorBuckets), groupConfigs);
+                            new ShardedHBaseQueueStrategy(hBaseTableUtil, distributorBuckets, groupDistributorBuckets),
+                            groupConfigs);
     } catch (Exception e) {
       Throwables.propagateIfPossible(e);
       throw new IOException(e);
@@ -172,7 +177,10 @@ public class HBaseQueueClientFactory implements QueueClientFactory {
           for (HBaseConsumerState state : states) {
             QueueType queueType = (state.getPreviousBarrier() == null) ? QueueType.QUEUE : QueueType.SHARDED_QUEUE;
             HTable hTable = createHTable(admin.getDataTableId(queueName, queueType));
-            int distributorBuckets = getDistributorBuckets(hTable.getTableDescriptor());
+            // The barrier the consumer is in may record a different number of buckets than the table
+            int distributorBuckets = state.getDistributorBuckets() > 0
+              ? state.getDistributorBuckets()
+              : getDistributorBuckets(hTable.getTableDescriptor());
 
             HBaseQueueStrategy strategy = (state.getPreviousBarrier() == null)
                                           ? new SaltedHBaseQueueStrategy(hBaseTableUtil, distributorBuckets)
@@ -24,25 +24,40 @@ import co.cask.cdap.data2.transaction.queue.AbstractQueueConsumer;
 import co.cask.cdap.data2.transaction.queue.QueueEntryRow;
 import co.cask.cdap.data2.transaction.queue.QueueScanner;
 import co.cask.tephra.Transaction;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Threads;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Queue consumer for HBase.
  */
 abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
+  // Maximum number of concurrent checkAndPut calls for claiming FIFO entries
+  private static final int MAX_CLAIM_THREADS = 20;
+  private static final ExecutorService CLAIM_EXECUTOR = createClaimExecutor();
+
   private final HTable hTable;
   private final HBaseConsumerState state;
   private final HBaseConsumerStateStore stateStore;
@@ -87,10 +102,68 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
 
   @Override
   protected boolean claimEntry(byte[] rowKey, byte[] claimedStateValue) throws IOException {
-    Put put = new Put(queueStrategy.getActualRowKey(getConfig(), rowKey));
-    put.add(QueueEntryRow.COLUMN_FAMILY, stateColumnName, claimedStateValue);
-    return hTable.checkAndPut(put.getRow(), QueueEntryRow.COLUMN_FAMILY,
-                              stateColumnName, null, put);
+    return claimEntry(hTable, rowKey, claimedStateValue);
+  }
+
+  @Override
+  protected Collection<byte[]> claimEntries(List<byte[]> rowKeys, final byte[] claimedStateValue,
+                                            Stopwatch stopwatch) throws IOException {
+    if (rowKeys.size() <= 1) {
+      return super.claimEntries(rowKeys, claimedStateValue, stopwatch);
+    }
+
+    // Each claim is a checkAndPut on a different row, hence they are independent of each other and can be
+    // sent to the region servers concurrently, instead of paying one round trip per entry. Since HTable is not
+    // thread safe, the rows are split into chunks and each chunk is claimed with its own HTable instance that
+    // shares the connection of this consumer.
+    final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getMaxDequeueMillis())
+      - stopwatch.elapsedTime(TimeUnit.NANOSECONDS);
+    int chunkSize = (rowKeys.size() + MAX_CLAIM_THREADS - 1) / MAX_CLAIM_THREADS;
+    List<List<byte[]>> chunks = Lists.partition(rowKeys, chunkSize);
+    List<Future<List<byte[]>>> futures = Lists.newArrayListWithCapacity(chunks.size());
+    for (final List<byte[]> chunk : chunks) {
+      futures.add(CLAIM_EXECUTOR.submit(new Callable<List<byte[]>>() {
+        @Override
+        public List<byte[]> call() throws Exception {
+          List<byte[]> claimed = Lists.newArrayListWithCapacity(chunk.size());
+          HTable table = new HTable(hTable.getName(), hTable.getConnection(), CLAIM_EXECUTOR);
+          try {
+            for (byte[] rowKey : chunk) {
+              // Same as the serial claim, stops once the dequeue time limit is reached. Rows not attempted
+              // are not claimed and will be removed from the dequeue result.
+              if (!claimed.isEmpty() && System.nanoTime() - deadlineNanos >= 0) {
+                break;
+              }
+              if (claimEntry(table, rowKey, claimedStateValue)) {
+                claimed.add(rowKey);
+              }
+            }
+          } finally {
+            table.close();
+          }
+          return claimed;
+        }
+      }));
+    }
+
+    List<byte[]> claimed = Lists.newArrayListWithCapacity(rowKeys.size());
+    IOException failure = null;
+    for (Future<List<byte[]>> future : futures) {
+      try {
+        claimed.addAll(Uninterruptibles.getUninterruptibly(future));
+      } catch (ExecutionException e) {
+        // Wait for all claims to complete before propagating the failure
+        if (failure == null) {
+          failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } else {
+          failure.addSuppressed(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return claimed;
   }
 
   @Override
@@ -190,6 +263,26 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     }
   }
 
+  private boolean claimEntry(HTable table, byte[] rowKey, byte[] claimedStateValue) throws IOException {
+    Put put = new Put(queueStrategy.getActualRowKey(getConfig(), rowKey));
+    put.add(QueueEntryRow.COLUMN_FAMILY, stateColumnName, claimedStateValue);
+    return table.checkAndPut(put.getRow(), QueueEntryRow.COLUMN_FAMILY,
+                             stateColumnName, null, put);
+  }
+
+  /**
+   * Creates the executor for claiming FIFO entries, which is shared by all consumers in the process.
+   */
+  private static ExecutorService createClaimExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_CLAIM_THREADS, MAX_CLAIM_THREADS,
+                                                         60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         Threads.newDaemonThreadFactory("queue-consumer-claim"));
+    // Only FIFO consumers with more than one instance claim entries, hence let idle threads go away.
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   protected abstract Scan createScan(byte[] startRow, byte[] stopRow, int numRows, Map<String, byte[]> attributes);
 
   private byte[] getScanStopRow(byte[] stopRow) {
@@ -21,16 +21,22 @@ import co.cask.cdap.data2.queue.ConsumerGroupConfig;
 import com.google.common.base.Objects;
 
 /**
- * Representing queue barrier information. It contains the consumer group information for
- * queue entry that are enqueue after the given start row.
+ * Representing queue barrier information. It contains the consumer group information and the number of
+ * row key distributor buckets for queue entry that are enqueue after the given start row.
  */
 public final class QueueBarrier {
   private final ConsumerGroupConfig groupConfig;
   private final byte[] startRow;
+  private final int distributorBuckets;
 
   QueueBarrier(ConsumerGroupConfig groupConfig, byte[] startRow) {
+    this(groupConfig, startRow, 0);
+  }
+
+  QueueBarrier(ConsumerGroupConfig groupConfig, byte[] startRow, int distributorBuckets) {
     this.groupConfig = groupConfig;
     this.startRow = startRow;
+    this.distributorBuckets = distributorBuckets;
   }
 
   public ConsumerGroupConfig getGroupConfig() {
@@ -41,11 +47,20 @@ public final class QueueBarrier {
     return startRow;
   }
 
+  /**
+   * Returns the number of row key distributor buckets, or {@code 0} if the barrier doesn't record it,
+   * in which case the number of buckets stored in the queue table is used.
+   */
+  public int getDistributorBuckets() {
+    return distributorBuckets;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
       .add("group", groupConfig)
       .add("start", Bytes.toStringBinary(startRow))
+      .add("buckets", distributorBuckets)
       .toString();
   }
 }
@@ -29,6 +29,8 @@ import co.cask.cdap.hbase.wd.AbstractRowKeyDistributor;
 import co.cask.cdap.hbase.wd.DistributedScanner;
 import co.cask.cdap.hbase.wd.RowKeyDistributorByHashPrefix;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
@@ -38,6 +40,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -82,16 +85,37 @@ public final class ShardedHBaseQueueStrategy implements HBaseQueueStrategy, Clos
   private final HBaseTableUtil tableUtil;
   private final int distributorBuckets;
   private final AbstractRowKeyDistributor rowKeyDistributor;
+  private final Map<Long, AbstractRowKeyDistributor> groupRowKeyDistributors;
   private final ExecutorService scansExecutor;
 
   /**
    * Constructs a new instance with the given number of buckets for distributed scan.
    */
   public ShardedHBaseQueueStrategy(HBaseTableUtil tableUtil, int distributorBuckets) {
+    this(tableUtil, distributorBuckets, ImmutableMap.<Long, Integer>of());
+  }
+
+  /**
+   * Constructs a new instance with the given number of buckets, and with the number of buckets to use
+   * for writing entries of particular consumer groups.
+   *
+   * @param tableUtil the {@link HBaseTableUtil} for building scans
+   * @param distributorBuckets number of buckets for consumer groups without a group specific number of buckets
+   * @param groupDistributorBuckets map from consumer group id to the number of buckets for that group
+   */
+  public ShardedHBaseQueueStrategy(HBaseTableUtil tableUtil, int distributorBuckets,
+                                   Map<Long, Integer> groupDistributorBuckets) {
     this.tableUtil = tableUtil;
     this.distributorBuckets = distributorBuckets;
-    this.rowKeyDistributor = new RowKeyDistributorByHashPrefix(
-      new RowKeyDistributorByHashPrefix.OneByteSimpleHash(distributorBuckets));
+    this.rowKeyDistributor = createRowKeyDistributor(distributorBuckets);
+
+    Map<Long, AbstractRowKeyDistributor> groupDistributors = Maps.newHashMap();
+    for (Map.Entry<Long, Integer> entry : groupDistributorBuckets.entrySet()) {
+      if (entry.getValue() != distributorBuckets) {
+        groupDistributors.put(entry.getKey(), createRowKeyDistributor(entry.getValue()));
+      }
+    }
+    this.groupRowKeyDistributors = groupDistributors;
 
     // Using the "direct handoff" approach, new threads will only be created
     // if it is necessary and will grow unbounded. This could be bad but in DistributedScanner
@@ -135,8 +159,8 @@ public final class ShardedHBaseQueueStrategy implements HBaseQueueStrategy, Clos
 
   @Override
   public byte[] getActualRowKey(ConsumerConfig consumerConfig, byte[] originalRowKey) {
-    return rowKeyDistributor.getDistributedKey(getShardedKey(consumerConfig,
-                                                             consumerConfig.getInstanceId(), originalRowKey));
+    return getRowKeyDistributor(consumerConfig.getGroupId())
+      .getDistributedKey(getShardedKey(consumerConfig, consumerConfig.getInstanceId(), originalRowKey));
   }
 
   @Override
@@ -165,7 +189,8 @@ public final class ShardedHBaseQueueStrategy implements HBaseQueueStrategy, Clos
           throw new IllegalArgumentException("Unsupported consumer strategy: " + dequeueStrategy);
         }
       }
-      rowKeys.add(rowKeyDistributor.getDistributedKey(getShardedKey(config, instanceId, rowKey)));
+      AbstractRowKeyDistributor distributor = getRowKeyDistributor(config.getGroupId());
+      rowKeys.add(distributor.getDistributedKey(getShardedKey(config, instanceId, rowKey)));
     }
   }
 
@@ -174,6 +199,15 @@ public final class ShardedHBaseQueueStrategy implements HBaseQueueStrategy, Clos
     scansExecutor.shutdownNow();
   }
 
+  private AbstractRowKeyDistributor getRowKeyDistributor(long groupId) {
+    AbstractRowKeyDistributor distributor = groupRowKeyDistributors.get(groupId);
+    return distributor == null ? rowKeyDistributor : distributor;
+  }
+
+  private static AbstractRowKeyDistributor createRowKeyDistributor(int distributorBuckets) {
+    return new RowKeyDistributorByHashPrefix(new RowKeyDistributorByHashPrefix.OneByteSimpleHash(distributorBuckets));
+  }
+
   private byte[] getShardedKey(ConsumerGroupConfig groupConfig, int instanceId,
                                byte[] originalRowKey) {
     // Need to subtract the SALT_BYTES as the row key distributor will prefix the key with salted bytes
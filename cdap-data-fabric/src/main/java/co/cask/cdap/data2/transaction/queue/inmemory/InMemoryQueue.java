@@ -28,6 +28,8 @@ import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentMap;
@@ -36,28 +38,65 @@ import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Implementation of an in-memory queue.
+ * Implementation of an in-memory queue. The total size of the entry payloads held by the queue is bounded by
+ * the capacity of the queue. Enqueue blocks if the queue is full, until enough
+ * entries are evicted or the enqueue timeout is reached.
+ * <p>
+ * Entry payloads are kept on the heap, as the byte arrays given by the producer. Consumers are handed byte arrays,
+ * so an off-heap copy of each payload would be copied back to the heap on every dequeue.
+ * </p>
  */
 public class InMemoryQueue {
 
   private static final Logger LOG = LoggerFactory.getLogger(InMemoryQueue.class);
 
   private final ConcurrentNavigableMap<Key, Item> entries = new ConcurrentSkipListMap<>();
+  private final long capacity;
+  private final long enqueueTimeoutMillis;
+  // guards usedBytes, and is notified whenever memory is released
+  private final Object memoryLock = new Object();
+  private long usedBytes;
+
+  /**
+   * Creates an in-memory queue.
+   *
+   * @param capacity maximum number of bytes of entry payload held by the queue; a non-positive value means unbounded
+   * @param enqueueTimeoutMillis maximum time to wait for space in the queue when enqueuing
+   */
+  public InMemoryQueue(long capacity, long enqueueTimeoutMillis) {
+    this.capacity = capacity;
+    this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+  }
 
   public void clear() {
-    entries.clear();
+    for (Key key : entries.keySet()) {
+      remove(key);
+    }
   }
 
   public int getSize() {
     return entries.size();
   }
 
-  public void enqueue(long txId, int seqId, QueueEntry entry) {
-    entries.put(new Key(txId, seqId), new Item(entry));
+  /**
+   * Returns the number of bytes of entry payload currently held by the queue.
+   */
+  public long getUsedBytes() {
+    synchronized (memoryLock) {
+      return usedBytes;
+    }
+  }
+
+  public void enqueue(long txId, int seqId, QueueEntry entry) throws IOException {
+    reserve(entry.getData().length);
+    Item existing = entries.put(new Key(txId, seqId), new Item(entry));
+    if (existing != null) {
+      release(existing.getSize());
+    }
   }
 
   public void undoEnqueue(long txId, int seqId) {
-    entries.remove(new Key(txId, seqId));
+    remove(new Key(txId, seqId));
   }
 
   public ImmutablePair<List<Key>, List<byte[]>> dequeue(Transaction tx, ConsumerConfig config,
@@ -101,7 +140,7 @@ public class InMemoryQueue {
         // for FIFO, attempt to claim the entry and return it
         if (item.claim(config)) {
           keys.add(key);
-          datas.add(item.entry.getData());
+          datas.add(item.getData());
         }
         // else: someone else claimed it, or it was already processed, move on, but we may have to revisit this.
         updateStartKey = false;
@@ -110,7 +149,7 @@ public class InMemoryQueue {
       // for hash/round robin, if group size is 1, just take it
       if (config.getGroupSize() == 1) {
         keys.add(key);
-        datas.add(item.entry.getData());
+        datas.add(item.getData());
         updateStartKey = false;
         continue;
       }
@@ -119,13 +158,13 @@ public class InMemoryQueue {
       if (config.getDequeueStrategy().equals(DequeueStrategy.ROUND_ROBIN)) {
         hash = key.hashCode();
       } else {
-        Integer hashFoundInEntry = item.entry.getHashKey(config.getHashKey());
+        Integer hashFoundInEntry = item.getHashKey(config.getHashKey());
         hash = hashFoundInEntry == null ? 0 : hashFoundInEntry;
       }
       // modulo of a negative is negative, make sure we're positive or 0.
       if (Math.abs(hash) % config.getGroupSize() == config.getInstanceId()) {
         keys.add(key);
-        datas.add(item.entry.getData());
+        datas.add(item.getData());
         updateStartKey = false;
       }
     }
@@ -175,8 +214,49 @@ public class InMemoryQueue {
       }
       if (item.incrementProcessed() >= numGroups) {
         // all consumer groups have processed _and_ reached the post-commit hook: safe to evict
-        entries.remove(key);
+        remove(key);
+      }
+    }
+  }
+
+  private void remove(Key key) {
+    Item item = entries.remove(key);
+    if (item != null) {
+      release(item.getSize());
+    }
+  }
+
+  /**
+   * Reserves memory for an entry of the given size, waiting for other entries to be evicted if the queue is full.
+   */
+  private void reserve(int size) throws IOException {
+    if (capacity > 0 && size > capacity) {
+      throw new IOException(String.format("Entry of %d bytes exceeds the queue capacity of %d bytes", size, capacity));
+    }
+    synchronized (memoryLock) {
+      long deadline = System.currentTimeMillis() + enqueueTimeoutMillis;
+      while (capacity > 0 && usedBytes + size > capacity) {
+        long waitMillis = deadline - System.currentTimeMillis();
+        if (waitMillis <= 0) {
+          throw new IOException(String.format("Timeout after %d ms waiting for space in the queue. " +
+                                                "Used %d bytes out of %d bytes.",
+                                              enqueueTimeoutMillis, usedBytes, capacity));
+        }
+        try {
+          memoryLock.wait(waitMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for space in the queue");
+        }
       }
+      usedBytes += size;
+    }
+  }
+
+  private void release(int size) {
+    synchronized (memoryLock) {
+      usedBytes -= size;
+      memoryLock.notifyAll();
     }
   }
 
@@ -227,7 +307,6 @@ public class InMemoryQueue {
   // represents an entry of the queue plus meta data
   private static final class Item {
     final QueueEntry entry;
-//    ConcurrentMap<Long, ConsumerEntryState> consumerStates = Maps.newConcurrentMap();
     ConcurrentMap<Long, ItemEntryState> consumerStates = Maps.newConcurrentMap();
     AtomicInteger processedCount = new AtomicInteger();
 
@@ -235,6 +314,18 @@ public class InMemoryQueue {
       this.entry = entry;
     }
 
+    byte[] getData() {
+      return entry.getData();
+    }
+
+    int getSize() {
+      return entry.getData().length;
+    }
+
+    Integer getHashKey(String key) {
+      return entry.getHashKey(key);
+    }
+
     ConsumerEntryState getConsumerState(long consumerGroupId) {
       ItemEntryState entryState = consumerStates.get(consumerGroupId);
       return entryState == null ? null : entryState.getState();
@@ -16,7 +16,9 @@
 
 package co.cask.cdap.data2.transaction.queue.inmemory;
 
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.data2.transaction.queue.QueueConstants;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -35,19 +37,23 @@ import javax.annotation.Nullable;
 public final class InMemoryQueueService {
 
   private final ConcurrentMap<QueueName, InMemoryQueue> queues;
+  private final long queueCapacity;
+  private final long enqueueTimeoutMillis;
 
   /**
    * Package visible constructor so that instance of this class can only be created through Guice.
    */
   @Inject
-  private InMemoryQueueService() {
+  private InMemoryQueueService(CConfiguration cConf) {
     queues = Maps.newConcurrentMap();
+    queueCapacity = cConf.getLongBytes(QueueConstants.ConfigKeys.INMEMORY_QUEUE_CAPACITY);
+    enqueueTimeoutMillis = cConf.getLong(QueueConstants.ConfigKeys.INMEMORY_QUEUE_ENQUEUE_TIMEOUT_MS);
   }
 
   InMemoryQueue getQueue(QueueName queueName) {
     InMemoryQueue queue = queues.get(queueName);
     if (queue == null) {
-      queue = new InMemoryQueue();
+      queue = new InMemoryQueue(queueCapacity, enqueueTimeoutMillis);
       InMemoryQueue existing = queues.putIfAbsent(queueName, queue);
       if (existing != null) {
         queue = existing;
@@ -59,7 +65,8 @@ public final class InMemoryQueueService {
   @SuppressWarnings("unused")
   public void dumpInfo(PrintStream out) {
     for (QueueName qname : queues.keySet()) {
-      out.println("Queue '" + qname + "': size is " + queues.get(qname).getSize());
+      InMemoryQueue queue = queues.get(qname);
+      out.println("Queue '" + qname + "': size is " + queue.getSize() + ", using " + queue.getUsedBytes() + " bytes");
     }
   }
 
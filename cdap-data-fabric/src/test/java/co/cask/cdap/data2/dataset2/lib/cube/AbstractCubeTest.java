@@ -205,6 +205,50 @@ public abstract class AbstractCubeTest {
 
   }
 
+  @Test
+  public void testDerivedResolution() throws Exception {
+    Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1"));
+
+    int res1 = 1;
+    int res100 = 100;
+    Cube cube = getCube("myDerivedResCube", new int[] {res1, res100}, ImmutableMap.of("agg1", agg1));
+
+    writeInc(cube, "metric1", 1, 1, "1");
+    writeInc(cube, "metric1", 4, 2, "1");
+    writeInc(cube, "metric1", 5, 3, "1");
+    writeInc(cube, "metric1", 101, 4, "1");
+    writeInc(cube, "metric1", 250, 5, "1");
+    writeInc(cube, "metric1", 420, 6, "1");
+
+    // 5 seconds resolution is not stored: it is derived from the 1 second resolution
+    verifyCountQuery(cube, "agg1", 0, 500, 5, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                     timeValues(0, 3, 5, 3, 100, 4, 250, 5, 420, 6))));
+
+    // 200 seconds resolution is derived from the 100 seconds resolution
+    verifyCountQuery(cube, "agg1", 0, 500, 200, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                     timeValues(0, 10, 200, 5, 400, 6))));
+    verifyCountQuery(cube, "agg1", 0, 500, 200, "metric1", AggregationFunction.MAX,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                     timeValues(0, 6, 200, 5, 400, 6))));
+
+    // start of the time range is aligned to the beginning of the bucket it falls in
+    verifyCountQuery(cube, "agg1", 150, 500, 200, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                     timeValues(0, 10, 200, 5, 400, 6))));
+
+    // 150 seconds is not a multiple of 100 seconds resolution, so it is derived from the 1 second resolution
+    verifyCountQuery(cube, "agg1", 0, 500, 150, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                     timeValues(0, 10, 150, 5, 300, 6))));
+  }
+
   @Test
   public void testGauges() throws Exception {
     Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1"));
@@ -247,6 +291,38 @@ public abstract class AbstractCubeTest {
 
   }
 
+  @Test
+  public void testMaxPoints() throws Exception {
+    Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1"));
+    Cube cube = getCube("myMaxPointsCube", new int[] {1}, ImmutableMap.of("agg1", agg1));
+
+    for (String dim : ImmutableList.of("1", "2", "3")) {
+      for (long ts = 1; ts <= 4; ts++) {
+        writeInc(cube, "metric1", ts, ts, dim);
+      }
+    }
+
+    // all of the 12 data points fit
+    Assert.assertEquals(12, countPoints(cube.query(getGroupByDim1Query(12))));
+    // querying stops as soon as there are more data points than allowed
+    Assert.assertEquals(6, countPoints(cube.query(getGroupByDim1Query(5))));
+    Assert.assertEquals(1, countPoints(cube.query(getGroupByDim1Query(0))));
+  }
+
+  private CubeQuery getGroupByDim1Query(int maxPoints) {
+    return new CubeQuery("agg1", 0, 10, 1, Integer.MAX_VALUE, maxPoints,
+                         ImmutableMap.of("metric1", AggregationFunction.SUM), ImmutableMap.<String, String>of(),
+                         ImmutableList.of("dim1"), null);
+  }
+
+  private int countPoints(Collection<TimeSeries> result) {
+    int points = 0;
+    for (TimeSeries timeSeries : result) {
+      points += timeSeries.getTimeValues().size();
+    }
+    return points;
+  }
+
   @Test
   public void testInterpolate() throws Exception {
     Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1", "dim2", "dim3"),
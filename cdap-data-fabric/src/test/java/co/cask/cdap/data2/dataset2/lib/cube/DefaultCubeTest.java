@@ -24,6 +24,8 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -46,6 +48,15 @@ public class DefaultCubeTest extends AbstractCubeTest {
       }
     };
 
-    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
+    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of(),
+                           getWriteExecutor());
+  }
+
+  /**
+   * Returns the {@link Executor} for writing to the fact tables of the cube.
+   */
+  @Nullable
+  protected Executor getWriteExecutor() {
+    return null;
   }
 }
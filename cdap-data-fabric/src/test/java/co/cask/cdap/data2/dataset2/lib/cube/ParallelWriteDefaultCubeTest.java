@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Cube;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Runs the {@link DefaultCube} tests with the fact tables of different resolutions written concurrently. As in the
+ * metrics system, the fact tables of a cube share the same {@link EntityTable}, whose storage table fails the test
+ * if it is accessed concurrently.
+ */
+public class ParallelWriteDefaultCubeTest extends DefaultCubeTest {
+
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void init() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public static void finish() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  protected Cube getCube(final String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations) {
+    final String entityTableName = "EntityTable-" + name;
+    InMemoryTableService.create(entityTableName);
+    final Supplier<EntityTable> entityTable = Suppliers.memoize(new Supplier<EntityTable>() {
+      @Override
+      public EntityTable get() {
+        return new EntityTable(new SingleThreadedMetricsTable(entityTableName));
+      }
+    });
+
+    FactTableSupplier supplier = new FactTableSupplier() {
+      @Override
+      public FactTable get(int resolution, int rollTime) {
+        String dataTableName = "DataTable-" + name + "-" + resolution;
+        InMemoryTableService.create(dataTableName);
+        return new FactTable(new InMemoryMetricsTable(dataTableName), entityTable.get(), resolution, rollTime);
+      }
+    };
+
+    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of(),
+                           getWriteExecutor());
+  }
+
+  @Override
+  protected Executor getWriteExecutor() {
+    return executor;
+  }
+
+  @Test
+  public void testColdEntityCache() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+    int[] resolutions = {1, 60, 3600, 86400};
+    final Cube cube = getCube("coldCache", resolutions, ImmutableMap.of("agg", agg));
+
+    // Every fact has new dimension values, hence every resolution looks up ids that are not cached yet. Two batches
+    // with different values are added at the same time, so that ids of different names are looked up concurrently.
+    final int count = 100;
+    final String[] prefixes = {"x", "y"};
+    ExecutorService addExecutor = Executors.newFixedThreadPool(prefixes.length);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (final String prefix : prefixes) {
+        futures.add(addExecutor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            List<CubeFact> facts = Lists.newArrayList();
+            for (int i = 0; i < count; i++) {
+              facts.add(new CubeFact(i)
+                          .addDimensionValues(ImmutableMap.of("dim1", prefix + "a" + i, "dim2", prefix + "b" + i))
+                          .addMeasurement("metric", MeasureType.COUNTER, 1));
+            }
+            cube.add(facts);
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      addExecutor.shutdownNow();
+    }
+
+    for (String prefix : prefixes) {
+      for (int resolution : resolutions) {
+        for (int i = 0; i < count; i += 10) {
+          Map<String, String> dimValues = ImmutableMap.of("dim1", prefix + "a" + i, "dim2", prefix + "b" + i);
+          long ts = i / resolution * resolution;
+          verifyCountQuery(cube, 0, count, resolution, "metric", AggregationFunction.SUM, dimValues,
+                           ImmutableList.<String>of(), ImmutableList.of(
+              new TimeSeries("metric", ImmutableMap.<String, String>of(), timeValues(ts, 1))));
+        }
+      }
+    }
+  }
+
+  /**
+   * A {@link InMemoryMetricsTable} that fails any call made while another call is in progress, like a table that is
+   * not thread-safe would misbehave.
+   */
+  private static final class SingleThreadedMetricsTable extends InMemoryMetricsTable {
+
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicBoolean concurrentAccess = new AtomicBoolean();
+
+    SingleThreadedMetricsTable(String name) {
+      super(name);
+    }
+
+    @Nullable
+    @Override
+    public byte[] get(byte[] row, byte[] column) {
+      enter();
+      try {
+        return super.get(row, column);
+      } finally {
+        exit();
+      }
+    }
+
+    @Override
+    public void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
+      enter();
+      try {
+        super.put(updates);
+      } finally {
+        exit();
+      }
+    }
+
+    @Override
+    public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+      enter();
+      try {
+        return super.swap(row, column, oldValue, newValue);
+      } finally {
+        exit();
+      }
+    }
+
+    @Override
+    public void increment(byte[] row, Map<byte[], Long> increments) {
+      enter();
+      try {
+        super.increment(row, increments);
+      } finally {
+        exit();
+      }
+    }
+
+    @Override
+    public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+      enter();
+      try {
+        super.increment(updates);
+      } finally {
+        exit();
+      }
+    }
+
+    @Override
+    public long incrementAndGet(byte[] row, byte[] column, long delta) {
+      enter();
+      try {
+        return super.incrementAndGet(row, column, delta);
+      } finally {
+        exit();
+      }
+    }
+
+    @Override
+    public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter) {
+      enter();
+      try {
+        return super.scan(start, stop, filter);
+      } finally {
+        exit();
+      }
+    }
+
+    private void enter() {
+      if (inProgress.incrementAndGet() != 1) {
+        concurrentAccess.set(true);
+      }
+      // gives other threads the chance to access the table at the same time
+      Uninterruptibles.sleepUninterruptibly(1, TimeUnit.MILLISECONDS);
+      Assert.assertFalse("Concurrent access to the entity table", concurrentAccess.get());
+    }
+
+    private void exit() {
+      inProgress.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link TimeValueMap}.
+ */
+public class TimeValueMapTest {
+
+  @Test
+  public void testAggregate() {
+    TimeValueMap sum = new TimeValueMap();
+    TimeValueMap max = new TimeValueMap();
+    TimeValueMap min = new TimeValueMap();
+    TimeValueMap latest = new TimeValueMap();
+    for (TimeValueMap map : new TimeValueMap[] { sum, max, min, latest }) {
+      Assert.assertFalse(map.contains(60));
+    }
+
+    long[] values = { 5, 2, 9, 4 };
+    for (long value : values) {
+      sum.aggregate(60, value, AggregationFunction.SUM);
+      max.aggregate(60, value, AggregationFunction.MAX);
+      min.aggregate(60, value, AggregationFunction.MIN);
+      latest.aggregate(60, value, AggregationFunction.LATEST);
+    }
+
+    Assert.assertEquals(20, sum.get(60, -1));
+    Assert.assertEquals(9, max.get(60, -1));
+    Assert.assertEquals(2, min.get(60, -1));
+    Assert.assertEquals(4, latest.get(60, -1));
+    Assert.assertEquals(-1, sum.get(120, -1));
+    Assert.assertEquals(1, sum.size());
+  }
+
+  @Test
+  public void testResizeAndSortedTimestamps() {
+    // compare against a regular map, using timestamps that are multiples of a resolution like in the fact tables
+    Map<Long, Long> expected = Maps.newTreeMap();
+    TimeValueMap map = new TimeValueMap(1);
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      long ts = 1000000 + 60L * random.nextInt(5000);
+      long value = random.nextInt(100);
+      Long current = expected.get(ts);
+      expected.put(ts, current == null ? value : current + value);
+      map.aggregate(ts, value, AggregationFunction.SUM);
+    }
+
+    Assert.assertEquals(expected.size(), map.size());
+    long[] timestamps = map.sortedTimestamps();
+    Assert.assertEquals(expected.size(), timestamps.length);
+    int idx = 0;
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      Assert.assertEquals(entry.getKey().longValue(), timestamps[idx++]);
+      Assert.assertEquals(entry.getValue().longValue(), map.get(entry.getKey(), -1));
+    }
+  }
+}
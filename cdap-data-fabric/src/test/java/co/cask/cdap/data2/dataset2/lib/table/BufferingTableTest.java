@@ -498,6 +498,49 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testMultiGetUnsortedWithBuffer() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      BufferingTable table = getTable(CONTEXT1, MY_TABLE);
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      table.put(R1, a(C1, C2), lb(1, 2));
+      table.put(R2, a(C1, C2), lb(3, 4));
+      table.put(R3, a(C1), lb(5));
+      Assert.assertTrue(txClient.canCommit(tx1, table.getTxChanges()));
+      Assert.assertTrue(table.commitTx());
+      Assert.assertTrue(txClient.commit(tx1));
+      table.postTxCommit();
+
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      // table should look like the following, with the changes to r2 and r3 in the buffer
+      //          c1    c2    c3
+      // r1       1     2     -
+      // r2       6     -     -
+      // r3       7     -     8
+      table.put(R2, a(C1), lb(6));
+      table.delete(R2, C2);
+      table.put(R3, a(C1, C3), lb(7, 8));
+      // gets are not in row order, contain a duplicate, and are partly answered by the buffer alone
+      List<Row> rows = table.get(Lists.newArrayList(new Get(R3, C1, C3), new Get(R1), new Get(R2, C1, C2),
+                                                    new Get(R3), new Get(R1, C2), new Get(R2, C1)));
+      Assert.assertEquals(6, rows.size());
+      TableAssert.assertRow(rows.get(0), R3, a(C1, C3), lb(7, 8));
+      TableAssert.assertRow(rows.get(1), R1, a(C1, C2), lb(1, 2));
+      TableAssert.assertRow(rows.get(2), R2, a(C1), lb(6));
+      TableAssert.assertRow(rows.get(3), R3, a(C1, C3), lb(7, 8));
+      TableAssert.assertRow(rows.get(4), R1, a(C2), lb(2));
+      TableAssert.assertRow(rows.get(5), R2, a(C1), lb(6));
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx2);
+    } finally {
+      admin.drop();
+    }
+  }
+
   private void verify123(BufferingTable table) throws Exception {
     byte[] row = new byte[] {1};
     byte[] col = new byte[] {2};
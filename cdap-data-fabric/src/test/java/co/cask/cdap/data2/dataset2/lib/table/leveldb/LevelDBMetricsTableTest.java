@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -31,12 +32,23 @@ import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTableTest;
 import co.cask.cdap.proto.Id;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * metrics table test for levelDB.
  */
@@ -63,6 +75,49 @@ public class LevelDBMetricsTableTest extends MetricsTableTest {
     dsFramework = injector.getInstance(DatasetFramework.class);
   }
 
+  @Test
+  public void testConcurrentMultiRowIncrement() throws Exception {
+    // Increments on the same rows through different table instances should not lose any update
+    final String tableName = "testConcurrentMultiRowIncrement";
+    final int rounds = 500;
+    final byte[][] rows = { A, B, C, P, Q };
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (int i = 0; i < 4; i++) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            try (MetricsTable table = getTable(tableName)) {
+              for (int j = 0; j < rounds; j++) {
+                NavigableMap<byte[], NavigableMap<byte[], Long>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+                for (byte[] row : rows) {
+                  NavigableMap<byte[], Long> increments = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+                  increments.put(X, 1L);
+                  updates.put(row, increments);
+                }
+                table.increment(updates);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    try (MetricsTable table = getTable(tableName)) {
+      for (byte[] row : rows) {
+        Assert.assertEquals(4L * rounds, Bytes.toLong(table.get(row, X)));
+      }
+    }
+  }
+
   @Override
   protected MetricsTable getTable(String name) throws Exception {
     Id.DatasetInstance metricsDatasetInstanceId = Id.DatasetInstance.from(Id.Namespace.SYSTEM, name);
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LevelDBTableCompactionService}.
+ */
+public class LevelDBTableCompactionServiceTest {
+
+  @Test
+  public void testSchedule() {
+    CConfiguration cConf = CConfiguration.create();
+    LevelDBTableCompactionService service = new LevelDBTableCompactionService(null, null, cConf);
+    service.startAndWait();
+    try {
+      Assert.assertTrue(service.isScheduled());
+    } finally {
+      service.stopAndWait();
+    }
+
+    // Nothing is scheduled when compaction is disabled, whatever the interval is
+    cConf.setBoolean(Constants.CFG_DATA_LEVELDB_COMPACTION_ENABLED, false);
+    cConf.setLong(Constants.CFG_DATA_LEVELDB_COMPACTION_INTERVAL, 0);
+    service = new LevelDBTableCompactionService(null, null, cConf);
+    service.startAndWait();
+    try {
+      Assert.assertFalse(service.isScheduled());
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testInvalidInterval() {
+    CConfiguration cConf = CConfiguration.create();
+    for (long interval : new long[] { 0, -1 }) {
+      cConf.setLong(Constants.CFG_DATA_LEVELDB_COMPACTION_INTERVAL, interval);
+      try {
+        new LevelDBTableCompactionService(null, null, cConf);
+        Assert.fail("Expected the compaction interval " + interval + " to be rejected");
+      } catch (IllegalArgumentException e) {
+        Assert.assertTrue(e.getMessage().contains(Constants.CFG_DATA_LEVELDB_COMPACTION_INTERVAL));
+      }
+    }
+  }
+}
@@ -16,10 +16,12 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -30,9 +32,13 @@ import co.cask.cdap.data.runtime.DataFabricLevelDBModule;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.TransactionMetricsModule;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTableTest;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
+import co.cask.tephra.Transaction;
+import co.cask.tephra.TxConstants;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.iq80.leveldb.DBIterator;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -40,6 +46,9 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
 
 /**
  * test for LevelDB tables.
@@ -110,4 +119,134 @@ public class LevelDBTableTest extends BufferingTableTest<LevelDBTable> {
       service.list().contains(tableName);
     }
   }
+
+  @Test
+  public void testBufferFlush() throws Exception {
+    String tableName = "flushTable";
+    LevelDBTableAdmin admin = getTableAdmin(CONTEXT1, tableName, DatasetProperties.EMPTY);
+    admin.create();
+    try {
+      DatasetSpecification spec = DatasetSpecification.builder(tableName, "table")
+        .property(Constants.Dataset.TABLE_BUFFER_FLUSH_SIZE, "100")
+        .build();
+      LevelDBTable table = new LevelDBTable(CONTEXT1, tableName, service, cConf, spec);
+      byte[] col = Bytes.toBytes("c");
+
+      // write enough data for the buffer to be persisted several times before commit
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      for (int i = 0; i < 100; i++) {
+        table.put(Bytes.toBytes(i), col, Bytes.toBytes((long) i));
+      }
+      table.delete(Bytes.toBytes(0), col);
+      // the transaction sees all of its writes, and all changed rows take part in conflict detection
+      Assert.assertNull(table.get(Bytes.toBytes(0), col));
+      Assert.assertEquals(50L, Bytes.toLong(table.get(Bytes.toBytes(50), col)));
+      Assert.assertEquals(100, table.getTxChanges().size());
+      // another transaction cannot see the persisted changes
+      LevelDBTable otherTable = getTable(CONTEXT1, tableName, ConflictDetection.ROW);
+      Transaction tx2 = txClient.startShort();
+      otherTable.startTx(tx2);
+      Assert.assertNull(otherTable.get(Bytes.toBytes(50), col));
+      txClient.abort(tx2);
+
+      // rolling back undoes the changes persisted before commit
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx1);
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      Scanner scanner = table.scan(null, null);
+      Assert.assertNull(scanner.next());
+      scanner.close();
+
+      // committing makes all changes visible
+      for (int i = 0; i < 100; i++) {
+        table.put(Bytes.toBytes(i), col, Bytes.toBytes((long) i));
+      }
+      Assert.assertTrue(txClient.canCommit(tx3, table.getTxChanges()));
+      Assert.assertTrue(table.commitTx());
+      Assert.assertTrue(txClient.commit(tx3));
+      table.postTxCommit();
+
+      Transaction tx4 = txClient.startShort();
+      otherTable.startTx(tx4);
+      for (int i = 0; i < 100; i++) {
+        Assert.assertEquals((long) i, Bytes.toLong(otherTable.get(Bytes.toBytes(i), col)));
+      }
+      txClient.abort(tx4);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    String tableName = "compactTable";
+    LevelDBTableAdmin admin = getTableAdmin(CONTEXT1, tableName, DatasetProperties.EMPTY);
+    admin.create();
+    try {
+      String fullName = PrefixedNamespaces.namespace(cConf, CONTEXT1.getNamespaceId(), tableName);
+      LevelDBTableCore core = new LevelDBTableCore(fullName, service);
+      byte[] row = Bytes.toBytes("r");
+      byte[] colA = Bytes.toBytes("a");
+      byte[] colB = Bytes.toBytes("b");
+      byte[] colC = Bytes.toBytes("c");
+      byte[] colD = Bytes.toBytes("d");
+
+      long now = System.currentTimeMillis();
+      core.put(row, colA, Bytes.toBytes("a1"), writePointer(now, 5000));
+      core.put(row, colA, Bytes.toBytes("a2"), writePointer(now, 4000));
+      core.put(row, colA, Bytes.toBytes("a3"), writePointer(now, 3000));
+      core.put(row, colA, Bytes.toBytes("a4"), writePointer(now, 1000));
+      core.put(row, colB, Bytes.toBytes("b1"), writePointer(now, 5000));
+      core.persist(Collections.singletonMap(row, Collections.singletonMap(colB, (byte[]) null)),
+                   writePointer(now, 4000));
+      core.put(row, colC, Bytes.toBytes("c1"), writePointer(now, 10000));
+      // a version written without transaction, which is a plain timestamp
+      core.put(row, colD, Bytes.toBytes("d1"), now - 10000);
+      Assert.assertEquals(8, countEntries(fullName));
+
+      // the write at 3000 is invalid, and the write at 1000 is still in progress
+      long inProgress = writePointer(now, 1000);
+      Transaction tx = new Transaction(writePointer(now, 2000), writePointer(now, 0),
+                                       new long[] { writePointer(now, 3000) }, new long[] { inProgress }, inProgress);
+
+      // without a time-to-live, the hidden versions, the invalid write and the delete marker are removed
+      Assert.assertTrue(core.compact(tx, 0) > 0);
+      Assert.assertEquals(4, countEntries(fullName));
+      NavigableMap<byte[], byte[]> result = core.getRow(row, null, null, null, -1, tx);
+      Assert.assertEquals(3, result.size());
+      Assert.assertArrayEquals(Bytes.toBytes("a2"), result.get(colA));
+      Assert.assertArrayEquals(Bytes.toBytes("c1"), result.get(colC));
+      Assert.assertArrayEquals(Bytes.toBytes("d1"), result.get(colD));
+      Assert.assertEquals(0, core.compact(tx, 0));
+
+      // with a time-to-live, the expired transactional and non-transactional versions are removed
+      service.registerCompaction(fullName, 5000);
+      Map<String, LevelDBTableService.CompactionStats> stats = service.compact(tx);
+      Assert.assertTrue(stats.get(fullName).getReclaimedBytes() > 0);
+      Assert.assertEquals(stats.get(fullName).getReclaimedBytes(),
+                          service.getCompactionStats().get(fullName).getReclaimedBytes());
+      Assert.assertEquals(2, countEntries(fullName));
+      result = core.getRow(row, null, null, null, -1, tx);
+      Assert.assertEquals(1, result.size());
+      Assert.assertArrayEquals(Bytes.toBytes("a2"), result.get(colA));
+    } finally {
+      admin.drop();
+    }
+  }
+
+  private static long writePointer(long now, long millisAgo) {
+    return (now - millisAgo) * TxConstants.MAX_TX_PER_MS;
+  }
+
+  private static int countEntries(String tableName) throws IOException {
+    int count = 0;
+    try (DBIterator iterator = service.getTable(tableName).iterator()) {
+      for (iterator.seekToFirst(); iterator.hasNext(); iterator.next()) {
+        count++;
+      }
+    }
+    return count;
+  }
 }
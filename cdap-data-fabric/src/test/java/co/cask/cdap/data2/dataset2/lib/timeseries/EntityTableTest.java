@@ -15,12 +15,16 @@
  */
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
+import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import com.google.common.collect.Maps;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Map;
+
 /**
  *
  */
@@ -91,4 +95,104 @@ public class EntityTableTest {
       Assert.assertEquals("app" + i, entityTable.getName(i, "app"));
     }
   }
+
+  @Test
+  public void testPreload() throws Exception {
+    InMemoryTableService.create("testPreload");
+    MetricsTable table = new InMemoryMetricsTable("testPreload");
+
+    EntityTable entityTable = new EntityTable(table);
+    for (int i = 1; i <= 10; i++) {
+      entityTable.getId("app", "app" + i);
+      entityTable.getId("flow", "flow" + i);
+    }
+
+    // A new entityTable should serve all lookups from the cache after preloading
+    entityTable = new EntityTable(table);
+    CountingMetricsCollector metrics = new CountingMetricsCollector();
+    entityTable.setMetricsCollector(metrics);
+    Assert.assertEquals(20, entityTable.preload());
+    for (int i = 1; i <= 10; i++) {
+      Assert.assertEquals((long) i, entityTable.getId("app", "app" + i));
+      Assert.assertEquals("flow" + i, entityTable.getName(i, "flow"));
+    }
+    entityTable.reportCacheStats();
+    Assert.assertEquals(20L, metrics.get("entityTable.cache.hit.count"));
+    Assert.assertEquals(0L, metrics.get("entityTable.cache.miss.count"));
+
+    // Preloading stops at the cache size
+    entityTable = new EntityTable(table, 0x1000000L, 5);
+    Assert.assertEquals(5, entityTable.preload());
+  }
+
+  @Test
+  public void testFindId() throws Exception {
+    InMemoryTableService.create("testFindId");
+    MetricsTable table = new InMemoryMetricsTable("testFindId");
+
+    EntityTable entityTable = new EntityTable(table);
+    Assert.assertEquals(Long.valueOf(0L), entityTable.findId("app", null));
+    Assert.assertNull(entityTable.findId("app", "app1"));
+    // findId must not assign ids
+    Assert.assertEquals(1L, entityTable.getId("app", "app2"));
+    Assert.assertEquals(Long.valueOf(1L), entityTable.findId("app", "app2"));
+
+    // Ids assigned through the same entityTable are found right away
+    Assert.assertEquals(2L, entityTable.getId("app", "app1"));
+    Assert.assertEquals(Long.valueOf(2L), entityTable.findId("app", "app1"));
+
+    // Ids assigned through another entityTable are found through the storage
+    Assert.assertEquals(3L, new EntityTable(table).getId("app", "app3"));
+    Assert.assertEquals(Long.valueOf(3L), new EntityTable(table).findId("app", "app3"));
+
+    // A name found to have no id is found right away once getId loaded its id assigned by another entityTable
+    Assert.assertNull(entityTable.findId("app", "app4"));
+    Assert.assertEquals(4L, new EntityTable(table).getId("app", "app4"));
+    Assert.assertNull(entityTable.findId("app", "app4"));
+    Assert.assertEquals(4L, entityTable.getId("app", "app4"));
+    Assert.assertEquals(Long.valueOf(4L), entityTable.findId("app", "app4"));
+  }
+
+  @Test
+  public void testLookupsReportCacheStats() throws Exception {
+    InMemoryTableService.create("testLookupsReportCacheStats");
+    MetricsTable table = new InMemoryMetricsTable("testLookupsReportCacheStats");
+    Assert.assertEquals(1L, new EntityTable(table).getId("app", "app1"));
+
+    // Queries only do lookups, which report without any write
+    EntityTable entityTable = new EntityTable(table);
+    CountingMetricsCollector metrics = new CountingMetricsCollector();
+    entityTable.setMetricsCollector(metrics);
+    Assert.assertEquals(Long.valueOf(1L), entityTable.findId("app", "app1"));
+    Assert.assertEquals(1L, metrics.get("entityTable.cache.miss.count"));
+
+    // Lookups within a second of the last report are reported later
+    Assert.assertEquals(Long.valueOf(1L), entityTable.findId("app", "app1"));
+    entityTable.reportCacheStats();
+    Assert.assertEquals(1L, metrics.get("entityTable.cache.hit.count"));
+    Assert.assertEquals(1L, metrics.get("entityTable.cache.miss.count"));
+  }
+
+  /**
+   * A {@link MetricsCollector} that sums up increments.
+   */
+  private static final class CountingMetricsCollector implements MetricsCollector {
+
+    private final Map<String, Long> counts = Maps.newHashMap();
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.put(metricName, get(metricName) + value);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      counts.put(metricName, value);
+    }
+
+    long get(String metricName) {
+      Long count = counts.get(metricName);
+      return count == null ? 0L : count;
+    }
+  }
 }
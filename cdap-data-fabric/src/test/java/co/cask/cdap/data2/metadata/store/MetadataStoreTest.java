@@ -25,6 +25,8 @@ import co.cask.cdap.data.runtime.SystemDatasetRuntimeModule;
 import co.cask.cdap.data2.audit.AuditModule;
 import co.cask.cdap.data2.audit.InMemoryAuditPublisher;
 import co.cask.cdap.data2.audit.payload.builder.MetadataPayloadBuilder;
+import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.metadata.publisher.NoOpMetadataChangePublisher;
 import co.cask.cdap.kafka.KafkaTester;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.ProgramType;
@@ -37,10 +39,15 @@ import co.cask.cdap.proto.metadata.Metadata;
 import co.cask.cdap.proto.metadata.MetadataChangeRecord;
 import co.cask.cdap.proto.metadata.MetadataRecord;
 import co.cask.cdap.proto.metadata.MetadataScope;
+import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
+import co.cask.cdap.proto.metadata.MetadataSearchTargetType;
+import co.cask.tephra.TransactionExecutorFactory;
 import co.cask.tephra.TransactionManager;
 import co.cask.tephra.runtime.TransactionInMemoryModule;
 import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -50,6 +57,8 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 import com.google.inject.util.Modules;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -62,6 +71,7 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -202,13 +212,14 @@ public class MetadataStoreTest {
 
   private int kafkaOffset = 0;
 
+  private static Injector injector;
   private static TransactionManager txManager;
   private static MetadataStore store;
   private static InMemoryAuditPublisher auditPublisher;
 
   @BeforeClass
   public static void setup() throws IOException {
-    Injector injector = KAFKA_TESTER.getInjector();
+    injector = KAFKA_TESTER.getInjector();
     txManager = injector.getInstance(TransactionManager.class);
     txManager.startAndWait();
     store = injector.getInstance(MetadataStore.class);
@@ -342,6 +353,85 @@ public class MetadataStoreTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test
+  public void testSearchPagination() throws Exception {
+    Id.Stream stream1 = Id.Stream.from("ns2", "s1");
+    Id.Stream stream2 = Id.Stream.from("ns2", "s2");
+    Id.DatasetInstance dataset1 = Id.DatasetInstance.from("ns2", "ds1");
+    Id.DatasetInstance dataset2 = Id.DatasetInstance.from("ns2", "ds2");
+    Id.DatasetInstance dataset3 = Id.DatasetInstance.from("ns2", "ds3");
+
+    // use a store that does not publish changes, so that they do not interfere with the changes expected by
+    // testPublishing
+    DatasetFramework dsFramework =
+      injector.getInstance(Key.get(DatasetFramework.class, Names.named(DataSetsModules.BASIC_DATASET_FRAMEWORK)));
+    MetadataStore nonPublishingStore = new DefaultMetadataStore(injector.getInstance(TransactionExecutorFactory.class),
+                                                                dsFramework, new NoOpMetadataChangePublisher());
+
+    // stream1 matches both terms of the query, so it has to be ranked first
+    nonPublishingStore.addTags(MetadataScope.USER, stream1, "pTag", "pOther");
+    nonPublishingStore.addTags(MetadataScope.USER, stream2, "pTag");
+    nonPublishingStore.addTags(MetadataScope.USER, dataset1, "pTag");
+    nonPublishingStore.addTags(MetadataScope.SYSTEM, dataset2, "pTag");
+    nonPublishingStore.addTags(MetadataScope.USER, dataset3, "pTag");
+
+    Set<MetadataSearchTargetType> allTypes = ImmutableSet.of();
+    List<Id.NamespacedId> actual = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      MetadataSearchResponse response =
+        nonPublishingStore.searchMetadataOnType("ns2", "pTag pOther", allTypes, 2, cursor,
+                                                Predicates.<Id.NamespacedId>alwaysTrue());
+      Assert.assertEquals(5, response.getTotal());
+      Assert.assertTrue(response.getResults().size() <= 2);
+      for (MetadataSearchResultRecord record : response.getResults()) {
+        actual.add(record.getEntityId());
+      }
+      cursor = response.getCursor();
+      pages++;
+    } while (cursor != null);
+
+    Assert.assertEquals(3, pages);
+    // results with same score are ordered by entity id
+    Assert.assertEquals(ImmutableList.<Id.NamespacedId>of(stream1, dataset1, dataset2, dataset3, stream2), actual);
+
+    // entities that are filtered out do not leave pages short, and are not counted
+    final Set<Id.NamespacedId> hidden = ImmutableSet.<Id.NamespacedId>of(stream1, dataset1);
+    Predicate<Id.NamespacedId> visible = new Predicate<Id.NamespacedId>() {
+      @Override
+      public boolean apply(Id.NamespacedId entityId) {
+        return !hidden.contains(entityId);
+      }
+    };
+    MetadataSearchResponse response =
+      nonPublishingStore.searchMetadataOnType("ns2", "pTag pOther", allTypes, 2, null, visible);
+    Assert.assertEquals(3, response.getTotal());
+    Assert.assertEquals(ImmutableSet.of(dataset2, dataset3), getEntityIds(response.getResults()));
+    response = nonPublishingStore.searchMetadataOnType("ns2", "pTag pOther", allTypes, 2, response.getCursor(),
+                                                       visible);
+    Assert.assertEquals(ImmutableSet.of(stream2), getEntityIds(response.getResults()));
+    Assert.assertNull(response.getCursor());
+
+    // results of a page carry the metadata of the entities
+    response = nonPublishingStore.searchMetadataOnType("ns2", "pOther", allTypes, 10, null,
+                                                       Predicates.<Id.NamespacedId>alwaysTrue());
+    Assert.assertNull(response.getCursor());
+    Assert.assertEquals(
+      ImmutableSet.of(new MetadataSearchResultRecord(
+        stream1, ImmutableMap.of(MetadataScope.USER, new Metadata(Collections.<String, String>emptyMap(),
+                                                                  ImmutableSet.of("pTag", "pOther"))))),
+      response.getResults());
+  }
+
+  private Set<Id.NamespacedId> getEntityIds(Set<MetadataSearchResultRecord> results) {
+    Set<Id.NamespacedId> entityIds = new HashSet<>();
+    for (MetadataSearchResultRecord result : results) {
+      entityIds.add(result.getEntityId());
+    }
+    return entityIds;
+  }
+
   @AfterClass
   public static void teardown() {
     txManager.stopAndWait();
@@ -136,6 +136,15 @@ public abstract class QueueTest {
     enqueueDequeue(queueName, ROUNDS, ROUNDS, 1, 3, DequeueStrategy.FIFO, 1);
   }
 
+  // Batch dequeue with three consumers, which claims multiple entries in each dequeue
+  @Category(SlowTests.class)
+  @Test(timeout = TIMEOUT_MS)
+  public void testBatchMultiFifo() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(), "app", "flow", "flowlet",
+                                                "batchmultififo");
+    enqueueDequeue(queueName, ROUNDS, ROUNDS, 10, 3, DequeueStrategy.FIFO, 50);
+  }
+
   // Simple enqueue and dequeue with one consumer, no batch
   @Test(timeout = TIMEOUT_MS)
   public void testSingleHash() throws Exception {
@@ -104,6 +104,9 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * HBase queue tests.
@@ -598,6 +601,106 @@ public abstract class HBaseQueueTest extends QueueTest {
     Assert.assertEquals(ImmutableList.of(0, 1, 2, 3, 4, 5), dequeued.get(0));
   }
 
+  @Test (timeout = 30000L)
+  public void testReconfigureDistributorBuckets() throws Exception {
+    final QueueName queueName = QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(),
+                                                      "app", "bucketsflow", "flowlet", "changebuckets");
+    final ConsumerGroupConfig groupConfig = new ConsumerGroupConfig(0L, 2, DequeueStrategy.HASH, "key");
+    configureGroups(queueName, ImmutableList.of(groupConfig));
+
+    // Enqueue 10 items with the table number of buckets, then 10 items with 1 bucket and 10 items with 16 buckets
+    createEnqueueRunnable(queueName, 10, 1, null).run();
+    changeDistributorBuckets(queueName, 0L, 1);
+    createEnqueueRunnable(queueName, 10, 1, null).run();
+    changeDistributorBuckets(queueName, 0L, 16);
+    createEnqueueRunnable(queueName, 10, 1, null).run();
+
+    try (final HBaseConsumerStateStore stateStore = ((HBaseQueueAdmin) queueAdmin).getConsumerStateStore(queueName)) {
+      Transactions.createTransactionExecutor(executorFactory, stateStore).execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          List<QueueBarrier> queueBarriers = stateStore.getAllBarriers(0L);
+          Assert.assertEquals(3, queueBarriers.size());
+          Assert.assertEquals(0, queueBarriers.get(0).getDistributorBuckets());
+          Assert.assertEquals(1, queueBarriers.get(1).getDistributorBuckets());
+          Assert.assertEquals(16, queueBarriers.get(2).getDistributorBuckets());
+          Assert.assertEquals(groupConfig, queueBarriers.get(2).getGroupConfig());
+        }
+      });
+    }
+
+    // Each consumer should see all of its entries, across the barriers
+    final Multimap<Integer, Integer> dequeued = ArrayListMultimap.create();
+    while (dequeued.size() != 30) {
+      for (int instanceId = 0; instanceId < groupConfig.getGroupSize(); instanceId++) {
+        ConsumerConfig consumerConfig = new ConsumerConfig(groupConfig, instanceId);
+        try (QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, 1)) {
+          dequeue(consumer, instanceId, 30, dequeued);
+        }
+      }
+    }
+
+    Assert.assertEquals(ImmutableList.of(0, 2, 4, 6, 8, 0, 2, 4, 6, 8, 0, 2, 4, 6, 8), dequeued.get(0));
+    Assert.assertEquals(ImmutableList.of(1, 3, 5, 7, 9, 1, 3, 5, 7, 9, 1, 3, 5, 7, 9), dequeued.get(1));
+  }
+
+  @Test (timeout = 60000L)
+  public void testDrainAcrossDistributorBucketsChange() throws Exception {
+    final QueueName queueName = QueueName.fromFlowlet(Id.Namespace.DEFAULT.getId(),
+                                                      "app", "bucketsflow", "flowlet", "drainbuckets");
+    final ConsumerGroupConfig groupConfig = new ConsumerGroupConfig(0L, 2, DequeueStrategy.HASH, "key");
+    configureGroups(queueName, ImmutableList.of(groupConfig));
+    createEnqueueRunnable(queueName, 10, 1, null).run();
+
+    final Multimap<Integer, Integer> dequeued = ArrayListMultimap.create();
+    List<QueueConsumer> consumers = Lists.newArrayList();
+    try {
+      // The consumers start draining the entries written before the change, hence they are in the old barrier
+      for (int instanceId = 0; instanceId < groupConfig.getGroupSize(); instanceId++) {
+        consumers.add(queueClientFactory.createConsumer(queueName, new ConsumerConfig(groupConfig, instanceId), 1));
+        dequeue(consumers.get(instanceId), instanceId, 1, dequeued);
+      }
+      Assert.assertEquals(2, dequeued.size());
+
+      changeDistributorBuckets(queueName, 0L, 4);
+
+      // Producers write with the new number of buckets while the consumers drain the old entries
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+        Future<?> enqueue = executor.submit(createEnqueueRunnable(queueName, 10, 1, null));
+        while (dequeued.size() != 20) {
+          for (int instanceId = 0; instanceId < groupConfig.getGroupSize(); instanceId++) {
+            dequeue(consumers.get(instanceId), instanceId, 3, dequeued);
+          }
+        }
+        enqueue.get();
+      } finally {
+        executor.shutdownNow();
+      }
+    } finally {
+      for (QueueConsumer consumer : consumers) {
+        consumer.close();
+      }
+    }
+
+    // The entries written before the change come first, and none is lost or duplicated
+    Assert.assertEquals(ImmutableList.of(0, 2, 4, 6, 8, 0, 2, 4, 6, 8), dequeued.get(0));
+    Assert.assertEquals(ImmutableList.of(1, 3, 5, 7, 9, 1, 3, 5, 7, 9), dequeued.get(1));
+  }
+
+  private void dequeue(final QueueConsumer consumer, final int instanceId, final int maxBatchSize,
+                       final Multimap<Integer, Integer> dequeued) throws Exception {
+    Transactions.createTransactionExecutor(executorFactory, (TransactionAware) consumer)
+      .execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          for (byte[] data : consumer.dequeue(maxBatchSize)) {
+            dequeued.put(instanceId, Bytes.toInt(data));
+          }
+        }
+      });
+  }
+
   @Override
   protected void verifyConsumerConfigExists(QueueName... queueNames) throws Exception {
     for (QueueName queueName : queueNames) {
@@ -757,6 +860,10 @@ public abstract class HBaseQueueTest extends QueueTest {
     }
   }
 
+  private void changeDistributorBuckets(QueueName queueName, long groupId, int distributorBuckets) throws Exception {
+    ((HBaseQueueAdmin) queueAdmin).configureDistributorBuckets(queueName, groupId, distributorBuckets);
+  }
+
   @Override
   protected void resetConsumerState(final QueueName queueName, final ConsumerConfig consumerConfig) throws Exception {
     try (HBaseConsumerStateStore stateStore = ((HBaseQueueAdmin) queueAdmin).getConsumerStateStore(queueName)) {
@@ -15,9 +15,11 @@
  */
 package co.cask.cdap.data2.transaction.queue.inmemory;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data.runtime.DataFabricModules;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.SystemDatasetRuntimeModule;
@@ -26,19 +28,31 @@ import co.cask.cdap.data.stream.StreamAdminModules;
 import co.cask.cdap.data.stream.service.InMemoryStreamMetaStore;
 import co.cask.cdap.data.stream.service.StreamMetaStore;
 import co.cask.cdap.data.view.ViewAdminModules;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueClientFactory;
+import co.cask.cdap.data2.queue.QueueEntry;
 import co.cask.cdap.data2.transaction.queue.QueueAdmin;
 import co.cask.cdap.data2.transaction.queue.QueueTest;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.explore.guice.ExploreClientModule;
+import co.cask.tephra.Transaction;
 import co.cask.tephra.TransactionExecutorFactory;
 import co.cask.tephra.TransactionManager;
 import co.cask.tephra.TransactionSystemClient;
+import com.google.common.base.Throwables;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.util.Modules;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * In-memory queue tests.
@@ -77,4 +91,71 @@ public class InMemoryQueueTest extends QueueTest {
     queueAdmin = injector.getInstance(QueueAdmin.class);
     executorFactory = injector.getInstance(TransactionExecutorFactory.class);
   }
+
+  @Test
+  public void testBoundedCapacity() throws Exception {
+    InMemoryQueue queue = new InMemoryQueue(100, 100);
+    queue.enqueue(1L, 0, new QueueEntry(new byte[60]));
+    Assert.assertEquals(60L, queue.getUsedBytes());
+
+    // entry larger than the capacity is rejected
+    try {
+      queue.enqueue(1L, 1, new QueueEntry(new byte[101]));
+      Assert.fail("Expected IOException for entry larger than the capacity");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // not enough space, enqueue times out
+    try {
+      queue.enqueue(1L, 1, new QueueEntry(new byte[60]));
+      Assert.fail("Expected IOException for full queue");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // undo releases the memory
+    queue.undoEnqueue(1L, 0);
+    Assert.assertEquals(0L, queue.getUsedBytes());
+    Assert.assertEquals(0, queue.getSize());
+  }
+
+  @Test (timeout = 10000L)
+  public void testEnqueueBackpressure() throws Exception {
+    final InMemoryQueue queue = new InMemoryQueue(100, 10000);
+    queue.enqueue(1L, 0, new QueueEntry(Bytes.toBytes("first")));
+    queue.enqueue(1L, 1, new QueueEntry(new byte[90]));
+    Assert.assertEquals(95L, queue.getUsedBytes());
+
+    // enqueue blocks until the consumer evicts enough entries
+    final CountDownLatch enqueued = new CountDownLatch(1);
+    Thread enqueueThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          queue.enqueue(2L, 0, new QueueEntry(new byte[50]));
+          enqueued.countDown();
+        } catch (IOException e) {
+          throw Throwables.propagate(e);
+        }
+      }
+    };
+    enqueueThread.start();
+    Assert.assertFalse(enqueued.await(200, TimeUnit.MILLISECONDS));
+
+    ConsumerConfig config = new ConsumerConfig(0L, 0, 1, DequeueStrategy.FIFO, null);
+    Transaction tx = new Transaction(1L, 3L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+    ImmutablePair<List<InMemoryQueue.Key>, List<byte[]>> result =
+      queue.dequeue(tx, config, new InMemoryQueue.ConsumerState(), 2);
+    Assert.assertNotNull(result);
+    Assert.assertEquals("first", Bytes.toString(result.getSecond().get(0)));
+    Assert.assertEquals(90, result.getSecond().get(1).length);
+    queue.ack(result.getFirst(), config);
+    queue.evict(result.getFirst(), 1);
+
+    Assert.assertTrue(enqueued.await(5, TimeUnit.SECONDS));
+    enqueueThread.join();
+    Assert.assertEquals(50L, queue.getUsedBytes());
+    Assert.assertEquals(1, queue.getSize());
+  }
 }
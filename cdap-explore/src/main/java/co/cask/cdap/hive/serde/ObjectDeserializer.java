@@ -38,11 +38,13 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import javax.annotation.Nullable;
 
 /**
  * Helper class for translating objects that fit a cdap {@link Schema} into objects
@@ -55,6 +57,8 @@ public class ObjectDeserializer {
   // we can almost do without the schema. The problem is that everything in Hive is lowercase,
   // but when we look up record fields we need the case sensitive field name.
   private final Schema schema;
+  // the fields to translate when flattening records, or null to translate all fields
+  private final BitSet projection;
 
   /**
    * Creates an ObjectTranslator that will be able to deserialize objects that fit a {@link Schema} into objects
@@ -75,9 +79,22 @@ public class ObjectDeserializer {
    * @param fieldOffset Ignore columns before the offset when flattening records
    */
   public ObjectDeserializer(Properties properties, Schema schema, int fieldOffset) {
+    this(properties, schema, fieldOffset, null);
+  }
+
+  /**
+   * Creates an ObjectTranslator that only translates the given columns when flattening records. Columns that are
+   * not read are flattened as {@code null}, which saves translating fields that a query doesn't use.
+   *
+   * @param properties Properties object passed to a SerDe during initialization that contains the table columns
+   * @param fieldOffset Ignore columns before the offset when flattening records
+   * @param readColumnIds Ids of the table columns to read or {@code null} to read all columns
+   */
+  public ObjectDeserializer(Properties properties, Schema schema, int fieldOffset,
+                            @Nullable Collection<Integer> readColumnIds) {
     this(Lists.newArrayList(properties.getProperty(serdeConstants.LIST_COLUMNS).split(",")),
          TypeInfoUtils.getTypeInfosFromTypeString(properties.getProperty(serdeConstants.LIST_COLUMN_TYPES)),
-         schema, fieldOffset);
+         schema, fieldOffset, readColumnIds);
   }
 
   public ObjectDeserializer(List<String> fieldNames, List<TypeInfo> fieldTypes, Schema schema) {
@@ -86,12 +103,19 @@ public class ObjectDeserializer {
 
   @VisibleForTesting
   ObjectDeserializer(List<String> fieldNames, List<TypeInfo> fieldTypes, Schema schema, int fieldOffset) {
+    this(fieldNames, fieldTypes, schema, fieldOffset, null);
+  }
+
+  @VisibleForTesting
+  ObjectDeserializer(List<String> fieldNames, List<TypeInfo> fieldTypes, Schema schema, int fieldOffset,
+                     @Nullable Collection<Integer> readColumnIds) {
     this.fieldNames = fieldNames.subList(fieldOffset, fieldNames.size());
     this.fieldTypes = fieldTypes.subList(fieldOffset, fieldTypes.size());
     // inspector should still use all names and types passed in. This is in case there are some fields that are
     // determined outside of this class, such as the stream case where timestamp and headers are read elsewhere
     this.inspector = createInspector(fieldNames, fieldTypes);
     this.schema = schema;
+    this.projection = createProjection(readColumnIds, fieldOffset);
   }
 
   /**
@@ -116,7 +140,7 @@ public class ObjectDeserializer {
     if (fieldTypes.size() == 1) {
       return deserializeField(obj, fieldTypes.get(0), schema);
     } else {
-      return flattenRecord(obj, fieldNames, fieldTypes, schema);
+      return flattenRecord(obj, fieldNames, fieldTypes, schema, projection);
     }
   }
 
@@ -130,11 +154,12 @@ public class ObjectDeserializer {
    * @throws IllegalAccessException
    */
   public List<Object> translateRecord(Object obj) throws NoSuchFieldException, IllegalAccessException {
-    return flattenRecord(obj, fieldNames, fieldTypes, schema);
+    return flattenRecord(obj, fieldNames, fieldTypes, schema, projection);
   }
 
   private List<Object> flattenRecord(Object obj, List<String> fieldNames, List<TypeInfo> fieldTypes,
-                                     Schema schema) throws NoSuchFieldException, IllegalAccessException {
+                                     Schema schema, @Nullable BitSet projection)
+    throws NoSuchFieldException, IllegalAccessException {
     boolean isNullable = schema.isNullable();
     if (obj == null) {
       if (isNullable) {
@@ -150,6 +175,11 @@ public class ObjectDeserializer {
     Map<String, Schema.Field> fieldMap = getFieldMap(schema);
     List<Object> objectFields = Lists.newArrayListWithCapacity(fieldNames.size());
     for (int i = 0; i < fieldNames.size(); i++) {
+      // Skip the field if it is not projected
+      if (projection != null && !projection.get(i)) {
+        objectFields.add(null);
+        continue;
+      }
       String hiveName = fieldNames.get(i);
       TypeInfo fieldType = fieldTypes.get(i);
       Schema.Field schemaField = fieldMap.get(hiveName);
@@ -203,7 +233,7 @@ public class ObjectDeserializer {
         StructTypeInfo structTypeInfo = (StructTypeInfo) typeInfo;
         ArrayList<String> innerFieldNames = structTypeInfo.getAllStructFieldNames();
         ArrayList<TypeInfo> innerFieldTypes = structTypeInfo.getAllStructFieldTypeInfos();
-        return flattenRecord(field, innerFieldNames, innerFieldTypes, schema);
+        return flattenRecord(field, innerFieldNames, innerFieldTypes, schema, null);
       case UNION:
         // TODO: decide what to do here
         return field;
@@ -335,6 +365,20 @@ public class ObjectDeserializer {
     return fieldMap;
   }
 
+  @Nullable
+  private BitSet createProjection(@Nullable Collection<Integer> readColumnIds, int fieldOffset) {
+    if (readColumnIds == null) {
+      return null;
+    }
+    BitSet projection = new BitSet(fieldNames.size());
+    for (int columnId : readColumnIds) {
+      if (columnId >= fieldOffset) {
+        projection.set(columnId - fieldOffset);
+      }
+    }
+    return projection;
+  }
+
   private ObjectInspector createInspector(List<String> fieldNames, List<TypeInfo> fieldTypes) {
     List<ObjectInspector> fieldInspectors = Lists.newArrayListWithCapacity(fieldTypes.size());
     for (TypeInfo typeInfo : fieldTypes) {
@@ -32,6 +32,7 @@ import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
@@ -45,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.List;
 import java.util.Properties;
+import javax.annotation.Nullable;
 
 /**
  * SerDe to deserialize Stream Events. It MUST implement the deprecated SerDe interface instead of extending the
@@ -102,7 +104,8 @@ public class StreamSerDe implements SerDe {
         this.streamFormat = (AbstractStreamEventRecordFormat) RecordFormats.createInitializedFormat(formatSpec);
         schema = formatSpec.getSchema();
       }
-      this.deserializer = new ObjectDeserializer(properties, schema, BODY_OFFSET);
+      // Only translate the body fields that are read by the query.
+      this.deserializer = new ObjectDeserializer(properties, schema, BODY_OFFSET, getReadColumnIds(conf));
       this.inspector = deserializer.getInspector();
     } catch (UnsupportedTypeException e) {
       // this should have been validated up front when schema was set on the stream.
@@ -160,6 +163,17 @@ public class StreamSerDe implements SerDe {
     return inspector;
   }
 
+  /**
+   * Returns the ids of the columns that Hive reads from the table or {@code null} if all columns are read.
+   */
+  @Nullable
+  private List<Integer> getReadColumnIds(@Nullable Configuration conf) {
+    if (conf == null || ColumnProjectionUtils.isReadAllColumns(conf)) {
+      return null;
+    }
+    return ColumnProjectionUtils.getReadColumnIDs(conf);
+  }
+
   /**
    * Gets the {@link FormatSpecification} for the given stream based on the SerDe properties.
    * For backward compatibility, if the format specification is not set in the SerDe properties, it will be
@@ -21,6 +21,7 @@ import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
 import co.cask.cdap.internal.io.SchemaGenerator;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -384,6 +385,34 @@ public class ObjectDeserializerTest {
     assertSimpleRecordEquals((List<Object>) expected.get(2), (List<Object>) translated.get(2));
   }
 
+  @Test
+  public void testProjection() throws Exception {
+    // Two leading columns, like timestamp and headers for stream, are not part of the record
+    List<String> fieldNames = Lists.newArrayList("ts", "headers", "name", "count", "score");
+    List<TypeInfo> fieldTypes = Lists.<TypeInfo>newArrayList(
+      TypeInfoFactory.longTypeInfo, TypeInfoFactory.getMapTypeInfo(TypeInfoFactory.stringTypeInfo,
+                                                                   TypeInfoFactory.stringTypeInfo),
+      TypeInfoFactory.stringTypeInfo, TypeInfoFactory.intTypeInfo, TypeInfoFactory.doubleTypeInfo);
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("name", "cdap")
+      .set("count", 3)
+      .set("score", 0.5d)
+      .build();
+
+    // Only read the timestamp and the "score" column
+    ObjectDeserializer translator = new ObjectDeserializer(fieldNames, fieldTypes, schema, 2,
+                                                           ImmutableList.of(0, 4));
+    Assert.assertEquals(Lists.newArrayList(null, null, 0.5d), translator.translateRecord(record));
+
+    // No projection reads all columns
+    translator = new ObjectDeserializer(fieldNames, fieldTypes, schema, 2, null);
+    Assert.assertEquals(Lists.<Object>newArrayList("cdap", 3, 0.5d), translator.translateRecord(record));
+  }
+
   @SuppressWarnings("unchecked")
   private void assertSimpleRecordEquals(List<Object> expected, List<Object> actual) {
     // compare the non-array fields
@@ -118,6 +118,7 @@ public class HBaseQueueDebugger extends AbstractIdleService {
   public static final String PROP_SHOW_TX_TIMESTAMP_ONLY = "show.tx.timestamp.only";
   public static final String PROP_SHOW_PROGRESS = "show.progress";
   public static final String PROP_ROWS_CACHE = "rows.cache";
+  public static final String PROP_DISTRIBUTOR_BUCKETS = "distributor.buckets";
 
   private final HBaseTableUtil tableUtil;
   private final HBaseQueueAdmin queueAdmin;
@@ -187,6 +188,18 @@ public class HBaseQueueDebugger extends AbstractIdleService {
     System.out.printf("Total results for all queues: %s\n", totalStats.getReport(showTxTimestampOnly()));
   }
 
+  /**
+   * Changes the number of row key distributor buckets of the entries of a consumer group, to spread a hot queue
+   * over more regions or to gather a cold one. The producers of the queue should be suspended. Only works for
+   * {@link co.cask.cdap.data2.transaction.queue.hbase.ShardedHBaseQueueStrategy}.
+   */
+  public void configureDistributorBuckets(QueueName queueName, long consumerGroupId,
+                                          int distributorBuckets) throws Exception {
+    queueAdmin.configureDistributorBuckets(queueName, consumerGroupId, distributorBuckets);
+    System.out.printf("Changed the number of distributor buckets of queue %s for group %d to %d\n",
+                      queueName, consumerGroupId, distributorBuckets);
+  }
+
   /**
    * Only works for {@link co.cask.cdap.data2.transaction.queue.hbase.ShardedHBaseQueueStrategy}.
    */
@@ -271,7 +284,9 @@ public class HBaseQueueDebugger extends AbstractIdleService {
     final byte[] stateColumnName = Bytes.add(QueueEntryRow.STATE_COLUMN_PREFIX,
                                              Bytes.toBytes(groupConfig.getGroupId()));
 
-    int distributorBuckets = queueClientFactory.getDistributorBuckets(hTable.getTableDescriptor());
+    int distributorBuckets = start.getDistributorBuckets() > 0
+      ? start.getDistributorBuckets()
+      : queueClientFactory.getDistributorBuckets(hTable.getTableDescriptor());
     ShardedHBaseQueueStrategy queueStrategy = new ShardedHBaseQueueStrategy(tableUtil, distributorBuckets);
 
     ScanBuilder scan = tableUtil.buildScan();
@@ -512,6 +527,9 @@ public class HBaseQueueDebugger extends AbstractIdleService {
       System.out.println("-D" + PROP_SHOW_PROGRESS + "=true         Show progress while scanning the queue table");
       System.out.println("-D" + PROP_ROWS_CACHE + "=[num_of_rows]   " +
                          "Number of rows to pass to HBase Scan.setCaching() method");
+      System.out.println("-D" + PROP_DISTRIBUTOR_BUCKETS + "=[num_of_buckets]   " +
+                         "Change the number of row key distributor buckets of the consumer flowlet's entries " +
+                         "before scanning. Requires queue-uri and consumer-flowlet, and the flow to be suspended");
       System.exit(1);
     }
 
@@ -525,8 +543,17 @@ public class HBaseQueueDebugger extends AbstractIdleService {
       consumerGroupId = FlowUtils.generateConsumerGroupId(flowId, consumerFlowlet);
     }
 
+    Integer distributorBuckets = Integer.getInteger(PROP_DISTRIBUTOR_BUCKETS);
+    if (distributorBuckets != null && consumerGroupId == null) {
+      System.err.println("Both queue-uri and consumer-flowlet are needed to change the number of buckets");
+      System.exit(1);
+    }
+
     HBaseQueueDebugger debugger = createDebugger();
     debugger.startAndWait();
+    if (distributorBuckets != null) {
+      debugger.configureDistributorBuckets(queueName, consumerGroupId, distributorBuckets);
+    }
     if (queueName != null) {
       debugger.scanQueue(queueName, consumerGroupId);
     } else {
@@ -26,12 +26,18 @@ public final class MetricQueryResult {
   private final long endTime;
   private final TimeSeries[] series;
   private final String resolution;
+  private final boolean partial;
 
   public MetricQueryResult(long startTime, long endTime, TimeSeries[] series, int resolution) {
+    this(startTime, endTime, series, resolution, false);
+  }
+
+  public MetricQueryResult(long startTime, long endTime, TimeSeries[] series, int resolution, boolean partial) {
     this.startTime = startTime;
     this.endTime = endTime;
     this.series = series;
     this.resolution = String.valueOf(resolution) + "s";
+    this.partial = partial;
   }
 
   public long getStartTime() {
@@ -50,6 +56,14 @@ public final class MetricQueryResult {
     return resolution;
   }
 
+  /**
+   * Returns {@code true} if some data points were left out of the result, because the query matched more
+   * data points than the server returns in a response.
+   */
+  public boolean isPartial() {
+    return partial;
+  }
+
   /**
    * Represents time series of a metric. This is used for decorating REST API output.
    */
@@ -44,6 +44,7 @@ import co.cask.cdap.data.stream.service.StreamServiceRuntimeModule;
 import co.cask.cdap.data.view.ViewAdminModules;
 import co.cask.cdap.data2.audit.AuditModule;
 import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableCompactionService;
 import co.cask.cdap.explore.client.ExploreClient;
 import co.cask.cdap.explore.executor.ExploreExecutorService;
 import co.cask.cdap.explore.guice.ExploreClientModule;
@@ -119,6 +120,7 @@ public class StandaloneMain {
   private final MetricsCollectionService metricsCollectionService;
   private final LogAppenderInitializer logAppenderInitializer;
   private final InMemoryTransactionService txService;
+  private final LevelDBTableCompactionService tableCompactionService;
   private final MetadataService metadataService;
   private final boolean securityEnabled;
   private final boolean sslEnabled;
@@ -167,6 +169,7 @@ public class StandaloneMain {
     }
 
     txService = injector.getInstance(InMemoryTransactionService.class);
+    tableCompactionService = injector.getInstance(LevelDBTableCompactionService.class);
     router = injector.getInstance(NettyRouter.class);
     metricsQueryService = injector.getInstance(MetricsQueryService.class);
     authorizationEnforcementService = injector.getInstance(AuthorizationEnforcementService.class);
@@ -252,6 +255,7 @@ public class StandaloneMain {
     }
 
     txService.startAndWait();
+    tableCompactionService.startAndWait();
     metricsCollectionService.startAndWait();
     authorizationEnforcementService.startAndWait();
     datasetService.startAndWait();
@@ -330,6 +334,7 @@ public class StandaloneMain {
       datasetService.stopAndWait();
       authorizationEnforcementService.stopAndWait();
       metricsQueryService.stopAndWait();
+      tableCompactionService.stopAndWait();
       txService.stopAndWait();
 
       if (securityEnabled) {
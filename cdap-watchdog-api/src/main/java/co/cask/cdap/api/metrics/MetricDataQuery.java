@@ -57,6 +57,10 @@ public final class MetricDataQuery {
    */
   private final int resolution;
   private final int limit;
+  /**
+   * Max number of data points over all time series of the result.
+   */
+  private final int maxPoints;
   private final Map<String, AggregationFunction> metrics;
   private final Map<String, String> sliceByTagValues;
   private final List<String> groupByTags;
@@ -94,10 +98,26 @@ public final class MetricDataQuery {
                          Map<String, AggregationFunction> metrics,
                          Map<String, String> sliceByTagValues, List<String> groupByTags,
                          @Nullable Interpolator interpolator) {
+    this(startTs, endTs, resolution, limit, Integer.MAX_VALUE, metrics, sliceByTagValues, groupByTags, interpolator);
+  }
+
+  /**
+   * @param startTs Start timestamp, in seconds.
+   * @param endTs End timestamp, in seconds.
+   * @param resolution Resolution in seconds.
+   * @param limit max number of data points per time series
+   * @param maxPoints max number of data points over all time series. Querying stops as soon as the result has more
+   *                  than that, hence a result with more data points than {@code maxPoints} is incomplete.
+   */
+  public MetricDataQuery(long startTs, long endTs, int resolution, int limit, int maxPoints,
+                         Map<String, AggregationFunction> metrics,
+                         Map<String, String> sliceByTagValues, List<String> groupByTags,
+                         @Nullable Interpolator interpolator) {
     this.startTs = startTs;
     this.endTs = endTs;
     this.resolution = resolution;
     this.limit = limit;
+    this.maxPoints = maxPoints;
     this.metrics = metrics;
     this.sliceByTagValues = Maps.newHashMap(sliceByTagValues);
     this.groupByTags = ImmutableList.copyOf(groupByTags);
@@ -105,26 +125,31 @@ public final class MetricDataQuery {
   }
 
   public MetricDataQuery(MetricDataQuery query, String metricName, AggregationFunction func) {
-    this(query.startTs, query.endTs, query.resolution, query.limit,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.maxPoints,
          ImmutableMap.of(metricName, func),
          query.sliceByTagValues, query.groupByTags, query.getInterpolator());
   }
 
   public MetricDataQuery(MetricDataQuery query, Map<String, String> sliceByTagValues, List<String> groupByTags) {
-    this(query.startTs, query.endTs, query.resolution, query.limit, query.metrics,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.maxPoints, query.metrics,
          sliceByTagValues, groupByTags, query.getInterpolator());
   }
 
   public MetricDataQuery(MetricDataQuery query, Map<String, String> sliceByTagValues) {
-    this(query.startTs, query.endTs, query.resolution, query.limit, query.metrics,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.maxPoints, query.metrics,
          sliceByTagValues, query.groupByTags, query.getInterpolator());
   }
 
   public MetricDataQuery(MetricDataQuery query, List<String> groupByTags) {
-    this(query.startTs, query.endTs, query.resolution, query.limit, query.metrics,
+    this(query.startTs, query.endTs, query.resolution, query.limit, query.maxPoints, query.metrics,
          query.sliceByTagValues, groupByTags, query.getInterpolator());
   }
 
+  public MetricDataQuery(MetricDataQuery query, int maxPoints) {
+    this(query.startTs, query.endTs, query.resolution, query.limit, maxPoints, query.metrics,
+         query.sliceByTagValues, query.groupByTags, query.getInterpolator());
+  }
+
   public long getStartTs() {
     return startTs;
   }
@@ -154,6 +179,10 @@ public final class MetricDataQuery {
     return limit;
   }
 
+  public int getMaxPoints() {
+    return maxPoints;
+  }
+
   public Interpolator getInterpolator() {
     return interpolator;
   }
@@ -164,6 +193,8 @@ public final class MetricDataQuery {
       .add("startTs", startTs)
       .add("endTs", endTs)
       .add("resolution", resolution)
+      .add("limit", limit)
+      .add("maxPoints", maxPoints)
       .add("metrics", metrics)
       .add("sliceByTags", Joiner.on(",").withKeyValueSeparator(":").useForNull("null").join(sliceByTagValues))
       .add("groupByTags", Joiner.on(",").join(groupByTags)).toString();
@@ -35,17 +35,26 @@ public final class LoggingConfiguration {
 
   // Used only in Distributed mode
   public static final String NUM_PARTITIONS = "log.publish.num.partitions";
+  public static final String LOG_PUBLISH_QUEUE_SIZE = "log.publish.queue.size";
+  public static final String LOG_PUBLISH_OVERFLOW_POLICY = "log.publish.overflow.policy";
+  public static final String LOG_PUBLISH_SAMPLE_RATE = "log.publish.sample.rate";
   public static final String KAFKA_SEED_BROKERS = "kafka.seed.brokers";
   public static final String LOG_SAVER_EVENT_BUCKET_INTERVAL_MS = "log.saver.event.bucket.interval.ms";
   public static final String LOG_SAVER_MAXIMUM_INMEMORY_EVENT_BUCKETS = "log.saver.event.max.inmemory.buckets";
   public static final String LOG_SAVER_INACTIVE_FILE_INTERVAL_MS = "log.saver.inactive.file.interval.ms";
   public static final String LOG_SAVER_CHECKPOINT_INTERVAL_MS = "log.saver.checkpoint.interval.ms";
   public static final String LOG_SAVER_TOPIC_WAIT_SLEEP_MS = "log.saver.topic.wait.sleep.ms";
+  public static final String LOG_SAVER_DECODE_THREADS = "log.saver.decode.threads";
+  public static final String LOG_SAVER_WRITE_THREADS = "log.saver.write.threads";
+  public static final String LOG_SAVER_MAX_BUFFERED_PAYLOAD_BYTES = "log.saver.max.buffered.payload.bytes";
   public static final String LOG_RETENTION_DURATION_DAYS = "log.retention.duration.days";
   public static final String LOG_MAX_FILE_SIZE_BYTES = "log.max.file.size.bytes";
   public static final String KAFKA_PRODUCER_TYPE = "kafka.producer.type";
   public static final String KAFKA_PROCUDER_BUFFER_MS = "kafka.producer.buffer.ms";
   public static final String LOG_CLEANUP_RUN_INTERVAL_MINS = "log.cleanup.run.interval.mins";
+  public static final String LOG_COMPACTION_RUN_INTERVAL_MINS = "log.compaction.run.interval.mins";
+  public static final String LOG_COMPACTION_SMALL_FILE_SIZE_BYTES = "log.compaction.small.file.size.bytes";
+  public static final String LOG_COMPACTION_WINDOW_MINS = "log.compaction.window.mins";
 
   // Constants
   // Table used to store log metadata
@@ -55,7 +64,13 @@ public final class LoggingConfiguration {
   public static final String DEFAULT_KAFKA_PRODUCER_TYPE = "async";
   public static final long DEFAULT_KAFKA_PROCUDER_BUFFER_MS = 1000;
   public static final String DEFAULT_NUM_PARTITIONS = "10";
+  public static final int DEFAULT_LOG_PUBLISH_QUEUE_SIZE = 8192;
+  public static final String DEFAULT_LOG_PUBLISH_OVERFLOW_POLICY = "drop";
+  public static final int DEFAULT_LOG_PUBLISH_SAMPLE_RATE = 10;
   public static final int DEFAULT_LOG_CLEANUP_RUN_INTERVAL_MINS = 24 * 60;
+  public static final int DEFAULT_LOG_COMPACTION_RUN_INTERVAL_MINS = 60;
+  public static final long DEFAULT_LOG_COMPACTION_SMALL_FILE_SIZE_BYTES = 1024 * 1024;
+  public static final long DEFAULT_LOG_COMPACTION_WINDOW_MINS = 24 * 60;
 
   public static final long DEFAULT_LOG_SAVER_EVENT_BUCKET_INTERVAL_MS = 1 * 1000;
   public static final long DEFAULT_LOG_SAVER_MAXIMUM_INMEMORY_EVENT_BUCKETS = 8;
@@ -63,6 +78,9 @@ public final class LoggingConfiguration {
   public static final long DEFAULT_LOG_SAVER_CHECKPOINT_INTERVAL_MS = 60 * 1000;
   public static final long DEFAULT_LOG_RETENTION_DURATION_DAYS = 30;
   public static final long DEFAULT_LOG_SAVER_TOPIC_WAIT_SLEEP_MS = TimeUnit.MILLISECONDS.convert(10, TimeUnit.SECONDS);
+  public static final int DEFAULT_LOG_SAVER_DECODE_THREADS = 1;
+  public static final int DEFAULT_LOG_SAVER_WRITE_THREADS = 1;
+  public static final long DEFAULT_LOG_SAVER_MAX_BUFFERED_PAYLOAD_BYTES = 64 * 1024 * 1024;
 
   private LoggingConfiguration() {}
 
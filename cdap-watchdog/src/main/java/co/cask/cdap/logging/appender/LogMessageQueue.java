@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import ch.qos.logback.classic.Level;
+import com.google.common.base.Preconditions;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free ring buffer of {@link LogMessage}s, for many producer threads and a single consumer thread.
+ * What happens to a message that does not fit in the buffer depends on the {@link OverflowPolicy}.
+ */
+public final class LogMessageQueue {
+
+  /**
+   * What to do with log messages when the queue is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * Wait for the queue to have space for the message.
+     */
+    BLOCK,
+
+    /**
+     * Drop messages below WARN level, wait for space for the others.
+     */
+    DROP,
+
+    /**
+     * Same as {@link #DROP}, but once the queue is half full, only queue one in every sample rate messages
+     * below WARN level.
+     */
+    SAMPLE
+  }
+
+  private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final AtomicReferenceArray<LogMessage> buffer;
+  private final int mask;
+  private final OverflowPolicy overflowPolicy;
+  private final int sampleRate;
+  // index of the next slot to write to, claimed by producers
+  private final AtomicLong producerIndex = new AtomicLong();
+  // index of the next slot to read from, only updated by the consumer
+  private final AtomicLong consumerIndex = new AtomicLong();
+  private final AtomicLong sampleCount = new AtomicLong();
+
+  /**
+   * Creates a queue.
+   * @param capacity minimum number of messages the queue can hold, rounded up to the next power of two.
+   * @param overflowPolicy what to do with messages when the queue is full.
+   * @param sampleRate one in sampleRate messages below WARN level are queued with the {@link OverflowPolicy#SAMPLE}
+   *                   policy, once the queue is half full.
+   */
+  public LogMessageQueue(int capacity, OverflowPolicy overflowPolicy, int sampleRate) {
+    Preconditions.checkArgument(capacity > 0 && capacity <= (1 << 30), "Invalid capacity %s", capacity);
+    Preconditions.checkArgument(sampleRate > 0, "Invalid sample rate %s", sampleRate);
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.buffer = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.overflowPolicy = overflowPolicy;
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Adds a message to the queue, following the overflow policy if the queue is full.
+   * @param message the message to add.
+   * @param mayWait false if the caller must not wait for space in the queue, in which case the message is dropped
+   *                if the queue is full, regardless of the overflow policy.
+   * @return true if the message was added, false if it was dropped.
+   */
+  public boolean add(LogMessage message, boolean mayWait) {
+    boolean belowWarn = !message.getLevel().isGreaterOrEqual(Level.WARN);
+    if (overflowPolicy == OverflowPolicy.SAMPLE && belowWarn && size() > capacity() / 2
+      && sampleCount.getAndIncrement() % sampleRate != 0) {
+      return false;
+    }
+    while (!tryAdd(message)) {
+      if (!mayWait || (belowWarn && overflowPolicy != OverflowPolicy.BLOCK)) {
+        return false;
+      }
+      LockSupport.parkNanos(WAIT_NANOS);
+      if (Thread.currentThread().isInterrupted()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Removes up to the given number of messages from the queue, in the order they were added.
+   * Must only be called by the consumer thread.
+   * @return the number of messages removed.
+   */
+  public int drainTo(Collection<? super LogMessage> messages, int maxMessages) {
+    long index = consumerIndex.get();
+    int count = 0;
+    while (count < maxMessages && index < producerIndex.get()) {
+      int offset = (int) index & mask;
+      LogMessage message = buffer.get(offset);
+      if (message == null) {
+        // The slot is claimed, but the producer has not set the message yet
+        Thread.yield();
+        continue;
+      }
+      buffer.lazySet(offset, null);
+      index++;
+      consumerIndex.lazySet(index);
+      messages.add(message);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of messages in the queue.
+   */
+  public int size() {
+    return (int) Math.max(0L, Math.min(capacity(), producerIndex.get() - consumerIndex.get()));
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+  private boolean tryAdd(LogMessage message) {
+    while (true) {
+      long index = producerIndex.get();
+      if (index - consumerIndex.get() >= capacity()) {
+        return false;
+      }
+      if (producerIndex.compareAndSet(index, index + 1)) {
+        buffer.lazySet((int) index & mask, message);
+        return true;
+      }
+    }
+  }
+}
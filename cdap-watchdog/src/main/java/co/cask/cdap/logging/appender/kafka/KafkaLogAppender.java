@@ -16,28 +16,61 @@
 
 package co.cask.cdap.logging.appender.kafka;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.logging.LoggingConfiguration;
 import co.cask.cdap.logging.appender.LogAppender;
 import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.appender.LogMessageQueue;
+import co.cask.cdap.logging.context.LoggingContextHelper;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
 
 /**
  * Log appender that publishes log messages to Kafka.
+ *
+ * Log messages are added to a {@link LogMessageQueue}, from which a publisher thread serializes and publishes them
+ * in batches, so that logging threads do not wait for Kafka. What happens when the queue is full depends on the
+ * configured {@link LogMessageQueue.OverflowPolicy}. The publisher thread is started by {@link #start()}, or by the
+ * first message appended, since appenders that wrap this one may append to it without starting it.
  */
 public final class KafkaLogAppender extends LogAppender {
   private static final Logger LOG = LoggerFactory.getLogger(KafkaLogAppender.class);
 
   private static final String APPENDER_NAME = "KafkaLogAppender";
+  private static final int MAX_BATCH_SIZE = 1000;
+  private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long STOP_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+
   private final SimpleKafkaProducer producer;
   private final LoggingEventSerializer loggingEventSerializer;
+  private final LogMessageQueue queue;
+  // Metrics contexts by log partition, only set if there is a metrics collection service
+  private final ConcurrentMap<String, MetricsContext> metricsContexts = Maps.newConcurrentMap();
 
   private final AtomicBoolean stopped = new AtomicBoolean(false);
+  private final Object publisherLock = new Object();
+  private volatile MetricsCollectionService metricsCollectionService;
+  private volatile Thread publisherThread;
 
   @Inject
   KafkaLogAppender(CConfiguration cConf) {
@@ -51,16 +84,48 @@ public final class KafkaLogAppender extends LogAppender {
       addError("Error initializing KafkaLogAppender.", e);
       throw Throwables.propagate(e);
     }
+
+    int queueSize = cConf.getInt(LoggingConfiguration.LOG_PUBLISH_QUEUE_SIZE,
+                                 LoggingConfiguration.DEFAULT_LOG_PUBLISH_QUEUE_SIZE);
+    Preconditions.checkArgument(queueSize > 0, "Log publish queue size is invalid: %s", queueSize);
+    int sampleRate = cConf.getInt(LoggingConfiguration.LOG_PUBLISH_SAMPLE_RATE,
+                                  LoggingConfiguration.DEFAULT_LOG_PUBLISH_SAMPLE_RATE);
+    Preconditions.checkArgument(sampleRate > 0, "Log publish sample rate is invalid: %s", sampleRate);
+    String overflowPolicy = cConf.get(LoggingConfiguration.LOG_PUBLISH_OVERFLOW_POLICY,
+                                      LoggingConfiguration.DEFAULT_LOG_PUBLISH_OVERFLOW_POLICY);
+    this.queue = new LogMessageQueue(queueSize, LogMessageQueue.OverflowPolicy.valueOf(overflowPolicy.toUpperCase()),
+                                     sampleRate);
     addInfo("Successfully initialized KafkaLogAppender.");
   }
 
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsCollectionService = metricsCollectionService;
+  }
+
+  @Override
+  public void start() {
+    startPublisher();
+    super.start();
+  }
+
   @Override
   protected void append(LogMessage logMessage) {
-    try {
-      byte [] bytes = loggingEventSerializer.toBytes(logMessage.getLoggingEvent(), logMessage.getLoggingContext());
-      producer.publish(logMessage.getLoggingContext().getLogPartition(), bytes);
-    } catch (Throwable t) {
-      LOG.error("Got exception while serializing log event {}.", logMessage.getLoggingEvent(), t);
+    startPublisher();
+
+    // Capture the thread specific data of the event, since it is serialized in the publisher thread
+    logMessage.prepareForDeferredProcessing();
+    logMessage.getCallerData();
+
+    // Never wait in the publisher thread, nor in the Kafka client threads, as they are needed to free up the queue
+    boolean mayWait = Thread.currentThread() != publisherThread
+      && (logMessage.getLoggerName() == null || !logMessage.getLoggerName().startsWith("kafka."));
+    if (!queue.add(logMessage, mayWait)) {
+      MetricsContext metricsContext = getMetricsContext(logMessage);
+      if (metricsContext != null) {
+        metricsContext.increment("log.publish.dropped", 1);
+      }
     }
   }
 
@@ -71,6 +136,106 @@ public final class KafkaLogAppender extends LogAppender {
     }
 
     super.stop();
+    // The publisher thread publishes the remaining messages before it stops
+    Thread thread = publisherThread;
+    if (thread != null) {
+      try {
+        thread.join(STOP_TIMEOUT_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
     producer.stop();
   }
+
+  /**
+   * Starts the publisher thread, unless it is already started or the appender is stopped.
+   */
+  private void startPublisher() {
+    if (publisherThread != null || stopped.get()) {
+      return;
+    }
+    synchronized (publisherLock) {
+      if (publisherThread != null) {
+        return;
+      }
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          publishMessages();
+        }
+      }, "kafka-log-publisher");
+      thread.setDaemon(true);
+      publisherThread = thread;
+      thread.start();
+    }
+  }
+
+  /**
+   * Publishes batches of messages from the queue until the appender is stopped and the queue is empty.
+   */
+  private void publishMessages() {
+    List<LogMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    List<Map.Entry<String, byte[]>> messages = new ArrayList<>(MAX_BATCH_SIZE);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    BinaryEncoder encoder = null;
+
+    while (true) {
+      // Check for stop before draining, so that messages queued before the stop are still published
+      boolean stopping = stopped.get();
+      if (queue.drainTo(batch, MAX_BATCH_SIZE) == 0) {
+        if (stopping) {
+          return;
+        }
+        LockSupport.parkNanos(IDLE_WAIT_NANOS);
+        continue;
+      }
+
+      for (LogMessage logMessage : batch) {
+        try {
+          buffer.reset();
+          encoder = EncoderFactory.get().directBinaryEncoder(buffer, encoder);
+          loggingEventSerializer.encode(logMessage.getLoggingEvent(), logMessage.getLoggingContext(), encoder);
+          messages.add(new AbstractMap.SimpleImmutableEntry<>(logMessage.getLoggingContext().getLogPartition(),
+                                                               buffer.toByteArray()));
+        } catch (Throwable t) {
+          LOG.error("Got exception while serializing log event {}.", logMessage.getLoggingEvent(), t);
+        }
+      }
+      producer.publish(messages);
+
+      // Report the queue size to the metrics contexts of the programs that log through this appender
+      int queued = queue.size();
+      for (LogMessage logMessage : batch) {
+        getMetricsContext(logMessage);
+      }
+      for (MetricsContext metricsContext : metricsContexts.values()) {
+        metricsContext.gauge("log.publish.queued", queued);
+      }
+      batch.clear();
+      messages.clear();
+    }
+  }
+
+  @Nullable
+  private MetricsContext getMetricsContext(LogMessage logMessage) {
+    MetricsCollectionService metricsCollectionService = this.metricsCollectionService;
+    if (metricsCollectionService == null) {
+      return null;
+    }
+    String logPartition = logMessage.getLoggingContext().getLogPartition();
+    MetricsContext metricsContext = metricsContexts.get(logPartition);
+    if (metricsContext != null) {
+      return metricsContext;
+    }
+    Map<String, String> tags;
+    try {
+      tags = LoggingContextHelper.getMetricsTags(logMessage.getLoggingContext());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    metricsContext = metricsCollectionService.getContext(tags);
+    MetricsContext existing = metricsContexts.putIfAbsent(logPartition, metricsContext);
+    return existing == null ? metricsContext : existing;
+  }
 }
@@ -29,6 +29,7 @@ import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 
 import java.io.ByteArrayInputStream;
@@ -41,9 +42,11 @@ import java.nio.ByteBuffer;
  */
 public final class LoggingEventSerializer {
   private final LogSchema logSchema;
+  private final GenericDatumWriter<GenericRecord> datumWriter;
 
   public LoggingEventSerializer() throws IOException {
     this.logSchema = new LogSchema();
+    this.datumWriter = new GenericDatumWriter<>(logSchema.getAvroSchema());
   }
 
   public LoggingEventSerializer(VerifiableProperties props) throws IOException {
@@ -54,12 +57,19 @@ public final class LoggingEventSerializer {
     return logSchema.getAvroSchema();
   }
 
+  /**
+   * Writes the given event to an encoder. The encoder can be reused to serialize many events into the same buffer.
+   */
+  public void encode(ILoggingEvent loggingEvent, LoggingContext loggingContext, Encoder encoder) throws IOException {
+    datumWriter.write(LoggingEvent.encode(logSchema.getAvroSchema(), loggingEvent, loggingContext), encoder);
+    encoder.flush();
+  }
+
   public byte[] toBytes(ILoggingEvent loggingEvent, LoggingContext loggingContext) {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(logSchema.getAvroSchema());
     try {
-      writer.write(LoggingEvent.encode(logSchema.getAvroSchema(), loggingEvent, loggingContext), encoder);
+      datumWriter.write(LoggingEvent.encode(logSchema.getAvroSchema(), loggingEvent, loggingContext), encoder);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -25,6 +25,9 @@ import kafka.producer.ProducerConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -65,6 +68,21 @@ public final class SimpleKafkaProducer {
     }
   }
 
+  /**
+   * Publishes a batch of log messages, given as entries of partition key and message.
+   */
+  public void publish(List<Map.Entry<String, byte[]>> messages) {
+    List<KeyedMessage<String, byte[]>> data = new ArrayList<>(messages.size());
+    for (Map.Entry<String, byte[]> message : messages) {
+      data.add(new KeyedMessage<>(kafkaTopic, message.getKey(), message.getValue()));
+    }
+    try {
+      producer.send(data);
+    } catch (Throwable t) {
+      LOG.error("Exception when trying to publish {} log messages to kafka with topic {}", data.size(), kafkaTopic, t);
+    }
+  }
+
   public void stop() {
     producer.close();
   }
@@ -32,6 +32,10 @@ public class LogDataOffsetCallback extends AbstractJSONCallback {
 
   @Override
   public Object encodeSend(LogEvent logEvent) {
+    return toFormattedLogDataEvent(logEvent);
+  }
+
+  static FormattedLogDataEvent toFormattedLogDataEvent(LogEvent logEvent) {
     ILoggingEvent event = logEvent.getLoggingEvent();
     StackTraceElement[] stackTraceElements = event.getCallerData();
     String className = "";
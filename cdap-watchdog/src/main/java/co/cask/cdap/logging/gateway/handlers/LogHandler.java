@@ -18,6 +18,7 @@ package co.cask.cdap.logging.gateway.handlers;
 
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.http.ChannelCloseFutureHandler;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.internal.app.store.RunRecordMeta;
 import co.cask.cdap.logging.LoggingConfiguration;
@@ -28,14 +29,21 @@ import co.cask.cdap.logging.gateway.handlers.store.ProgramStore;
 import co.cask.cdap.logging.read.Callback;
 import co.cask.cdap.logging.read.LogOffset;
 import co.cask.cdap.logging.read.LogReader;
+import co.cask.cdap.logging.read.LogTailer;
 import co.cask.cdap.logging.read.ReadRange;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.http.AbstractHttpHandler;
+import co.cask.http.ChunkResponder;
 import co.cask.http.HttpHandler;
 import co.cask.http.HttpResponder;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import org.apache.twill.common.Cancellable;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
@@ -60,6 +68,8 @@ public class LogHandler extends AbstractHttpHandler {
   private final LogReader logReader;
   private final ProgramStore programStore;
   private final String logPattern;
+  // Only available when logs are published to Kafka
+  private LogTailer logTailer;
 
   @Inject
   public LogHandler(LogReader logReader, CConfiguration cConfig, ProgramStore programStore) {
@@ -68,6 +78,12 @@ public class LogHandler extends AbstractHttpHandler {
     this.logPattern = cConfig.get(LoggingConfiguration.LOG_PATTERN, LoggingConfiguration.DEFAULT_LOG_PATTERN);
   }
 
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  void setLogTailer(LogTailer logTailer) {
+    this.logTailer = logTailer;
+  }
+
   @GET
   @Path("/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/logs")
   public void getLogs(HttpRequest request, HttpResponder responder, @PathParam("namespace-id") String namespaceId,
@@ -265,6 +281,75 @@ public class LogHandler extends AbstractHttpHandler {
     }
   }
 
+  @GET
+  @Path("/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/logs/tail")
+  public void tail(HttpRequest request, HttpResponder responder, @PathParam("namespace-id") String namespaceId,
+                   @PathParam("app-id") String appId, @PathParam("program-type") String programType,
+                   @PathParam("program-id") String programId,
+                   @QueryParam("fromOffset") @DefaultValue("") String fromOffsetStr,
+                   @QueryParam("escape") @DefaultValue("true") boolean escape,
+                   @QueryParam("filter") @DefaultValue("") String filterStr,
+                   @QueryParam("format") @DefaultValue("text") String format) {
+    LoggingContext loggingContext =
+      LoggingContextHelper.getLoggingContext(namespaceId, appId, programId,
+                                             ProgramType.valueOfCategoryName(programType));
+    doTail(responder, loggingContext, fromOffsetStr, escape, filterStr, format);
+  }
+
+  @GET
+  @Path("/namespaces/{namespace-id}/apps/{app-id}/{program-type}/{program-id}/runs/{run-id}/logs/tail")
+  public void runIdTail(HttpRequest request, HttpResponder responder, @PathParam("namespace-id") String namespaceId,
+                        @PathParam("app-id") String appId, @PathParam("program-type") String programType,
+                        @PathParam("program-id") String programId, @PathParam("run-id") String runId,
+                        @QueryParam("fromOffset") @DefaultValue("") String fromOffsetStr,
+                        @QueryParam("escape") @DefaultValue("true") boolean escape,
+                        @QueryParam("filter") @DefaultValue("") String filterStr,
+                        @QueryParam("format") @DefaultValue("text") String format) {
+    ProgramType type = ProgramType.valueOfCategoryName(programType);
+    RunRecordMeta runRecord = programStore.getRun(Id.Program.from(namespaceId, appId, type, programId), runId);
+    LoggingContext loggingContext = LoggingContextHelper.getLoggingContextWithRunId(namespaceId, appId, programId, type,
+                                                                                    runId, runRecord.getSystemArgs());
+
+    doTail(responder, loggingContext, fromOffsetStr, escape, filterStr, format);
+  }
+
+  /**
+   * Streams new log events of the logging context over a chunked response, with one JSON object per line, until
+   * the client closes the connection. Clients that reconnect pass the offset of the last event they got as
+   * fromOffset to resume from it.
+   */
+  private void doTail(HttpResponder responder, LoggingContext loggingContext, String fromOffsetStr, boolean escape,
+                      String filterStr, String format) {
+    if (logTailer == null) {
+      responder.sendString(HttpResponseStatus.NOT_IMPLEMENTED, "Tailing logs is only supported in distributed mode.");
+      return;
+    }
+    try {
+      Filter filter = FilterParser.parse(filterStr);
+      LogOffset logOffset = FormattedTextLogEvent.parseLogOffset(fromOffsetStr);
+      String pattern = getFormatType(format) == LogFormatType.JSON ? null : logPattern;
+
+      ChunkResponder chunkResponder = responder.sendChunkStart(
+        HttpResponseStatus.OK, ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "application/x-ndjson"));
+      final Cancellable cancellable =
+        logTailer.tail(loggingContext, filter, logOffset, new LogTailSubscriber(chunkResponder, pattern, escape));
+      // End the subscription as soon as the client disconnects, rather than on the next failed write
+      ChannelFuture closeFuture = ChannelCloseFutureHandler.getCloseFuture();
+      if (closeFuture != null) {
+        closeFuture.addListener(new ChannelFutureListener() {
+          @Override
+          public void operationComplete(ChannelFuture future) {
+            cancellable.cancel();
+          }
+        });
+      }
+    } catch (SecurityException e) {
+      responder.sendStatus(HttpResponseStatus.UNAUTHORIZED);
+    } catch (IllegalArgumentException e) {
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
   @GET
   @Path("/system/{component-id}/{service-id}/logs")
   public void sysList(HttpRequest request, HttpResponder responder, @PathParam("component-id") String componentId,
@@ -335,6 +420,19 @@ public class LogHandler extends AbstractHttpHandler {
     }
   }
 
+  @GET
+  @Path("/system/{component-id}/{service-id}/logs/tail")
+  public void sysTail(HttpRequest request, HttpResponder responder, @PathParam("component-id") String componentId,
+                      @PathParam("service-id") String serviceId,
+                      @QueryParam("fromOffset") @DefaultValue("") String fromOffsetStr,
+                      @QueryParam("escape") @DefaultValue("true") boolean escape,
+                      @QueryParam("filter") @DefaultValue("") String filterStr,
+                      @QueryParam("format") @DefaultValue("text") String format) {
+    LoggingContext loggingContext = LoggingContextHelper.getLoggingContext(Id.Namespace.SYSTEM.getId(), componentId,
+                                                                           serviceId);
+    doTail(responder, loggingContext, fromOffsetStr, escape, filterStr, format);
+  }
+
   private static final class TimeRange {
     private final long fromMillis;
     private final long toMillis;
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2014-2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.gateway.handlers;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.read.LogTailer;
+import co.cask.http.ChunkResponder;
+import com.google.common.base.Charsets;
+import com.google.common.io.Closeables;
+import com.google.gson.Gson;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * {@link LogTailer.Subscriber} that sends each batch of log events as a chunk of a chunked HTTP response, with one
+ * JSON object per line, either a {@link FormattedTextLogEvent} or a {@link FormattedLogDataEvent}. Empty batches
+ * are sent as an empty line, so that closed connections are detected.
+ */
+final class LogTailSubscriber implements LogTailer.Subscriber {
+  private static final Gson GSON = new Gson();
+
+  private final ChunkResponder chunkResponder;
+  @Nullable
+  private final PatternLayout patternLayout;
+  private final boolean escape;
+
+  /**
+   * @param chunkResponder the responder of the started chunked response.
+   * @param logPattern the pattern to format events as text with, or null to send them as {@link LogData}.
+   * @param escape whether to escape HTML in events formatted as text.
+   */
+  LogTailSubscriber(ChunkResponder chunkResponder, @Nullable String logPattern, boolean escape) {
+    this.chunkResponder = chunkResponder;
+    this.escape = escape;
+
+    if (logPattern == null) {
+      this.patternLayout = null;
+    } else {
+      ch.qos.logback.classic.Logger rootLogger =
+        (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+      LoggerContext loggerContext = rootLogger.getLoggerContext();
+
+      this.patternLayout = new PatternLayout();
+      this.patternLayout.setContext(loggerContext);
+      this.patternLayout.setPattern(logPattern);
+      this.patternLayout.start();
+    }
+  }
+
+  @Override
+  public void onEvents(List<LogEvent> events) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (LogEvent event : events) {
+      builder.append(GSON.toJson(format(event))).append('\n');
+    }
+    if (events.isEmpty()) {
+      builder.append('\n');
+    }
+    chunkResponder.sendChunk(ChannelBuffers.copiedBuffer(builder, Charsets.UTF_8));
+  }
+
+  @Override
+  public void onClosed() {
+    Closeables.closeQuietly(chunkResponder);
+    if (patternLayout != null) {
+      patternLayout.stop();
+    }
+  }
+
+  private Object format(LogEvent event) {
+    if (patternLayout == null) {
+      return LogDataOffsetCallback.toFormattedLogDataEvent(event);
+    }
+    String log = patternLayout.doLayout(event.getLoggingEvent());
+    log = escape ? StringEscapeUtils.escapeHtml(log) : log;
+    return new FormattedTextLogEvent(log, event.getOffset());
+  }
+}
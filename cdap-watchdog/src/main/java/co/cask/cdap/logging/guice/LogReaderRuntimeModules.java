@@ -21,7 +21,9 @@ import co.cask.cdap.data2.security.RemoteUGIProvider;
 import co.cask.cdap.data2.security.UGIProvider;
 import co.cask.cdap.logging.read.DistributedLogReader;
 import co.cask.cdap.logging.read.FileLogReader;
+import co.cask.cdap.logging.read.KafkaLogTailer;
 import co.cask.cdap.logging.read.LogReader;
+import co.cask.cdap.logging.read.LogTailer;
 import com.google.inject.AbstractModule;
 import com.google.inject.Module;
 import com.google.inject.Scopes;
@@ -57,6 +59,7 @@ public final class LogReaderRuntimeModules extends RuntimeModule {
       @Override
       protected void configure() {
         bind(LogReader.class).to(DistributedLogReader.class);
+        bind(LogTailer.class).to(KafkaLogTailer.class).in(Scopes.SINGLETON);
         bind(UGIProvider.class).to(RemoteUGIProvider.class).in(Scopes.SINGLETON);
       }
     };
@@ -27,12 +27,19 @@ import org.apache.avro.generic.GenericRecord;
 public final class KafkaLogEvent extends LogWriteEvent {
   private final int partition;
   private final long nextOffset;
+  private final int payloadSize;
 
   public KafkaLogEvent(GenericRecord genericRecord, ILoggingEvent logEvent, LoggingContext loggingContext,
                        int partition, long nextOffset) {
+    this(genericRecord, logEvent, loggingContext, partition, nextOffset, 0);
+  }
+
+  public KafkaLogEvent(GenericRecord genericRecord, ILoggingEvent logEvent, LoggingContext loggingContext,
+                       int partition, long nextOffset, int payloadSize) {
     super(genericRecord, logEvent, loggingContext);
     this.partition = partition;
     this.nextOffset = nextOffset;
+    this.payloadSize = payloadSize;
   }
 
   public int getPartition() {
@@ -43,4 +50,12 @@ public final class KafkaLogEvent extends LogWriteEvent {
     return nextOffset;
   }
 
+  /**
+   * Returns the size in bytes of the Kafka message payload of the event, or 0 if it is not known.
+   * The decoded event takes more heap than this.
+   */
+  public int getPayloadSize() {
+    return payloadSize;
+  }
+
 }
@@ -22,6 +22,7 @@ import co.cask.cdap.common.io.SeekableInputStream;
 import co.cask.cdap.data2.security.Impersonator;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.logging.write.LogFileIndex;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
@@ -37,10 +38,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * Reads log events from an Avro file.
@@ -60,6 +63,12 @@ public class AvroFileReader {
     try {
       DataFileReader<GenericRecord> dataFileReader = createReader(file, namespaceId, impersonator);
       try {
+        LogFileIndex index = readIndex(file, namespaceId, impersonator);
+        if (index != null) {
+          readLog(dataFileReader, index, logFilter, fromTimeMs, toTimeMs, maxEvents, callback);
+          return;
+        }
+
         ILoggingEvent loggingEvent;
         GenericRecord datum;
         if (dataFileReader.hasNext()) {
@@ -120,6 +129,11 @@ public class AvroFileReader {
       DataFileReader<GenericRecord> dataFileReader = createReader(file, namespaceId, impersonator);
 
       try {
+        LogFileIndex index = readIndex(file, namespaceId, impersonator);
+        if (index != null) {
+          return readLogPrev(dataFileReader, index, logFilter, fromTimeMs, maxEvents);
+        }
+
         if (!dataFileReader.hasNext()) {
           return ImmutableList.of();
         }
@@ -182,6 +196,113 @@ public class AvroFileReader {
     }
   }
 
+  /**
+   * Same as {@link #readLog(Location, Filter, long, long, int, Callback, NamespaceId, Impersonator)}, but only reads
+   * the blocks of the file that can have matching events according to the file index.
+   */
+  private void readLog(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index, Filter logFilter,
+                       long fromTimeMs, long toTimeMs, int maxEvents, Callback callback) throws IOException {
+    GenericRecord datum = null;
+    int count = 0;
+    long prevTimestamp = -1;
+    for (LogFileIndex.Block block : index.getBlocks()) {
+      if (block.getMinTimestamp() >= toTimeMs && block.getMinTimestamp() != prevTimestamp) {
+        break;
+      }
+      if (block.getMaxTimestamp() < fromTimeMs || !block.mayMatch(logFilter)) {
+        // Same as if all events of the block were read, none of them matching
+        prevTimestamp = block.getMaxTimestamp();
+        continue;
+      }
+
+      LOG.trace("Reading block at pos {}", block.getPosition());
+      dataFileReader.seek(block.getPosition());
+      for (int i = 0; i < block.getEventCount() && dataFileReader.hasNext(); i++) {
+        datum = dataFileReader.next(datum);
+        ILoggingEvent loggingEvent = LoggingEvent.decode(datum);
+        if (loggingEvent.getTimeStamp() >= fromTimeMs && logFilter.match(loggingEvent)) {
+          ++count;
+          if ((count > maxEvents || loggingEvent.getTimeStamp() >= toTimeMs)
+            && loggingEvent.getTimeStamp() != prevTimestamp) {
+            return;
+          }
+          callback.handle(new LogEvent(loggingEvent,
+                                       new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp())));
+        }
+        prevTimestamp = loggingEvent.getTimeStamp();
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #readLogPrev(Location, Filter, long, int, NamespaceId, Impersonator)}, but only reads
+   * the blocks of the file that can have matching events according to the file index.
+   */
+  private Collection<LogEvent> readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index,
+                                           Filter logFilter, long fromTimeMs, int maxEvents) throws IOException {
+    List<List<LogEvent>> logSegments = Lists.newArrayList();
+    GenericRecord datum = null;
+    int count = 0;
+    for (LogFileIndex.Block block : Lists.reverse(index.getBlocks())) {
+      if (count >= maxEvents) {
+        break;
+      }
+      if (block.getMinTimestamp() > fromTimeMs || !block.mayMatch(logFilter)) {
+        continue;
+      }
+
+      LOG.trace("Reading block at pos {}", block.getPosition());
+      dataFileReader.seek(block.getPosition());
+      List<LogEvent> logSegment = new ArrayList<>();
+      for (int i = 0; i < block.getEventCount() && dataFileReader.hasNext(); i++) {
+        datum = dataFileReader.next(datum);
+        ILoggingEvent loggingEvent = LoggingEvent.decode(datum);
+
+        // Stop when reached fromTimeMs
+        if (loggingEvent.getTimeStamp() > fromTimeMs) {
+          break;
+        }
+        if (logFilter.match(loggingEvent)) {
+          logSegment.add(new LogEvent(loggingEvent,
+                                      new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp())));
+        }
+      }
+
+      if (!logSegment.isEmpty()) {
+        logSegments.add(logSegment);
+        count += logSegment.size();
+      }
+    }
+
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(Lists.reverse(logSegments)), skip));
+  }
+
+  /**
+   * Returns the index of the given log file, or {@code null} if the file has no index, which is the case for files
+   * that are still being written and for files written by older versions.
+   */
+  @Nullable
+  private LogFileIndex readIndex(Location file, NamespaceId namespaceId, Impersonator impersonator) {
+    try {
+      final Location indexLocation = LogFileIndex.getIndexLocation(file);
+      return impersonator.doAs(namespaceId, new Callable<LogFileIndex>() {
+        @Override
+        public LogFileIndex call() throws Exception {
+          if (!indexLocation.exists()) {
+            return null;
+          }
+          try (InputStream is = indexLocation.getInputStream()) {
+            return LogFileIndex.read(is);
+          }
+        }
+      });
+    } catch (Exception e) {
+      LOG.warn("Failed to read index of log file {}. Reading the file without index.", file, e);
+      return null;
+    }
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
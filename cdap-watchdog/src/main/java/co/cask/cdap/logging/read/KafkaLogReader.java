@@ -91,9 +91,13 @@ public class KafkaLogReader implements LogReader {
     try {
       // If Kafka offset is not valid, then we might be rolling over from file while reading.
       // Try to get the offset corresponding to fromOffset.getTime()
+      // Events are only filtered by time then, since a valid offset already excludes the events read before,
+      // while later events may have been logged in the same millisecond.
+      long fromTimeMs = -1;
       if (readRange.getKafkaOffset() == LogOffset.INVALID_KAFKA_OFFSET) {
         readRange = new ReadRange(readRange.getFromMillis(), readRange.getToMillis(),
                                   kafkaConsumer.fetchOffsetBefore(readRange.getFromMillis()));
+        fromTimeMs = readRange.getFromMillis();
       }
 
       Filter logFilter = new AndFilter(ImmutableList.of(LoggingContextHelper.createFilter(loggingContext),
@@ -109,7 +113,7 @@ public class KafkaLogReader implements LogReader {
       }
 
       KafkaCallback kafkaCallback = new KafkaCallback(logFilter, serializer, latestOffset, maxEvents, callback,
-                                                      readRange.getFromMillis());
+                                                      fromTimeMs);
 
       fetchLogEvents(kafkaConsumer, kafkaCallback, startOffset, latestOffset, maxEvents, readRange);
     } catch (Throwable e) {
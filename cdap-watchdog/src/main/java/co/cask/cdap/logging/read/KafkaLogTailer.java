@@ -0,0 +1,358 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.read;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.logging.LoggingConfiguration;
+import co.cask.cdap.logging.appender.kafka.LoggingEventSerializer;
+import co.cask.cdap.logging.appender.kafka.StringPartitioner;
+import co.cask.cdap.logging.context.LoggingContextHelper;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.kafka.KafkaConsumer;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import kafka.common.OffsetOutOfRangeException;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LogTailer} that reads log events from Kafka. Each Kafka partition with subscribers is read by a single
+ * thread, from the lowest offset that any of its subscribers needs. Each event is decoded once, and sent to the
+ * subscribers of its logging context that have not seen it yet and whose filter matches it, so that the load on
+ * Kafka does not grow with the number of subscribers.
+ */
+public final class KafkaLogTailer implements LogTailer {
+  private static final Logger LOG = LoggerFactory.getLogger(KafkaLogTailer.class);
+  private static final int KAFKA_FETCH_TIMEOUT_MS = 30000;
+  // Time to wait before fetching again when there are no new messages
+  private static final long POLL_INTERVAL_MS = 500;
+  // Time to wait before fetching again after a failure
+  private static final long RETRY_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+  // Subscribers without new events are called at this interval, so that they can detect closed connections
+  private static final long HEARTBEAT_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+  private final List<LoggingConfiguration.KafkaHost> seedBrokers;
+  private final String topic;
+  private final LoggingEventSerializer serializer;
+  private final StringPartitioner partitioner;
+  private final ExecutorService executor;
+  // Tailers of the partitions that have subscribers, guarded by this
+  private final Map<Integer, PartitionTailer> partitionTailers = Maps.newHashMap();
+
+  /**
+   * Creates a Kafka log tailer object.
+   * @param cConf configuration object containing Kafka seed brokers and number of Kafka partitions for log topic.
+   */
+  @Inject
+  KafkaLogTailer(CConfiguration cConf, StringPartitioner partitioner) {
+    try {
+      this.seedBrokers = LoggingConfiguration.getKafkaSeedBrokers(
+        cConf.get(LoggingConfiguration.KAFKA_SEED_BROKERS));
+      Preconditions.checkArgument(!this.seedBrokers.isEmpty(), "Kafka seed brokers list is empty!");
+
+      this.topic = cConf.get(Constants.Logging.KAFKA_TOPIC);
+      Preconditions.checkArgument(!this.topic.isEmpty(), "Kafka topic is emtpty!");
+
+      this.partitioner = partitioner;
+      this.serializer = new LoggingEventSerializer();
+      this.executor = Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("kafka-log-tailer-%d"));
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @Override
+  public Cancellable tail(LoggingContext loggingContext, Filter filter, LogOffset fromOffset, Subscriber subscriber) {
+    int partition = partitioner.partition(loggingContext.getLogPartition(), -1);
+    final Subscription subscription = new Subscription(loggingContext, filter, fromOffset, subscriber);
+
+    synchronized (this) {
+      PartitionTailer partitionTailer = partitionTailers.get(partition);
+      if (partitionTailer == null) {
+        partitionTailer = new PartitionTailer(partition);
+        partitionTailers.put(partition, partitionTailer);
+        executor.execute(partitionTailer);
+      }
+      partitionTailer.subscriptions.add(subscription);
+    }
+    LOG.debug("Tailing logs of {} from kafka partition {} with offset {}",
+              loggingContext.getLogPartition(), partition, fromOffset);
+
+    return new Cancellable() {
+      @Override
+      public void cancel() {
+        subscription.cancelled = true;
+      }
+    };
+  }
+
+  /**
+   * Reads a Kafka partition for its subscriptions, until there are no subscriptions left.
+   */
+  private final class PartitionTailer implements Runnable {
+    private final int partition;
+    // Guarded by KafkaLogTailer.this
+    private final List<Subscription> subscriptions = Lists.newArrayList();
+
+    private PartitionTailer(int partition) {
+      this.partition = partition;
+    }
+
+    @Override
+    public void run() {
+      KafkaConsumer kafkaConsumer = new KafkaConsumer(seedBrokers, topic, partition, KAFKA_FETCH_TIMEOUT_MS);
+      try {
+        List<Subscription> active = getActiveSubscriptions();
+        while (active != null) {
+          long waitMs;
+          try {
+            waitMs = fetch(kafkaConsumer, active) ? 0 : POLL_INTERVAL_MS;
+          } catch (Exception e) {
+            LOG.warn("Failed to fetch log events from kafka partition {}. Will retry.", partition, e);
+            waitMs = RETRY_INTERVAL_MS;
+          }
+          send(active);
+          TimeUnit.MILLISECONDS.sleep(waitMs);
+          active = getActiveSubscriptions();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        List<Subscription> remaining;
+        synchronized (KafkaLogTailer.this) {
+          partitionTailers.remove(partition);
+          remaining = ImmutableList.copyOf(subscriptions);
+          subscriptions.clear();
+        }
+        close(remaining);
+      } finally {
+        try {
+          kafkaConsumer.close();
+        } catch (IOException e) {
+          LOG.error(String.format("Caught exception when closing KafkaConsumer for topic %s, partition %d",
+                                  topic, partition), e);
+        }
+      }
+    }
+
+    /**
+     * Removes the cancelled subscriptions and returns the others, or returns null and removes this tailer if there
+     * are no subscriptions left.
+     */
+    private List<Subscription> getActiveSubscriptions() {
+      List<Subscription> cancelled = Lists.newArrayList();
+      List<Subscription> active = null;
+      synchronized (KafkaLogTailer.this) {
+        for (Iterator<Subscription> it = subscriptions.iterator(); it.hasNext(); ) {
+          Subscription subscription = it.next();
+          if (subscription.cancelled) {
+            cancelled.add(subscription);
+            it.remove();
+          }
+        }
+        if (subscriptions.isEmpty()) {
+          partitionTailers.remove(partition);
+        } else {
+          active = ImmutableList.copyOf(subscriptions);
+        }
+      }
+      close(cancelled);
+      return active;
+    }
+
+    /**
+     * Fetches messages from the lowest offset needed by the subscriptions, and adds the matching events to them.
+     * @return true if messages were fetched.
+     */
+    private boolean fetch(KafkaConsumer kafkaConsumer, List<Subscription> active) {
+      // Group the subscriptions by logging context, to evaluate the logging context filter once per event
+      Map<String, List<Subscription>> contextSubscriptions = Maps.newHashMap();
+      long fetchOffset = Long.MAX_VALUE;
+      for (Subscription subscription : active) {
+        if (subscription.nextOffset < 0) {
+          subscription.nextOffset = kafkaConsumer.fetchOffsetBefore(
+            subscription.fromTime >= 0 ? subscription.fromTime : KafkaConsumer.LATEST_OFFSET);
+        }
+        fetchOffset = Math.min(fetchOffset, subscription.nextOffset);
+
+        List<Subscription> subscriptions = contextSubscriptions.get(subscription.contextKey);
+        if (subscriptions == null) {
+          subscriptions = Lists.newArrayList();
+          contextSubscriptions.put(subscription.contextKey, subscriptions);
+        }
+        subscriptions.add(subscription);
+      }
+
+      FetchCallback callback = new FetchCallback(fetchOffset, contextSubscriptions.values());
+      try {
+        kafkaConsumer.fetchMessages(fetchOffset, callback);
+      } catch (OffsetOutOfRangeException e) {
+        // Move the subscriptions that are out of the range of events retained by Kafka into the range
+        long earliestOffset = kafkaConsumer.fetchOffsetBefore(KafkaConsumer.EARLIEST_OFFSET);
+        long latestOffset = kafkaConsumer.fetchOffsetBefore(KafkaConsumer.LATEST_OFFSET);
+        for (Subscription subscription : active) {
+          subscription.nextOffset = Math.min(Math.max(subscription.nextOffset, earliestOffset), latestOffset);
+        }
+        return true;
+      }
+
+      if (callback.lastOffset < 0) {
+        return false;
+      }
+      for (Subscription subscription : active) {
+        subscription.nextOffset = Math.max(subscription.nextOffset, callback.lastOffset + 1);
+      }
+      return true;
+    }
+
+    /**
+     * Sends the fetched events to the subscribers, and cancels the subscriptions whose subscribers fail.
+     */
+    private void send(List<Subscription> active) {
+      long now = System.currentTimeMillis();
+      for (Subscription subscription : active) {
+        if (subscription.events.isEmpty() && now - subscription.lastSendTime < HEARTBEAT_INTERVAL_MS) {
+          continue;
+        }
+        try {
+          subscription.subscriber.onEvents(ImmutableList.copyOf(subscription.events));
+          subscription.lastSendTime = now;
+        } catch (Exception e) {
+          LOG.debug("Ending log tail subscription since the subscriber failed", e);
+          subscription.cancelled = true;
+        } finally {
+          subscription.events.clear();
+        }
+      }
+    }
+
+    private void close(List<Subscription> subscriptions) {
+      for (Subscription subscription : subscriptions) {
+        try {
+          subscription.subscriber.onClosed();
+        } catch (Throwable t) {
+          LOG.debug("Exception when closing log tail subscriber", t);
+        }
+      }
+    }
+  }
+
+  /**
+   * Kafka callback that adds each event to the subscriptions it matches.
+   */
+  private final class FetchCallback implements co.cask.cdap.logging.kafka.Callback {
+    private final long fetchOffset;
+    private final Collection<List<Subscription>> contextSubscriptions;
+    private long lastOffset = -1;
+
+    private FetchCallback(long fetchOffset, Collection<List<Subscription>> contextSubscriptions) {
+      this.fetchOffset = fetchOffset;
+      this.contextSubscriptions = contextSubscriptions;
+    }
+
+    @Override
+    public void handle(long offset, ByteBuffer msgBuffer) {
+      // A compressed message set can start before the fetch offset
+      if (offset < fetchOffset) {
+        return;
+      }
+      lastOffset = offset;
+
+      ILoggingEvent event;
+      try {
+        event = serializer.fromBytes(msgBuffer);
+      } catch (Exception e) {
+        LOG.debug("Failed to decode log event at offset {} of topic {}", offset, topic, e);
+        return;
+      }
+
+      LogEvent logEvent = null;
+      for (List<Subscription> subscriptions : contextSubscriptions) {
+        if (!subscriptions.get(0).contextFilter.match(event)) {
+          continue;
+        }
+        for (Subscription subscription : subscriptions) {
+          if (offset >= subscription.nextOffset && event.getTimeStamp() >= subscription.fromTime
+            && subscription.filter.match(event)) {
+            if (logEvent == null) {
+              logEvent = new LogEvent(event, new LogOffset(offset, event.getTimeStamp()));
+            }
+            subscription.events.add(logEvent);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A subscription to the log events of a logging context. Other than cancelled, fields are only accessed by the
+   * thread of the partition tailer.
+   */
+  private static final class Subscription {
+    private final String contextKey;
+    private final Filter contextFilter;
+    private final Filter filter;
+    private final Subscriber subscriber;
+    // Events older than this time are not sent, when resuming from a time rather than a Kafka offset
+    private final long fromTime;
+    private final List<LogEvent> events = Lists.newArrayList();
+    // Kafka offset of the next event to send, or -1 until it is looked up from fromTime
+    private long nextOffset;
+    private long lastSendTime = System.currentTimeMillis();
+    private volatile boolean cancelled;
+
+    private Subscription(LoggingContext loggingContext, Filter filter, LogOffset fromOffset, Subscriber subscriber) {
+      this.contextKey = loggingContext.getClass().getName() + getSystemTags(loggingContext);
+      this.contextFilter = LoggingContextHelper.createFilter(loggingContext);
+      this.filter = filter;
+      this.subscriber = subscriber;
+      if (fromOffset.getKafkaOffset() >= 0) {
+        this.nextOffset = fromOffset.getKafkaOffset() + 1;
+        this.fromTime = -1;
+      } else {
+        this.nextOffset = -1;
+        this.fromTime = fromOffset.getTime();
+      }
+    }
+
+    private static Map<String, String> getSystemTags(LoggingContext loggingContext) {
+      Map<String, String> tags = Maps.newTreeMap();
+      for (LoggingContext.SystemTag tag : loggingContext.getSystemTags()) {
+        tags.put(tag.getName(), tag.getValue());
+      }
+      return tags;
+    }
+  }
+}
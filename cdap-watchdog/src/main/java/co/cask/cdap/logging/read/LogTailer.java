@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.read;
+
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.logging.filter.Filter;
+import org.apache.twill.common.Cancellable;
+
+import java.util.List;
+
+/**
+ * Pushes new log events of a logging context to subscribers as they are published.
+ */
+public interface LogTailer {
+
+  /**
+   * Subscribes to the log events of a logging context.
+   * @param loggingContext logging context of the events.
+   * @param filter only events matching the filter are sent to the subscriber.
+   * @param fromOffset offset of the last event the subscriber has seen, to resume from it,
+   *                   or {@link LogOffset#LATEST_OFFSET} to only get events published from now on.
+   * @param subscriber receives the events.
+   * @return a {@link Cancellable} to end the subscription.
+   */
+  Cancellable tail(LoggingContext loggingContext, Filter filter, LogOffset fromOffset, Subscriber subscriber);
+
+  /**
+   * Receives log events of a subscription.
+   */
+  interface Subscriber {
+
+    /**
+     * Called with new events, in the order they were published. It is also called periodically with no events
+     * while there are no new events, so that the subscriber can check if it is still active.
+     * @throws Exception to end the subscription.
+     */
+    void onEvents(List<LogEvent> events) throws Exception;
+
+    /**
+     * Called once when the subscription ends.
+     */
+    void onClosed();
+  }
+}
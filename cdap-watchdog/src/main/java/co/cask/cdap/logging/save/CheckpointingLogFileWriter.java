@@ -19,35 +19,64 @@ package co.cask.cdap.logging.save;
 import co.cask.cdap.logging.kafka.KafkaLogEvent;
 import co.cask.cdap.logging.write.AvroFileWriter;
 import co.cask.cdap.logging.write.LogFileWriter;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * LogFileWriter that checkpoints kafka offsets for each partition.
+ *
+ * The log files of the logging contexts are spread over one or more {@link AvroFileWriter}s, which are written
+ * in parallel if there is a write executor. Checkpoints are taken from a {@link PendingEventTracker}, and are only
+ * saved after the log files are flushed.
  */
 public class CheckpointingLogFileWriter implements LogFileWriter<KafkaLogEvent> {
   private static final Logger LOG = LoggerFactory.getLogger(CheckpointingLogFileWriter.class);
 
-  private final AvroFileWriter avroFileWriter;
+  private final List<AvroFileWriter> avroFileWriters;
   private final CheckpointManager checkpointManager;
+  private final PendingEventTracker pendingEvents;
   private final long flushIntervalMs;
+  private final ExecutorService writeExecutor;
 
   private long lastCheckpointTime = System.currentTimeMillis();
-  private final Map<Integer, Checkpoint> partitionCheckpointMap = Maps.newHashMap();
 
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
-  public CheckpointingLogFileWriter(AvroFileWriter avroFileWriter, CheckpointManager checkpointManager,
-                                    long flushIntervalMs) {
-    this.avroFileWriter = avroFileWriter;
+  /**
+   * Creates a writer.
+   * @param avroFileWriters writers of the log files, each logging context is always written by the same writer.
+   * @param checkpointManager saves the checkpoints.
+   * @param pendingEvents tracks the events that are not written yet.
+   * @param flushIntervalMs interval to flush the log files and save checkpoints.
+   * @param writeExecutor if not null, used to write and flush the writers in parallel.
+   */
+  public CheckpointingLogFileWriter(List<AvroFileWriter> avroFileWriters, CheckpointManager checkpointManager,
+                                    PendingEventTracker pendingEvents, long flushIntervalMs,
+                                    @Nullable ExecutorService writeExecutor) {
+    this.avroFileWriters = ImmutableList.copyOf(avroFileWriters);
     this.checkpointManager = checkpointManager;
+    this.pendingEvents = pendingEvents;
     this.flushIntervalMs = flushIntervalMs;
+    this.writeExecutor = writeExecutor;
   }
 
   @Override
@@ -56,20 +85,51 @@ public class CheckpointingLogFileWriter implements LogFileWriter<KafkaLogEvent>
       return;
     }
 
-    KafkaLogEvent event = events.get(0);
-    int partition = event.getPartition();
-    Checkpoint maxCheckpoint = partitionCheckpointMap.get(partition);
-    maxCheckpoint = maxCheckpoint == null ? new Checkpoint(-1, -1) : maxCheckpoint;
+    getAvroFileWriter(events).append(events);
+    pendingEvents.remove(events);
+    flush(false);
+  }
 
-    for (KafkaLogEvent e : events) {
-      if (e.getNextOffset() > maxCheckpoint.getNextOffset()) {
-        maxCheckpoint = new Checkpoint(e.getNextOffset(), e.getLogEvent().getTimeStamp());
+  /**
+   * Appends lists of events, each with the events of one logging context. Lists that are written are removed
+   * from the given collection, so that the caller can retry the others if an exception is thrown.
+   */
+  public void appendAll(Collection<List<KafkaLogEvent>> eventLists) throws Exception {
+    // Group the lists by writer, since a writer cannot be used by multiple threads at the same time
+    ListMultimap<AvroFileWriter, List<KafkaLogEvent>> writerEvents = ArrayListMultimap.create();
+    for (List<KafkaLogEvent> events : eventLists) {
+      if (!events.isEmpty()) {
+        writerEvents.put(getAvroFileWriter(events), events);
       }
     }
 
-    partitionCheckpointMap.put(partition, maxCheckpoint);
+    final Set<List<KafkaLogEvent>> written =
+      Collections.synchronizedSet(Sets.<List<KafkaLogEvent>>newIdentityHashSet());
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (final Map.Entry<AvroFileWriter, Collection<List<KafkaLogEvent>>> entry : writerEvents.asMap().entrySet()) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (List<KafkaLogEvent> events : entry.getValue()) {
+            entry.getKey().append(events);
+            pendingEvents.remove(events);
+            written.add(events);
+          }
+          return null;
+        }
+      });
+    }
 
-    avroFileWriter.append(events);
+    try {
+      runAll(tasks);
+    } finally {
+      for (Iterator<List<KafkaLogEvent>> it = eventLists.iterator(); it.hasNext(); ) {
+        List<KafkaLogEvent> events = it.next();
+        if (events.isEmpty() || written.contains(events)) {
+          it.remove();
+        }
+      }
+    }
     flush(false);
   }
 
@@ -80,7 +140,9 @@ public class CheckpointingLogFileWriter implements LogFileWriter<KafkaLogEvent>
     }
 
     flush();
-    avroFileWriter.close();
+    for (AvroFileWriter avroFileWriter : avroFileWriters) {
+      avroFileWriter.close();
+    }
   }
 
   @Override
@@ -99,10 +161,54 @@ public class CheckpointingLogFileWriter implements LogFileWriter<KafkaLogEvent>
       return;
     }
 
-    avroFileWriter.flush();
+    // Get the checkpoints before flushing, so that they only cover events that are in the flushed files
+    Map<Integer, Checkpoint> checkpoints = pendingEvents.getCheckpoints();
+
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (final AvroFileWriter avroFileWriter : avroFileWriters) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          avroFileWriter.flush();
+          return null;
+        }
+      });
+    }
+    runAll(tasks);
 
-    // Save the max checkpoint seen for each partition
-    checkpointManager.saveCheckpoint(partitionCheckpointMap);
+    checkpointManager.saveCheckpoint(checkpoints);
     lastCheckpointTime = currentTs;
   }
+
+  private AvroFileWriter getAvroFileWriter(List<KafkaLogEvent> events) {
+    int hash = events.get(0).getLoggingContext().getLogPartition().hashCode();
+    return avroFileWriters.get(Math.abs(hash % avroFileWriters.size()));
+  }
+
+  /**
+   * Runs the given tasks, in parallel if there is a write executor, and waits for all of them to complete.
+   * The first exception of the tasks is thrown.
+   */
+  private void runAll(List<Callable<Void>> tasks) throws Exception {
+    if (writeExecutor == null || tasks.size() <= 1) {
+      for (Callable<Void> task : tasks) {
+        task.call();
+      }
+      return;
+    }
+
+    Exception failure = null;
+    for (Future<Void> future : writeExecutor.invokeAll(tasks)) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
 }
@@ -28,10 +28,11 @@ import co.cask.cdap.logging.kafka.KafkaLogEvent;
 import co.cask.cdap.logging.write.AvroFileWriter;
 import co.cask.cdap.logging.write.FileMetaDataManager;
 import co.cask.cdap.logging.write.LogCleanup;
-import co.cask.cdap.logging.write.LogFileWriter;
+import co.cask.cdap.logging.write.LogCompaction;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
@@ -50,8 +51,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Plugin that writes the log data.
@@ -64,7 +69,7 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
   private static final long SLEEP_TIME_MS = 100;
 
   private final String logBaseDir;
-  private final LogFileWriter<KafkaLogEvent> logFileWriter;
+  private final CheckpointingLogFileWriter logFileWriter;
   // Table structure - <event time bucket, log context, event arrival time bucket, log event>
   private final RowSortedTable<Long, String, Map.Entry<Long, List<KafkaLogEvent>>> messageTable;
   private final long eventBucketIntervalMs;
@@ -72,7 +77,12 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
   private final long maxNumberOfBucketsInTable;
   private final LoggingEventSerializer serializer;
   private final LogCleanup logCleanup;
+  private final LogCompaction logCompaction;
+  private final int logCompactionIntervalMins;
   private final CheckpointManager checkpointManager;
+  private final PendingEventTracker pendingEvents;
+  // Only set if the log files are written by multiple threads
+  private final ExecutorService writeExecutor;
 
   private ListeningScheduledExecutorService scheduledExecutor;
   private CountDownLatch countDownLatch;
@@ -83,6 +93,18 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
                        CheckpointManagerFactory checkpointManagerFactory, RootLocationFactory rootLocationFactory,
                        NamespacedLocationFactory namespacedLocationFactory, Impersonator impersonator)
     throws Exception {
+    this(cConf, fileMetaDataManager, checkpointManagerFactory, rootLocationFactory, namespacedLocationFactory,
+         impersonator, new AtomicLong());
+  }
+
+  /**
+   * Creates a plugin whose buffered events are accounted in the given payload size, together with the buffered
+   * events of other plugins, against the log saver payload budget.
+   */
+  KafkaLogWriterPlugin(CConfiguration cConf, FileMetaDataManager fileMetaDataManager,
+                       CheckpointManagerFactory checkpointManagerFactory, RootLocationFactory rootLocationFactory,
+                       NamespacedLocationFactory namespacedLocationFactory, Impersonator impersonator,
+                       AtomicLong bufferedPayloadBytes) throws Exception {
 
     this.serializer = new LoggingEventSerializer();
     this.messageTable = TreeBasedTable.create();
@@ -136,16 +158,61 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
     Preconditions.checkArgument(logCleanupIntervalMins > 0,
                                 "Log cleanup run interval is invalid: %s", logCleanupIntervalMins);
 
-    AvroFileWriter avroFileWriter = new AvroFileWriter(fileMetaDataManager, namespacedLocationFactory, logBaseDir,
-                                                       serializer.getAvroSchema(), maxLogFileSizeBytes,
-                                                       syncIntervalBytes, inactiveIntervalMs, impersonator);
+    long maxBufferedPayloadBytes = cConf.getLong(LoggingConfiguration.LOG_SAVER_MAX_BUFFERED_PAYLOAD_BYTES,
+                                                 LoggingConfiguration.DEFAULT_LOG_SAVER_MAX_BUFFERED_PAYLOAD_BYTES);
+    Preconditions.checkArgument(maxBufferedPayloadBytes > 0,
+                                "Max buffered payload bytes is invalid: %s", maxBufferedPayloadBytes);
+
+    int writeThreads = cConf.getInt(LoggingConfiguration.LOG_SAVER_WRITE_THREADS,
+                                    LoggingConfiguration.DEFAULT_LOG_SAVER_WRITE_THREADS);
+    Preconditions.checkArgument(writeThreads > 0, "Number of write threads is invalid: %s", writeThreads);
+
+    logCompactionIntervalMins = cConf.getInt(LoggingConfiguration.LOG_COMPACTION_RUN_INTERVAL_MINS,
+                                             LoggingConfiguration.DEFAULT_LOG_COMPACTION_RUN_INTERVAL_MINS);
+
+    long compactionSmallFileSizeBytes =
+      cConf.getLong(LoggingConfiguration.LOG_COMPACTION_SMALL_FILE_SIZE_BYTES,
+                    LoggingConfiguration.DEFAULT_LOG_COMPACTION_SMALL_FILE_SIZE_BYTES);
+    Preconditions.checkArgument(compactionSmallFileSizeBytes > 0,
+                                "Log compaction small file size is invalid: %s", compactionSmallFileSizeBytes);
+
+    long compactionWindowMins = cConf.getLong(LoggingConfiguration.LOG_COMPACTION_WINDOW_MINS,
+                                              LoggingConfiguration.DEFAULT_LOG_COMPACTION_WINDOW_MINS);
+    Preconditions.checkArgument(compactionWindowMins > 0,
+                                "Log compaction window is invalid: %s", compactionWindowMins);
+
+    // Each writer writes the log files of a subset of the logging contexts, so that they can be written in parallel
+    ImmutableList.Builder<AvroFileWriter> avroFileWriters = ImmutableList.builder();
+    for (int i = 0; i < writeThreads; i++) {
+      avroFileWriters.add(new AvroFileWriter(fileMetaDataManager, namespacedLocationFactory, logBaseDir,
+                                             serializer.getAvroSchema(), maxLogFileSizeBytes,
+                                             syncIntervalBytes, inactiveIntervalMs, impersonator));
+    }
+    if (writeThreads > 1) {
+      // Idle threads time out, so that a plugin that is not written to does not hold on to them
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        writeThreads, writeThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        Threads.createDaemonThreadFactory("log-saver-log-writer-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      this.writeExecutor = executor;
+    } else {
+      this.writeExecutor = null;
+    }
 
     checkpointManager = checkpointManagerFactory.create(cConf.get(Constants.Logging.KAFKA_TOPIC),
                                                         CHECKPOINT_ROW_KEY_PREFIX);
 
-    this.logFileWriter = new CheckpointingLogFileWriter(avroFileWriter, checkpointManager, checkpointIntervalMs);
+    this.pendingEvents = new PendingEventTracker(bufferedPayloadBytes, maxBufferedPayloadBytes);
+    this.logFileWriter = new CheckpointingLogFileWriter(avroFileWriters.build(), checkpointManager, pendingEvents,
+                                                        checkpointIntervalMs, writeExecutor);
     long retentionDurationMs = TimeUnit.MILLISECONDS.convert(retentionDurationDays, TimeUnit.DAYS);
     this.logCleanup = new LogCleanup(fileMetaDataManager, rootLocationFactory, retentionDurationMs, impersonator);
+    this.logCompaction = new LogCompaction(fileMetaDataManager, impersonator, serializer.getAvroSchema(),
+                                           compactionSmallFileSizeBytes, maxLogFileSizeBytes,
+                                           TimeUnit.MILLISECONDS.convert(compactionWindowMins, TimeUnit.MINUTES),
+                                           syncIntervalBytes,
+                                           TimeUnit.MILLISECONDS.convert(logCompactionIntervalMins,
+                                                                         TimeUnit.MINUTES));
   }
 
   @Override
@@ -154,12 +221,17 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
     Checkpoint checkpoint = checkpointManager.getCheckpoint(partition);
     super.init(checkpoint);
 
-    // We schedule clean up task if partition is zero, so that only one cleanup task gets scheduled
+    // We schedule clean up and compaction tasks if partition is zero, so that only one of each gets scheduled
     if (partition == 0) {
-      scheduledExecutor = MoreExecutors.listeningDecorator(Executors.newScheduledThreadPool(2,
+      scheduledExecutor = MoreExecutors.listeningDecorator(Executors.newScheduledThreadPool(3,
         Threads.createDaemonThreadFactory("log-saver-log-processor-" + partition)));
       LOG.info("Scheduling cleanup task");
       scheduledExecutor.scheduleAtFixedRate(logCleanup, 10, logCleanupIntervalMins, TimeUnit.MINUTES);
+      if (logCompactionIntervalMins > 0) {
+        LOG.info("Scheduling compaction task");
+        scheduledExecutor.scheduleWithFixedDelay(logCompaction, logCompactionIntervalMins, logCompactionIntervalMins,
+                                                 TimeUnit.MINUTES);
+      }
     } else {
       scheduledExecutor = MoreExecutors.listeningDecorator(Executors.newSingleThreadScheduledExecutor(
         Threads.createDaemonThreadFactory("log-saver-log-processor-" + partition)));
@@ -167,7 +239,8 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
 
     countDownLatch = new CountDownLatch(1);
     LogWriter logWriter = new LogWriter(logFileWriter, messageTable,
-                                        eventBucketIntervalMs, maxNumberOfBucketsInTable, countDownLatch);
+                                        eventBucketIntervalMs, maxNumberOfBucketsInTable, pendingEvents,
+                                        countDownLatch);
     scheduledExecutor.execute(logWriter);
   }
 
@@ -198,8 +271,9 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
           // then we can add the event to message table
           // We try to limit in-memory buckets to prevent OOM.
           // Note that we can still have more than maxBuckets in memory if buckets are not consecutive, or
-          // we get an event older than oldest bucket
-          if (numBuckets < maxNumberOfBucketsInTable || firstKey <= latestBucketKey) {
+          // we get an event older than oldest bucket.
+          // We also wait while the buffered events exceed the payload budget, until the log writer writes them.
+          if ((numBuckets < maxNumberOfBucketsInTable || firstKey <= latestBucketKey) && !pendingEvents.isFull()) {
             while (peekingIterator.hasNext()) {
               KafkaLogEvent event = peekingIterator.next();
               LoggingContext loggingContext = event.getLoggingContext();
@@ -216,8 +290,11 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
               } else {
                 msgList = messageTable.get(key, loggingContext.getLogPathFragment(logBaseDir)).getValue();
               }
-              msgList.add(new KafkaLogEvent(event.getGenericRecord(), event.getLogEvent(), loggingContext,
-                                            event.getPartition(), event.getNextOffset()));
+              KafkaLogEvent logEvent = new KafkaLogEvent(event.getGenericRecord(), event.getLogEvent(), loggingContext,
+                                                         event.getPartition(), event.getNextOffset(),
+                                                         event.getPayloadSize());
+              msgList.add(logEvent);
+              pendingEvents.add(logEvent);
             }
             break;
           }
@@ -226,8 +303,9 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
         // Cannot insert event into message table
         // since there are still maxNumberOfBucketsInTable buckets that need to be processed
         // sleep for the time duration till event falls in the window
-        LOG.trace("key={}, oldestBucketKey={}, maxNumberOfBucketsInTable={}, buckets={}. Sleeping for {} ms.",
-                  firstKey, oldestBucketKey, maxNumberOfBucketsInTable, numBuckets, SLEEP_TIME_MS);
+        LOG.trace("key={}, oldestBucketKey={}, maxNumberOfBucketsInTable={}, buckets={}, full={}. Sleeping for {} ms.",
+                  firstKey, oldestBucketKey, maxNumberOfBucketsInTable, numBuckets, pendingEvents.isFull(),
+                  SLEEP_TIME_MS);
 
         if (countDownLatch.await(SLEEP_TIME_MS, TimeUnit.MILLISECONDS)) {
           // if count down occurred return
@@ -259,8 +337,17 @@ public class KafkaLogWriterPlugin extends AbstractKafkaLogProcessor {
 
     } catch (Exception e) {
       LOG.error("Caught exception while closing logWriter {}", e.getMessage(), e);
+    } finally {
+      // The log file writer uses the write executor, so it is shut down after the writer is closed
+      if (writeExecutor != null) {
+        writeExecutor.shutdown();
+      }
+    }
+    // Events that are not written are read from Kafka again, since the checkpoints do not cover them
+    synchronized (messageTable) {
+      messageTable.clear();
+      pendingEvents.clear();
     }
-    messageTable.clear();
   }
 
   @Override
@@ -23,6 +23,8 @@ import co.cask.cdap.data2.security.Impersonator;
 import co.cask.cdap.logging.write.FileMetaDataManager;
 import com.google.inject.Inject;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Factory to create {@link KafkaLogWriterPlugin}.
  */
@@ -33,6 +35,8 @@ public class KafkaLogWriterPluginFactory implements KafkaLogProcessorFactory {
   private final NamespacedLocationFactory namespacedLocationFactory;
   private final CheckpointManagerFactory checkpointManagerFactory;
   private final Impersonator impersonator;
+  // Payload size of the events buffered by all the plugins created by this factory
+  private final AtomicLong bufferedPayloadBytes = new AtomicLong();
 
   @Inject
   public KafkaLogWriterPluginFactory(CConfiguration cConfig, FileMetaDataManager fileMetaDataManager,
@@ -50,6 +54,6 @@ public class KafkaLogWriterPluginFactory implements KafkaLogProcessorFactory {
   @Override
   public KafkaLogProcessor create() throws Exception {
     return new KafkaLogWriterPlugin(cConfig, fileMetaDataManager, checkpointManagerFactory, rootLocationFactory,
-                                    namespacedLocationFactory, impersonator);
+                                    namespacedLocationFactory, impersonator, bufferedPayloadBytes);
   }
 }
@@ -23,6 +23,7 @@ import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.logging.appender.kafka.LoggingEventSerializer;
 import co.cask.cdap.logging.context.LoggingContextHelper;
 import co.cask.cdap.logging.kafka.KafkaLogEvent;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.twill.kafka.client.FetchedMessage;
@@ -30,32 +31,48 @@ import org.apache.twill.kafka.client.KafkaConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Kafka Message callback that fetches log from kafka and calls the process method for all the plugins configured.
  */
 public class KafkaMessageCallback implements KafkaConsumer.MessageCallback {
   private static final Logger LOG = LoggerFactory.getLogger(KafkaMessageCallback.class);
+  // Number of messages decoded by each task of the decode executor
+  private static final int DECODE_CHUNK_SIZE = 256;
 
   private final Set<KafkaLogProcessor> kafkaLogProcessors;
   private final LoggingEventSerializer serializer;
   private final CountDownLatch stopLatch;
   private final MetricsContext metricsContext;
   private final String delayMetric;
+  private final ExecutorService decodeExecutor;
 
+  /**
+   * Creates a callback.
+   * @param decodeExecutor if not null, used to decode the messages in parallel; otherwise the messages are decoded
+   *                       by the Kafka consumer thread.
+   */
   public KafkaMessageCallback(int partition, CountDownLatch stopLatch,
                               Set<KafkaLogProcessor> kafkaLogProcessors,
-                              MetricsContext metricsContext) throws Exception {
+                              MetricsContext metricsContext,
+                              @Nullable ExecutorService decodeExecutor) throws Exception {
     this.kafkaLogProcessors = kafkaLogProcessors;
     this.serializer = new LoggingEventSerializer();
     this.stopLatch = stopLatch;
     this.metricsContext = metricsContext;
     this.delayMetric = Constants.Metrics.Name.Log.PROCESS_DELAY + "." + partition;
+    this.decodeExecutor = decodeExecutor;
   }
 
   @Override
@@ -73,26 +90,19 @@ public class KafkaMessageCallback implements KafkaConsumer.MessageCallback {
       return;
     }
 
+    List<KafkaLogEvent> events;
+    try {
+      events = decodeExecutor == null ? decode(messages) : decodeParallel(messages);
+    } catch (InterruptedException e) {
+      LOG.error("Exception: ", e);
+      Thread.currentThread().interrupt();
+      return;
+    }
+
     long oldestProcessed = Long.MAX_VALUE;
-    List<KafkaLogEvent> events = Lists.newArrayList();
-    while (messages.hasNext()) {
-      FetchedMessage message = messages.next();
-      try {
-        GenericRecord genericRecord = serializer.toGenericRecord(message.getPayload());
-        ILoggingEvent event = serializer.fromGenericRecord(genericRecord);
-
-        LoggingContext loggingContext = LoggingContextHelper.getLoggingContext(event.getMDCPropertyMap());
-        KafkaLogEvent logEvent = new KafkaLogEvent(genericRecord, event, loggingContext,
-                                                   message.getTopicPartition().getPartition(),
-                                                   message.getNextOffset());
-        events.add(logEvent);
-        if (event.getTimeStamp() < oldestProcessed) {
-          oldestProcessed = event.getTimeStamp();
-        }
-      } catch (Throwable th) {
-        LOG.error("Error processing message at topic {} parition {}",
-                  message.getTopicPartition().getTopic(),
-                  message.getTopicPartition().getPartition());
+    for (KafkaLogEvent event : events) {
+      if (event.getLogEvent().getTimeStamp() < oldestProcessed) {
+        oldestProcessed = event.getLogEvent().getTimeStamp();
       }
     }
 
@@ -115,8 +125,102 @@ public class KafkaMessageCallback implements KafkaConsumer.MessageCallback {
     LOG.trace("Got {} messages from kafka", count);
   }
 
+  private List<KafkaLogEvent> decode(Iterator<FetchedMessage> messages) {
+    List<KafkaLogEvent> events = Lists.newArrayList();
+    while (messages.hasNext()) {
+      FetchedMessage message = messages.next();
+      KafkaLogEvent event = decode(message.getTopicPartition().getTopic(), message.getTopicPartition().getPartition(),
+                                   message.getNextOffset(), message.getPayload());
+      if (event != null) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Decodes the messages in chunks with the decode executor, keeping the order of the messages.
+   */
+  private List<KafkaLogEvent> decodeParallel(Iterator<FetchedMessage> messages) throws InterruptedException {
+    // Copy the message fields, since the consumer may reuse the message objects
+    final List<MessageFields> fetched = Lists.newArrayList();
+    while (messages.hasNext()) {
+      FetchedMessage message = messages.next();
+      fetched.add(new MessageFields(message.getTopicPartition().getTopic(),
+                                    message.getTopicPartition().getPartition(),
+                                    message.getNextOffset(), message.getPayload()));
+    }
+
+    List<Future<List<KafkaLogEvent>>> futures = Lists.newArrayList();
+    for (final List<MessageFields> chunk : Lists.partition(fetched, DECODE_CHUNK_SIZE)) {
+      futures.add(decodeExecutor.submit(new Callable<List<KafkaLogEvent>>() {
+        @Override
+        public List<KafkaLogEvent> call() throws Exception {
+          List<KafkaLogEvent> events = Lists.newArrayListWithCapacity(chunk.size());
+          for (MessageFields message : chunk) {
+            KafkaLogEvent event = decode(message.topic, message.partition, message.nextOffset, message.payload);
+            if (event != null) {
+              events.add(event);
+            }
+          }
+          return events;
+        }
+      }));
+    }
+
+    List<KafkaLogEvent> events = Lists.newArrayListWithCapacity(fetched.size());
+    try {
+      for (Future<List<KafkaLogEvent>> future : futures) {
+        events.addAll(future.get());
+      }
+    } catch (ExecutionException e) {
+      // Decoding errors of a message are handled by decode, so this is not expected
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      for (Future<List<KafkaLogEvent>> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return events;
+  }
+
+  /**
+   * Decodes a message, or returns null if it cannot be decoded.
+   */
+  @Nullable
+  private KafkaLogEvent decode(String topic, int partition, long nextOffset, ByteBuffer payload) {
+    try {
+      int payloadSize = payload.remaining();
+      GenericRecord genericRecord = serializer.toGenericRecord(payload);
+      ILoggingEvent event = serializer.fromGenericRecord(genericRecord);
+
+      LoggingContext loggingContext = LoggingContextHelper.getLoggingContext(event.getMDCPropertyMap());
+      return new KafkaLogEvent(genericRecord, event, loggingContext, partition, nextOffset, payloadSize);
+    } catch (Throwable th) {
+      LOG.error("Error processing message at topic {} parition {}", topic, partition);
+      return null;
+    }
+  }
+
   @Override
   public void finished() {
     LOG.info("KafkaMessageCallback finished.");
   }
+
+  /**
+   * Fields of a fetched message that are needed to decode it.
+   */
+  private static final class MessageFields {
+    private final String topic;
+    private final int partition;
+    private final long nextOffset;
+    private final ByteBuffer payload;
+
+    MessageFields(String topic, int partition, long nextOffset, ByteBuffer payload) {
+      this.topic = topic;
+      this.partition = partition;
+      this.nextOffset = nextOffset;
+      this.payload = payload;
+    }
+  }
 }
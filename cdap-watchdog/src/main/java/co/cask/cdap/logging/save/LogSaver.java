@@ -20,8 +20,10 @@ import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.logging.LoggingConfiguration;
 import co.cask.cdap.proto.Id;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
@@ -31,6 +33,7 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.name.Named;
 import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
 import org.apache.twill.kafka.client.KafkaClientService;
 import org.apache.twill.kafka.client.KafkaConsumer;
 import org.slf4j.Logger;
@@ -42,7 +45,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Saves logs published through Kafka.
@@ -61,6 +68,9 @@ public final class LogSaver extends AbstractIdleService {
   private final SetMultimap<Integer, KafkaLogProcessor> partitionProcessorsMap;
 
   private final MetricsContext metricsContext;
+  // Decodes messages of all partitions, null if messages are decoded by the Kafka consumer threads
+  @Nullable
+  private final ExecutorService decodeExecutor;
 
   @Inject
   LogSaver(KafkaClientService kafkaClient,
@@ -86,6 +96,19 @@ public final class LogSaver extends AbstractIdleService {
     this.metricsContext = metricsCollectionService.getContext(
       ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
                       Constants.Metrics.Tag.COMPONENT, Constants.Service.LOGSAVER));
+
+    int decodeThreads = cConf.getInt(LoggingConfiguration.LOG_SAVER_DECODE_THREADS,
+                                     LoggingConfiguration.DEFAULT_LOG_SAVER_DECODE_THREADS);
+    Preconditions.checkArgument(decodeThreads > 0, "Number of decode threads is invalid: %s", decodeThreads);
+    if (decodeThreads > 1) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        decodeThreads, decodeThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        Threads.createDaemonThreadFactory("log-saver-decoder-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      this.decodeExecutor = executor;
+    } else {
+      this.decodeExecutor = null;
+    }
   }
 
   @Override
@@ -101,6 +124,9 @@ public final class LogSaver extends AbstractIdleService {
   protected void shutDown() throws Exception {
     LOG.info("Stopping LogSaver...");
     unscheduleTasks();
+    if (decodeExecutor != null) {
+      decodeExecutor.shutdownNow();
+    }
     LOG.info("Stopped LogSaver.");
   }
 
@@ -172,7 +198,8 @@ public final class LogSaver extends AbstractIdleService {
       kafkaCancelCallbackLatchMap.put(part, new CountDownLatch(1));
 
       kafkaCancelMap.put(part, preparer.consume(
-        new KafkaMessageCallback(part, kafkaCancelCallbackLatchMap.get(part), kafkaLogProcessors, metricsContext)));
+        new KafkaMessageCallback(part, kafkaCancelCallbackLatchMap.get(part), kafkaLogProcessors, metricsContext,
+                                 decodeExecutor)));
     }
 
     LOG.info("Consumer created for topic {}, partitions {}", topic, partitionOffset);
@@ -17,14 +17,12 @@
 package co.cask.cdap.logging.save;
 
 import co.cask.cdap.logging.kafka.KafkaLogEvent;
-import co.cask.cdap.logging.write.LogFileWriter;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.RowSortedTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -41,22 +39,25 @@ public class LogWriter implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(LogWriter.class);
   private static final long SLEEP_TIME_NS = TimeUnit.MILLISECONDS.toNanos(100);
 
-  private final LogFileWriter<KafkaLogEvent> logFileWriter;
+  private final CheckpointingLogFileWriter logFileWriter;
   private final RowSortedTable<Long, String, Entry<Long, List<KafkaLogEvent>>> messageTable;
   private final long eventBucketIntervalMs;
   private final long maxNumberOfBucketsInTable;
+  private final PendingEventTracker pendingEvents;
   private final CountDownLatch stopLatch;
   private final ExponentialBackoff exponentialBackoff;
 
-  private final ListMultimap<String, KafkaLogEvent> writeListMap = ArrayListMultimap.create();
+  private final Map<String, List<KafkaLogEvent>> writeListMap = Maps.newHashMap();
 
-  public LogWriter(LogFileWriter<KafkaLogEvent> logFileWriter,
+  public LogWriter(CheckpointingLogFileWriter logFileWriter,
                    RowSortedTable<Long, String, Entry<Long, List<KafkaLogEvent>>> messageTable,
-                   long eventBucketIntervalMs, long maxNumberOfBucketsInTable, final CountDownLatch stopLatch) {
+                   long eventBucketIntervalMs, long maxNumberOfBucketsInTable, PendingEventTracker pendingEvents,
+                   final CountDownLatch stopLatch) {
     this.logFileWriter = logFileWriter;
     this.messageTable = messageTable;
     this.eventBucketIntervalMs = eventBucketIntervalMs;
     this.maxNumberOfBucketsInTable = maxNumberOfBucketsInTable;
+    this.pendingEvents = pendingEvents;
     this.stopLatch = stopLatch;
     this.exponentialBackoff =
       new ExponentialBackoff(1, 60,
@@ -94,12 +95,18 @@ public class LogWriter implements Runnable {
                 Map.Entry<String, Entry<Long, List<KafkaLogEvent>>> mapEntry = it.next();
                 // Stop if event arrival time is more than the limit (this is for events being generated now)
                 // However, if we have reached maxNumberOfBucketsInTable then it means we are reading old
-                // events and we can write as soon as we fill up maxNumberOfBucketsInTable
-                if (numBuckets < maxNumberOfBucketsInTable &&
+                // events and we can write as soon as we fill up maxNumberOfBucketsInTable.
+                // Also write early if the buffered events exceed the payload budget.
+                if (numBuckets < maxNumberOfBucketsInTable && !pendingEvents.isFull() &&
                   limitKey < mapEntry.getValue().getKey()) {
                   break;
                 }
-                writeListMap.putAll(mapEntry.getKey(), mapEntry.getValue().getValue());
+                List<KafkaLogEvent> writeList = writeListMap.get(mapEntry.getKey());
+                if (writeList == null) {
+                  writeList = Lists.newArrayList();
+                  writeListMap.put(mapEntry.getKey(), writeList);
+                }
+                writeList.addAll(mapEntry.getValue().getValue());
                 messages += mapEntry.getValue().getValue().size();
                 it.remove();
               }
@@ -120,15 +127,11 @@ public class LogWriter implements Runnable {
           LOG.trace("Waiting for events, sleeping for {} ns", sleepTimeNanos);
         }
 
-        for (Iterator<Entry<String, Collection<KafkaLogEvent>>> it = writeListMap.asMap().entrySet().iterator();
-             it.hasNext(); ) {
-          Entry<String, Collection<KafkaLogEvent>> mapEntry = it.next();
-          List<KafkaLogEvent> list = (List<KafkaLogEvent>) mapEntry.getValue();
+        for (List<KafkaLogEvent> list : writeListMap.values()) {
           Collections.sort(list);
-          logFileWriter.append(list);
-          // Remove successfully written message
-          it.remove();
         }
+        // Successfully written messages are removed
+        logFileWriter.appendAll(writeListMap.values());
 
         // Reset backoff after a successful save
         exponentialBackoff.reset();
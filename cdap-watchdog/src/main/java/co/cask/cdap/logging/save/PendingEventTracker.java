@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.save;
+
+import co.cask.cdap.logging.kafka.KafkaLogEvent;
+import com.google.common.collect.Maps;
+import com.google.common.collect.TreeMultiset;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the log events that the log saver has fetched from Kafka, but not written to log files yet. Checkpoints
+ * computed from it never go past an event that is not in a log file, so that no event is lost if the log saver
+ * stops before writing it. It also accounts for the Kafka payload size of the pending events in a budget that can
+ * be shared by the trackers of many partitions. The budget bounds the serialized size of the pending events, not
+ * the heap they take once decoded. This class is thread-safe.
+ */
+public final class PendingEventTracker {
+
+  private final AtomicLong bufferedPayloadBytes;
+  private final long maxBufferedPayloadBytes;
+  private final Map<Integer, PartitionEvents> partitions = Maps.newHashMap();
+
+  /**
+   * Creates a tracker.
+   * @param bufferedPayloadBytes payload size of the pending events of all the trackers sharing the budget.
+   * @param maxBufferedPayloadBytes the budget, in payload bytes.
+   */
+  public PendingEventTracker(AtomicLong bufferedPayloadBytes, long maxBufferedPayloadBytes) {
+    this.bufferedPayloadBytes = bufferedPayloadBytes;
+    this.maxBufferedPayloadBytes = maxBufferedPayloadBytes;
+  }
+
+  /**
+   * Adds an event that is fetched from Kafka.
+   */
+  public synchronized void add(KafkaLogEvent event) {
+    PartitionEvents partitionEvents = partitions.get(event.getPartition());
+    if (partitionEvents == null) {
+      partitionEvents = new PartitionEvents();
+      partitions.put(event.getPartition(), partitionEvents);
+    }
+    partitionEvents.offsets.add(event.getNextOffset());
+    partitionEvents.timestamps.add(event.getLogEvent().getTimeStamp());
+    partitionEvents.payloadBytes += event.getPayloadSize();
+    bufferedPayloadBytes.addAndGet(event.getPayloadSize());
+  }
+
+  /**
+   * Removes events that are written to log files. Checkpoints taken afterwards cover these events, so they must
+   * only be saved once the log files are flushed.
+   */
+  public synchronized void remove(Collection<KafkaLogEvent> events) {
+    for (KafkaLogEvent event : events) {
+      PartitionEvents partitionEvents = partitions.get(event.getPartition());
+      if (partitionEvents == null || !partitionEvents.offsets.remove(event.getNextOffset())) {
+        continue;
+      }
+      partitionEvents.timestamps.remove(event.getLogEvent().getTimeStamp());
+      partitionEvents.payloadBytes -= event.getPayloadSize();
+      bufferedPayloadBytes.addAndGet(-event.getPayloadSize());
+      partitionEvents.maxNextOffset = Math.max(partitionEvents.maxNextOffset, event.getNextOffset());
+      partitionEvents.maxEventTime = Math.max(partitionEvents.maxEventTime, event.getLogEvent().getTimeStamp());
+    }
+  }
+
+  /**
+   * Returns true if the pending events of all the trackers sharing the budget exceed the budget.
+   */
+  public boolean isFull() {
+    return bufferedPayloadBytes.get() >= maxBufferedPayloadBytes;
+  }
+
+  /**
+   * Returns the checkpoints of the partitions that have events written to log files. The checkpoint of a partition
+   * points to its oldest pending event, or after its latest written event if there is no pending event.
+   */
+  public synchronized Map<Integer, Checkpoint> getCheckpoints() {
+    Map<Integer, Checkpoint> checkpoints = Maps.newHashMap();
+    for (Map.Entry<Integer, PartitionEvents> entry : partitions.entrySet()) {
+      PartitionEvents partitionEvents = entry.getValue();
+      if (partitionEvents.maxNextOffset < 0) {
+        continue;
+      }
+      if (partitionEvents.offsets.isEmpty()) {
+        checkpoints.put(entry.getKey(), new Checkpoint(partitionEvents.maxNextOffset, partitionEvents.maxEventTime));
+      } else {
+        // Read again from the oldest pending event, and only claim that events older than all pending ones are saved
+        long nextOffset = partitionEvents.offsets.firstEntry().getElement() - 1;
+        long maxEventTime = Math.min(partitionEvents.maxEventTime,
+                                     partitionEvents.timestamps.firstEntry().getElement() - 1);
+        checkpoints.put(entry.getKey(), new Checkpoint(nextOffset, maxEventTime));
+      }
+    }
+    return checkpoints;
+  }
+
+  /**
+   * Removes all events, when they are dropped without being written.
+   */
+  public synchronized void clear() {
+    for (PartitionEvents partitionEvents : partitions.values()) {
+      bufferedPayloadBytes.addAndGet(-partitionEvents.payloadBytes);
+    }
+    partitions.clear();
+  }
+
+  /**
+   * Pending events of a partition.
+   */
+  private static final class PartitionEvents {
+    private final TreeMultiset<Long> offsets = TreeMultiset.create();
+    private final TreeMultiset<Long> timestamps = TreeMultiset.create();
+    private long payloadBytes;
+    private long maxNextOffset = -1;
+    private long maxEventTime = -1;
+  }
+}
@@ -260,7 +260,10 @@ public final class LoggingEvent implements ILoggingEvent {
     return loggingEvent;
   }
 
-  static Map<String, String> decodeMdcMap(Map<?, ?> map) {
+  /**
+   * Decodes the MDC of an encoded logging event.
+   */
+  public static Map<String, String> decodeMdcMap(Map<?, ?> map) {
     if (map == null) {
       return null;
     }
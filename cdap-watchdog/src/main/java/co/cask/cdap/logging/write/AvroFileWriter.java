@@ -16,10 +16,12 @@
 
 package co.cask.cdap.logging.write;
 
+import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.data2.security.Impersonator;
 import co.cask.cdap.logging.context.LoggingContextHelper;
+import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
@@ -35,6 +37,7 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Iterator;
@@ -242,6 +245,10 @@ public final class AvroFileWriter implements Closeable, Flushable {
         if (avroFile.getLocation().exists()) {
           avroFile.getLocation().delete();
         }
+        Location indexLocation = LogFileIndex.getIndexLocation(avroFile.getLocation());
+        if (indexLocation.exists()) {
+          indexLocation.delete();
+        }
       }
     } catch (IOException e) {
       LOG.error("Error while closing and deleting file {}", avroFile.getLocation(), e);
@@ -253,11 +260,16 @@ public final class AvroFileWriter implements Closeable, Flushable {
    *
    * Since there is no way to check the state of the underlying file on an exception,
    * all methods of this class assume that the file state is bad on any exception and close the file.
+   *
+   * Events are grouped into blocks of about syncIntervalBytes, which are recorded in a {@link LogFileIndex}.
+   * The index is written alongside the file when the file is closed without error.
    */
   public class AvroFile implements Closeable {
     private final Location location;
     private FSDataOutputStream outputStream;
     private DataFileWriter<GenericRecord> dataFileWriter;
+    private LogFileIndex.Builder indexBuilder;
+    private long indexBlockPos;
     private long lastModifiedTs;
     private boolean isOpen = false;
 
@@ -277,9 +289,12 @@ public final class AvroFileWriter implements Closeable, Flushable {
         this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
         this.dataFileWriter.create(schema, this.outputStream);
         this.dataFileWriter.setSyncInterval(syncIntervalBytes);
+        this.indexBuilder = new LogFileIndex.Builder();
+        this.indexBlockPos = dataFileWriter.sync();
+        this.indexBuilder.startBlock(indexBlockPos);
         this.lastModifiedTs = System.currentTimeMillis();
       } catch (Exception e) {
-        close();
+        closeOnError();
         throw e;
       }
       this.isOpen = true;
@@ -295,10 +310,19 @@ public final class AvroFileWriter implements Closeable, Flushable {
 
     public void append(LogWriteEvent event) throws IOException {
       try {
+        // Start a new index block at a sync point once the current one is big enough
+        if (indexBuilder.getEventCount() > 0 && outputStream.getPos() - indexBlockPos >= syncIntervalBytes) {
+          indexBlockPos = dataFileWriter.sync();
+          indexBuilder.startBlock(indexBlockPos);
+        }
         dataFileWriter.append(event.getGenericRecord());
+        // The index is built from the MDC as written, which includes the tags of the logging context that
+        // readers filter on
+        indexBuilder.add(event.getLogEvent(),
+                         LoggingEvent.decodeMdcMap((Map<?, ?>) event.getGenericRecord().get("mdc")));
         lastModifiedTs = System.currentTimeMillis();
       } catch (Exception e) {
-        close();
+        closeOnError();
         throw e;
       }
     }
@@ -307,7 +331,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
       try {
         return outputStream.getPos();
       } catch (Exception e) {
-        close();
+        closeOnError();
         throw e;
       }
     }
@@ -321,7 +345,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
         dataFileWriter.flush();
         outputStream.hflush();
       } catch (Exception e) {
-        close();
+        closeOnError();
         throw e;
       }
     }
@@ -331,7 +355,7 @@ public final class AvroFileWriter implements Closeable, Flushable {
         dataFileWriter.flush();
         outputStream.hsync();
       } catch (Exception e) {
-        close();
+        closeOnError();
         throw e;
       }
     }
@@ -345,8 +369,14 @@ public final class AvroFileWriter implements Closeable, Flushable {
       LOG.trace("Closing file {}", location);
       isOpen = false;
 
+      LogFileIndex index = null;
       try {
         if (dataFileWriter != null) {
+          if (indexBuilder != null) {
+            // End the last block, so that all events are covered by the index
+            dataFileWriter.sync();
+            index = indexBuilder.build();
+          }
           dataFileWriter.close();
         }
       } finally {
@@ -354,6 +384,43 @@ public final class AvroFileWriter implements Closeable, Flushable {
           outputStream.close();
         }
       }
+
+      if (index != null) {
+        writeIndex(index);
+      }
+    }
+
+    /**
+     * Closes the file without writing the index, since the file may not have all the events in the index.
+     */
+    private void closeOnError() throws IOException {
+      indexBuilder = null;
+      close();
+    }
+
+    /**
+     * Writes the index of the file. Failure is not fatal, as readers can read the file without the index.
+     */
+    private void writeIndex(LogFileIndex index) {
+      Location indexLocation = null;
+      Location tmpLocation = null;
+      try {
+        indexLocation = LogFileIndex.getIndexLocation(location);
+        // Write to a temporary file first, so that readers never see a partial index
+        tmpLocation = indexLocation.getTempFile(".tmp");
+        try (OutputStream os = tmpLocation.getOutputStream()) {
+          index.write(os);
+        }
+        if (tmpLocation.renameTo(indexLocation) == null) {
+          throw new IOException("Failed to rename " + tmpLocation + " to " + indexLocation);
+        }
+        LOG.trace("Wrote index {} with {} blocks", indexLocation, index.getBlocks().size());
+      } catch (Exception e) {
+        LOG.warn("Failed to write index {} of log file {}", indexLocation, location, e);
+        if (tmpLocation != null) {
+          Locations.deleteQuietly(tmpLocation);
+        }
+      }
     }
   }
 }
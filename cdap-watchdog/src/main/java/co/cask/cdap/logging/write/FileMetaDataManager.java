@@ -56,6 +56,9 @@ public final class FileMetaDataManager {
 
   private static final byte[] ROW_KEY_PREFIX = Bytes.toBytes(200);
   private static final byte[] ROW_KEY_PREFIX_END = Bytes.toBytes(201);
+  // Rows of the files that were replaced by a merged file and are pending deletion, keyed by log partition
+  private static final byte[] REPLACED_ROW_KEY_PREFIX = Bytes.toBytes(202);
+  private static final byte[] REPLACED_ROW_KEY_PREFIX_END = Bytes.toBytes(203);
   private static final NavigableMap<?, ?> EMPTY_MAP = Maps.unmodifiableNavigableMap(new TreeMap());
 
   private final RootLocationFactory rootLocationFactory;
@@ -200,6 +203,126 @@ public final class FileMetaDataManager {
     });
   }
 
+  /**
+   * Calls the callback with the log files of each log partition. All the files are listed in one transaction.
+   * @param callback callback called with the files of each log partition.
+   */
+  public void scanFiles(final ScanCallback callback) throws Exception {
+    execute(new TransactionExecutor.Procedure<Table>() {
+      @Override
+      public void apply(Table table) throws Exception {
+        try (Scanner scanner = table.scan(ROW_KEY_PREFIX, ROW_KEY_PREFIX_END)) {
+          Row row;
+          while ((row = scanner.next()) != null) {
+            byte[] rowKey = row.getRow();
+            NamespaceId namespaceId = getNamespaceId(rowKey);
+            final Map<byte[], byte[]> cols = row.getColumns();
+            NavigableMap<Long, Location> files = impersonator.doAs(namespaceId,
+                                                                   new Callable<NavigableMap<Long, Location>>() {
+              @Override
+              public NavigableMap<Long, Location> call() throws Exception {
+                NavigableMap<Long, Location> files = new TreeMap<>();
+                for (Map.Entry<byte[], byte[]> entry : cols.entrySet()) {
+                  files.put(Bytes.toLong(entry.getKey()),
+                            rootLocationFactory.create(new URI(Bytes.toString(entry.getValue()))));
+                }
+                return files;
+              }
+            });
+            callback.handle(namespaceId, getLogPartition(rowKey), files);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Replaces the meta data of the given log files of a log partition with the meta data of a single file, which gets
+   * the start time of the first given file. Nothing is changed if the meta data of any of the given files has changed.
+   * The replaced files are recorded as pending deletion in the same transaction, see
+   * {@link #cleanReplacedFiles(long, ReplacedFileCallback)}.
+   * @param logPartition partition name that is used to group log messages
+   * @param files files to replace, keyed by start time.
+   * @param location file that replaces the given files.
+   * @return true if the meta data was replaced.
+   */
+  public boolean replaceMetaData(final String logPartition, final NavigableMap<Long, Location> files,
+                                 final Location location) throws Exception {
+    LOG.debug("Replacing meta data of files {} of logging context {} with location {}",
+              files, logPartition, location);
+
+    return execute(new TransactionExecutor.Function<Table, Boolean>() {
+      @Override
+      public Boolean apply(Table table) throws Exception {
+        byte[] rowKey = getRowKey(logPartition);
+        Row row = table.get(rowKey);
+        for (Map.Entry<Long, Location> file : files.entrySet()) {
+          String value = row.getString(Bytes.toBytes(file.getKey()));
+          if (!file.getValue().toURI().toString().equals(value)) {
+            return false;
+          }
+        }
+        for (long startTimeMs : files.keySet()) {
+          if (startTimeMs != files.firstKey()) {
+            table.delete(rowKey, Bytes.toBytes(startTimeMs));
+          }
+        }
+        table.put(rowKey, Bytes.toBytes(files.firstKey()), Bytes.toBytes(location.toURI().toString()));
+
+        byte[] replacedRowKey = getReplacedRowKey(logPartition);
+        byte[] replacedTimeMs = Bytes.toBytes(System.currentTimeMillis());
+        for (Location file : files.values()) {
+          table.put(replacedRowKey, Bytes.toBytes(file.toURI().toString()), replacedTimeMs);
+        }
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Calls the callback with each log file that was replaced before the given time, and removes the file from the
+   * files pending deletion once the callback returns. If the callback throws an exception, the file stays pending
+   * deletion and is passed to the callback again by the next call.
+   * @param replacedBeforeMs only files replaced at or before this time are passed to the callback.
+   * @param callback callback called to delete a replaced file.
+   * @return number of files removed from the files pending deletion.
+   */
+  public int cleanReplacedFiles(final long replacedBeforeMs, final ReplacedFileCallback callback) throws Exception {
+    return execute(new TransactionExecutor.Function<Table, Integer>() {
+      @Override
+      public Integer apply(Table table) throws Exception {
+        int deletedColumns = 0;
+        try (Scanner scanner = table.scan(REPLACED_ROW_KEY_PREFIX, REPLACED_ROW_KEY_PREFIX_END)) {
+          Row row;
+          while ((row = scanner.next()) != null) {
+            byte[] rowKey = row.getRow();
+            NamespaceId namespaceId = getNamespaceId(rowKey);
+            for (final Map.Entry<byte[], byte[]> entry : row.getColumns().entrySet()) {
+              if (Bytes.toLong(entry.getValue()) > replacedBeforeMs) {
+                continue;
+              }
+              Location fileLocation = impersonator.doAs(namespaceId, new Callable<Location>() {
+                @Override
+                public Location call() throws Exception {
+                  return rootLocationFactory.create(new URI(Bytes.toString(entry.getKey())));
+                }
+              });
+              try {
+                callback.handle(namespaceId, fileLocation);
+              } catch (Exception e) {
+                LOG.warn("Failed to delete replaced log file {}. Will try again later.", fileLocation, e);
+                continue;
+              }
+              table.delete(rowKey, entry.getKey());
+              deletedColumns++;
+            }
+          }
+        }
+        return deletedColumns;
+      }
+    });
+  }
+
   private void execute(TransactionExecutor.Procedure<Table> func) {
     try {
       Table table = tableUtil.getMetaTable();
@@ -258,6 +381,10 @@ public final class FileMetaDataManager {
     return Bytes.add(ROW_KEY_PREFIX, Bytes.toBytes(logPartition));
   }
 
+  private byte[] getReplacedRowKey(String logPartition) {
+    return Bytes.add(REPLACED_ROW_KEY_PREFIX, Bytes.toBytes(logPartition));
+  }
+
   private byte [] getMaxKey(Map<byte[], byte[]> map) {
     if (map instanceof SortedMap) {
       return ((SortedMap<byte [], byte []>) map).lastKey();
@@ -272,6 +399,20 @@ public final class FileMetaDataManager {
     return max;
   }
 
+  /**
+   * Implement to receive the log files of a log partition.
+   */
+  public interface ScanCallback {
+    void handle(NamespaceId namespaceId, String logPartition, NavigableMap<Long, Location> files) throws Exception;
+  }
+
+  /**
+   * Implement to delete a log file that was replaced by a merged file.
+   */
+  public interface ReplacedFileCallback {
+    void handle(NamespaceId namespaceId, Location location) throws Exception;
+  }
+
   /**
    * Implement to receive a location before its meta data is removed.
    */
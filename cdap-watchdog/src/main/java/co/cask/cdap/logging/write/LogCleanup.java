@@ -79,6 +79,10 @@ public final class LogCleanup implements Runnable {
                                                     location.delete();
                                                     parentDirs.put(namespacedLogBaseDir, getParent(location));
                                                   }
+                                                  Location indexLocation = LogFileIndex.getIndexLocation(location);
+                                                  if (indexLocation.exists()) {
+                                                    indexLocation.delete();
+                                                  }
                                                   return null;
                                                 }
                                               });
@@ -0,0 +1,352 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.data2.security.Impersonator;
+import co.cask.cdap.logging.serialize.LoggingEvent;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingOutputStream;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+/**
+ * Merges small log files of each logging context into larger, compressed files with a {@link LogFileIndex}.
+ * Only consecutive files that start within the same time window are merged, so that the time ranges of the
+ * files of a logging context still do not overlap. The latest file of a logging context is never merged,
+ * since it may still be written to. Only files in the same directory are merged, and the merged file is written
+ * to that directory.
+ * <p>
+ * The merged files are not deleted right away, since a log reader may still be reading them. They are recorded
+ * as pending deletion by the {@link FileMetaDataManager} in the transaction that replaces their meta data, and
+ * they are deleted by the first run that starts at least {@code fileDeleteDelayMs} after they were replaced, even
+ * if the process was restarted in between.
+ */
+public final class LogCompaction implements Runnable {
+  private static final Logger LOG = LoggerFactory.getLogger(LogCompaction.class);
+  private static final int DEFLATE_LEVEL = 6;
+
+  private final FileMetaDataManager fileMetaDataManager;
+  private final Impersonator impersonator;
+  private final Schema schema;
+  private final long smallFileSize;
+  private final long maxFileSize;
+  private final long windowMs;
+  private final int syncIntervalBytes;
+  private final long fileDeleteDelayMs;
+
+  /**
+   * Constructs a LogCompaction object.
+   * @param fileMetaDataManager used to find log files and to update their meta data.
+   * @param impersonator used to access log files of a namespace.
+   * @param schema schema of the Avro log files.
+   * @param smallFileSize files smaller than smallFileSize get merged.
+   * @param maxFileSize merged files are not larger than maxFileSize, before compression.
+   * @param windowMs only files with a start time in the same window of windowMs get merged.
+   * @param syncIntervalBytes the approximate number of bytes to write in each block of a merged file.
+   * @param fileDeleteDelayMs merged files are deleted by the first run at least fileDeleteDelayMs after they were
+   *                          replaced.
+   */
+  public LogCompaction(FileMetaDataManager fileMetaDataManager, Impersonator impersonator, Schema schema,
+                       long smallFileSize, long maxFileSize, long windowMs, int syncIntervalBytes,
+                       long fileDeleteDelayMs) {
+    this.fileMetaDataManager = fileMetaDataManager;
+    this.impersonator = impersonator;
+    this.schema = schema;
+    this.smallFileSize = smallFileSize;
+    this.maxFileSize = maxFileSize;
+    this.windowMs = windowMs;
+    this.syncIntervalBytes = syncIntervalBytes;
+    this.fileDeleteDelayMs = fileDeleteDelayMs;
+
+    LOG.debug("Log compaction small file size = {} bytes, window = {} ms, file delete delay = {} ms",
+              smallFileSize, windowMs, fileDeleteDelayMs);
+  }
+
+  @Override
+  public void run() {
+    LOG.info("Running log compaction...");
+    try {
+      deleteReplacedFiles(System.currentTimeMillis() - fileDeleteDelayMs);
+    } catch (Throwable e) {
+      LOG.warn("Failed to delete merged log files. Will try again later.", e);
+    }
+    try {
+      // Find the files to merge first, so that no file is merged in the scan transaction
+      final List<FileGroup> groups = new ArrayList<>();
+      fileMetaDataManager.scanFiles(new FileMetaDataManager.ScanCallback() {
+        @Override
+        public void handle(NamespaceId namespaceId, String logPartition,
+                           NavigableMap<Long, Location> files) throws Exception {
+          for (NavigableMap<Long, Location> group : findGroups(namespaceId, files)) {
+            groups.add(new FileGroup(namespaceId, logPartition, group));
+          }
+        }
+      });
+
+      int mergedFiles = 0;
+      int createdFiles = 0;
+      for (FileGroup group : groups) {
+        try {
+          if (compact(group)) {
+            mergedFiles += group.files.size();
+            createdFiles++;
+          }
+        } catch (Exception e) {
+          LOG.warn("Failed to compact log files {} of logging context {}", group.files.values(), group.logPartition, e);
+        }
+      }
+      LOG.info("Log compaction merged {} files into {} files, reclaiming {} files",
+               mergedFiles, createdFiles, mergedFiles - createdFiles);
+    } catch (Throwable e) {
+      LOG.error("Got exception when compacting log files. Will try again later.", e);
+    }
+  }
+
+  /**
+   * Deletes the merged files that were replaced before the given time.
+   */
+  private void deleteReplacedFiles(long replacedBeforeMs) throws Exception {
+    int deletedFiles = fileMetaDataManager.cleanReplacedFiles(replacedBeforeMs,
+                                                              new FileMetaDataManager.ReplacedFileCallback() {
+      @Override
+      public void handle(NamespaceId namespaceId, final Location location) throws Exception {
+        impersonator.doAs(namespaceId, new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            delete(location);
+            return null;
+          }
+        });
+      }
+    });
+    LOG.debug("Deleted {} merged log files", deletedFiles);
+  }
+
+  /**
+   * Returns the groups of small files to merge from the given files of a logging context.
+   */
+  private List<NavigableMap<Long, Location>> findGroups(NamespaceId namespaceId,
+                                                        final NavigableMap<Long, Location> files) throws Exception {
+    if (files.size() < 3) {
+      // The latest file is not merged, so at least two other files are needed
+      return ImmutableList.of();
+    }
+    NavigableMap<Long, Long> fileSizes = impersonator.doAs(namespaceId, new Callable<NavigableMap<Long, Long>>() {
+      @Override
+      public NavigableMap<Long, Long> call() throws Exception {
+        NavigableMap<Long, Long> fileSizes = new TreeMap<>();
+        for (Map.Entry<Long, Location> file : files.headMap(files.lastKey(), false).entrySet()) {
+          fileSizes.put(file.getKey(), file.getValue().exists() ? file.getValue().length() : Long.MAX_VALUE);
+        }
+        return fileSizes;
+      }
+    });
+
+    // Files are only merged with consecutive files in the same directory
+    List<NavigableMap<Long, Location>> groups = new ArrayList<>();
+    Location dir = null;
+    NavigableMap<Long, Long> dirFileSizes = new TreeMap<>();
+    for (Map.Entry<Long, Long> fileSize : fileSizes.entrySet()) {
+      Location fileDir = Locations.getParent(files.get(fileSize.getKey()));
+      if (!dirFileSizes.isEmpty() && !Objects.equal(dir, fileDir)) {
+        addGroups(files, dirFileSizes, groups);
+        dirFileSizes = new TreeMap<>();
+      }
+      dir = fileDir;
+      dirFileSizes.put(fileSize.getKey(), fileSize.getValue());
+    }
+    addGroups(files, dirFileSizes, groups);
+    return groups;
+  }
+
+  private void addGroups(NavigableMap<Long, Location> files, NavigableMap<Long, Long> fileSizes,
+                         List<NavigableMap<Long, Location>> groups) {
+    for (List<Long> startTimes : groupFiles(fileSizes, smallFileSize, maxFileSize, windowMs)) {
+      NavigableMap<Long, Location> group = new TreeMap<>();
+      for (long startTime : startTimes) {
+        group.put(startTime, files.get(startTime));
+      }
+      groups.add(group);
+    }
+  }
+
+  /**
+   * Groups consecutive small files that start in the same time window, up to a total size of maxFileSize.
+   * @param fileSizes sizes of the files that can be merged, keyed by start time.
+   * @return start times of the files in each group of at least two files.
+   */
+  @VisibleForTesting
+  static List<List<Long>> groupFiles(NavigableMap<Long, Long> fileSizes, long smallFileSize, long maxFileSize,
+                                     long windowMs) {
+    List<List<Long>> groups = new ArrayList<>();
+    List<Long> group = new ArrayList<>();
+    long groupSize = 0;
+    for (Map.Entry<Long, Long> file : fileSizes.entrySet()) {
+      long startTime = file.getKey();
+      long size = file.getValue();
+      if (!group.isEmpty() && (size >= smallFileSize || groupSize + size > maxFileSize
+        || startTime / windowMs != group.get(0) / windowMs)) {
+        if (group.size() > 1) {
+          groups.add(group);
+        }
+        group = new ArrayList<>();
+        groupSize = 0;
+      }
+      if (size < smallFileSize) {
+        group.add(startTime);
+        groupSize += size;
+      }
+    }
+    if (group.size() > 1) {
+      groups.add(group);
+    }
+    return groups;
+  }
+
+  /**
+   * Merges the files of the given group into a new file, and replaces their meta data with the one of the new file.
+   * @return true if the files were replaced by the new file.
+   */
+  private boolean compact(final FileGroup group) throws Exception {
+    final Location location = impersonator.doAs(group.namespaceId, new Callable<Location>() {
+      @Override
+      public Location call() throws Exception {
+        Location firstFile = group.files.firstEntry().getValue();
+        Location dir = Locations.getParent(firstFile);
+        if (dir == null) {
+          throw new IOException("Log file " + firstFile + " has no parent directory");
+        }
+        Location location = dir.append(String.format("%s.compacted.avro", System.currentTimeMillis()));
+        LOG.debug("Merging log files {} into {}", group.files.values(), location);
+        try {
+          merge(group.files.values(), location);
+        } catch (Exception e) {
+          delete(location);
+          throw e;
+        }
+        return location;
+      }
+    });
+
+    // If updating the meta data fails, the new file is left in place, since the update may have been committed.
+    // The merged files may still be read, so they are only recorded for deletion by a later run.
+    if (fileMetaDataManager.replaceMetaData(group.logPartition, group.files, location)) {
+      return true;
+    }
+
+    // The new file was never referenced by the meta data, so no one can be reading it
+    LOG.debug("Log files {} were changed while merging them, not replacing them", group.files.values());
+    impersonator.doAs(group.namespaceId, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        delete(location);
+        return null;
+      }
+    });
+    return false;
+  }
+
+  private void merge(Iterable<Location> files, Location location) throws IOException {
+    DataFileWriter<GenericRecord> dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+    dataFileWriter.setCodec(CodecFactory.deflateCodec(DEFLATE_LEVEL));
+    dataFileWriter.setSyncInterval(syncIntervalBytes);
+    CountingOutputStream outputStream = new CountingOutputStream(location.getOutputStream());
+    LogFileIndex.Builder indexBuilder = new LogFileIndex.Builder();
+    try {
+      dataFileWriter.create(schema, outputStream);
+      long indexBlockPos = dataFileWriter.sync();
+      indexBuilder.startBlock(indexBlockPos);
+
+      GenericRecord datum = null;
+      for (Location file : files) {
+        try (InputStream is = file.getInputStream()) {
+          DataFileStream<GenericRecord> dataFileStream =
+            new DataFileStream<>(is, new GenericDatumReader<GenericRecord>(schema));
+          while (dataFileStream.hasNext()) {
+            // Start a new index block at a sync point once the current one is big enough
+            if (indexBuilder.getEventCount() > 0 && outputStream.getCount() - indexBlockPos >= syncIntervalBytes) {
+              indexBlockPos = dataFileWriter.sync();
+              indexBuilder.startBlock(indexBlockPos);
+            }
+            datum = dataFileStream.next(datum);
+            dataFileWriter.append(datum);
+            indexBuilder.add(LoggingEvent.decode(datum));
+          }
+        }
+      }
+      dataFileWriter.sync();
+    } finally {
+      try {
+        dataFileWriter.close();
+      } finally {
+        outputStream.close();
+      }
+    }
+
+    try (OutputStream indexOutputStream = LogFileIndex.getIndexLocation(location).getOutputStream()) {
+      indexBuilder.build().write(indexOutputStream);
+    }
+  }
+
+  private void delete(Location file) throws IOException {
+    if (file.exists()) {
+      LOG.debug("Deleting log file {}", file);
+      file.delete();
+    }
+    Location indexLocation = LogFileIndex.getIndexLocation(file);
+    if (indexLocation.exists()) {
+      indexLocation.delete();
+    }
+  }
+
+  /**
+   * Log files of a logging context to merge.
+   */
+  private static final class FileGroup {
+    private final NamespaceId namespaceId;
+    private final String logPartition;
+    private final NavigableMap<Long, Location> files;
+
+    FileGroup(NamespaceId namespaceId, String logPartition, NavigableMap<Long, Location> files) {
+      this.namespaceId = namespaceId;
+      this.logPartition = logPartition;
+      this.files = files;
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.MdcExpression;
+import co.cask.cdap.logging.filter.OrFilter;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.apache.twill.filesystem.Location;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the blocks of a log file, stored in a file alongside the log file. For each block of events, the index
+ * has the position of the block in the log file, the range of event timestamps, the highest log level and a bloom
+ * filter of the MDC properties of the events. Readers use it to skip blocks that cannot have events matching a
+ * {@link Filter}.
+ */
+public final class LogFileIndex {
+
+  private static final int VERSION = 1;
+  private static final String INDEX_SUFFIX = ".idx";
+
+  // Size of the MDC bloom filter of a block, in longs, and the number of hashes of each MDC property
+  private static final int BLOOM_FILTER_LONGS = 16;
+  private static final int BLOOM_FILTER_HASHES = 3;
+  private static final HashFunction BLOOM_FILTER_HASH = Hashing.murmur3_128();
+
+  private final List<Block> blocks;
+
+  private LogFileIndex(List<Block> blocks) {
+    this.blocks = ImmutableList.copyOf(blocks);
+  }
+
+  /**
+   * Returns the location of the index of the given log file.
+   */
+  public static Location getIndexLocation(Location logFile) throws IOException {
+    Location parent = Locations.getParent(logFile);
+    Preconditions.checkArgument(parent != null, "Log file %s has no parent directory", logFile);
+    return parent.append(logFile.getName() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Returns the blocks of the log file, in the order they appear in the file.
+   */
+  public List<Block> getBlocks() {
+    return blocks;
+  }
+
+  /**
+   * Reads an index written by {@link #write(OutputStream)}.
+   */
+  public static LogFileIndex read(InputStream is) throws IOException {
+    DataInputStream input = new DataInputStream(is);
+    int version = input.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported log file index version " + version);
+    }
+    int size = input.readInt();
+    ImmutableList.Builder<Block> blocks = ImmutableList.builder();
+    for (int i = 0; i < size; i++) {
+      long position = input.readLong();
+      int eventCount = input.readInt();
+      long minTimestamp = input.readLong();
+      long maxTimestamp = input.readLong();
+      int maxLevel = input.readInt();
+      long[] mdcBloomFilter = new long[input.readInt()];
+      for (int j = 0; j < mdcBloomFilter.length; j++) {
+        mdcBloomFilter[j] = input.readLong();
+      }
+      blocks.add(new Block(position, eventCount, minTimestamp, maxTimestamp, maxLevel, mdcBloomFilter));
+    }
+    return new LogFileIndex(blocks.build());
+  }
+
+  /**
+   * Writes this index to the given stream. The stream is flushed, but not closed.
+   */
+  public void write(OutputStream os) throws IOException {
+    DataOutputStream output = new DataOutputStream(os);
+    output.writeInt(VERSION);
+    output.writeInt(blocks.size());
+    for (Block block : blocks) {
+      output.writeLong(block.position);
+      output.writeInt(block.eventCount);
+      output.writeLong(block.minTimestamp);
+      output.writeLong(block.maxTimestamp);
+      output.writeInt(block.maxLevel);
+      output.writeInt(block.mdcBloomFilter.length);
+      for (long bits : block.mdcBloomFilter) {
+        output.writeLong(bits);
+      }
+    }
+    output.flush();
+  }
+
+  /**
+   * Sets the bits of the given MDC property in a bloom filter, or returns whether they are all set already.
+   */
+  private static boolean bloomFilter(long[] bloomFilter, String key, String value, boolean set) {
+    long hash = BLOOM_FILTER_HASH.newHasher()
+      .putString(key, Charsets.UTF_8).putByte((byte) 0).putString(value, Charsets.UTF_8)
+      .hash().asLong();
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    int bits = bloomFilter.length * Long.SIZE;
+    for (int i = 1; i <= BLOOM_FILTER_HASHES; i++) {
+      int bit = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bits;
+      long mask = 1L << (bit % Long.SIZE);
+      if (set) {
+        bloomFilter[bit / Long.SIZE] |= mask;
+      } else if ((bloomFilter[bit / Long.SIZE] & mask) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A block of events in a log file.
+   */
+  public static final class Block {
+    private final long position;
+    private final int eventCount;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int maxLevel;
+    private final long[] mdcBloomFilter;
+
+    private Block(long position, int eventCount, long minTimestamp, long maxTimestamp, int maxLevel,
+                  long[] mdcBloomFilter) {
+      this.position = position;
+      this.eventCount = eventCount;
+      this.minTimestamp = minTimestamp;
+      this.maxTimestamp = maxTimestamp;
+      this.maxLevel = maxLevel;
+      this.mdcBloomFilter = mdcBloomFilter;
+    }
+
+    /**
+     * Returns the position of the block in the log file, which can be passed to
+     * {@link org.apache.avro.file.DataFileReader#seek(long)}.
+     */
+    public long getPosition() {
+      return position;
+    }
+
+    public int getEventCount() {
+      return eventCount;
+    }
+
+    public long getMinTimestamp() {
+      return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+      return maxTimestamp;
+    }
+
+    /**
+     * Returns {@code false} if no event in the block can match the given filter. Filters other than
+     * {@link AndFilter}, {@link OrFilter}, {@link LogLevelExpression} and {@link MdcExpression} are assumed to
+     * match any block.
+     */
+    public boolean mayMatch(Filter filter) {
+      if (filter instanceof AndFilter) {
+        for (Filter expression : ((AndFilter) filter).getExpressions()) {
+          if (!mayMatch(expression)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      if (filter instanceof OrFilter) {
+        for (Filter expression : ((OrFilter) filter).getExpressions()) {
+          if (mayMatch(expression)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      if (filter instanceof LogLevelExpression) {
+        return maxLevel >= ((LogLevelExpression) filter).getLevel().toInt();
+      }
+      if (filter instanceof MdcExpression) {
+        MdcExpression mdcExpression = (MdcExpression) filter;
+        return mdcExpression.getKey() != null && mdcExpression.getValue() != null
+          && bloomFilter(mdcBloomFilter, mdcExpression.getKey(), mdcExpression.getValue(), false);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Builds a {@link LogFileIndex} while events are written to a log file.
+   */
+  public static final class Builder {
+    private final ImmutableList.Builder<Block> blocks = ImmutableList.builder();
+    private long position = -1;
+    private int eventCount;
+    private long minTimestamp;
+    private long maxTimestamp;
+    private int maxLevel;
+    private long[] mdcBloomFilter;
+
+    /**
+     * Starts a new block at the given position of the log file. The current block is ended.
+     */
+    public void startBlock(long position) {
+      endBlock();
+      this.position = position;
+      this.eventCount = 0;
+      this.minTimestamp = Long.MAX_VALUE;
+      this.maxTimestamp = Long.MIN_VALUE;
+      this.maxLevel = Integer.MIN_VALUE;
+      this.mdcBloomFilter = new long[BLOOM_FILTER_LONGS];
+    }
+
+    /**
+     * Adds an event written to the current block.
+     */
+    public void add(ILoggingEvent event) {
+      add(event, event.getMDCPropertyMap());
+    }
+
+    /**
+     * Adds an event written to the current block, with the MDC that is written to the file for the event. The
+     * written MDC can differ from the MDC of the event, e.g. it includes the tags of the logging context.
+     */
+    public void add(ILoggingEvent event, @Nullable Map<String, String> mdc) {
+      Preconditions.checkState(position >= 0, "No block is started");
+      eventCount++;
+      minTimestamp = Math.min(minTimestamp, event.getTimeStamp());
+      maxTimestamp = Math.max(maxTimestamp, event.getTimeStamp());
+      maxLevel = Math.max(maxLevel, event.getLevel().toInt());
+      if (mdc == null) {
+        return;
+      }
+      for (Map.Entry<String, String> entry : mdc.entrySet()) {
+        if (entry.getKey() != null && entry.getValue() != null) {
+          bloomFilter(mdcBloomFilter, entry.getKey(), entry.getValue(), true);
+        }
+      }
+    }
+
+    /**
+     * Returns the number of events in the current block.
+     */
+    public int getEventCount() {
+      return eventCount;
+    }
+
+    /**
+     * Ends the current block, if there is one. Empty blocks are left out of the index.
+     */
+    public void endBlock() {
+      if (position >= 0 && eventCount > 0) {
+        blocks.add(new Block(position, eventCount, minTimestamp, maxTimestamp, maxLevel, mdcBloomFilter));
+      }
+      position = -1;
+      eventCount = 0;
+    }
+
+    /**
+     * Ends the current block and returns the index.
+     */
+    public LogFileIndex build() {
+      endBlock();
+      return new LogFileIndex(blocks.build());
+    }
+  }
+}
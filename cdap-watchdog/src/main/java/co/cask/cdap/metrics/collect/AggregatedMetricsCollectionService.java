@@ -51,7 +51,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
   private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final LoadingCache<ContextKey, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
 
   private ScheduledExecutorService executorService;
 
@@ -66,9 +66,9 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
       // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
       // there wont be any loss of emitter entries.
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
+      .build(new CacheLoader<ContextKey, LoadingCache<String, AggregatedMetricsEmitter>>() {
         @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
+        public LoadingCache<String, AggregatedMetricsEmitter> load(ContextKey key) throws Exception {
           return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
             build(new CacheLoader<String, AggregatedMetricsEmitter>() {
               @Override
@@ -147,13 +147,13 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
   private Iterator<MetricValues> getMetrics(final long timestamp) {
     // NOTE : emitters.asMap does not reset the access time in cache,
     // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
+    final Iterator<Map.Entry<ContextKey, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
       emitters.asMap().entrySet().iterator();
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
+          Map.Entry<ContextKey, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
           Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
           // +1 because we add extra metric about how many metric values did we emit in this context (see below)
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
@@ -175,7 +175,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(entry.getKey().tags, timestamp, metricValues);
         }
         return endOfData();
       }
@@ -191,22 +191,57 @@ public abstract class AggregatedMetricsCollectionService extends AbstractSchedul
     };
   }
 
+  /**
+   * Key of the emitters cache. It is created once per {@link MetricsContext}, with the hash code of the tags
+   * computed upfront, so that looking up the emitters on every increment or gauge doesn't need to hash
+   * the whole tags map again.
+   */
+  private static final class ContextKey {
+
+    private final Map<String, String> tags;
+    private final int hashCode;
+
+    private ContextKey(Map<String, String> tags) {
+      this.tags = tags;
+      this.hashCode = tags.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ContextKey other = (ContextKey) o;
+      return hashCode == other.hashCode && tags.equals(other.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    private final ContextKey contextKey;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
+      this.contextKey = new ContextKey(this.tags);
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      emitters.getUnchecked(contextKey).getUnchecked(metricName).increment(value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      emitters.getUnchecked(contextKey).getUnchecked(metricName).gauge(value);
     }
 
     @Override
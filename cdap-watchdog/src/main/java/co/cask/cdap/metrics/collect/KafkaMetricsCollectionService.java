@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.BinaryEncoder;
 import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.internal.io.DatumWriter;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
@@ -30,9 +31,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * A {@link AggregatedMetricsCollectionService} that publish {@link co.cask.cdap.api.metrics.MetricValues} to kafka.
@@ -46,8 +47,10 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
   private final String topicPrefix;
   private final KafkaPublisher.Ack ack;
   private final DatumWriter<MetricValues> recordWriter;
-  private final ByteArrayOutputStream encoderOutputStream;
+  private final ExposedByteArrayOutputStream encoderOutputStream;
   private final Encoder encoder;
+  private final List<Integer> messageEnds;
+  private final List<Integer> partitionKeys;
 
   private KafkaPublisher publisher;
 
@@ -66,8 +69,10 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
     this.recordWriter = recordWriter;
 
     // Parent guarantees the publish method would not get called concurrently, hence safe to reuse the same instances.
-    this.encoderOutputStream = new ByteArrayOutputStream(1024);
+    this.encoderOutputStream = new ExposedByteArrayOutputStream(1024);
     this.encoder = new BinaryEncoder(encoderOutputStream);
+    this.messageEnds = Lists.newArrayList();
+    this.partitionKeys = Lists.newArrayList();
   }
 
   @Override
@@ -83,22 +88,37 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
       return;
     }
     encoderOutputStream.reset();
+    messageEnds.clear();
+    partitionKeys.clear();
 
-    KafkaPublisher.Preparer preparer = publisher.prepare(topicPrefix);
+    // Encode all MetricValues into the same buffer first, remembering where each of them ends.
     while (metrics.hasNext()) {
-      // Encode each MetricRecord into bytes and make it an individual kafka message in a message set.
       MetricValues value = metrics.next();
-      publishMetric(preparer, value);
+      recordWriter.encode(value, encoder);
+      messageEnds.add(encoderOutputStream.size());
+      // partitioning by the context
+      partitionKeys.add(getPartitionKey(value));
+    }
+    if (messageEnds.isEmpty()) {
+      return;
     }
 
-    preparer.send();
-  }
+    // Each MetricValues is an individual kafka message in a message set, backed by a slice of the encoded buffer.
+    ByteBuffer buffer = ByteBuffer.wrap(encoderOutputStream.getBuffer(), 0, encoderOutputStream.size());
+    KafkaPublisher.Preparer preparer = publisher.prepare(topicPrefix);
+    int start = 0;
+    for (int i = 0; i < messageEnds.size(); i++) {
+      int end = messageEnds.get(i);
+      buffer.limit(end).position(start);
+      preparer.add(buffer.slice(), partitionKeys.get(i));
+      start = end;
+    }
 
-  private void publishMetric(KafkaPublisher.Preparer preparer, MetricValues value) throws IOException {
-    recordWriter.encode(value, encoder);
-    // partitioning by the context
-    preparer.add(ByteBuffer.wrap(encoderOutputStream.toByteArray()), getPartitionKey(value));
-    encoderOutputStream.reset();
+    // The publisher serializes the messages while sending, hence the buffer is reused by the next publish once the
+    // send is completed. Otherwise the slices may still be referenced, so a new buffer is used for the next publish.
+    if (!preparer.send().isDone()) {
+      encoderOutputStream.resetBuffer();
+    }
   }
 
   private Integer getPartitionKey(MetricValues value) {
@@ -106,6 +126,32 @@ public class KafkaMetricsCollectionService extends AggregatedMetricsCollectionSe
     return value.getTags().hashCode();
   }
 
+  /**
+   * A {@link ByteArrayOutputStream} that gives access to its internal buffer, so that encoded messages can be
+   * published without copying them, and the buffer reused across publishes.
+   */
+  private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+    private final int initialSize;
+
+    ExposedByteArrayOutputStream(int initialSize) {
+      super(initialSize);
+      this.initialSize = initialSize;
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+
+    /**
+     * Resets the stream and replaces the internal buffer with a new one, of the size that is currently used.
+     */
+    void resetBuffer() {
+      buf = new byte[Math.max(initialSize, count)];
+      count = 0;
+    }
+  }
+
   private KafkaPublisher getPublisher() {
     if (publisher != null) {
       return publisher;
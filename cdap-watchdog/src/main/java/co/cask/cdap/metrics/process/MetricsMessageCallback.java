@@ -22,10 +22,12 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.internal.io.DatumReader;
 import co.cask.common.io.ByteBufferInputStream;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.twill.kafka.client.FetchedMessage;
 import org.apache.twill.kafka.client.KafkaConsumer;
 import org.slf4j.Logger;
@@ -85,8 +87,12 @@ public final class MetricsMessageCallback implements KafkaConsumer.MessageCallba
       return;
     }
 
+    int recordCount = records.size();
+    long lastTimestamp = records.get(recordCount - 1).getTimestamp();
+    records = aggregate(records);
+
     try {
-      addProcessingStats(records);
+      addProcessingStats(records, recordCount, lastTimestamp);
       metricStore.add(records);
     } catch (Exception e) {
       String msg = "Failed to add metrics data to a store";
@@ -95,20 +101,57 @@ public final class MetricsMessageCallback implements KafkaConsumer.MessageCallba
       throw new RuntimeException(msg, e);
     }
 
-    recordProcessed += records.size();
+    recordProcessed += recordCount;
     if (recordProcessed % 1000 == 0) {
       LOG.info("{} metrics records processed", recordProcessed);
-      LOG.info("Last record time: {}", records.get(records.size() - 1).getTimestamp());
+      LOG.info("Last record time: {}", lastTimestamp);
     }
   }
 
-  private void addProcessingStats(List<MetricValues> records) {
-    if (records.isEmpty()) {
-      return;
+  /**
+   * Merges the records that have the same tags and timestamp, by summing up the counters and keeping the last
+   * value of the gauges. This reduces the number of facts that need to be computed and written to the store,
+   * which matters when catching up with a backlog of metrics.
+   */
+  private List<MetricValues> aggregate(List<MetricValues> records) {
+    if (records.size() <= 1) {
+      return records;
+    }
+    Map<ImmutablePair<Map<String, String>, Long>, Map<ImmutablePair<String, MetricType>, MetricValue>> aggregated =
+      Maps.newLinkedHashMap();
+    for (MetricValues record : records) {
+      ImmutablePair<Map<String, String>, Long> key = ImmutablePair.of(record.getTags(), record.getTimestamp());
+      Map<ImmutablePair<String, MetricType>, MetricValue> values = aggregated.get(key);
+      if (values == null) {
+        values = Maps.newLinkedHashMap();
+        aggregated.put(key, values);
+      }
+      for (MetricValue value : record.getMetrics()) {
+        ImmutablePair<String, MetricType> valueKey = ImmutablePair.of(value.getName(), value.getType());
+        MetricValue existing = values.get(valueKey);
+        if (existing != null && value.getType() == MetricType.COUNTER) {
+          value = new MetricValue(value.getName(), MetricType.COUNTER, existing.getValue() + value.getValue());
+        }
+        values.put(valueKey, value);
+      }
     }
-    int count = records.size();
+    if (aggregated.size() == records.size()) {
+      // nothing to merge
+      return records;
+    }
+
+    List<MetricValues> result = Lists.newArrayListWithCapacity(aggregated.size() + 1);
+    for (Map.Entry<ImmutablePair<Map<String, String>, Long>,
+                   Map<ImmutablePair<String, MetricType>, MetricValue>> entry : aggregated.entrySet()) {
+      result.add(new MetricValues(entry.getKey().getFirst(), entry.getKey().getSecond(),
+                                  Lists.newArrayList(entry.getValue().values())));
+    }
+    return result;
+  }
+
+  private void addProcessingStats(List<MetricValues> records, int count, long lastTimestamp) {
     long now = System.currentTimeMillis();
-    long delay = now - TimeUnit.SECONDS.toMillis(records.get(records.size() - 1).getTimestamp());
+    long delay = now - TimeUnit.SECONDS.toMillis(lastTimestamp);
     records.add(
       new MetricValues(metricsContext, TimeUnit.MILLISECONDS.toSeconds(now),
                        ImmutableList.of(new MetricValue("metrics.process.count", MetricType.COUNTER, count),
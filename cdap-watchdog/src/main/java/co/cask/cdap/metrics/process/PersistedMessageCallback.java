@@ -59,7 +59,11 @@ public final class PersistedMessageCallback implements KafkaConsumer.MessageCall
 
   @Override
   public void onReceived(Iterator<FetchedMessage> messages) {
-    delegate.onReceived(new OffsetTrackingIterator(messages));
+    OffsetTrackingIterator iterator = new OffsetTrackingIterator(messages);
+    delegate.onReceived(iterator);
+    // Only record the offsets once the delegate has completed processing the messages, so that offsets of messages
+    // that failed to be processed are never persisted.
+    offsets.putAll(iterator.getOffsets());
     if (messageCount.get() >= persistThreshold) {
       messageCount.set(0);
       persistOffsets();
@@ -86,17 +90,22 @@ public final class PersistedMessageCallback implements KafkaConsumer.MessageCall
   }
 
   /**
-   * Inner help class to track offsets of {@link FetchedMessage} being consumed and
-   * persist to meta table when persistThreshold is reached.
+   * Inner help class to track offsets of {@link FetchedMessage} being consumed.
    */
   private final class OffsetTrackingIterator implements Iterator<FetchedMessage> {
 
     private final Iterator<FetchedMessage> delegate;
+    private final Map<TopicPartition, Long> offsets;
     private TopicPartition lastTopicPartition;
     private long lastOffset = -1;
 
     OffsetTrackingIterator(Iterator<FetchedMessage> delegate) {
       this.delegate = delegate;
+      this.offsets = Maps.newHashMap();
+    }
+
+    Map<TopicPartition, Long> getOffsets() {
+      return offsets;
     }
 
     @Override
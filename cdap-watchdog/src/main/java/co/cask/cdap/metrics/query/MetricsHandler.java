@@ -24,26 +24,40 @@ import co.cask.cdap.api.metrics.MetricDataQuery;
 import co.cask.cdap.api.metrics.MetricSearchQuery;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.TimeMathParser;
+import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.MetricQueryRequest;
 import co.cask.cdap.proto.MetricQueryResult;
 import co.cask.cdap.proto.MetricTagValue;
 import co.cask.http.AbstractHttpHandler;
+import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.Inject;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
@@ -51,9 +65,14 @@ import org.jboss.netty.handler.codec.http.QueryStringDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.ws.rs.POST;
@@ -82,7 +101,15 @@ public class MetricsHandler extends AbstractHttpHandler {
 
   public static final String ANY_TAG_VALUE = "*";
 
+  // size of the chunks that query results are streamed with
+  private static final int RESPONSE_CHUNK_SIZE = 64 * 1024;
+
   private final MetricStore metricStore;
+  // resolutions (in seconds) that are supported in queries: stored ones and the ones derived from them
+  private final Set<Integer> supportedResolutions;
+  // max number of data points in a query response, over all queries of a batch request
+  private final int maxQueryPoints;
+  private final MetricsContext metricsContext;
 
   private static final Map<String, String> tagNameToHuman;
   private static final Map<String, String> humanToTagName;
@@ -127,8 +154,38 @@ public class MetricsHandler extends AbstractHttpHandler {
   }
 
   @Inject
-  public MetricsHandler(MetricStore metricStore) {
+  public MetricsHandler(CConfiguration cConf, MetricStore metricStore,
+                        MetricsCollectionService metricsCollectionService) {
     this.metricStore = metricStore;
+    // lets the store report metrics about the lookups done by the queries, e.g. the entity cache hits and misses
+    metricStore.setMetricsContext(metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS)));
+    ImmutableSet.Builder<Integer> resolutions = ImmutableSet.<Integer>builder().add(1, 60, 3600, Integer.MAX_VALUE);
+    for (String resolution : cConf.getTrimmedStrings(Constants.Metrics.DERIVED_RESOLUTIONS)) {
+      resolutions.add(parseDerivedResolution(resolution));
+    }
+    this.supportedResolutions = resolutions.build();
+    int maxQueryPoints = cConf.getInt(Constants.Metrics.QUERY_MAX_POINTS);
+    this.maxQueryPoints = maxQueryPoints > 0 ? maxQueryPoints : Integer.MAX_VALUE;
+    this.metricsContext = metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, Id.Namespace.SYSTEM.getId(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS,
+      Constants.Metrics.Tag.HANDLER, getClass().getSimpleName(),
+      Constants.Metrics.Tag.METHOD, "query"));
+  }
+
+  private static int parseDerivedResolution(String resolution) {
+    int seconds;
+    try {
+      seconds = Integer.parseInt(resolution);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Invalid resolution '%s' in %s, resolutions must be in seconds",
+                                                       resolution, Constants.Metrics.DERIVED_RESOLUTIONS), e);
+    }
+    Preconditions.checkArgument(seconds > 0, "Invalid resolution '%s' in %s, resolutions must be positive",
+                                resolution, Constants.Metrics.DERIVED_RESOLUTIONS);
+    return seconds;
   }
 
   @POST
@@ -192,29 +249,78 @@ public class MetricsHandler extends AbstractHttpHandler {
   }
 
   private void executeBatchQueries(HttpRequest request, HttpResponder responder) {
-    if (HttpHeaders.getContentLength(request) > 0) {
-      try {
-        String json = request.getContent().toString(Charsets.UTF_8);
-        Map<String, QueryRequestFormat> queries =
-          GSON.fromJson(json, new TypeToken<Map<String, QueryRequestFormat>>() { }.getType());
-
-        LOG.trace("Received Queries {}", queries);
-
-        Map<String, MetricQueryResult> queryFinalResponse = Maps.newHashMap();
-        for (Map.Entry<String, QueryRequestFormat> query : queries.entrySet()) {
-          MetricQueryRequest queryRequest = getQueryRequestFromFormat(query.getValue());
-          queryFinalResponse.put(query.getKey(), executeQuery(queryRequest));
+    if (HttpHeaders.getContentLength(request) <= 0) {
+      responder.sendJson(HttpResponseStatus.BAD_REQUEST, "Batch request with empty content");
+      return;
+    }
+
+    Map<String, MetricQueryRequest> queryRequests = new LinkedHashMap<>();
+    Map<String, MetricDataQuery> dataQueries = Maps.newHashMap();
+    try {
+      String json = request.getContent().toString(Charsets.UTF_8);
+      Map<String, QueryRequestFormat> queries =
+        GSON.fromJson(json, new TypeToken<Map<String, QueryRequestFormat>>() { }.getType());
+
+      LOG.trace("Received Queries {}", queries);
+      if (queries == null) {
+        throw new IllegalArgumentException("Batch request must be a map of query id to query");
+      }
+
+      // Validate all queries upfront, as the response status cannot change once the results are being streamed
+      for (Map.Entry<String, QueryRequestFormat> query : queries.entrySet()) {
+        if (query.getValue() == null) {
+          throw new IllegalArgumentException("Missing query for " + query.getKey());
         }
-        responder.sendJson(HttpResponseStatus.OK, queryFinalResponse);
-      } catch (IllegalArgumentException e) {
-        LOG.warn("Invalid request", e);
-        responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
-      } catch (Exception e) {
-        LOG.error("Exception querying metrics ", e);
+        MetricQueryRequest queryRequest = getQueryRequestFromFormat(query.getValue());
+        queryRequests.put(query.getKey(), queryRequest);
+        dataQueries.put(query.getKey(), toMetricDataQuery(queryRequest));
+      }
+    } catch (JsonSyntaxException e) {
+      LOG.warn("Invalid request", e);
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, "Invalid JSON in batch request: " + e.getMessage());
+      return;
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Invalid request", e);
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+      return;
+    }
+
+    // Each query is executed right before its result is streamed, so that only one result is in memory at a time
+    Stopwatch stopwatch = new Stopwatch().start();
+    ChunkResponseStream responseStream = new ChunkResponseStream(responder);
+    JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(responseStream, Charsets.UTF_8));
+    int pointsLeft = maxQueryPoints;
+    boolean partial = false;
+    try {
+      jsonWriter.beginObject();
+      for (Map.Entry<String, MetricQueryRequest> query : queryRequests.entrySet()) {
+        // once the point budget is used up, the remaining queries are not executed
+        Collection<MetricTimeSeries> result = ImmutableList.of();
+        if (pointsLeft > 0) {
+          // the query stops scanning once it has more data points than are left, which marks the result partial
+          result = metricStore.query(new MetricDataQuery(dataQueries.get(query.getKey()), pointsLeft));
+        } else {
+          partial = true;
+        }
+        jsonWriter.name(query.getKey());
+        pointsLeft -= writeResult(jsonWriter, query.getValue().getTimeRange(), result, pointsLeft);
+      }
+      jsonWriter.endObject();
+      jsonWriter.close();
+      emitQueryMetrics(queryRequests.size(), Math.min(maxQueryPoints - pointsLeft, maxQueryPoints),
+                       partial || pointsLeft < 0, stopwatch);
+    } catch (IOException e) {
+      // If cannot send chunks, nothing can be done (since the client closed connection).
+      LOG.debug("Failed to send metrics query result", e);
+    } catch (Exception e) {
+      LOG.error("Exception querying metrics ", e);
+      // The response status can only be changed if nothing was sent yet
+      if (!responseStream.isStarted()) {
+        responseStream.discard();
         responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal error while querying for metrics");
       }
-    } else {
-      responder.sendJson(HttpResponseStatus.BAD_REQUEST, "Batch request with empty content");
+    } finally {
+      Closeables.closeQuietly(responseStream);
     }
   }
 
@@ -225,30 +331,46 @@ public class MetricsHandler extends AbstractHttpHandler {
       queryParams.put(entry.getKey(), ImmutableList.of(entry.getValue()));
     }
 
+    // a query without metrics is rejected when it is converted to a MetricDataQuery
+    List<String> metrics = queryRequestFormat.getMetrics() == null ?
+      ImmutableList.<String>of() : queryRequestFormat.getMetrics();
     MetricQueryRequest queryRequest = new MetricQueryRequest(queryRequestFormat.getTags(),
-                                                 queryRequestFormat.getMetrics(), queryRequestFormat.getGroupBy());
+                                                             metrics, queryRequestFormat.getGroupBy());
     setTimeRangeInQueryRequest(queryRequest, queryParams);
     return queryRequest;
   }
 
   private void tagsQuerying(HttpRequest request, HttpResponder responder, List<String> tags, List<String> metrics,
                             List<String> groupByTags) {
+    Stopwatch stopwatch = new Stopwatch().start();
+    MetricQueryRequest queryRequest;
+    Collection<MetricTimeSeries> result;
     try {
-      responder.sendJson(HttpResponseStatus.OK, executeQuery(request, parseTagValuesAsMap(tags), groupByTags, metrics));
+      queryRequest = new MetricQueryRequest(parseTagValuesAsMap(tags), metrics, groupByTags);
+      setTimeRangeInQueryRequest(queryRequest, new QueryStringDecoder(request.getUri()).getParameters());
+      result = metricStore.query(new MetricDataQuery(toMetricDataQuery(queryRequest), maxQueryPoints));
     } catch (IllegalArgumentException e) {
       LOG.warn("Invalid request", e);
       responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+      return;
     } catch (Exception e) {
       LOG.error("Exception querying metrics ", e);
       responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal error while querying for metrics");
+      return;
     }
-  }
 
-  private MetricQueryResult executeQuery(HttpRequest request, Map<String, String> sliceByTags,
-                                         List<String> groupByTags, List<String> metrics) throws Exception {
-    MetricQueryRequest queryRequest = new MetricQueryRequest(sliceByTags, metrics, groupByTags);
-    setTimeRangeInQueryRequest(queryRequest, new QueryStringDecoder(request.getUri()).getParameters());
-    return executeQuery(queryRequest);
+    ChunkResponseStream responseStream = new ChunkResponseStream(responder);
+    try {
+      JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(responseStream, Charsets.UTF_8));
+      int points = writeResult(jsonWriter, queryRequest.getTimeRange(), result, maxQueryPoints);
+      jsonWriter.close();
+      emitQueryMetrics(1, Math.min(points, maxQueryPoints), points > maxQueryPoints, stopwatch);
+    } catch (IOException e) {
+      // If cannot send chunks, nothing can be done (since the client closed connection).
+      LOG.debug("Failed to send metrics query result", e);
+    } finally {
+      Closeables.closeQuietly(responseStream);
+    }
   }
 
   private void setTimeRangeInQueryRequest(MetricQueryRequest request, Map<String, List<String>> queryTimeParams) {
@@ -316,16 +438,21 @@ public class MetricsHandler extends AbstractHttpHandler {
     } else {
       // if not auto, check if the given resolution matches available resolutions that we support.
       int resolutionInterval = TimeMathParser.resolutionInSeconds(resolution);
-      if (!((resolutionInterval == Integer.MAX_VALUE) || (resolutionInterval == 3600) ||
-        (resolutionInterval == 60) || (resolutionInterval == 1))) {
-        throw new IllegalArgumentException("Resolution interval not supported, only 1 second, 1 minute and " +
-                                             "1 hour resolutions are supported currently");
+      if (!supportedResolutions.contains(resolutionInterval)) {
+        List<String> supported = Lists.newArrayList();
+        for (int supportedResolution : supportedResolutions) {
+          if (supportedResolution != Integer.MAX_VALUE) {
+            supported.add(supportedResolution + "s");
+          }
+        }
+        throw new IllegalArgumentException("Resolution interval not supported, only " +
+                                             Joiner.on(", ").join(supported) + " resolutions are supported currently");
       }
       return resolutionInterval;
     }
   }
 
-  private MetricQueryResult executeQuery(MetricQueryRequest queryRequest) throws Exception {
+  private MetricDataQuery toMetricDataQuery(MetricQueryRequest queryRequest) {
     if (queryRequest.getMetrics().size() == 0) {
       throw new IllegalArgumentException("Missing metrics parameter in the query");
     }
@@ -334,20 +461,75 @@ public class MetricsHandler extends AbstractHttpHandler {
 
     MetricQueryRequest.TimeRange timeRange = queryRequest.getTimeRange();
 
-    MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
-                                                timeRange.getResolutionInSeconds(),
-                                                timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
-                                                tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
-                                                timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    return new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
+                               timeRange.getResolutionInSeconds(),
+                               timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
+                               tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
+                               timeRange.getInterpolate());
+  }
 
+  /**
+   * Writes the given query result as a {@link MetricQueryResult}, including at most {@code maxPoints} data points.
+   * The result is marked as partial if it has more points than that.
+   *
+   * @return number of data points in the query result
+   */
+  private int writeResult(JsonWriter jsonWriter, MetricQueryRequest.TimeRange timeRange,
+                          Collection<MetricTimeSeries> series, int maxPoints) throws IOException {
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
       // for aggregate query, we set the end time to be query time (current time)
       endTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
     }
 
-    return decorate(queryResult, timeRange.getStart(), endTime, timeRange.getResolutionInSeconds());
+    int points = 0;
+    for (MetricTimeSeries timeSeries : series) {
+      points += timeSeries.getTimeValues().size();
+    }
+    boolean partial = points > maxPoints || maxPoints <= 0;
+
+    // Same format as MetricQueryResult serialized with Gson
+    jsonWriter.beginObject();
+    jsonWriter.name("startTime").value(timeRange.getStart());
+    jsonWriter.name("endTime").value(endTime);
+    jsonWriter.name("series").beginArray();
+    int pointsLeft = maxPoints;
+    for (MetricTimeSeries timeSeries : series) {
+      if (pointsLeft <= 0) {
+        break;
+      }
+      jsonWriter.beginObject();
+      jsonWriter.name("metricName").value(timeSeries.getMetricName());
+      jsonWriter.name("grouping").beginObject();
+      for (Map.Entry<String, String> tag : tagNamesToHuman(timeSeries.getTagValues()).entrySet()) {
+        jsonWriter.name(tag.getKey()).value(tag.getValue());
+      }
+      jsonWriter.endObject();
+      jsonWriter.name("data").beginArray();
+      for (TimeValue timeValue : Iterables.limit(timeSeries.getTimeValues(), pointsLeft)) {
+        jsonWriter.beginObject();
+        jsonWriter.name("time").value(timeValue.getTimestamp());
+        jsonWriter.name("value").value(timeValue.getValue());
+        jsonWriter.endObject();
+      }
+      jsonWriter.endArray();
+      jsonWriter.endObject();
+      pointsLeft -= timeSeries.getTimeValues().size();
+    }
+    jsonWriter.endArray();
+    jsonWriter.name("resolution").value(timeRange.getResolutionInSeconds() + "s");
+    jsonWriter.name("partial").value(partial);
+    jsonWriter.endObject();
+    return points;
+  }
+
+  private void emitQueryMetrics(int queries, int points, boolean partial, Stopwatch stopwatch) {
+    metricsContext.increment("query.count", queries);
+    metricsContext.increment("query.points", points);
+    metricsContext.increment("query.time.ms", stopwatch.elapsedTime(TimeUnit.MILLISECONDS));
+    if (partial) {
+      metricsContext.increment("query.partial", 1);
+    }
   }
 
   private Map<String, AggregationFunction> toMetrics(List<String> metrics) {
@@ -466,18 +648,6 @@ public class MetricsHandler extends AbstractHttpHandler {
     return Lists.newArrayList(Iterables.filter(metricNames, Predicates.notNull()));
   }
 
-  private MetricQueryResult decorate(Collection<MetricTimeSeries> series, long startTs, long endTs,
-                                     int resolution) {
-    MetricQueryResult.TimeSeries[] serieses = new MetricQueryResult.TimeSeries[series.size()];
-    int i = 0;
-    for (MetricTimeSeries timeSeries : series) {
-      MetricQueryResult.TimeValue[] timeValues = decorate(timeSeries.getTimeValues());
-      serieses[i++] = new MetricQueryResult.TimeSeries(timeSeries.getMetricName(),
-                                                       tagNamesToHuman(timeSeries.getTagValues()), timeValues);
-    }
-    return new MetricQueryResult(startTs, endTs, serieses, resolution);
-  }
-
   private Map<String, String> tagNamesToHuman(Map<String, String> tagValues) {
     Map<String, String> humanTagValues = Maps.newHashMap();
     for (Map.Entry<String, String> tag : tagValues.entrySet()) {
@@ -486,13 +656,80 @@ public class MetricsHandler extends AbstractHttpHandler {
     return humanTagValues;
   }
 
-  private MetricQueryResult.TimeValue[] decorate(List<TimeValue> points) {
-    MetricQueryResult.TimeValue[] timeValues = new MetricQueryResult.TimeValue[points.size()];
-    int k = 0;
-    for (TimeValue timeValue : points) {
-      timeValues[k++] = new MetricQueryResult.TimeValue(timeValue.getTimestamp(), timeValue.getValue());
+  /**
+   * {@link OutputStream} that sends the response in chunks of {@link #RESPONSE_CHUNK_SIZE} bytes.
+   * The chunked response is started with the first chunk, and ended when this stream is closed.
+   */
+  private static final class ChunkResponseStream extends OutputStream {
+
+    private final HttpResponder responder;
+    private final byte[] buffer = new byte[RESPONSE_CHUNK_SIZE];
+    private int size;
+    private ChunkResponder chunkResponder;
+    private boolean closed;
+
+    ChunkResponseStream(HttpResponder responder) {
+      this.responder = responder;
+    }
+
+    /**
+     * Returns {@code true} if the response was started, hence another response cannot be sent anymore.
+     */
+    boolean isStarted() {
+      return chunkResponder != null;
+    }
+
+    /**
+     * Discards the buffered content, so that a different response can be sent. Only valid if not started.
+     */
+    void discard() {
+      closed = true;
+      size = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (size == buffer.length) {
+        sendChunk();
+      }
+      buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+      while (len > 0) {
+        if (size == buffer.length) {
+          sendChunk();
+        }
+        int copyLen = Math.min(len, buffer.length - size);
+        System.arraycopy(bytes, off, buffer, size, copyLen);
+        size += copyLen;
+        off += copyLen;
+        len -= copyLen;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (size > 0 || chunkResponder == null) {
+        sendChunk();
+      }
+      chunkResponder.close();
+    }
+
+    private void sendChunk() throws IOException {
+      if (chunkResponder == null) {
+        chunkResponder = responder.sendChunkStart(HttpResponseStatus.OK, ImmutableMultimap.of(
+          HttpHeaders.Names.CONTENT_TYPE, "application/json"));
+      }
+      // netty doesn't copy the buffer, hence the copy
+      chunkResponder.sendChunk(ChannelBuffers.copiedBuffer(buffer, 0, size));
+      size = 0;
     }
-    return timeValues;
   }
 
   /**
@@ -20,6 +20,7 @@ import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.ResolvingDiscoverable;
+import co.cask.cdap.common.http.ChannelCloseFutureHandler;
 import co.cask.cdap.common.http.CommonNettyHttpServiceBuilder;
 import co.cask.cdap.common.logging.LoggingContextAccessor;
 import co.cask.cdap.common.logging.ServiceLoggingContext;
@@ -27,6 +28,7 @@ import co.cask.cdap.common.metrics.MetricsReporterHook;
 import co.cask.cdap.proto.Id;
 import co.cask.http.HttpHandler;
 import co.cask.http.NettyHttpService;
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
@@ -34,6 +36,7 @@ import com.google.inject.name.Named;
 import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.Discoverable;
 import org.apache.twill.discovery.DiscoveryService;
+import org.jboss.netty.channel.ChannelPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +69,14 @@ public class MetricsQueryService extends AbstractIdleService {
     builder.addHttpHandlers(handlers);
     builder.setHandlerHooks(ImmutableList.of(new MetricsReporterHook(metricsCollectionService,
                                                                      Constants.Service.METRICS)));
+    // Lets the log handler end log tail subscriptions when their clients disconnect
+    builder.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+      @Override
+      public ChannelPipeline apply(ChannelPipeline input) {
+        input.addBefore("dispatcher", "closeFuture", new ChannelCloseFutureHandler());
+        return input;
+      }
+    });
 
     builder.setHost(address);
 
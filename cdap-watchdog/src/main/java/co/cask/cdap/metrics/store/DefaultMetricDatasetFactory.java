@@ -72,7 +72,14 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
       public EntityTable get() {
         String tableName = cConf.get(Constants.Metrics.ENTITY_TABLE_NAME,
                                      Constants.Metrics.DEFAULT_ENTITY_TABLE_NAME);
-        return new EntityTable(getOrCreateMetricsTable(tableName, DatasetProperties.EMPTY));
+        EntityTable table = new EntityTable(getOrCreateMetricsTable(tableName, DatasetProperties.EMPTY));
+        if (cConf.getBoolean(Constants.Metrics.ENTITY_CACHE_PRELOAD)) {
+          // Filling the cache with one scan is a lot faster than loading entities one by one on the first writes
+          // and queries
+          int count = table.preload();
+          LOG.info("Preloaded {} entities from {}.", count, tableName);
+        }
+        return table;
       }
     });
   }
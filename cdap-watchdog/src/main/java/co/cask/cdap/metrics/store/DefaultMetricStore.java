@@ -35,6 +35,7 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.lib.cube.Aggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.AggregationAlias;
@@ -51,6 +52,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -58,6 +60,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -86,6 +91,7 @@ public class DefaultMetricStore implements MetricStore {
 
   private final int resolutions[];
   private final Supplier<Cube> cube;
+  private final MetricsCardinalityGuard cardinalityGuard;
   private MetricsContext metricsContext;
 
 
@@ -198,14 +204,22 @@ public class DefaultMetricStore implements MetricStore {
   }
 
   @Inject
-  public DefaultMetricStore(final MetricDatasetFactory dsFactory) {
+  public DefaultMetricStore(final MetricDatasetFactory dsFactory, CConfiguration cConf) {
     // 1 sec, 1 min, 1 hour and "all time totals"
-    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION});
+    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION},
+         createCardinalityGuard(cConf.getInt(Constants.Metrics.CONTEXT_METRIC_CARDINALITY_LIMIT)));
   }
 
   // NOTE: should never be used apart from data migration during cdap upgrade
   public DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[]) {
+    // migrated metrics were already written once, hence are not limited again
+    this(dsFactory, resolutions, null);
+  }
+
+  private DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[],
+                             @Nullable MetricsCardinalityGuard cardinalityGuard) {
     this.resolutions = resolutions;
+    this.cardinalityGuard = cardinalityGuard;
     final FactTableSupplier factTableSupplier = new FactTableSupplier() {
       @Override
       public FactTable get(int resolution, int ignoredRollTime) {
@@ -216,13 +230,28 @@ public class DefaultMetricStore implements MetricStore {
     this.cube = Suppliers.memoize(new Supplier<Cube>() {
       @Override
       public Cube get() {
-        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
-        cube.setMetricsCollector(metricsContext);
+        // Metrics tables are not transactional, hence the different resolutions can be written concurrently
+        ThreadPoolExecutor writeExecutor =
+          new ThreadPoolExecutor(resolutions.length, resolutions.length, 60, TimeUnit.SECONDS,
+                                 new LinkedBlockingQueue<Runnable>(),
+                                 Threads.createDaemonThreadFactory("metrics-writer-%d"));
+        writeExecutor.allowCoreThreadTimeOut(true);
+        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS,
+                                           writeExecutor);
+        // the entity table is shared by the stores of the process, don't reset the collector set by another one
+        if (metricsContext != null) {
+          cube.setMetricsCollector(metricsContext);
+        }
         return cube;
       }
     });
   }
 
+  @Nullable
+  private static MetricsCardinalityGuard createCardinalityGuard(int limit) {
+    return limit > 0 ? new MetricsCardinalityGuard(limit) : null;
+  }
+
   @Override
   public void setMetricsContext(MetricsContext metricsContext) {
     this.metricsContext = metricsContext;
@@ -239,9 +268,13 @@ public class DefaultMetricStore implements MetricStore {
     for (MetricValues metricValue : metricValues) {
       String scope = metricValue.getTags().get(Constants.Metrics.Tag.SCOPE);
       List<Measurement> metrics = Lists.newArrayList();
+      MetricsCardinalityGuard.Context guardContext =
+        cardinalityGuard == null ? null : cardinalityGuard.getContext(metricValue.getTags());
       // todo improve this logic?
       for (MetricValue metric : metricValue.getMetrics()) {
-        String measureName = (scope == null ? "system." : scope + ".") + metric.getName();
+        String metricName = guardContext == null
+          ? metric.getName() : guardContext.getMetricName(metric.getName(), metric.getType());
+        String measureName = (scope == null ? "system." : scope + ".") + metricName;
         MeasureType type = metric.getType() == MetricType.COUNTER ? MeasureType.COUNTER : MeasureType.GAUGE;
         metrics.add(new Measurement(measureName, type, metric.getValue()));
       }
@@ -252,6 +285,9 @@ public class DefaultMetricStore implements MetricStore {
       facts.add(fact);
     }
     cube.get().add(facts);
+    if (cardinalityGuard != null) {
+      cardinalityGuard.reportOverflowedContexts();
+    }
   }
 
   @Override
@@ -269,7 +305,7 @@ public class DefaultMetricStore implements MetricStore {
   private CubeQuery buildCubeQuery(MetricDataQuery query) {
     String aggregation = getAggregation(query);
     return new CubeQuery(aggregation, query.getStartTs(), query.getEndTs(),
-                         query.getResolution(), query.getLimit(), query.getMetrics(),
+                         query.getResolution(), query.getLimit(), query.getMaxPoints(), query.getMetrics(),
                          query.getSliceByTags(), query.getGroupByTags(), query.getInterpolator());
   }
 
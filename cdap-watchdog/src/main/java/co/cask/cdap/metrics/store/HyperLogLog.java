@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A HyperLogLog sketch for estimating the number of distinct strings offered to it, using a fixed amount of memory
+ * of {@code 2^precision} bytes. The standard error of the estimate is about {@code 1.04 / sqrt(2^precision)}.
+ * This class is not thread safe.
+ */
+final class HyperLogLog {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final int precision;
+  private final byte[] registers;
+
+  HyperLogLog(int precision) {
+    Preconditions.checkArgument(precision >= 4 && precision <= 16, "Precision must be between 4 and 16.");
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Adds the given value to the sketch.
+   */
+  void offer(String value) {
+    long hash = HASH_FUNCTION.hashString(value, Charsets.UTF_8).asLong();
+    // The first precision bits select the register, the position of the first 1 bit in the rest is the rank.
+    int index = (int) (hash >>> (Long.SIZE - precision));
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+    }
+  }
+
+  /**
+   * Returns the estimated number of distinct values offered to this sketch.
+   */
+  long cardinality() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0d / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = (0.7213d / (1 + 1.079d / m)) * m * m / sum;
+    if (estimate <= 2.5d * m && zeros > 0) {
+      // small range correction, using linear counting
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Guards the metrics store against metric contexts that emit an unbounded number of distinct metric names.
+ * For each context, only the first {@code limit} distinct metric names are stored as they are. Once that limit is
+ * reached, values of any other metric name of that context are stored under {@link #OVERFLOW_COUNTER_NAME} or
+ * {@link #OVERFLOW_GAUGE_NAME}, depending on the type of the metric. The number of distinct metric names of each
+ * context is estimated with a {@link HyperLogLog} sketch, and can be reported with
+ * {@link #getHighestCardinalityContexts(int)}. The contexts that reached the limit are also logged periodically by
+ * {@link #reportOverflowedContexts()}.
+ *
+ * A context is identified by its tags, excluding the run id and instance id tags, so that the limit applies to
+ * all the runs and instances of a program together.
+ *
+ * The memory used is bounded: at most 10000 contexts are tracked, and at most 1000000 metric names are accepted
+ * across all of them. Once that total is reached, new metric names of any context are stored as overflow too.
+ * When a context is dropped to make room for another one, the number of names it accepted is remembered, and
+ * counts against its limit if it is tracked again. Names accepted before it was dropped count again when they
+ * are seen again, hence the limit is never reset by dropping the context.
+ *
+ * The state is only kept in memory, in the process that writes the metrics. It is not shared between multiple
+ * metrics processors, each of which enforces the limit for the metrics it writes, and it is reset when the process
+ * restarts. After a restart, a context can therefore have up to {@code limit} new distinct metric names accepted.
+ */
+public final class MetricsCardinalityGuard {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsCardinalityGuard.class);
+
+  public static final String OVERFLOW_COUNTER_NAME = "metrics.overflow.counter";
+  public static final String OVERFLOW_GAUGE_NAME = "metrics.overflow.gauge";
+
+  // Maximum number of contexts tracked. Least recently used contexts are dropped beyond that.
+  private static final int MAX_CONTEXTS = 10000;
+  // Maximum number of metric names accepted across all the contexts tracked
+  private static final int MAX_TOTAL_NAMES = 1000000;
+  // Maximum number of dropped contexts whose number of accepted names is remembered
+  private static final int MAX_DROPPED_CONTEXTS = 100000;
+  // 1KB per context, with about 3% standard error
+  private static final int SKETCH_PRECISION = 10;
+  private static final Set<String> IGNORED_TAGS = ImmutableSet.of(Constants.Metrics.Tag.RUN_ID,
+                                                                  Constants.Metrics.Tag.INSTANCE_ID);
+  private static final Predicate<String> CONTEXT_TAG = new Predicate<String>() {
+    @Override
+    public boolean apply(String tagName) {
+      return !IGNORED_TAGS.contains(tagName);
+    }
+  };
+
+  // Minimum interval between two reports of the contexts that reached the limit
+  private static final long REPORT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  // Number of contexts included in a report
+  private static final int REPORT_CONTEXTS = 10;
+
+  private final int limit;
+  private final int maxTotalNames;
+  private final LoadingCache<Map<String, String>, Context> contexts;
+  // number of names accepted by each dropped context
+  private final Cache<Map<String, String>, Integer> droppedContexts;
+  // number of names accepted by the contexts tracked
+  private final AtomicLong totalNames;
+  private final AtomicBoolean totalNamesReached;
+  private final AtomicLong nextReportTime;
+
+  /**
+   * Creates a guard that allows at most {@code limit} distinct metric names per context.
+   */
+  public MetricsCardinalityGuard(int limit) {
+    this(limit, MAX_CONTEXTS, MAX_TOTAL_NAMES);
+  }
+
+  @VisibleForTesting
+  MetricsCardinalityGuard(int limit, int maxContexts, int maxTotalNames) {
+    Preconditions.checkArgument(limit > 0, "Cardinality limit must be > 0.");
+    this.limit = limit;
+    this.maxTotalNames = maxTotalNames;
+    this.droppedContexts = CacheBuilder.newBuilder().maximumSize(MAX_DROPPED_CONTEXTS).build();
+    this.contexts = CacheBuilder.newBuilder()
+      .maximumSize(maxContexts)
+      .removalListener(new RemovalListener<Map<String, String>, Context>() {
+        @Override
+        public void onRemoval(RemovalNotification<Map<String, String>, Context> notification) {
+          if (notification.wasEvicted()) {
+            droppedContexts.put(notification.getKey(), notification.getValue().drop());
+          }
+        }
+      })
+      .build(new CacheLoader<Map<String, String>, Context>() {
+        @Override
+        public Context load(Map<String, String> tags) throws Exception {
+          Integer droppedNames = droppedContexts.getIfPresent(tags);
+          if (droppedNames == null) {
+            return new Context(tags, 0);
+          }
+          droppedContexts.invalidate(tags);
+          return new Context(tags, droppedNames);
+        }
+      });
+    this.totalNames = new AtomicLong();
+    this.totalNamesReached = new AtomicBoolean();
+    this.nextReportTime = new AtomicLong();
+  }
+
+  /**
+   * Returns the {@link Context} for the given tags, for looking up the names of multiple metrics of the same
+   * context without computing the context for each of them.
+   *
+   * @param tags tags of the metric context
+   */
+  public Context getContext(Map<String, String> tags) {
+    return contexts.getUnchecked(ImmutableMap.copyOf(Maps.filterKeys(tags, CONTEXT_TAG)));
+  }
+
+  /**
+   * Returns the name that a metric of the given context should be stored with.
+   *
+   * @param tags tags of the metric context
+   * @param metricName name of the metric
+   * @param type type of the metric
+   * @return the given metric name, or the overflow metric name of the given type if the context has reached the
+   *         limit of distinct metric names
+   */
+  public String getMetricName(Map<String, String> tags, String metricName, MetricType type) {
+    return getContext(tags).getMetricName(metricName, type);
+  }
+
+  /**
+   * Returns the contexts with the highest estimated number of distinct metric names, in descending order.
+   *
+   * @param count maximum number of contexts to return
+   */
+  public List<ContextCardinality> getHighestCardinalityContexts(int count) {
+    List<ContextCardinality> result = Lists.newArrayList();
+    for (Context context : contexts.asMap().values()) {
+      result.add(context.getCardinality());
+    }
+    Collections.sort(result, new Comparator<ContextCardinality>() {
+      @Override
+      public int compare(ContextCardinality o1, ContextCardinality o2) {
+        long c1 = o1.getCardinality();
+        long c2 = o2.getCardinality();
+        return c1 == c2 ? 0 : (c1 > c2 ? -1 : 1);
+      }
+    });
+    return result.size() > count ? Lists.newArrayList(result.subList(0, count)) : result;
+  }
+
+  /**
+   * Logs the contexts with the highest number of distinct metric names if any of them reached the limit.
+   * Calls made within 10 minutes of the last report are ignored, hence it can be called on every write.
+   */
+  public void reportOverflowedContexts() {
+    long now = System.currentTimeMillis();
+    long reportTime = nextReportTime.get();
+    if (now < reportTime || !nextReportTime.compareAndSet(reportTime, now + REPORT_INTERVAL_MILLIS)) {
+      return;
+    }
+    List<ContextCardinality> highest = getHighestCardinalityContexts(REPORT_CONTEXTS);
+    if (!highest.isEmpty() && highest.get(0).isOverflowed()) {
+      LOG.warn("Metrics contexts with the highest number of distinct metric names: {}", highest);
+    }
+  }
+
+  /**
+   * The estimated number of distinct metric names of a metric context.
+   */
+  public static final class ContextCardinality {
+
+    private final Map<String, String> tags;
+    private final long cardinality;
+    private final boolean overflowed;
+
+    ContextCardinality(Map<String, String> tags, long cardinality, boolean overflowed) {
+      this.tags = tags;
+      this.cardinality = cardinality;
+      this.overflowed = overflowed;
+    }
+
+    /**
+     * Returns the tags of the context, without the run id and instance id tags.
+     */
+    public Map<String, String> getTags() {
+      return tags;
+    }
+
+    /**
+     * Returns the estimated number of distinct metric names emitted in the context.
+     */
+    public long getCardinality() {
+      return cardinality;
+    }
+
+    /**
+     * Returns {@code true} if some metrics of the context are stored under an overflow metric name.
+     */
+    public boolean isOverflowed() {
+      return overflowed;
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+        .add("tags", tags)
+        .add("cardinality", cardinality)
+        .add("overflowed", overflowed)
+        .toString();
+    }
+  }
+
+  /**
+   * Tracks the metric names of a context.
+   */
+  public final class Context {
+
+    private final Map<String, String> tags;
+    // number of names accepted before the context was last dropped
+    private final int droppedNames;
+    private final Set<String> acceptedNames;
+    private final HyperLogLog sketch;
+    private boolean overflowed;
+    private boolean dropped;
+
+    private Context(Map<String, String> tags, int droppedNames) {
+      this.tags = tags;
+      this.droppedNames = droppedNames;
+      this.acceptedNames = Sets.newHashSet();
+      this.sketch = new HyperLogLog(SKETCH_PRECISION);
+    }
+
+    /**
+     * Returns the name that a metric of this context should be stored with, which is either the given name,
+     * or the overflow metric name of the given type if the context has reached the limit of distinct metric names.
+     */
+    public String getMetricName(String metricName, MetricType type) {
+      if (accept(metricName)) {
+        return metricName;
+      }
+      return type == MetricType.COUNTER ? OVERFLOW_COUNTER_NAME : OVERFLOW_GAUGE_NAME;
+    }
+
+    private synchronized boolean accept(String metricName) {
+      if (acceptedNames.contains(metricName)) {
+        return true;
+      }
+      sketch.offer(metricName);
+      // a context that is already dropped is still used by the caller that looked it up, but no longer counts
+      // towards the total, which is only decremented once
+      if (droppedNames + acceptedNames.size() < limit && (dropped || reserveName())) {
+        acceptedNames.add(metricName);
+        return true;
+      }
+      if (!overflowed) {
+        overflowed = true;
+        LOG.warn("Metrics context {} exceeded the limit of {} distinct metric names. " +
+                   "Values of new metric names are stored as {} and {}.",
+                 tags, limit, OVERFLOW_COUNTER_NAME, OVERFLOW_GAUGE_NAME);
+      }
+      return false;
+    }
+
+    /**
+     * Releases the names accepted by this context from the total, and returns the number of names it accepted.
+     */
+    private synchronized int drop() {
+      dropped = true;
+      totalNames.addAndGet(-acceptedNames.size());
+      return droppedNames + acceptedNames.size();
+    }
+
+    private synchronized ContextCardinality getCardinality() {
+      // the accepted names are counted exactly, the sketch is only needed for the names beyond
+      int names = droppedNames + acceptedNames.size();
+      long cardinality = overflowed ? Math.max(names + 1, sketch.cardinality()) : names;
+      return new ContextCardinality(tags, cardinality, overflowed);
+    }
+  }
+
+  /**
+   * Reserves one name in the total number of names accepted across contexts.
+   *
+   * @return {@code true} if the total was not reached yet
+   */
+  private boolean reserveName() {
+    if (totalNames.incrementAndGet() <= maxTotalNames) {
+      return true;
+    }
+    totalNames.decrementAndGet();
+    if (totalNamesReached.compareAndSet(false, true)) {
+      LOG.warn("Metrics contexts reached the total limit of {} distinct metric names. " +
+                 "Values of new metric names are stored as {} and {}.",
+               maxTotalNames, OVERFLOW_COUNTER_NAME, OVERFLOW_GAUGE_NAME);
+    }
+    return false;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link LogMessageQueue}.
+ */
+public class LogMessageQueueTest {
+
+  @Test
+  public void testDrain() {
+    LogMessageQueue queue = new LogMessageQueue(3, LogMessageQueue.OverflowPolicy.DROP, 1);
+    Assert.assertEquals(4, queue.capacity());
+
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue(queue.add(createMessage(Level.INFO, "message " + i), true));
+    }
+    Assert.assertEquals(4, queue.size());
+
+    List<LogMessage> messages = new ArrayList<>();
+    Assert.assertEquals(3, queue.drainTo(messages, 3));
+    Assert.assertEquals(1, queue.drainTo(messages, 10));
+    Assert.assertEquals(0, queue.size());
+    for (int i = 0; i < 4; i++) {
+      Assert.assertEquals("message " + i, messages.get(i).getFormattedMessage());
+    }
+  }
+
+  @Test
+  public void testDrop() {
+    LogMessageQueue queue = new LogMessageQueue(2, LogMessageQueue.OverflowPolicy.DROP, 1);
+    Assert.assertTrue(queue.add(createMessage(Level.INFO, "info"), true));
+    Assert.assertTrue(queue.add(createMessage(Level.DEBUG, "debug"), true));
+
+    // Messages below WARN are dropped when the queue is full
+    Assert.assertFalse(queue.add(createMessage(Level.INFO, "dropped"), true));
+    // Messages that cannot wait are dropped regardless of their level
+    Assert.assertFalse(queue.add(createMessage(Level.ERROR, "dropped"), false));
+    Assert.assertEquals(2, queue.size());
+  }
+
+  @Test
+  public void testBlock() throws Exception {
+    final LogMessageQueue queue = new LogMessageQueue(1, LogMessageQueue.OverflowPolicy.BLOCK, 1);
+    Assert.assertTrue(queue.add(createMessage(Level.DEBUG, "first"), true));
+
+    // A message below WARN waits for space with the BLOCK policy
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        queue.add(createMessage(Level.DEBUG, "second"), true);
+      }
+    };
+    producer.start();
+
+    List<LogMessage> messages = new ArrayList<>();
+    while (messages.size() < 2) {
+      queue.drainTo(messages, 10);
+    }
+    producer.join();
+    Assert.assertEquals("first", messages.get(0).getFormattedMessage());
+    Assert.assertEquals("second", messages.get(1).getFormattedMessage());
+  }
+
+  @Test
+  public void testSample() {
+    LogMessageQueue queue = new LogMessageQueue(8, LogMessageQueue.OverflowPolicy.SAMPLE, 3);
+    for (int i = 0; i < 5; i++) {
+      Assert.assertTrue(queue.add(createMessage(Level.INFO, "info"), true));
+    }
+
+    // Once the queue is more than half full, only one in three messages below WARN is queued
+    Assert.assertTrue(queue.add(createMessage(Level.INFO, "info"), true));
+    Assert.assertFalse(queue.add(createMessage(Level.INFO, "info"), true));
+    Assert.assertFalse(queue.add(createMessage(Level.INFO, "info"), true));
+    Assert.assertTrue(queue.add(createMessage(Level.INFO, "info"), true));
+    Assert.assertEquals(7, queue.size());
+
+    // WARN messages are not sampled
+    Assert.assertTrue(queue.add(createMessage(Level.WARN, "warn"), true));
+    Assert.assertEquals(8, queue.size());
+  }
+
+  private LogMessage createMessage(Level level, String message) {
+    LoggingEvent event = new LoggingEvent();
+    event.setLevel(level);
+    event.setMessage(message);
+    return new LogMessage(event, null);
+  }
+}
@@ -21,7 +21,9 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.logging.ApplicationLoggingContext;
 import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.logging.NamespaceLoggingContext;
 import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
 import co.cask.cdap.common.namespace.SimpleNamespaceQueryAdmin;
@@ -35,10 +37,13 @@ import co.cask.cdap.logging.appender.LogAppenderInitializer;
 import co.cask.cdap.logging.appender.LoggingTester;
 import co.cask.cdap.logging.context.FlowletLoggingContext;
 import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.MdcExpression;
 import co.cask.cdap.logging.guice.LoggingModules;
 import co.cask.cdap.logging.read.FileLogReader;
 import co.cask.cdap.logging.read.LogEvent;
 import co.cask.cdap.logging.read.ReadRange;
+import co.cask.cdap.logging.write.LogFileIndex;
 import co.cask.tephra.TransactionManager;
 import co.cask.tephra.runtime.TransactionModules;
 import com.google.inject.AbstractModule;
@@ -55,6 +60,10 @@ import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -112,6 +121,46 @@ public class TestFileLogging {
     txManager.stopAndWait();
   }
 
+  @Test
+  public void testIndex() throws Exception {
+    // Every block of the index of a log file must match the logging context tags of the events in the file,
+    // otherwise the readers would skip them
+    List<File> indexFiles = new ArrayList<>();
+    findIndexFiles(TMP_FOLDER.getRoot(), indexFiles);
+    int indexCount = 0;
+    for (File file : indexFiles) {
+      if (!file.getPath().contains("TFL_NS_1")) {
+        continue;
+      }
+      indexCount++;
+      List<LogFileIndex.Block> blocks;
+      try (InputStream is = new FileInputStream(file)) {
+        blocks = LogFileIndex.read(is).getBlocks();
+      }
+      Assert.assertFalse(blocks.isEmpty());
+      for (LogFileIndex.Block block : blocks) {
+        Assert.assertTrue(block.mayMatch(new MdcExpression(NamespaceLoggingContext.TAG_NAMESPACE_ID, "TFL_NS_1")));
+        Assert.assertTrue(block.mayMatch(new MdcExpression(ApplicationLoggingContext.TAG_APPLICATION_ID, "APP_1")));
+        Assert.assertTrue(block.mayMatch(new LogLevelExpression("WARN")));
+      }
+    }
+    Assert.assertTrue(indexCount > 0);
+  }
+
+  private void findIndexFiles(File dir, List<File> indexFiles) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isDirectory()) {
+        findIndexFiles(file, indexFiles);
+      } else if (file.getName().endsWith(".idx")) {
+        indexFiles.add(file);
+      }
+    }
+  }
+
   @Test
   public void testGetLogNext() throws Exception {
     LoggingContext loggingContext = new FlowletLoggingContext("TFL_NS_1", "APP_1", "FLOW_1", "", "RUN1", "INSTANCE1");
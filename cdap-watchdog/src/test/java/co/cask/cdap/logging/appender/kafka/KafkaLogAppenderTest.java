@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender.kafka;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.logging.KafkaTestBase;
+import co.cask.cdap.logging.appender.LogAppender;
+import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.appender.LoggingTester;
+import co.cask.cdap.logging.context.FlowletLoggingContext;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.read.KafkaLogReader;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.read.ReadRange;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for {@link KafkaLogAppender}.
+ */
+public class KafkaLogAppenderTest extends KafkaTestBase {
+
+  @Test
+  public void testPublishWithoutStart() throws Exception {
+    KafkaLogAppender kafkaLogAppender = KAFKA_TESTER.getInjector().getInstance(KafkaLogAppender.class);
+    // Wrapping appenders append to the Kafka appender without starting it
+    LogAppender appender = new ForwardingLogAppender(kafkaLogAppender);
+
+    LoggingContext loggingContext = new FlowletLoggingContext("KLA_NS_1", "APP_1", "FLOW_1", "FLOWLET_1",
+                                                              "RUN1", "INSTANCE1");
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 20; i++) {
+      LoggingEvent event = new LoggingEvent();
+      event.setLevel(Level.INFO);
+      event.setLoggerName("KafkaLogAppenderTest");
+      event.setMessage("Test log message " + i);
+      event.setTimeStamp(now + i);
+      event.setCallerData(new StackTraceElement[0]);
+      appender.doAppend(new LogMessage(event, loggingContext));
+    }
+    // Stopping publishes the queued messages
+    kafkaLogAppender.stop();
+
+    KafkaLogReader logReader = KAFKA_TESTER.getInjector().getInstance(KafkaLogReader.class);
+    LoggingTester.LogCallback callback = new LoggingTester.LogCallback();
+    logReader.getLogPrev(loggingContext, ReadRange.LATEST, 100, Filter.EMPTY_FILTER, callback);
+    List<LogEvent> events = callback.getEvents();
+    Assert.assertEquals(20, events.size());
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals("Test log message " + i, events.get(i).getLoggingEvent().getFormattedMessage());
+    }
+  }
+
+  /**
+   * Log appender that forwards messages to another log appender.
+   */
+  private static final class ForwardingLogAppender extends LogAppender {
+    private final LogAppender delegate;
+
+    ForwardingLogAppender(LogAppender delegate) {
+      this.delegate = delegate;
+      start();
+    }
+
+    @Override
+    protected void append(LogMessage logMessage) {
+      delegate.append(logMessage);
+    }
+  }
+}
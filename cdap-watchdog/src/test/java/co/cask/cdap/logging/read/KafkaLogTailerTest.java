@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.read;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.utils.Tasks;
+import co.cask.cdap.logging.KafkaTestBase;
+import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.appender.kafka.KafkaLogAppender;
+import co.cask.cdap.logging.context.FlowletLoggingContext;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.FilterParser;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.apache.twill.common.Cancellable;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link KafkaLogTailer}.
+ */
+public class KafkaLogTailerTest extends KafkaTestBase {
+
+  private static KafkaLogAppender appender;
+  private static LogTailer logTailer;
+
+  @BeforeClass
+  public static void init() {
+    appender = KAFKA_TESTER.getInjector().getInstance(KafkaLogAppender.class);
+    appender.start();
+    logTailer = KAFKA_TESTER.getInjector().getInstance(KafkaLogTailer.class);
+  }
+
+  @AfterClass
+  public static void finish() {
+    appender.stop();
+  }
+
+  @Test
+  public void testFanOut() throws Exception {
+    // Both flows log to the same Kafka partition
+    LoggingContext loggingContext1 = new FlowletLoggingContext("TAIL_NS", "APP_1", "FLOW_1", "FLOWLET_1",
+                                                               "RUN1", "INSTANCE1");
+    LoggingContext loggingContext2 = new FlowletLoggingContext("TAIL_NS", "APP_1", "FLOW_2", "FLOWLET_1",
+                                                               "RUN1", "INSTANCE1");
+    LogOffset fromOffset = new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, System.currentTimeMillis());
+    TestSubscriber all = new TestSubscriber();
+    TestSubscriber errors = new TestSubscriber();
+    TestSubscriber other = new TestSubscriber();
+    List<Cancellable> cancellables = ImmutableList.of(
+      logTailer.tail(loggingContext1, Filter.EMPTY_FILTER, fromOffset, all),
+      logTailer.tail(loggingContext1, FilterParser.parse("loglevel=ERROR"), fromOffset, errors),
+      logTailer.tail(loggingContext2, Filter.EMPTY_FILTER, fromOffset, other));
+
+    for (int i = 0; i < 10; i++) {
+      publish(loggingContext1, i % 2 == 0 ? Level.INFO : Level.ERROR, "Flow1 message " + i);
+    }
+    for (int i = 0; i < 5; i++) {
+      publish(loggingContext2, Level.INFO, "Flow2 message " + i);
+    }
+
+    all.waitForEvents(10);
+    errors.waitForEvents(5);
+    other.waitForEvents(5);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("Flow1 message " + i, all.getMessage(i));
+    }
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("Flow1 message " + (2 * i + 1), errors.getMessage(i));
+      Assert.assertEquals("Flow2 message " + i, other.getMessage(i));
+    }
+
+    for (Cancellable cancellable : cancellables) {
+      cancellable.cancel();
+    }
+    for (TestSubscriber subscriber : ImmutableList.of(all, errors, other)) {
+      subscriber.waitForClose();
+    }
+  }
+
+  @Test
+  public void testResume() throws Exception {
+    LoggingContext loggingContext = new FlowletLoggingContext("TAIL_NS", "APP_2", "FLOW_1", "FLOWLET_1",
+                                                              "RUN1", "INSTANCE1");
+    TestSubscriber subscriber = new TestSubscriber();
+    Cancellable cancellable = logTailer.tail(loggingContext, Filter.EMPTY_FILTER,
+                                             new LogOffset(LogOffset.INVALID_KAFKA_OFFSET,
+                                                           System.currentTimeMillis()), subscriber);
+    for (int i = 0; i < 10; i++) {
+      publish(loggingContext, Level.INFO, "Message " + i);
+    }
+    subscriber.waitForEvents(10);
+    cancellable.cancel();
+    subscriber.waitForClose();
+
+    // Resuming from the offset of an event sends the events after it
+    TestSubscriber resumed = new TestSubscriber();
+    cancellable = logTailer.tail(loggingContext, Filter.EMPTY_FILTER, subscriber.getEvent(4).getOffset(), resumed);
+    resumed.waitForEvents(5);
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("Message " + (i + 5), resumed.getMessage(i));
+    }
+
+    // Events published after resuming are sent too
+    publish(loggingContext, Level.INFO, "Message 10");
+    resumed.waitForEvents(6);
+    Assert.assertEquals("Message 10", resumed.getMessage(5));
+    cancellable.cancel();
+    resumed.waitForClose();
+  }
+
+  @Test
+  public void testSubscriberFailure() throws Exception {
+    LoggingContext loggingContext = new FlowletLoggingContext("TAIL_NS", "APP_3", "FLOW_1", "FLOWLET_1",
+                                                              "RUN1", "INSTANCE1");
+    LogOffset fromOffset = new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, System.currentTimeMillis());
+    TestSubscriber failing = new TestSubscriber() {
+      @Override
+      public void onEvents(List<LogEvent> events) throws Exception {
+        super.onEvents(events);
+        throw new Exception("Subscriber failure");
+      }
+    };
+    TestSubscriber subscriber = new TestSubscriber();
+    logTailer.tail(loggingContext, Filter.EMPTY_FILTER, fromOffset, failing);
+    Cancellable cancellable = logTailer.tail(loggingContext, Filter.EMPTY_FILTER, fromOffset, subscriber);
+
+    publish(loggingContext, Level.INFO, "Message 0");
+    // The failed subscriber is closed, without affecting the other subscriber
+    failing.waitForClose();
+    subscriber.waitForEvents(1);
+    publish(loggingContext, Level.INFO, "Message 1");
+    subscriber.waitForEvents(2);
+    Assert.assertEquals("Message 1", subscriber.getMessage(1));
+    Assert.assertEquals(1, failing.getEvents().size());
+
+    cancellable.cancel();
+    subscriber.waitForClose();
+  }
+
+  private void publish(LoggingContext loggingContext, Level level, String message) {
+    LoggingEvent event = new LoggingEvent();
+    event.setLevel(level);
+    event.setLoggerName("KafkaLogTailerTest");
+    event.setMessage(message);
+    event.setTimeStamp(System.currentTimeMillis());
+    event.setCallerData(new StackTraceElement[0]);
+    appender.doAppend(new LogMessage(event, loggingContext));
+  }
+
+  /**
+   * Subscriber that collects the events it gets.
+   */
+  private static class TestSubscriber implements LogTailer.Subscriber {
+    private final List<LogEvent> events = Lists.newArrayList();
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    @Override
+    public void onEvents(List<LogEvent> events) throws Exception {
+      synchronized (this) {
+        this.events.addAll(events);
+      }
+    }
+
+    @Override
+    public void onClosed() {
+      closed.countDown();
+    }
+
+    synchronized List<LogEvent> getEvents() {
+      return ImmutableList.copyOf(events);
+    }
+
+    synchronized LogEvent getEvent(int index) {
+      return events.get(index);
+    }
+
+    String getMessage(int index) {
+      return getEvent(index).getLoggingEvent().getFormattedMessage();
+    }
+
+    void waitForEvents(int count) throws Exception {
+      Tasks.waitFor(count, new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          return getEvents().size();
+        }
+      }, 30, TimeUnit.SECONDS);
+    }
+
+    void waitForClose() throws InterruptedException {
+      Assert.assertTrue(closed.await(30, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.save;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
+import co.cask.cdap.common.namespace.NamespacedLocationFactory;
+import co.cask.cdap.common.namespace.SimpleNamespaceQueryAdmin;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data.runtime.SystemDatasetRuntimeModule;
+import co.cask.cdap.data.runtime.TransactionExecutorModule;
+import co.cask.cdap.data2.security.Impersonator;
+import co.cask.cdap.data2.security.UGIProvider;
+import co.cask.cdap.data2.security.UnsupportedUGIProvider;
+import co.cask.cdap.logging.LoggingConfiguration;
+import co.cask.cdap.logging.context.FlowletLoggingContext;
+import co.cask.cdap.logging.kafka.KafkaLogEvent;
+import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.logging.write.AvroFileWriter;
+import co.cask.cdap.logging.write.FileMetaDataManager;
+import co.cask.cdap.proto.Id;
+import co.cask.tephra.TransactionExecutorFactory;
+import co.cask.tephra.TransactionManager;
+import co.cask.tephra.runtime.TransactionModules;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.avro.Schema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.twill.filesystem.Location;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for {@link CheckpointingLogFileWriter}.
+ */
+public class CheckpointingLogFileWriterTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final int EVENTS_PER_CONTEXT = 3;
+
+  private static Injector injector;
+  private static TransactionManager txManager;
+  private static CConfiguration cConf;
+  private static Schema schema;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    Configuration hConf = HBaseConfiguration.create();
+    cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    injector = Guice.createInjector(
+      new ConfigModule(cConf, hConf),
+      new NonCustomLocationUnitTestModule().getModule(),
+      new TransactionModules().getInMemoryModules(),
+      new TransactionExecutorModule(),
+      new DataSetsModules().getInMemoryModules(),
+      new SystemDatasetRuntimeModule().getInMemoryModules(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(UGIProvider.class).to(UnsupportedUGIProvider.class);
+          bind(NamespaceQueryAdmin.class).to(SimpleNamespaceQueryAdmin.class);
+        }
+      }
+    );
+
+    txManager = injector.getInstance(TransactionManager.class);
+    txManager.startAndWait();
+    schema = new LogSchema().getAvroSchema();
+  }
+
+  @AfterClass
+  public static void finish() {
+    txManager.stopAndWait();
+  }
+
+  @Test
+  public void testAppendAll() throws Exception {
+    FileMetaDataManager fileMetaDataManager = injector.getInstance(FileMetaDataManager.class);
+    NamespacedLocationFactory namespacedLocationFactory = injector.getInstance(NamespacedLocationFactory.class);
+    Impersonator impersonator = injector.getInstance(Impersonator.class);
+    String logBaseDir = cConf.get(LoggingConfiguration.LOG_BASE_DIR);
+
+    List<AvroFileWriter> avroFileWriters = Lists.newArrayList();
+    for (int i = 0; i < 2; i++) {
+      avroFileWriters.add(new AvroFileWriter(fileMetaDataManager, namespacedLocationFactory, logBaseDir, schema,
+                                             1024 * 1024, 1024, Long.MAX_VALUE, impersonator));
+    }
+    CheckpointManager checkpointManager = new CheckpointManager(injector.getInstance(LogSaverTableUtil.class),
+                                                                injector.getInstance(TransactionExecutorFactory.class),
+                                                                "testAppendAll", 0);
+    PendingEventTracker pendingEvents = new PendingEventTracker(new AtomicLong(), Long.MAX_VALUE);
+    ThreadPoolExecutor writeExecutor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                                                              new LinkedBlockingQueue<Runnable>());
+    // Only flush when asked to
+    CheckpointingLogFileWriter logFileWriter =
+      new CheckpointingLogFileWriter(avroFileWriters, checkpointManager, pendingEvents, Long.MAX_VALUE,
+                                     writeExecutor);
+
+    // The events of each logging context come from a different partition
+    List<LoggingContext> loggingContexts = Lists.newArrayList();
+    List<List<KafkaLogEvent>> eventLists = Lists.newArrayList();
+    for (int partition = 0; partition < 4; partition++) {
+      LoggingContext loggingContext =
+        new FlowletLoggingContext("ns", "app" + partition, "flw", "flwt", "run", "instance");
+      loggingContexts.add(loggingContext);
+      List<KafkaLogEvent> events = Lists.newArrayList();
+      for (int i = 1; i <= EVENTS_PER_CONTEXT; i++) {
+        KafkaLogEvent event = createEvent(loggingContext, partition, i, 1000 * partition + i);
+        pendingEvents.add(event);
+        events.add(event);
+      }
+      eventLists.add(events);
+    }
+
+    // Writing the files of the last logging context fails, since its directory is taken by a file
+    Location blocked = namespacedLocationFactory.get(Id.Namespace.from("ns")).append(logBaseDir).append("app3");
+    Locations.getParent(blocked).mkdirs();
+    blocked.getOutputStream().close();
+
+    List<List<KafkaLogEvent>> remaining = Lists.newArrayList(eventLists);
+    try {
+      logFileWriter.appendAll(remaining);
+      Assert.fail("Expected appendAll to fail");
+    } catch (Exception e) {
+      // expected
+    }
+    // Only the failed events are left to retry, the others were written in parallel
+    Assert.assertEquals(ImmutableList.of(eventLists.get(3)), remaining);
+    Assert.assertTrue(writeExecutor.getCompletedTaskCount() > 0);
+
+    // Checkpoints are only saved once the files are flushed
+    for (int partition = 0; partition < 4; partition++) {
+      Assert.assertEquals(-1, checkpointManager.getCheckpoint(partition).getNextOffset());
+    }
+    logFileWriter.flush();
+    for (int partition = 0; partition < 3; partition++) {
+      Checkpoint checkpoint = checkpointManager.getCheckpoint(partition);
+      Assert.assertEquals(EVENTS_PER_CONTEXT, checkpoint.getNextOffset());
+      Assert.assertEquals(1000 * partition + EVENTS_PER_CONTEXT, checkpoint.getMaxEventTime());
+    }
+    Assert.assertEquals(-1, checkpointManager.getCheckpoint(3).getNextOffset());
+
+    // Retry the failed events
+    blocked.delete();
+    logFileWriter.appendAll(remaining);
+    Assert.assertTrue(remaining.isEmpty());
+    Assert.assertEquals(-1, checkpointManager.getCheckpoint(3).getNextOffset());
+    logFileWriter.flush();
+    Assert.assertEquals(EVENTS_PER_CONTEXT, checkpointManager.getCheckpoint(3).getNextOffset());
+
+    for (LoggingContext loggingContext : loggingContexts) {
+      Assert.assertEquals(1, fileMetaDataManager.listFiles(loggingContext).size());
+    }
+    logFileWriter.close();
+    writeExecutor.shutdown();
+  }
+
+  private KafkaLogEvent createEvent(LoggingContext loggingContext, int partition, long nextOffset, long timestamp) {
+    LoggingEvent event = new LoggingEvent();
+    event.setLevel(Level.INFO);
+    event.setLoggerName("logger");
+    event.setThreadName("thread");
+    event.setMessage("Log message " + timestamp);
+    event.setTimeStamp(timestamp);
+    return new KafkaLogEvent(co.cask.cdap.logging.serialize.LoggingEvent.encode(schema, event, loggingContext),
+                             event, loggingContext, partition, nextOffset, 100);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.save;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.logging.kafka.KafkaLogEvent;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for {@link PendingEventTracker}.
+ */
+public class PendingEventTrackerTest {
+
+  @Test
+  public void testCheckpoints() {
+    PendingEventTracker tracker = new PendingEventTracker(new AtomicLong(), Long.MAX_VALUE);
+    KafkaLogEvent event1 = createEvent(0, 11, 1000, 10);
+    KafkaLogEvent event2 = createEvent(0, 12, 900, 10);
+    KafkaLogEvent event3 = createEvent(0, 13, 1100, 10);
+    KafkaLogEvent event4 = createEvent(1, 21, 2000, 10);
+    tracker.add(event1);
+    tracker.add(event2);
+    tracker.add(event3);
+    tracker.add(event4);
+
+    // No checkpoint until events are written
+    Assert.assertTrue(tracker.getCheckpoints().isEmpty());
+
+    // The checkpoint stays before the oldest pending event
+    tracker.remove(ImmutableList.of(event2, event3));
+    Map<Integer, Checkpoint> checkpoints = tracker.getCheckpoints();
+    Assert.assertEquals(1, checkpoints.size());
+    Assert.assertEquals(10, checkpoints.get(0).getNextOffset());
+    Assert.assertEquals(999, checkpoints.get(0).getMaxEventTime());
+
+    // Once all events are written, the checkpoint is after the latest event
+    tracker.remove(ImmutableList.of(event1, event4));
+    checkpoints = tracker.getCheckpoints();
+    Assert.assertEquals(13, checkpoints.get(0).getNextOffset());
+    Assert.assertEquals(1100, checkpoints.get(0).getMaxEventTime());
+    Assert.assertEquals(21, checkpoints.get(1).getNextOffset());
+    Assert.assertEquals(2000, checkpoints.get(1).getMaxEventTime());
+  }
+
+  @Test
+  public void testPayloadBudget() {
+    // Two trackers sharing a budget
+    AtomicLong bufferedPayloadBytes = new AtomicLong();
+    PendingEventTracker tracker1 = new PendingEventTracker(bufferedPayloadBytes, 100);
+    PendingEventTracker tracker2 = new PendingEventTracker(bufferedPayloadBytes, 100);
+
+    KafkaLogEvent event1 = createEvent(0, 1, 1000, 60);
+    KafkaLogEvent event2 = createEvent(1, 1, 1000, 40);
+    tracker1.add(event1);
+    Assert.assertFalse(tracker1.isFull());
+    tracker2.add(event2);
+    Assert.assertTrue(tracker1.isFull());
+    Assert.assertTrue(tracker2.isFull());
+
+    tracker1.remove(ImmutableList.of(event1));
+    Assert.assertFalse(tracker2.isFull());
+    Assert.assertEquals(40, bufferedPayloadBytes.get());
+
+    tracker2.clear();
+    Assert.assertEquals(0, bufferedPayloadBytes.get());
+  }
+
+  private KafkaLogEvent createEvent(int partition, long nextOffset, long timestamp, int payloadSize) {
+    LoggingEvent event = new LoggingEvent();
+    event.setTimeStamp(timestamp);
+    return new KafkaLogEvent(null, event, null, partition, nextOffset, payloadSize);
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
+import co.cask.cdap.common.namespace.NamespacedLocationFactory;
+import co.cask.cdap.common.namespace.SimpleNamespaceQueryAdmin;
+import co.cask.cdap.data.runtime.DataSetsModules;
+import co.cask.cdap.data.runtime.SystemDatasetRuntimeModule;
+import co.cask.cdap.data.runtime.TransactionExecutorModule;
+import co.cask.cdap.data2.security.Impersonator;
+import co.cask.cdap.data2.security.UGIProvider;
+import co.cask.cdap.data2.security.UnsupportedUGIProvider;
+import co.cask.cdap.logging.LoggingConfiguration;
+import co.cask.cdap.logging.appender.LoggingTester;
+import co.cask.cdap.logging.context.FlowletLoggingContext;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.read.FileLogReader;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.serialize.LogSchema;
+import co.cask.cdap.proto.Id;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.tephra.TransactionManager;
+import co.cask.tephra.runtime.TransactionModules;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.twill.filesystem.Location;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link LogCompaction}.
+ */
+public class LogCompactionTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final int EVENTS_PER_FILE = 10;
+
+  private static Injector injector;
+  private static TransactionManager txManager;
+  private static CConfiguration cConf;
+  private static Schema schema;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    Configuration hConf = HBaseConfiguration.create();
+    cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    injector = Guice.createInjector(
+      new ConfigModule(cConf, hConf),
+      new NonCustomLocationUnitTestModule().getModule(),
+      new TransactionModules().getInMemoryModules(),
+      new TransactionExecutorModule(),
+      new DataSetsModules().getInMemoryModules(),
+      new SystemDatasetRuntimeModule().getInMemoryModules(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(UGIProvider.class).to(UnsupportedUGIProvider.class);
+          bind(NamespaceQueryAdmin.class).to(SimpleNamespaceQueryAdmin.class);
+        }
+      }
+    );
+
+    txManager = injector.getInstance(TransactionManager.class);
+    txManager.startAndWait();
+    schema = new LogSchema().getAvroSchema();
+  }
+
+  @AfterClass
+  public static void finish() {
+    txManager.stopAndWait();
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    FileMetaDataManager fileMetaDataManager = injector.getInstance(FileMetaDataManager.class);
+    Impersonator impersonator = injector.getInstance(Impersonator.class);
+    LoggingContext loggingContext = new FlowletLoggingContext("ns", "app", "flw", "flwt", "run", "instance");
+    Location contextDir = getContextDir();
+
+    // Three small files in one directory, and two small files plus the latest file in the next one
+    NavigableMap<Long, Location> files = new TreeMap<>();
+    files.put(1000L, contextDir.append("2016-01-01").append("1000.avro"));
+    files.put(2000L, contextDir.append("2016-01-01").append("2000.avro"));
+    files.put(3000L, contextDir.append("2016-01-01").append("3000.avro"));
+    files.put(4000L, contextDir.append("2016-01-02").append("4000.avro"));
+    files.put(5000L, contextDir.append("2016-01-02").append("5000.avro"));
+    files.put(6000L, contextDir.append("2016-01-02").append("6000.avro"));
+    for (Map.Entry<Long, Location> file : files.entrySet()) {
+      createLogFile(file.getValue(), loggingContext, file.getKey());
+      fileMetaDataManager.writeMetaData(loggingContext, file.getKey(), file.getValue());
+    }
+
+    LogCompaction logCompaction = new LogCompaction(fileMetaDataManager, impersonator, schema, 1024 * 1024,
+                                                    10 * 1024 * 1024, TimeUnit.DAYS.toMillis(1), 1024, 0);
+    logCompaction.run();
+
+    // Files are only merged with files in the same directory, and the latest file is never merged
+    NavigableMap<Long, Location> compactedFiles = fileMetaDataManager.listFiles(loggingContext);
+    Assert.assertEquals(ImmutableList.of(1000L, 4000L, 6000L), ImmutableList.copyOf(compactedFiles.keySet()));
+    Assert.assertEquals(Locations.getParent(files.get(1000L)), Locations.getParent(compactedFiles.get(1000L)));
+    Assert.assertEquals(Locations.getParent(files.get(4000L)), Locations.getParent(compactedFiles.get(4000L)));
+    Assert.assertEquals(files.get(6000L), compactedFiles.get(6000L));
+    Assert.assertTrue(LogFileIndex.getIndexLocation(compactedFiles.get(1000L)).exists());
+    Assert.assertTrue(LogFileIndex.getIndexLocation(compactedFiles.get(4000L)).exists());
+
+    // The merged files are kept until the next run, since they may still be read
+    for (Location file : files.values()) {
+      Assert.assertTrue(file.exists());
+    }
+    assertEvents(loggingContext, files.keySet());
+
+    // The files pending deletion are recorded in the meta data, so they are also deleted after a restart
+    logCompaction = new LogCompaction(fileMetaDataManager, impersonator, schema, 1024 * 1024,
+                                      10 * 1024 * 1024, TimeUnit.DAYS.toMillis(1), 1024, 0);
+    logCompaction.run();
+    Assert.assertEquals(compactedFiles, fileMetaDataManager.listFiles(loggingContext));
+    for (Map.Entry<Long, Location> file : files.entrySet()) {
+      Assert.assertEquals(file.getKey() == 6000L, file.getValue().exists());
+    }
+    assertEvents(loggingContext, files.keySet());
+  }
+
+  @Test
+  public void testReplaceMetaData() throws Exception {
+    FileMetaDataManager fileMetaDataManager = injector.getInstance(FileMetaDataManager.class);
+    LoggingContext loggingContext = new FlowletLoggingContext("ns", "app2", "flw", "flwt", "run", "instance");
+    Location dir = getContextDir().append("2016-02-01");
+
+    NavigableMap<Long, Location> files = new TreeMap<>();
+    files.put(1000L, dir.append("replace-1000.avro"));
+    files.put(2000L, dir.append("replace-2000.avro"));
+    for (Map.Entry<Long, Location> file : files.entrySet()) {
+      fileMetaDataManager.writeMetaData(loggingContext, file.getKey(), file.getValue());
+    }
+
+    // A concurrent change of the meta data of one of the files aborts the replacement
+    Location changed = dir.append("replace-2000-changed.avro");
+    fileMetaDataManager.writeMetaData(loggingContext, 2000L, changed);
+    Location merged = dir.append("replace-merged.avro");
+    Assert.assertFalse(fileMetaDataManager.replaceMetaData(loggingContext.getLogPartition(), files, merged));
+    Assert.assertEquals(ImmutableSortedMap.of(1000L, files.get(1000L), 2000L, changed),
+                        fileMetaDataManager.listFiles(loggingContext));
+
+    files.put(2000L, changed);
+    Assert.assertTrue(fileMetaDataManager.replaceMetaData(loggingContext.getLogPartition(), files, merged));
+    Assert.assertEquals(ImmutableSortedMap.of(1000L, merged), fileMetaDataManager.listFiles(loggingContext));
+
+    // The replaced files are pending deletion until the callback deleted them
+    final List<Location> deleted = new ArrayList<>();
+    FileMetaDataManager.ReplacedFileCallback failingCallback = new FileMetaDataManager.ReplacedFileCallback() {
+      @Override
+      public void handle(NamespaceId namespaceId, Location location) throws Exception {
+        throw new IOException("Failed to delete " + location);
+      }
+    };
+    FileMetaDataManager.ReplacedFileCallback callback = new FileMetaDataManager.ReplacedFileCallback() {
+      @Override
+      public void handle(NamespaceId namespaceId, Location location) throws Exception {
+        deleted.add(location);
+      }
+    };
+    Assert.assertEquals(0, fileMetaDataManager.cleanReplacedFiles(0L, callback));
+    Assert.assertEquals(0, fileMetaDataManager.cleanReplacedFiles(Long.MAX_VALUE, failingCallback));
+    Assert.assertEquals(2, fileMetaDataManager.cleanReplacedFiles(Long.MAX_VALUE, callback));
+    Assert.assertEquals(ImmutableSet.copyOf(files.values()), ImmutableSet.copyOf(deleted));
+    Assert.assertEquals(0, fileMetaDataManager.cleanReplacedFiles(Long.MAX_VALUE, callback));
+  }
+
+  private Location getContextDir() throws Exception {
+    NamespacedLocationFactory namespacedLocationFactory = injector.getInstance(NamespacedLocationFactory.class);
+    return namespacedLocationFactory.get(Id.Namespace.from("ns"))
+      .append(cConf.get(LoggingConfiguration.LOG_BASE_DIR)).append("app").append("flw");
+  }
+
+  /**
+   * Asserts that all events of the files with the given start times are read in order.
+   */
+  private void assertEvents(LoggingContext loggingContext, Iterable<Long> startTimes) throws Exception {
+    FileLogReader logReader = injector.getInstance(FileLogReader.class);
+    LoggingTester.LogCallback callback = new LoggingTester.LogCallback();
+    logReader.getLog(loggingContext, 0, Long.MAX_VALUE, Filter.EMPTY_FILTER, callback);
+
+    List<LogEvent> events = callback.getEvents();
+    int i = 0;
+    for (long startTime : startTimes) {
+      for (int j = 0; j < EVENTS_PER_FILE; j++) {
+        Assert.assertEquals("Log message " + (startTime + j), events.get(i++).getLoggingEvent().getFormattedMessage());
+      }
+    }
+    Assert.assertEquals(i, events.size());
+  }
+
+  private void createLogFile(Location location, LoggingContext loggingContext, long startTime) throws Exception {
+    Location dir = Locations.getParent(location);
+    if (dir != null) {
+      dir.mkdirs();
+    }
+    try (DataFileWriter<GenericRecord> writer =
+           new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.create(schema, location.getOutputStream());
+      for (int i = 0; i < EVENTS_PER_FILE; i++) {
+        LoggingEvent event = new LoggingEvent();
+        event.setLevel(Level.INFO);
+        event.setLoggerName("logger");
+        event.setThreadName("thread");
+        event.setMessage("Log message " + (startTime + i));
+        event.setTimeStamp(startTime + i);
+        writer.append(co.cask.cdap.logging.serialize.LoggingEvent.encode(schema, event, loggingContext));
+      }
+    }
+  }
+
+  @Test
+  public void testGroupFiles() {
+    // file start time -> file size
+    NavigableMap<Long, Long> fileSizes = new TreeMap<>(ImmutableSortedMap.<Long, Long>naturalOrder()
+      .put(10L, 10L)
+      .put(20L, 20L)
+      // large file in between
+      .put(30L, 1000L)
+      .put(40L, 10L)
+      .put(50L, 10L)
+      .put(60L, 10L)
+      // new window
+      .put(100L, 10L)
+      .put(110L, 10L)
+      // single small file in a window
+      .put(200L, 10L)
+      .build());
+
+    List<List<Long>> groups = LogCompaction.groupFiles(fileSizes, 100, 1000, 100);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(10L, 20L),
+                                         ImmutableList.of(40L, 50L, 60L),
+                                         ImmutableList.of(100L, 110L)), groups);
+
+    // Groups are limited by the max file size
+    groups = LogCompaction.groupFiles(fileSizes, 100, 25, 100);
+    Assert.assertEquals(ImmutableList.of(ImmutableList.of(40L, 50L),
+                                         ImmutableList.of(100L, 110L)), groups);
+
+    // No small files
+    groups = LogCompaction.groupFiles(fileSizes, 10, 1000, 100);
+    Assert.assertEquals(ImmutableList.<List<Long>>of(), groups);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.MdcExpression;
+import co.cask.cdap.logging.filter.OrFilter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Tests for {@link LogFileIndex}.
+ */
+public class LogFileIndexTest {
+
+  @Test
+  public void testWriteRead() throws Exception {
+    LogFileIndex.Builder builder = new LogFileIndex.Builder();
+    builder.startBlock(100);
+    builder.add(createEvent(10, Level.DEBUG, "app", "app1"));
+    builder.add(createEvent(12, Level.INFO, "app", "app1"));
+    builder.startBlock(200);
+    // Empty blocks are left out
+    builder.startBlock(300);
+    builder.add(createEvent(20, Level.ERROR, "app", "app2"));
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    builder.build().write(os);
+    List<LogFileIndex.Block> blocks = LogFileIndex.read(new ByteArrayInputStream(os.toByteArray())).getBlocks();
+
+    Assert.assertEquals(2, blocks.size());
+    Assert.assertEquals(100, blocks.get(0).getPosition());
+    Assert.assertEquals(2, blocks.get(0).getEventCount());
+    Assert.assertEquals(10, blocks.get(0).getMinTimestamp());
+    Assert.assertEquals(12, blocks.get(0).getMaxTimestamp());
+    Assert.assertEquals(300, blocks.get(1).getPosition());
+    Assert.assertEquals(1, blocks.get(1).getEventCount());
+    Assert.assertEquals(20, blocks.get(1).getMinTimestamp());
+    Assert.assertEquals(20, blocks.get(1).getMaxTimestamp());
+
+    // Level filter
+    Assert.assertTrue(blocks.get(0).mayMatch(new LogLevelExpression("INFO")));
+    Assert.assertFalse(blocks.get(0).mayMatch(new LogLevelExpression("WARN")));
+    Assert.assertTrue(blocks.get(1).mayMatch(new LogLevelExpression("ERROR")));
+
+    // MDC filter
+    Assert.assertTrue(blocks.get(0).mayMatch(new MdcExpression("app", "app1")));
+    Assert.assertFalse(blocks.get(0).mayMatch(new MdcExpression("app", "app2")));
+    Assert.assertFalse(blocks.get(0).mayMatch(new MdcExpression("flow", "app1")));
+    Assert.assertTrue(blocks.get(1).mayMatch(new MdcExpression("app", "app2")));
+
+    // Combined filters
+    Filter filter = new AndFilter(ImmutableList.of(new MdcExpression("app", "app1"),
+                                                   new LogLevelExpression("ERROR")));
+    Assert.assertFalse(blocks.get(0).mayMatch(filter));
+    Assert.assertFalse(blocks.get(1).mayMatch(filter));
+
+    filter = new OrFilter(ImmutableList.of(new MdcExpression("app", "app1"), new LogLevelExpression("ERROR")));
+    Assert.assertTrue(blocks.get(0).mayMatch(filter));
+    Assert.assertTrue(blocks.get(1).mayMatch(filter));
+
+    Assert.assertTrue(blocks.get(0).mayMatch(Filter.EMPTY_FILTER));
+  }
+
+  private ILoggingEvent createEvent(long timestamp, Level level, String mdcKey, String mdcValue) {
+    LoggingEvent event = new LoggingEvent();
+    event.setTimeStamp(timestamp);
+    event.setLevel(level);
+    event.setMDCPropertyMap(ImmutableMap.of(mdcKey, mdcValue));
+    return event;
+  }
+}
@@ -17,6 +17,7 @@ package co.cask.cdap.metrics.collect;
 
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
@@ -30,7 +31,9 @@ import co.cask.cdap.test.SlowTests;
 import co.cask.common.io.ByteBufferInputStream;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 import com.google.common.reflect.TypeToken;
@@ -56,6 +59,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Semaphore;
@@ -161,6 +165,43 @@ public class KafkaMetricsCollectionServiceTest {
     assertMetricsFromKafka(kafkaClient, schema, metricRecordType, expected);
   }
 
+  @Test
+  public void testPublishReusesBuffer() throws Exception {
+    Properties kafkaConfig = generateKafkaConfig(tmpFolder1);
+    kafkaServer = new EmbeddedKafkaServer(kafkaConfig);
+    kafkaServer.startAndWait();
+
+    ZKClientService zkClient = ZKClientService.Builder.of(zkServer.getConnectionStr()).build();
+    zkClient.startAndWait();
+
+    KafkaClientService kafkaClient = new ZKKafkaClientService(zkClient);
+    kafkaClient.startAndWait();
+
+    final TypeToken<MetricValues> metricValueType = TypeToken.of(MetricValues.class);
+    final Schema schema = new ReflectionSchemaGenerator().generate(metricValueType.getType());
+    DatumWriter<MetricValues> metricRecordDatumWriter = new ASMDatumWriterFactory(new ASMFieldAccessorFactory())
+      .create(metricValueType, schema);
+
+    KafkaMetricsCollectionService collectionService =
+      new KafkaMetricsCollectionService(kafkaClient, "metrics", KafkaPublisher.Ack.FIRE_AND_FORGET,
+                                        metricRecordDatumWriter);
+    // Calls publish directly, so that the second publish overwrites the buffer used by the first one
+    Table<String, String, Long> expected = HashBasedTable.create();
+    for (int round = 0; round < 2; round++) {
+      List<MetricValues> metricValues = Lists.newArrayList();
+      for (int i = 1; i <= 3; i++) {
+        String tag = round + "." + i;
+        long value = (round + 1) * 1000L + i;
+        metricValues.add(new MetricValues(ImmutableMap.of("tag", tag), 0L, ImmutableList.of(
+          new MetricValue("processed", MetricType.COUNTER, value))));
+        expected.put("tag." + tag, "processed", value);
+      }
+      collectionService.publish(metricValues.iterator());
+    }
+
+    assertMetricsFromKafka(kafkaClient, schema, metricValueType, expected);
+  }
+
   private void assertMetricsFromKafka(KafkaClientService kafkaClient, final Schema schema,
                                       final TypeToken<MetricValues> metricRecordType,
                                       Table<String, String, Long> expected) throws InterruptedException {
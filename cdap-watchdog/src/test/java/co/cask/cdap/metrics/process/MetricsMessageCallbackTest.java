@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricDeleteQuery;
+import co.cask.cdap.api.metrics.MetricSearchQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.DatumWriter;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+import org.apache.twill.kafka.client.FetchedMessage;
+import org.apache.twill.kafka.client.TopicPartition;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link MetricsMessageCallback}.
+ */
+public class MetricsMessageCallbackTest {
+
+  private static final TopicPartition TOPIC_PARTITION = new TopicPartition("metrics", 0);
+
+  private static Schema schema;
+  private static DatumWriter<MetricValues> datumWriter;
+  private static ReflectionDatumReader<MetricValues> datumReader;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    TypeToken<MetricValues> type = TypeToken.of(MetricValues.class);
+    schema = new ReflectionSchemaGenerator().generate(type.getType());
+    datumWriter = new ASMDatumWriterFactory(new ASMFieldAccessorFactory()).create(type, schema);
+    datumReader = new ReflectionDatumReader<>(schema, type);
+  }
+
+  @Test
+  public void testAggregate() throws Exception {
+    Map<String, String> tagsA = ImmutableMap.of("ns", "a");
+    Map<String, String> tagsB = ImmutableMap.of("ns", "b");
+
+    List<FetchedMessage> messages = ImmutableList.of(
+      createMessage(new MetricValues(tagsA, 1L, ImmutableList.of(
+        new MetricValue("count", MetricType.COUNTER, 1), new MetricValue("size", MetricType.GAUGE, 5))), 1L),
+      createMessage(new MetricValues(tagsA, 1L, ImmutableList.of(
+        new MetricValue("count", MetricType.COUNTER, 2), new MetricValue("size", MetricType.GAUGE, 7))), 2L),
+      createMessage(new MetricValues(tagsB, "count", 1L, 3, MetricType.COUNTER), 3L),
+      createMessage(new MetricValues(tagsA, "count", 2L, 4, MetricType.COUNTER), 4L)
+    );
+
+    RecordingMetricStore metricStore = new RecordingMetricStore();
+    new MetricsMessageCallback(datumReader, schema, metricStore, null).onReceived(messages.iterator());
+
+    Assert.assertEquals(1, metricStore.added.size());
+    List<MetricValues> added = metricStore.added.get(0);
+
+    // Records of the same tags and timestamp are merged, the processing stats record comes last
+    Assert.assertEquals(4, added.size());
+    assertRecord(added.get(0), tagsA, 1L, ImmutableMap.of("count", 3L, "size", 7L));
+    assertRecord(added.get(1), tagsB, 1L, ImmutableMap.of("count", 3L));
+    assertRecord(added.get(2), tagsA, 2L, ImmutableMap.of("count", 4L));
+
+    // The processing count is the number of records received, not the number of merged ones
+    Map<String, Long> stats = toMap(added.get(3));
+    Assert.assertEquals(Long.valueOf(4L), stats.get("metrics.process.count"));
+    Assert.assertTrue(stats.containsKey("metrics.process.delay.ms"));
+  }
+
+  @Test
+  public void testStoreFailure() throws Exception {
+    RecordingMetricStore metricStore = new RecordingMetricStore();
+    metricStore.fail = true;
+    List<FetchedMessage> messages = ImmutableList.of(
+      createMessage(new MetricValues(ImmutableMap.of("ns", "a"), "count", 1L, 1, MetricType.COUNTER), 1L));
+    try {
+      new MetricsMessageCallback(datumReader, schema, metricStore, null).onReceived(messages.iterator());
+      Assert.fail("Expected failure when the metric store fails");
+    } catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  private static FetchedMessage createMessage(MetricValues metricValues, final long nextOffset) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    datumWriter.encode(metricValues, new BinaryEncoder(os));
+    final ByteBuffer payload = ByteBuffer.wrap(os.toByteArray());
+    return new FetchedMessage() {
+      @Override
+      public TopicPartition getTopicPartition() {
+        return TOPIC_PARTITION;
+      }
+
+      @Override
+      public ByteBuffer getPayload() {
+        return payload;
+      }
+
+      @Override
+      public long getNextOffset() {
+        return nextOffset;
+      }
+    };
+  }
+
+  private void assertRecord(MetricValues record, Map<String, String> tags, long timestamp,
+                            Map<String, Long> metrics) {
+    Assert.assertEquals(tags, record.getTags());
+    Assert.assertEquals(timestamp, record.getTimestamp());
+    Assert.assertEquals(metrics, toMap(record));
+  }
+
+  private Map<String, Long> toMap(MetricValues record) {
+    Map<String, Long> result = Maps.newHashMap();
+    for (MetricValue value : record.getMetrics()) {
+      result.put(value.getName(), value.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * A {@link MetricStore} that records the added metrics.
+   */
+  private static final class RecordingMetricStore implements MetricStore {
+
+    private final List<List<MetricValues>> added = Lists.newArrayList();
+    private boolean fail;
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) throws Exception {
+      add(ImmutableList.of(metricValues));
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) throws Exception {
+      if (fail) {
+        throw new IOException("Failed to add metrics");
+      }
+      added.add(ImmutableList.copyOf(metricValues));
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
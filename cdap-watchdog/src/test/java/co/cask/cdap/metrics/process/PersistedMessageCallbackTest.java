@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.process;
+
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import com.google.common.collect.ImmutableList;
+import org.apache.twill.kafka.client.FetchedMessage;
+import org.apache.twill.kafka.client.KafkaConsumer;
+import org.apache.twill.kafka.client.TopicPartition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tests for {@link PersistedMessageCallback}.
+ */
+public class PersistedMessageCallbackTest {
+
+  private static final TopicPartition TOPIC_PARTITION = new TopicPartition("metrics", 0);
+
+  @Test
+  public void testOffsetsAfterDelegateSucceeds() throws Exception {
+    InMemoryTableService.create("kafkameta");
+    KafkaConsumerMetaTable metaTable = new KafkaConsumerMetaTable(new InMemoryMetricsTable("kafkameta"));
+
+    ConsumingCallback delegate = new ConsumingCallback();
+    PersistedMessageCallback callback = new PersistedMessageCallback(delegate, metaTable, 1);
+
+    // Offsets are persisted once the delegate processed the messages
+    callback.onReceived(createMessages(1L, 2L).iterator());
+    Assert.assertEquals(2L, metaTable.get(TOPIC_PARTITION));
+
+    // A failed delegate doesn't have the offsets of its messages persisted, even when finished
+    delegate.fail = true;
+    try {
+      callback.onReceived(createMessages(3L, 4L).iterator());
+      Assert.fail("Expected failure from the delegate");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    callback.finished();
+    Assert.assertEquals(2L, metaTable.get(TOPIC_PARTITION));
+
+    // Retried messages get their offsets persisted once processed successfully
+    delegate.fail = false;
+    callback.onReceived(createMessages(3L, 4L).iterator());
+    Assert.assertEquals(4L, metaTable.get(TOPIC_PARTITION));
+  }
+
+  private List<FetchedMessage> createMessages(long... nextOffsets) {
+    ImmutableList.Builder<FetchedMessage> messages = ImmutableList.builder();
+    for (final long nextOffset : nextOffsets) {
+      messages.add(new FetchedMessage() {
+        @Override
+        public TopicPartition getTopicPartition() {
+          return TOPIC_PARTITION;
+        }
+
+        @Override
+        public ByteBuffer getPayload() {
+          return ByteBuffer.allocate(0);
+        }
+
+        @Override
+        public long getNextOffset() {
+          return nextOffset;
+        }
+      });
+    }
+    return messages.build();
+  }
+
+  /**
+   * A {@link KafkaConsumer.MessageCallback} that consumes all messages and then fails if requested.
+   */
+  private static final class ConsumingCallback implements KafkaConsumer.MessageCallback {
+
+    private boolean fail;
+
+    @Override
+    public void onReceived(Iterator<FetchedMessage> messages) {
+      while (messages.hasNext()) {
+        messages.next();
+      }
+      if (fail) {
+        throw new RuntimeException("Failed to process messages");
+      }
+    }
+
+    @Override
+    public void finished() {
+      // no-op
+    }
+  }
+}
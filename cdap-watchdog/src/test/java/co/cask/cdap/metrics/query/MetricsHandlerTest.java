@@ -0,0 +1,266 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.query;
+
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricDeleteQuery;
+import co.cask.cdap.api.metrics.MetricSearchQuery;
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.proto.MetricQueryResult;
+import co.cask.http.NettyHttpService;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Tests the streaming of query results by {@link MetricsHandler}.
+ */
+public class MetricsHandlerTest {
+
+  private static final Gson GSON = new Gson();
+  private static final int MAX_POINTS = 10;
+
+  private static TestMetricStore metricStore;
+  private static NettyHttpService httpService;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setInt(Constants.Metrics.QUERY_MAX_POINTS, MAX_POINTS);
+    metricStore = new TestMetricStore();
+    httpService = NettyHttpService.builder()
+      .addHttpHandlers(ImmutableList.of(new MetricsHandler(cConf, metricStore, new NoOpMetricsCollectionService())))
+      .setHost("localhost")
+      .build();
+    httpService.startAndWait();
+  }
+
+  @AfterClass
+  public static void finish() {
+    httpService.stopAndWait();
+  }
+
+  @Before
+  public void resetStore() {
+    metricStore.queries = 0;
+    metricStore.maxPoints.clear();
+  }
+
+  @Test
+  public void testQuery() throws Exception {
+    metricStore.series = ImmutableList.of(createTimeSeries("app1", 4), createTimeSeries("app2", 4));
+    MetricQueryResult result = GSON.fromJson(post("/v3/metrics/query?metric=system.reads&groupBy=app", null),
+                                             MetricQueryResult.class);
+    Assert.assertFalse(result.isPartial());
+    Assert.assertEquals(2, result.getSeries().length);
+    Assert.assertEquals("system.reads", result.getSeries()[0].getMetricName());
+    Assert.assertEquals(ImmutableMap.of("app", "app1"), result.getSeries()[0].getGrouping());
+    Assert.assertEquals(4, result.getSeries()[1].getData().length);
+    Assert.assertEquals(3L, result.getSeries()[1].getData()[3].getValue());
+    Assert.assertEquals("2147483647s", result.getResolution());
+
+    // More points than allowed in a response
+    metricStore.series = ImmutableList.of(createTimeSeries("app1", 4), createTimeSeries("app2", 4),
+                                          createTimeSeries("app3", 4));
+    result = GSON.fromJson(post("/v3/metrics/query?metric=system.reads&groupBy=app", null),
+                           MetricQueryResult.class);
+    Assert.assertTrue(result.isPartial());
+    Assert.assertEquals(3, result.getSeries().length);
+    Assert.assertEquals(2, result.getSeries()[2].getData().length);
+  }
+
+  @Test
+  public void testBatchQuery() throws Exception {
+    metricStore.series = ImmutableList.of(createTimeSeries("app1", 6));
+    Map<String, Object> query = ImmutableMap.<String, Object>of("metrics", ImmutableList.of("system.reads"));
+    String body = GSON.toJson(ImmutableMap.of("q1", query, "q2", query, "q3", query));
+
+    Map<String, MetricQueryResult> results =
+      GSON.fromJson(post("/v3/metrics/query", body), new TypeToken<Map<String, MetricQueryResult>>() { }.getType());
+    Assert.assertEquals(3, results.size());
+    Assert.assertFalse(results.get("q1").isPartial());
+    Assert.assertEquals(6, results.get("q1").getSeries()[0].getData().length);
+    Assert.assertTrue(results.get("q2").isPartial());
+    Assert.assertEquals(4, results.get("q2").getSeries()[0].getData().length);
+    // The last query is not executed, as the point budget is used up
+    Assert.assertTrue(results.get("q3").isPartial());
+    Assert.assertEquals(0, results.get("q3").getSeries().length);
+    Assert.assertEquals(2, metricStore.queries);
+    // Each query is only allowed to materialize the points that are left in the budget
+    Assert.assertEquals(ImmutableList.of(MAX_POINTS, MAX_POINTS - 6), metricStore.maxPoints);
+  }
+
+  @Test
+  public void testInvalidBatchQuery() throws Exception {
+    // The second query has no metrics, hence no query should be executed
+    String body = GSON.toJson(ImmutableMap.of(
+      "q1", ImmutableMap.of("metrics", ImmutableList.of("system.reads")),
+      "q2", ImmutableMap.of("tags", ImmutableMap.of("app", "app1"))));
+    HttpURLConnection urlConn = openConnection("/v3/metrics/query", body);
+    try {
+      Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, urlConn.getResponseCode());
+    } finally {
+      urlConn.disconnect();
+    }
+    Assert.assertEquals(0, metricStore.queries);
+  }
+
+  @Test
+  public void testMalformedBatchQuery() throws Exception {
+    for (String body : ImmutableList.of("{\"q1\": ", "[\"system.reads\"]", "null", "{\"q1\": null}")) {
+      HttpURLConnection urlConn = openConnection("/v3/metrics/query", body);
+      try {
+        Assert.assertEquals(body, HttpURLConnection.HTTP_BAD_REQUEST, urlConn.getResponseCode());
+      } finally {
+        urlConn.disconnect();
+      }
+    }
+    Assert.assertEquals(0, metricStore.queries);
+  }
+
+  @Test
+  public void testInvalidDerivedResolutions() {
+    for (String resolutions : ImmutableList.of("300,5m", "300,-60")) {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.set(Constants.Metrics.DERIVED_RESOLUTIONS, resolutions);
+      try {
+        new MetricsHandler(cConf, metricStore, new NoOpMetricsCollectionService());
+        Assert.fail("Expected the invalid resolutions " + resolutions + " to be rejected");
+      } catch (IllegalArgumentException e) {
+        Assert.assertTrue(e.getMessage().contains(Constants.Metrics.DERIVED_RESOLUTIONS));
+      }
+    }
+  }
+
+  private MetricTimeSeries createTimeSeries(String app, int points) {
+    List<TimeValue> timeValues = Lists.newArrayList();
+    for (int i = 0; i < points; i++) {
+      timeValues.add(new TimeValue(i, i));
+    }
+    return new MetricTimeSeries("system.reads", ImmutableMap.of(Constants.Metrics.Tag.APP, app), timeValues);
+  }
+
+  private String post(String path, @Nullable String body) throws IOException {
+    HttpURLConnection urlConn = openConnection(path, body);
+    try {
+      Assert.assertEquals(HttpURLConnection.HTTP_OK, urlConn.getResponseCode());
+      try (InputStream is = urlConn.getInputStream()) {
+        return new String(ByteStreams.toByteArray(is), Charsets.UTF_8);
+      }
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
+  private HttpURLConnection openConnection(String path, @Nullable String body) throws IOException {
+    URL url = new URL(String.format("http://%s:%d%s", httpService.getBindAddress().getHostName(),
+                                    httpService.getBindAddress().getPort(), path));
+    HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
+    urlConn.setRequestMethod("POST");
+    if (body != null) {
+      urlConn.setDoOutput(true);
+      try (OutputStream os = urlConn.getOutputStream()) {
+        os.write(body.getBytes(Charsets.UTF_8));
+      }
+    }
+    return urlConn;
+  }
+
+  /**
+   * A {@link MetricStore} that returns the same time series for every query.
+   */
+  private static final class TestMetricStore implements MetricStore {
+
+    private volatile Collection<MetricTimeSeries> series = ImmutableList.of();
+    private volatile int queries;
+    private final List<Integer> maxPoints = Lists.newCopyOnWriteArrayList();
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      queries++;
+      maxPoints.add(query.getMaxPoints());
+      return series;
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll() throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
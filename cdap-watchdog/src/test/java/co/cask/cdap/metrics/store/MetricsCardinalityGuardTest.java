@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2016 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.metrics.MetricType;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link MetricsCardinalityGuard} and {@link HyperLogLog}.
+ */
+public class MetricsCardinalityGuardTest {
+
+  @Test
+  public void testHyperLogLog() {
+    HyperLogLog sketch = new HyperLogLog(10);
+    Assert.assertEquals(0L, sketch.cardinality());
+
+    for (int count : new int[] {100, 1000, 10000, 100000}) {
+      sketch = new HyperLogLog(10);
+      for (int i = 0; i < count; i++) {
+        sketch.offer("metric" + i);
+        // duplicates must not change the estimate
+        sketch.offer("metric" + i);
+      }
+      // standard error is about 3%, allow for 10%
+      Assert.assertEquals(count, sketch.cardinality(), count * 0.1d);
+    }
+  }
+
+  @Test
+  public void testOverflow() {
+    MetricsCardinalityGuard guard = new MetricsCardinalityGuard(5);
+    Map<String, String> run1 = ImmutableMap.of(Constants.Metrics.Tag.APP, "app",
+                                               Constants.Metrics.Tag.RUN_ID, "run1");
+    Map<String, String> run2 = ImmutableMap.of(Constants.Metrics.Tag.APP, "app",
+                                               Constants.Metrics.Tag.RUN_ID, "run2");
+    Map<String, String> other = ImmutableMap.of(Constants.Metrics.Tag.APP, "other");
+
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("metric" + i, guard.getMetricName(run1, "metric" + i, MetricType.COUNTER));
+    }
+    // runs of the same program share the limit
+    Assert.assertEquals(MetricsCardinalityGuard.OVERFLOW_COUNTER_NAME,
+                        guard.getMetricName(run2, "metric5", MetricType.COUNTER));
+    // overflowed gauges are stored separately from counters
+    Assert.assertEquals(MetricsCardinalityGuard.OVERFLOW_GAUGE_NAME,
+                        guard.getMetricName(run1, "metric6", MetricType.GAUGE));
+    // metric names accepted before still go through
+    Assert.assertEquals("metric3", guard.getMetricName(run2, "metric3", MetricType.GAUGE));
+    // other contexts are not affected
+    Assert.assertEquals("metric5", guard.getMetricName(other, "metric5", MetricType.COUNTER));
+    // the context looked up once applies the same limit
+    MetricsCardinalityGuard.Context context = guard.getContext(run2);
+    Assert.assertEquals("metric4", context.getMetricName("metric4", MetricType.COUNTER));
+    Assert.assertEquals(MetricsCardinalityGuard.OVERFLOW_COUNTER_NAME,
+                        context.getMetricName("metric7", MetricType.COUNTER));
+    Assert.assertSame(context, guard.getContext(run1));
+
+    List<MetricsCardinalityGuard.ContextCardinality> contexts = guard.getHighestCardinalityContexts(10);
+    Assert.assertEquals(2, contexts.size());
+    Assert.assertEquals(ImmutableMap.of(Constants.Metrics.Tag.APP, "app"), contexts.get(0).getTags());
+    Assert.assertTrue(contexts.get(0).isOverflowed());
+    Assert.assertTrue(contexts.get(0).getCardinality() > 5);
+    Assert.assertEquals(other, contexts.get(1).getTags());
+    Assert.assertFalse(contexts.get(1).isOverflowed());
+    Assert.assertEquals(1L, contexts.get(1).getCardinality());
+  }
+
+  @Test
+  public void testHighestCardinality() {
+    MetricsCardinalityGuard guard = new MetricsCardinalityGuard(150);
+    for (int app = 0; app < 10; app++) {
+      Map<String, String> tags = ImmutableMap.of(Constants.Metrics.Tag.APP, "app" + app);
+      // app i emits 20 * i distinct metric names
+      for (int i = 0; i < 20 * app; i++) {
+        guard.getMetricName(tags, "metric" + i, MetricType.COUNTER);
+      }
+    }
+
+    List<MetricsCardinalityGuard.ContextCardinality> contexts = guard.getHighestCardinalityContexts(3);
+    Assert.assertEquals(3, contexts.size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(ImmutableMap.of(Constants.Metrics.Tag.APP, "app" + (9 - i)), contexts.get(i).getTags());
+    }
+    // contexts above the limit are estimated, those within are counted exactly
+    Assert.assertTrue(contexts.get(0).isOverflowed());
+    Assert.assertEquals(180, contexts.get(0).getCardinality(), 18);
+    Assert.assertFalse(contexts.get(2).isOverflowed());
+    Assert.assertEquals(140L, contexts.get(2).getCardinality());
+  }
+
+  @Test
+  public void testTotalLimit() {
+    MetricsCardinalityGuard guard = new MetricsCardinalityGuard(5, 100, 8);
+    Map<String, String> app1 = ImmutableMap.of(Constants.Metrics.Tag.APP, "app1");
+    Map<String, String> app2 = ImmutableMap.of(Constants.Metrics.Tag.APP, "app2");
+
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("metric" + i, guard.getMetricName(app1, "metric" + i, MetricType.COUNTER));
+    }
+    // only 3 more names can be accepted in total, even though app2 is within its own limit
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("metric" + i, guard.getMetricName(app2, "metric" + i, MetricType.COUNTER));
+    }
+    Assert.assertEquals(MetricsCardinalityGuard.OVERFLOW_GAUGE_NAME,
+                        guard.getMetricName(app2, "metric3", MetricType.GAUGE));
+    // names accepted before still go through
+    Assert.assertEquals("metric2", guard.getMetricName(app2, "metric2", MetricType.COUNTER));
+  }
+
+  @Test
+  public void testDroppedContext() {
+    MetricsCardinalityGuard guard = new MetricsCardinalityGuard(5, 1, 100);
+    Map<String, String> app1 = ImmutableMap.of(Constants.Metrics.Tag.APP, "app1");
+    Map<String, String> app2 = ImmutableMap.of(Constants.Metrics.Tag.APP, "app2");
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("metric" + i, guard.getMetricName(app1, "metric" + i, MetricType.COUNTER));
+    }
+    // tracking app2 drops app1, which releases its names from the total
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("metric" + i, guard.getMetricName(app2, "metric" + i, MetricType.COUNTER));
+    }
+    Assert.assertEquals(1, guard.getHighestCardinalityContexts(10).size());
+
+    // app1 is tracked again, with the 3 names accepted before it was dropped counting against its limit
+    Assert.assertEquals("metric0", guard.getMetricName(app1, "metric0", MetricType.COUNTER));
+    Assert.assertEquals("metric3", guard.getMetricName(app1, "metric3", MetricType.COUNTER));
+    Assert.assertEquals(MetricsCardinalityGuard.OVERFLOW_COUNTER_NAME,
+                        guard.getMetricName(app1, "metric4", MetricType.COUNTER));
+    List<MetricsCardinalityGuard.ContextCardinality> contexts = guard.getHighestCardinalityContexts(10);
+    Assert.assertEquals(1, contexts.size());
+    Assert.assertEquals(app1, contexts.get(0).getTags());
+    Assert.assertTrue(contexts.get(0).isOverflowed());
+
+    // app2 was dropped with all of its 5 names, hence it cannot accept any name anymore
+    Assert.assertEquals(MetricsCardinalityGuard.OVERFLOW_COUNTER_NAME,
+                        guard.getMetricName(app2, "metric0", MetricType.COUNTER));
+  }
+}